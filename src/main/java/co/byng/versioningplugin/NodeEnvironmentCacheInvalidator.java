@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin;
+
+import co.byng.versioningplugin.versioning.NodeEnvironmentCache;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.Saveable;
+import hudson.model.TaskListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.slaves.ComputerListener;
+import jenkins.model.Jenkins;
+
+/**
+ * Drops a node's cached environment when it goes on or offline, and every
+ * node's when the node configuration is changed
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+@Extension
+public class NodeEnvironmentCacheInvalidator extends ComputerListener {
+    
+    protected final NodeEnvironmentCache cache;
+    
+    
+    
+    public NodeEnvironmentCacheInvalidator(NodeEnvironmentCache cache) {
+        this.cache = cache;
+    }
+    
+    public NodeEnvironmentCacheInvalidator() {
+        this(NodeEnvironmentCache.getDefault());
+    }
+
+    @Override
+    public void onOnline(Computer computer, TaskListener listener) {
+        this.cache.invalidate(computer);
+    }
+
+    @Override
+    public void onOffline(Computer computer) {
+        this.cache.invalidate(computer);
+    }
+
+    @Override
+    public void onConfigurationChange() {
+        this.cache.invalidateAll();
+    }
+    
+    
+    
+    /**
+     * Drops a node's cached environment when its configuration is saved, and
+     * every node's when the global configuration is
+     */
+    @Extension
+    public static class NodeSaveListener extends SaveableListener {
+        
+        protected final NodeEnvironmentCache cache;
+        
+        public NodeSaveListener(NodeEnvironmentCache cache) {
+            this.cache = cache;
+        }
+        
+        public NodeSaveListener() {
+            this(NodeEnvironmentCache.getDefault());
+        }
+
+        @Override
+        public void onChange(Saveable saveable, XmlFile file) {
+            if (!(saveable instanceof Node)) {
+                return;
+            }
+            
+            Computer computer = (saveable instanceof Jenkins) ? null : ((Node) saveable).toComputer();
+            
+            if (computer == null) {
+                this.cache.invalidateAll();
+            } else {
+                this.cache.invalidate(computer);
+            }
+        }
+        
+    }
+    
+}
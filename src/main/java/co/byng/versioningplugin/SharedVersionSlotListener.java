@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin;
+
+import co.byng.versioningplugin.handler.VersionLock;
+import co.byng.versioningplugin.handler.file.PathLockRegistry;
+import co.byng.versioningplugin.handler.shared.SharedFileVersionHandler;
+import co.byng.versioningplugin.handler.shared.SharedVersionFile;
+import co.byng.versioningplugin.service.FileAbsolutePathProvider;
+import co.byng.versioningplugin.service.PathProvider;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the shared version file in step with the jobs: a renamed or moved
+ * job's slot follows it to its new name, and a deleted job's slot (or those
+ * of every job in a deleted folder) is freed for reuse.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+@Extension
+public class SharedVersionSlotListener extends ItemListener {
+    
+    private static final Logger LOGGER = Logger.getLogger(SharedVersionSlotListener.class.getName());
+    
+    protected final PathProvider pathProvider;
+    protected final PathLockRegistry lockRegistry;
+    
+    
+    
+    public SharedVersionSlotListener(PathProvider pathProvider, PathLockRegistry lockRegistry) {
+        this.pathProvider = pathProvider;
+        this.lockRegistry = lockRegistry;
+    }
+    
+    public SharedVersionSlotListener() {
+        this(new FileAbsolutePathProvider(), PathLockRegistry.getDefault());
+    }
+
+    /**
+     * Called for the moved item and for each item within it
+     * 
+     * @param item
+     * @param oldFullName
+     * @param newFullName 
+     */
+    @Override
+    public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+        try {
+            SharedVersionFile sharedFile = this.openSharedFile();
+            
+            if (sharedFile == null) {
+                return;
+            }
+            
+            VersionLock lock = this.lockRegistry.acquire(
+                SharedFileVersionHandler.getSlotLockPath(sharedFile, oldFullName)
+            );
+            
+            try {
+                sharedFile.rename(oldFullName, newFullName);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to move the shared version of " + oldFullName + " to " + newFullName, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void onDeleted(Item item) {
+        String fullName = item.getFullName();
+        
+        try {
+            SharedVersionFile sharedFile = this.openSharedFile();
+            
+            if (sharedFile == null) {
+                return;
+            }
+            
+            for (String jobName : sharedFile.getJobNames()) {
+                if (jobName.equals(fullName) || jobName.startsWith(fullName + "/")) {
+                    VersionLock lock = this.lockRegistry.acquire(
+                        SharedFileVersionHandler.getSlotLockPath(sharedFile, jobName)
+                    );
+                    
+                    try {
+                        sharedFile.free(jobName);
+                    } finally {
+                        lock.release();
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to free the shared version of " + fullName, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 
+     * @return the shared version file, or null if no job has used it
+     * @throws IOException 
+     */
+    protected SharedVersionFile openSharedFile() throws IOException {
+        File file = this.pathProvider.getSharedVersionFilePath();
+        
+        return (file.exists() ? SharedVersionFile.open(file) : null);
+    }
+    
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the versions allocated to a build, by the store they were taken
+ * from, so that later versioning steps in the same build can reuse them
+ * rather than loading, incrementing and saving the version again
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class VersionAllocationAction extends InvisibleAction {
+    
+    protected Map<String, Allocation> allocations;
+    
+    
+    
+    public VersionAllocationAction() {
+        this.allocations = new HashMap<>();
+    }
+    
+    /**
+     * 
+     * @param build
+     * @return the build's action, which is added to it if it has none yet
+     */
+    public static VersionAllocationAction forBuild(Run<?, ?> build) {
+        synchronized (build) {
+            VersionAllocationAction action = build.getAction(VersionAllocationAction.class);
+            
+            if (action == null) {
+                action = new VersionAllocationAction();
+                build.addAction(action);
+            }
+            
+            return action;
+        }
+    }
+    
+    /**
+     * 
+     * @param storageBackend
+     * @param propertyFilePath
+     * @return the key under which versions taken from the given store are
+     *  recorded
+     */
+    public static String getKey(String storageBackend, String propertyFilePath) {
+        return storageBackend + "|" + propertyFilePath;
+    }
+    
+    /**
+     * 
+     * @param key
+     * @return the versions allocated to the build from the store with the
+     *  given key, or null if none have been
+     */
+    public synchronized Allocation getAllocation(String key) {
+        return (this.allocations == null) ? null : this.allocations.get(key);
+    }
+    
+    public synchronized void setAllocation(String key, String previousVersion, String currentVersion) {
+        if (this.allocations == null) {
+            this.allocations = new HashMap<>();
+        }
+        
+        this.allocations.put(key, new Allocation(previousVersion, currentVersion));
+    }
+    
+    
+    
+    public static class Allocation {
+        
+        protected final String previousVersion;
+        protected final String currentVersion;
+        
+        public Allocation(String previousVersion, String currentVersion) {
+            this.previousVersion = previousVersion;
+            this.currentVersion = currentVersion;
+        }
+
+        public String getPreviousVersion() {
+            return this.previousVersion;
+        }
+
+        public String getCurrentVersion() {
+            return this.currentVersion;
+        }
+        
+    }
+    
+}
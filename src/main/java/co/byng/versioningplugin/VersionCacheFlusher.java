@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin;
+
+import co.byng.versioningplugin.configuration.VersioningGlobalConfigurationProvider;
+import co.byng.versioningplugin.handler.cache.WriteBehindVersionCache;
+import hudson.Extension;
+import hudson.init.Terminator;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import hudson.util.LogTaskListener;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Checkpoints the write-behind version cache: entries which have been dirty
+ * for longer than the configured flush interval are written back to their
+ * property files, and everything still dirty is written when Jenkins shuts
+ * down.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+@Extension
+public class VersionCacheFlusher extends AsyncPeriodicWork {
+    
+    private static final Logger LOGGER = Logger.getLogger(VersionCacheFlusher.class.getName());
+    
+    /**
+     * How often the cache is checked; the flush interval itself is read from
+     * the global configuration on every check, so changes to it take effect
+     * without a restart
+     */
+    public static final long CHECK_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    
+    protected final WriteBehindVersionCache cache;
+    
+    
+    
+    public VersionCacheFlusher(WriteBehindVersionCache cache) {
+        super("Semantic version cache flush");
+        
+        this.cache = cache;
+    }
+    
+    public VersionCacheFlusher() {
+        this(WriteBehindVersionCache.getDefault());
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return CHECK_PERIOD_MILLIS;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        int flushed = this.cache.flushOlderThan(
+            TimeUnit.SECONDS.toMillis(this.getGlobalConfiguration().getWriteBehindFlushInterval()),
+            listener.getLogger()
+        );
+        
+        if (flushed > 0) {
+            listener.getLogger().println("Flushed " + flushed + " cached version(s)");
+        }
+    }
+    
+    /**
+     * 
+     * @return 
+     */
+    protected VersioningGlobalConfigurationProvider getGlobalConfiguration() {
+        return Jenkins.getInstance().getDescriptorByType(VersionNumberBuilder.DescriptorImpl.class);
+    }
+    
+    /**
+     * Writes every version still held only in memory before Jenkins exits
+     * 
+     * @throws InterruptedException 
+     */
+    @Terminator
+    public static void flushOnShutdown() throws InterruptedException {
+        try {
+            WriteBehindVersionCache.getDefault().flush(
+                new LogTaskListener(LOGGER, Level.INFO).getLogger()
+            );
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to flush cached versions on shutdown", ex);
+        }
+    }
+    
+}
@@ -37,6 +37,7 @@ import hudson.util.ListBoxModel;
 import java.io.IOException;
 import java.util.Map;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 /**
  *
@@ -151,6 +152,46 @@ public class VersionNumberBuildWrapper extends BuildWrapper implements Versionin
         return this.builder.getDoEnvExport();
     }
 
+    @Override
+    public String getStorageBackend() {
+        return this.builder.getStorageBackend();
+    }
+
+    @DataBoundSetter
+    public void setStorageBackend(String storageBackend) {
+        this.builder.setStorageBackend(storageBackend);
+    }
+
+    @Override
+    public int getPatchReservationSize() {
+        return this.builder.getPatchReservationSize();
+    }
+
+    @DataBoundSetter
+    public void setPatchReservationSize(int patchReservationSize) {
+        this.builder.setPatchReservationSize(patchReservationSize);
+    }
+
+    @Override
+    public String getVersionDecreasePolicy() {
+        return this.builder.getVersionDecreasePolicy();
+    }
+
+    @DataBoundSetter
+    public void setVersionDecreasePolicy(String versionDecreasePolicy) {
+        this.builder.setVersionDecreasePolicy(versionDecreasePolicy);
+    }
+
+    @Override
+    public boolean getReuseBuildVersion() {
+        return this.builder.getReuseBuildVersion();
+    }
+
+    @DataBoundSetter
+    public void setReuseBuildVersion(boolean reuseBuildVersion) {
+        this.builder.setReuseBuildVersion(reuseBuildVersion);
+    }
+
     @Override
     public DescriptorImpl getDescriptor() {
         return (DescriptorImpl) super.getDescriptor();
@@ -215,6 +256,14 @@ public class VersionNumberBuildWrapper extends BuildWrapper implements Versionin
             return this.optionsProvider.getPreReleaseVersionItems();
         }
 
+        public ListBoxModel doFillStorageBackendItems() {
+            return this.optionsProvider.getStorageBackendItems();
+        }
+
+        public ListBoxModel doFillVersionDecreasePolicyItems() {
+            return this.optionsProvider.getVersionDecreasePolicyItems();
+        }
+
     }
 
 }
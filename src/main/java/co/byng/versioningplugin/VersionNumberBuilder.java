@@ -6,16 +6,26 @@ import co.byng.versioningplugin.configuration.VersioningConfigurationWriteablePr
 import co.byng.versioningplugin.configuration.VersioningGlobalConfiguration;
 import co.byng.versioningplugin.configuration.VersioningGlobalConfigurationProvider;
 import co.byng.versioningplugin.configuration.VersioningGlobalConfigurationWriteableProvider;
-import co.byng.versioningplugin.handler.VersionCommittable;
-import co.byng.versioningplugin.handler.VersionRetrievable;
+import co.byng.versioningplugin.handler.BuildVersionUpdate;
+import co.byng.versioningplugin.handler.GroupCommitQueue;
+import co.byng.versioningplugin.handler.PatchIncrementUpdate;
+import co.byng.versioningplugin.handler.VersionChange;
+import co.byng.versioningplugin.handler.VersionStore;
+import co.byng.versioningplugin.handler.cache.WriteBehindVersionHandler;
+import co.byng.versioningplugin.handler.file.PropertyFileIoHandler;
+import co.byng.versioningplugin.handler.reservation.PatchReservingVersionStore;
 import co.byng.versioningplugin.service.FileAbsolutePathProvider;
 import co.byng.versioningplugin.service.LazyLoadingServiceFactory;
 import co.byng.versioningplugin.service.ServiceFactory;
+import co.byng.versioningplugin.versioning.CachingVersionFactory;
+import co.byng.versioningplugin.versioning.LazyEnvironment;
+import co.byng.versioningplugin.versioning.NodeEnvironmentCache;
+import co.byng.versioningplugin.versioning.PackedVersion;
 import co.byng.versioningplugin.versioning.VersionNumberUpdater;
 import co.byng.versioningplugin.versioning.VersionFactory;
+import co.byng.versioningplugin.versioning.VersionUpdatePlan;
 import com.github.zafarkhaja.semver.ParseException;
 import com.github.zafarkhaja.semver.Version;
-import hudson.EnvVars;
 import hudson.Launcher;
 import hudson.Extension;
 import hudson.model.AbstractBuild;
@@ -26,8 +36,10 @@ import hudson.tasks.BuildStepDescriptor;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import java.io.IOException;
+import java.io.PrintStream;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
@@ -53,9 +65,9 @@ public class VersionNumberBuilder extends Builder implements VersioningConfigura
     protected VersioningConfigurationWriteableProvider configuration;
     protected ServiceFactory serviceFactory;
     protected transient VersionNumberUpdater updater;
-    protected transient VersionRetrievable retriever;
-    protected transient VersionCommittable committer;
+    protected transient VersionStore store;
     protected transient VersionFactory versionFactory;
+    protected transient VersionUpdatePlan updatePlan;
     
     
     
@@ -98,65 +110,73 @@ public class VersionNumberBuilder extends Builder implements VersioningConfigura
     
     @Override
     public boolean perform(AbstractBuild build, Launcher launcher, BuildListener listener) {
+        PrintStream logger = listener.getLogger();
+        
         try {
-            this.lazyLoadServices(build.getProject());
-            VariableExporter varExporter = this.serviceFactory.createVarExporter(null);
+            String propertyFilePath = this.getPropertyFilePath();
+            boolean doOverrideVersion = this.getDoOverrideVersion();
+            
+            VersionAllocationAction allocations = VersionAllocationAction.forBuild(build);
+            String allocationKey = VersionAllocationAction.getKey(this.getStorageBackend(), propertyFilePath);
+            VersionAllocationAction.Allocation allocation = allocations.getAllocation(allocationKey);
+            
+            String previousVersion;
+            String currentVersion;
+            VariableExporter varExporter;
             
-            Version currentVersion;
-            if (this.getDoOverrideVersion()) {
-                currentVersion = this.versionFactory.buildVersionFromString(this.getOverrideVersion());
-                this.committer.saveVersion(currentVersion);
-
-                this.configuration
-                    .setDoOverrideVersion(false)
-                    .setOverrideVersion(null)
-                ;
+            if (allocation != null && !doOverrideVersion && this.getReuseBuildVersion()) {
+                this.lazyLoadServiceFactory(this.getDescriptor());
+                varExporter = this.serviceFactory.createVarExporter(null);
                 
+                previousVersion = allocation.getPreviousVersion();
+                currentVersion = allocation.getCurrentVersion();
+                
+                logger.append("Reusing version " + currentVersion + " already allocated to this build\n");
             } else {
-                currentVersion = this.retriever.loadVersion();
-            }
-
-            EnvVars environment = build.getEnvironment(listener);
-            Version previousVersion = currentVersion;
-
-            currentVersion = this.updater.incrementSingleVersionComponent(
-                currentVersion,
-                this.getFieldToIncrement()
-            );
-
-            if (this.getBaseMajorOnEnvVariable()) {
-                currentVersion = this.updater.updateMajorBasedOnEnvironmentVariable(
-                    currentVersion,
-                    environment,
-                    this.getMajorEnvVariable()
-                );
-            }
-
-            if (this.getBaseMinorOnEnvVariable()) {
-                currentVersion = this.updater.updateMinorBasedOnEnvironmentVariable(
-                    currentVersion,
-                    environment,
-                    this.getMinorEnvVariable()
+                VersionStore previousStore = this.store;
+                this.lazyLoadServices(build.getProject(), this.getDescriptor(), propertyFilePath);
+                this.flushReplacedStore(previousStore, logger);
+                varExporter = this.serviceFactory.createVarExporter(null);
+                
+                ConfiguredVersionUpdate update = new ConfiguredVersionUpdate(
+                    build.getNumber(),
+                    new LazyEnvironment(
+                        build,
+                        listener,
+                        this.getDescriptor().getCacheNodeEnvironment() ? NodeEnvironmentCache.getDefault() : null
+                    ),
+                    doOverrideVersion
                 );
+                
+                VersionChange change = this.store.update(update, logger);
+                previousVersion = update.getBaseVersion().toString();
+                currentVersion = change.getCurrentVersion().toString();
+                
+                if (change.isSaved()) {
+                    logger.append("Updating to " + currentVersion + "\n");
+                } else {
+                    logger.append("Version " + currentVersion + " is unchanged\n");
+                }
+                
+                if (doOverrideVersion) {
+                    this.configuration
+                        .setDoOverrideVersion(false)
+                        .setOverrideVersion(null)
+                    ;
+                }
+                
+                allocations.setAllocation(allocationKey, previousVersion, currentVersion);
             }
             
-            String preReleaseVersion;
-            if ((preReleaseVersion = this.getPreReleaseVersion()) != null) {
-                currentVersion = this.updater.setPreReleaseVersion(currentVersion, preReleaseVersion);
-            }
-            
-            listener.getLogger().append("Updating to " + currentVersion + "\n");
-            this.committer.saveVersion(currentVersion);
-            
             if (this.getDoEnvExport()) {
                 varExporter.addVariableToExport(
                     this.getDescriptor().getPreviousVersionEnvVariable(),
-                    previousVersion.toString()
+                    previousVersion
                 );
                 
                 varExporter.addVariableToExport(
                     this.getDescriptor().getCurrentVersionEnvVariable(),
-                    currentVersion.toString()
+                    currentVersion
                 );
                 
                 varExporter.export(build);
@@ -165,29 +185,105 @@ public class VersionNumberBuilder extends Builder implements VersioningConfigura
             return true;
 
         } catch (Throwable t) {
-            t.printStackTrace(listener.getLogger());
+            t.printStackTrace(logger);
         }
 
         return false;
     }
     
-    protected void lazyLoadServices(AbstractProject project) throws IOException {
-        if (this.serviceFactory == null) {
-            this.serviceFactory = new LazyLoadingServiceFactory(new FileAbsolutePathProvider());
-        }
+    /**
+     * Applies this builder's configured changes to the given version
+     * 
+     * The changes are made by this builder's {@link VersionUpdatePlan}, to a
+     * {@link PackedVersion}, so that only the resulting version is built as a
+     * {@link Version}; if the version, or the version with the changes made,
+     * has a component too large to be packed, they are made to the
+     * {@link Version} itself instead.
+     * 
+     * @param version
+     * @param environment the build's environment, which is only resolved if
+     *  a version component is based on an environment variable
+     * @return 
+     * @throws Exception if a version component is based on a missing or
+     *  invalid environment variable
+     */
+    protected Version applyConfiguredChanges(Version version, LazyEnvironment environment) throws Exception {
+        Version updatedVersion = this.getUpdatePlan().apply(version, environment);
         
-        String propertyFilePath = this.getPropertyFilePath();
+        if (updatedVersion == null) {
+            return this.applyConfiguredChangesUnpacked(version, environment);
+        }
         
-        this.committer = this.serviceFactory.createCommitter(
-            project,
-            propertyFilePath,
-            this.committer
+        return updatedVersion;
+    }
+    
+    /**
+     * Applies this builder's configured changes to a version whose
+     * components, before or after the changes, are too large to be packed
+     * 
+     * @param version
+     * @param environment
+     * @return
+     * @throws Exception 
+     */
+    protected Version applyConfiguredChangesUnpacked(Version version, LazyEnvironment environment) throws Exception {
+        version = this.updater.incrementSingleVersionComponent(
+            version,
+            this.getFieldToIncrement()
         );
+
+        if (this.getBaseMajorOnEnvVariable()) {
+            version = this.updater.updateMajorBasedOnEnvironmentVariable(
+                version,
+                environment.getEnvironment(),
+                this.getMajorEnvVariable(),
+                this.getVersionDecreasePolicy()
+            );
+        }
+
+        if (this.getBaseMinorOnEnvVariable()) {
+            version = this.updater.updateMinorBasedOnEnvironmentVariable(
+                version,
+                environment.getEnvironment(),
+                this.getMinorEnvVariable(),
+                this.getVersionDecreasePolicy()
+            );
+        }
+
+        String preReleaseVersion;
+        if ((preReleaseVersion = this.getPreReleaseVersion()) != null) {
+            version = this.updater.setPreReleaseVersion(version, preReleaseVersion);
+        }
+        
+        return version;
+    }
+    
+    protected void lazyLoadServices(AbstractProject project) throws IOException {
+        this.lazyLoadServices(project, null);
+    }
+    
+    protected void lazyLoadServices(
+        AbstractProject project,
+        VersioningGlobalConfigurationProvider globalConfiguration
+    ) throws IOException {
+        this.lazyLoadServices(project, globalConfiguration, this.getPropertyFilePath());
+    }
+    
+    protected void lazyLoadServices(
+        AbstractProject project,
+        VersioningGlobalConfigurationProvider globalConfiguration,
+        String propertyFilePath
+    ) throws IOException {
+        this.lazyLoadServiceFactory(globalConfiguration);
         
-        this.retriever = this.serviceFactory.createRetriever(
-            project,
-            propertyFilePath,
-            this.retriever
+        this.store = this.serviceFactory.createPatchReservingStore(
+            this.serviceFactory.createStore(
+                project,
+                propertyFilePath,
+                this.getStorageBackend(),
+                this.store
+            ),
+            this.getPatchReservationSize()
         );
         
         this.updater = this.serviceFactory.createUpdater(this.updater);
@@ -195,6 +291,45 @@ public class VersionNumberBuilder extends Builder implements VersioningConfigura
         this.versionFactory = this.serviceFactory.createVersionFactory(this.versionFactory);
     }
 
+    /**
+     * Writes back any version a replaced write-behind store still holds in
+     * memory, so that the store replacing it reads the latest version
+     * 
+     * @param previousStore the store used before the services were loaded
+     * @param logger
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    protected void flushReplacedStore(VersionStore previousStore, PrintStream logger) throws IOException, InterruptedException {
+        if (previousStore instanceof PatchReservingVersionStore) {
+            previousStore = ((PatchReservingVersionStore) previousStore).getStore();
+        }
+        
+        if (!(previousStore instanceof WriteBehindVersionHandler)) {
+            return;
+        }
+        
+        VersionStore currentStore = this.store;
+        
+        if (currentStore instanceof PatchReservingVersionStore) {
+            currentStore = ((PatchReservingVersionStore) currentStore).getStore();
+        }
+        
+        if (currentStore != previousStore && ((WriteBehindVersionHandler) previousStore).flush(logger)) {
+            logger.append("Wrote back the cached version before switching version store\n");
+        }
+    }
+
+    protected void lazyLoadServiceFactory(VersioningGlobalConfigurationProvider globalConfiguration) {
+        if (this.serviceFactory == null) {
+            this.serviceFactory = new LazyLoadingServiceFactory(new FileAbsolutePathProvider());
+        }
+        
+        if (globalConfiguration != null) {
+            this.serviceFactory.setGlobalConfiguration(globalConfiguration);
+        }
+    }
+
     public VersioningConfigurationWriteableProvider getConfiguration() {
         return this.configuration;
     }
@@ -207,20 +342,32 @@ public class VersionNumberBuilder extends Builder implements VersioningConfigura
         return this.updater;
     }
 
-    public VersionCommittable getCommitter() {
-        return this.committer;
-    }
-    
-    public VersionRetrievable getRetriever() {
-        return this.retriever;
+    public VersionStore getStore() {
+        return this.store;
     }
     
     public VersionFactory getVersionFactory() {
         return this.versionFactory;
     }
+    
+    /**
+     * 
+     * @return the plan compiled from the current configuration, compiling it
+     *  if the configuration has changed since it was last used
+     */
+    public VersionUpdatePlan getUpdatePlan() {
+        VersionUpdatePlan plan = this.updatePlan;
+        
+        if (plan == null) {
+            this.updatePlan = plan = VersionUpdatePlan.compile(this.configuration);
+        }
+        
+        return plan;
+    }
 
     public void setConfiguration(VersioningConfigurationWriteableProvider configuration) {
         this.configuration = configuration;
+        this.updatePlan = null;
     }
     
     public void setServiceFactory(ServiceFactory serviceFactory) {
@@ -231,12 +378,8 @@ public class VersionNumberBuilder extends Builder implements VersioningConfigura
         this.updater = updater;
     }
     
-    public void setCommitter(VersionCommittable committer) {
-        this.committer = committer;
-    }
-
-    public void setRetriever(VersionRetrievable retriever) {
-        this.retriever = retriever;
+    public void setStore(VersionStore store) {
+        this.store = store;
     }
 
     public void setVersionFactory(VersionFactory versionFactory) {
@@ -293,11 +436,108 @@ public class VersionNumberBuilder extends Builder implements VersioningConfigura
         return this.configuration.getDoEnvExport();
     }
     
+    @Override
+    public String getStorageBackend() {
+        return this.configuration.getStorageBackend();
+    }
+    
+    @DataBoundSetter
+    public void setStorageBackend(String storageBackend) {
+        this.configuration.setStorageBackend(storageBackend);
+    }
+    
+    @Override
+    public int getPatchReservationSize() {
+        return this.configuration.getPatchReservationSize();
+    }
+    
+    @DataBoundSetter
+    public void setPatchReservationSize(int patchReservationSize) {
+        this.configuration.setPatchReservationSize(patchReservationSize);
+    }
+    
+    @Override
+    public String getVersionDecreasePolicy() {
+        return this.configuration.getVersionDecreasePolicy();
+    }
+    
+    @DataBoundSetter
+    public void setVersionDecreasePolicy(String versionDecreasePolicy) {
+        this.configuration.setVersionDecreasePolicy(versionDecreasePolicy);
+        this.updatePlan = null;
+    }
+    
+    @Override
+    public boolean getReuseBuildVersion() {
+        return this.configuration.getReuseBuildVersion();
+    }
+    
+    @DataBoundSetter
+    public void setReuseBuildVersion(boolean reuseBuildVersion) {
+        this.configuration.setReuseBuildVersion(reuseBuildVersion);
+    }
+    
     @Override
     public DescriptorImpl getDescriptor() {
         return (DescriptorImpl) super.getDescriptor();
     }
 
+    /**
+     * The update made by one build: the override version or the stored one,
+     * with this builder's configured changes applied
+     */
+    protected class ConfiguredVersionUpdate implements BuildVersionUpdate, PatchIncrementUpdate {
+        
+        protected final int buildNumber;
+        protected final LazyEnvironment environment;
+        protected final boolean doOverrideVersion;
+        protected Version baseVersion;
+        
+        public ConfiguredVersionUpdate(int buildNumber, LazyEnvironment environment, boolean doOverrideVersion) {
+            this.buildNumber = buildNumber;
+            this.environment = environment;
+            this.doOverrideVersion = doOverrideVersion;
+        }
+
+        @Override
+        public int getBuildNumber() {
+            return this.buildNumber;
+        }
+
+        @Override
+        public boolean isPatchIncrement() {
+            return !this.doOverrideVersion && VersionNumberBuilder.this.getUpdatePlan().isPatchIncrement();
+        }
+        
+        /**
+         * 
+         * @return the version the changes were applied to
+         */
+        public Version getBaseVersion() {
+            return this.baseVersion;
+        }
+
+        @Override
+        public Version apply(Version currentVersion) throws IOException {
+            if (this.doOverrideVersion) {
+                this.baseVersion = VersionNumberBuilder.this.versionFactory.buildVersionFromString(
+                    VersionNumberBuilder.this.getOverrideVersion()
+                );
+            } else {
+                this.baseVersion = currentVersion;
+            }
+            
+            try {
+                return VersionNumberBuilder.this.applyConfiguredChanges(this.baseVersion, this.environment);
+            } catch (IOException | RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+        
+    }
+
     /**
      * Descriptor for {@link VersionNumberBuilder}. Used as a singleton.
      * The class is marked as public so that it can be accessed from views.
@@ -320,6 +560,8 @@ public class VersionNumberBuilder extends Builder implements VersioningConfigura
             this.setOptionsProvider(optionsProvider);
             
             load();
+            
+            CachingVersionFactory.getDefault().setCapacity(this.globalConfiguration.getVersionCacheCapacity());
         }
         
         public DescriptorImpl() {
@@ -340,7 +582,7 @@ public class VersionNumberBuilder extends Builder implements VersioningConfigura
 
         public FormValidation doCheckOverrideVersion(@QueryParameter String overrideVersion) {
             try {
-                Version.valueOf(overrideVersion);
+                CachingVersionFactory.getDefault().buildVersionFromString(overrideVersion);
             } catch (ParseException ex) {
                 return FormValidation.error("Please enter a valid semantic version string");
             }
@@ -390,6 +632,68 @@ public class VersionNumberBuilder extends Builder implements VersioningConfigura
         public String getCurrentVersionEnvVariable() {
             return this.globalConfiguration.getCurrentVersionEnvVariable();
         }
+
+        @Override
+        public String getCommitMode() {
+            return this.globalConfiguration.getCommitMode();
+        }
+
+        @Override
+        public String getFsyncPolicy() {
+            return this.globalConfiguration.getFsyncPolicy();
+        }
+
+        @Override
+        public boolean getCrossProcessLocking() {
+            return this.globalConfiguration.getCrossProcessLocking();
+        }
+
+        @Override
+        public int getLockTimeout() {
+            return this.globalConfiguration.getLockTimeout();
+        }
+
+        @Override
+        public int getWriteBehindFlushInterval() {
+            return this.globalConfiguration.getWriteBehindFlushInterval();
+        }
+
+        @Override
+        public int getGroupCommitWindow() {
+            return this.globalConfiguration.getGroupCommitWindow();
+        }
+
+        @Override
+        public int getGroupCommitMaxBatchSize() {
+            return this.globalConfiguration.getGroupCommitMaxBatchSize();
+        }
+
+        @Override
+        public int getVersionCacheCapacity() {
+            return this.globalConfiguration.getVersionCacheCapacity();
+        }
+
+        @Override
+        public boolean getCacheNodeEnvironment() {
+            return this.globalConfiguration.getCacheNodeEnvironment();
+        }
+        
+        /**
+         * 
+         * @return a summary of how well the shared version cache is doing,
+         *  for the global configuration page
+         */
+        public String getVersionCacheStatistics() {
+            CachingVersionFactory versionCache = CachingVersionFactory.getDefault();
+            
+            return String.format(
+                "%d of %d versions cached; %.1f%% of %d lookups found in the cache",
+                versionCache.getSize(),
+                versionCache.getCapacity(),
+                versionCache.getHitRate() * 100,
+                versionCache.getHitCount() + versionCache.getMissCount()
+            );
+        }
         
         public ListBoxModel doFillEnvVariableSubjectFieldItems() {
             return this.optionsProvider.getEnvVariableSubjectFieldItems();
@@ -403,6 +707,22 @@ public class VersionNumberBuilder extends Builder implements VersioningConfigura
             return this.optionsProvider.getPreReleaseVersionItems();
         }
 
+        public ListBoxModel doFillCommitModeItems() {
+            return this.optionsProvider.getCommitModeItems();
+        }
+
+        public ListBoxModel doFillFsyncPolicyItems() {
+            return this.optionsProvider.getFsyncPolicyItems();
+        }
+
+        public ListBoxModel doFillStorageBackendItems() {
+            return this.optionsProvider.getStorageBackendItems();
+        }
+
+        public ListBoxModel doFillVersionDecreasePolicyItems() {
+            return this.optionsProvider.getVersionDecreasePolicyItems();
+        }
+
         @Override
         public boolean configure(StaplerRequest req, JSONObject formData) throws FormException {
             
@@ -411,6 +731,48 @@ public class VersionNumberBuilder extends Builder implements VersioningConfigura
                     .setCurrentVersionEnvVariable(formData.getString("currentVersionEnvVariable"))
             ;
             
+            this.globalConfiguration.setCommitMode(
+                formData.optString("commitMode", PropertyFileIoHandler.CommitMode.ATOMIC)
+            );
+            
+            this.globalConfiguration.setFsyncPolicy(
+                formData.optString("fsyncPolicy", PropertyFileIoHandler.FsyncPolicy.FILE)
+            );
+            
+            this.globalConfiguration.setCrossProcessLocking(
+                formData.optBoolean("crossProcessLocking", false)
+            );
+            
+            this.globalConfiguration.setLockTimeout(
+                formData.optInt("lockTimeout", 0)
+            );
+            
+            this.globalConfiguration.setWriteBehindFlushInterval(
+                formData.optInt("writeBehindFlushInterval", 0)
+            );
+            
+            this.globalConfiguration.setGroupCommitWindow(
+                formData.optInt("groupCommitWindow", (int) GroupCommitQueue.DEFAULT_WINDOW_MILLIS)
+            );
+            
+            this.globalConfiguration.setGroupCommitMaxBatchSize(
+                formData.optInt("groupCommitMaxBatchSize", 0)
+            );
+            
+            this.globalConfiguration.setVersionCacheCapacity(
+                formData.optInt("versionCacheCapacity", 0)
+            );
+            
+            CachingVersionFactory.getDefault().setCapacity(this.globalConfiguration.getVersionCacheCapacity());
+            
+            this.globalConfiguration.setCacheNodeEnvironment(
+                formData.optBoolean("cacheNodeEnvironment", false)
+            );
+            
+            if (!this.globalConfiguration.getCacheNodeEnvironment()) {
+                NodeEnvironmentCache.getDefault().invalidateAll();
+            }
+            
             save();
             
             return super.configure(req,formData);
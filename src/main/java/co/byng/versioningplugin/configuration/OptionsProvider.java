@@ -23,6 +23,8 @@
  */
 package co.byng.versioningplugin.configuration;
 
+import co.byng.versioningplugin.handler.file.PropertyFileIoHandler;
+import co.byng.versioningplugin.service.ServiceFactory;
 import co.byng.versioningplugin.versioning.VersionNumberUpdater;
 import hudson.util.ListBoxModel;
 
@@ -87,4 +89,94 @@ public class OptionsProvider {
         return model;
     }
 
+    public ListBoxModel getCommitModeItems() {
+        ListBoxModel model = new ListBoxModel();
+
+        model.add(
+            "Atomic (write temporary file and rename)",
+            PropertyFileIoHandler.CommitMode.ATOMIC
+        );
+
+        model.add(
+            "Direct (rewrite file in place)",
+            PropertyFileIoHandler.CommitMode.DIRECT
+        );
+
+        return model;
+    }
+
+    public ListBoxModel getFsyncPolicyItems() {
+        ListBoxModel model = new ListBoxModel();
+
+        model.add(
+            "Sync version file",
+            PropertyFileIoHandler.FsyncPolicy.FILE
+        );
+
+        model.add(
+            "Sync version file and containing directory",
+            PropertyFileIoHandler.FsyncPolicy.FILE_AND_DIRECTORY
+        );
+
+        model.add(
+            "Never sync (leave to the operating system)",
+            PropertyFileIoHandler.FsyncPolicy.NONE
+        );
+
+        return model;
+    }
+
+    public ListBoxModel getVersionDecreasePolicyItems() {
+        ListBoxModel model = new ListBoxModel();
+
+        model.add(
+            "Ignore (keep the current version)",
+            VersionNumberUpdater.DecreasePolicy.IGNORE
+        );
+
+        model.add(
+            "Fail the build",
+            VersionNumberUpdater.DecreasePolicy.REJECT
+        );
+
+        model.add(
+            "Allow the version to go down",
+            VersionNumberUpdater.DecreasePolicy.ALLOW
+        );
+
+        return model;
+    }
+
+    public ListBoxModel getStorageBackendItems() {
+        ListBoxModel model = new ListBoxModel();
+
+        model.add(
+            "Property file",
+            ServiceFactory.StorageBackend.PROPERTY_FILE
+        );
+
+        model.add(
+            "Memory-mapped version file (for frequently built jobs)",
+            ServiceFactory.StorageBackend.MAPPED_FILE
+        );
+
+        model.add(
+            "Shared version file under JENKINS_HOME (for controllers with many jobs)",
+            ServiceFactory.StorageBackend.SHARED_FILE
+        );
+
+        model.add(
+            "Version journal (keeps the history of changes)",
+            ServiceFactory.StorageBackend.JOURNAL
+        );
+
+        model.add(
+            "In memory, written to the property file in the background (fastest, least durable)",
+            ServiceFactory.StorageBackend.WRITE_BEHIND
+        );
+
+        return model;
+    }
+
+
 }
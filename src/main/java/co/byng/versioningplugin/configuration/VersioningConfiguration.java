@@ -39,6 +39,10 @@ package co.byng.versioningplugin.configuration;
     protected String preReleaseVersion;
     protected String fieldToIncrement;
     protected boolean doEnvExport = true;
+    protected String storageBackend;
+    protected int patchReservationSize;
+    protected String versionDecreasePolicy;
+    protected boolean reuseBuildVersion;
     
     @Override
     public boolean getDoOverrideVersion() {
@@ -90,6 +94,26 @@ package co.byng.versioningplugin.configuration;
         return doEnvExport;
     }
 
+    @Override
+    public String getStorageBackend() {
+        return storageBackend;
+    }
+
+    @Override
+    public int getPatchReservationSize() {
+        return patchReservationSize;
+    }
+
+    @Override
+    public String getVersionDecreasePolicy() {
+        return versionDecreasePolicy;
+    }
+
+    @Override
+    public boolean getReuseBuildVersion() {
+        return reuseBuildVersion;
+    }
+
     @Override
     public VersioningConfiguration setDoOverrideVersion(boolean doOverrideVersion) {
         this.doOverrideVersion = doOverrideVersion;
@@ -159,5 +183,33 @@ package co.byng.versioningplugin.configuration;
         
         return this;
     }
+
+    @Override
+    public VersioningConfigurationWriteableProvider setStorageBackend(String storageBackend) {
+        this.storageBackend = storageBackend;
+        
+        return this;
+    }
+
+    @Override
+    public VersioningConfigurationWriteableProvider setPatchReservationSize(int patchReservationSize) {
+        this.patchReservationSize = patchReservationSize;
+        
+        return this;
+    }
+
+    @Override
+    public VersioningConfigurationWriteableProvider setVersionDecreasePolicy(String versionDecreasePolicy) {
+        this.versionDecreasePolicy = versionDecreasePolicy;
+        
+        return this;
+    }
+
+    @Override
+    public VersioningConfigurationWriteableProvider setReuseBuildVersion(boolean reuseBuildVersion) {
+        this.reuseBuildVersion = reuseBuildVersion;
+        
+        return this;
+    }
     
 }
@@ -49,4 +49,12 @@ public interface VersioningConfigurationProvider {
     
     public boolean getDoEnvExport();
     
+    public String getStorageBackend();
+    
+    public int getPatchReservationSize();
+    
+    public String getVersionDecreasePolicy();
+    
+    public boolean getReuseBuildVersion();
+    
 }
@@ -49,4 +49,12 @@ public interface VersioningConfigurationWriteableProvider extends VersioningConf
     
     public VersioningConfigurationWriteableProvider setDoEnvExport(boolean doEnvExport);
     
+    public VersioningConfigurationWriteableProvider setStorageBackend(String storageBackend);
+    
+    public VersioningConfigurationWriteableProvider setPatchReservationSize(int patchReservationSize);
+    
+    public VersioningConfigurationWriteableProvider setVersionDecreasePolicy(String versionDecreasePolicy);
+    
+    public VersioningConfigurationWriteableProvider setReuseBuildVersion(boolean reuseBuildVersion);
+    
 }
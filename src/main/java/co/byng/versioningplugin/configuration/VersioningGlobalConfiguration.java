@@ -23,6 +23,13 @@
  */
 package co.byng.versioningplugin.configuration;
 
+import co.byng.versioningplugin.handler.GroupCommitQueue;
+import co.byng.versioningplugin.handler.cache.WriteBehindVersionCache;
+import co.byng.versioningplugin.handler.file.CrossProcessFileLocker;
+import co.byng.versioningplugin.handler.file.PropertyFileIoHandler;
+import co.byng.versioningplugin.versioning.CachingVersionFactory;
+import java.util.concurrent.TimeUnit;
+
 /**
  *
  * @author matt
@@ -31,6 +38,18 @@ public class VersioningGlobalConfiguration implements VersioningGlobalConfigurat
 
     private String previousVersionEnvVariable = "PREVIOUS_VERSION_NUMBER";
     private String currentVersionEnvVariable = "CURRENT_VERSION_NUMBER";
+    private String commitMode;
+    private String fsyncPolicy;
+    private boolean crossProcessLocking;
+    private int lockTimeout;
+    private int writeBehindFlushInterval;
+    /**
+     * Null until set, so that 0 can turn the window off
+     */
+    private Integer groupCommitWindow;
+    private int groupCommitMaxBatchSize;
+    private int versionCacheCapacity;
+    private boolean cacheNodeEnvironment;
     
     @Override
     public String getPreviousVersionEnvVariable() {
@@ -42,6 +61,100 @@ public class VersioningGlobalConfiguration implements VersioningGlobalConfigurat
         return this.currentVersionEnvVariable;
     }
 
+    @Override
+    public String getCommitMode() {
+        if (this.commitMode == null) {
+            return PropertyFileIoHandler.CommitMode.ATOMIC;
+        }
+        
+        return this.commitMode;
+    }
+
+    @Override
+    public String getFsyncPolicy() {
+        if (this.fsyncPolicy == null) {
+            return PropertyFileIoHandler.FsyncPolicy.FILE;
+        }
+        
+        return this.fsyncPolicy;
+    }
+
+    @Override
+    public boolean getCrossProcessLocking() {
+        return this.crossProcessLocking;
+    }
+
+    /**
+     * 
+     * @return seconds to wait for a version file locked by another process
+     */
+    @Override
+    public int getLockTimeout() {
+        if (this.lockTimeout <= 0) {
+            return (int) TimeUnit.MILLISECONDS.toSeconds(CrossProcessFileLocker.DEFAULT_TIMEOUT_MILLIS);
+        }
+        
+        return this.lockTimeout;
+    }
+
+    /**
+     * 
+     * @return seconds a write-behind version may stay unflushed
+     */
+    @Override
+    public int getWriteBehindFlushInterval() {
+        if (this.writeBehindFlushInterval <= 0) {
+            return (int) TimeUnit.MILLISECONDS.toSeconds(WriteBehindVersionCache.DEFAULT_FLUSH_INTERVAL_MILLIS);
+        }
+        
+        return this.writeBehindFlushInterval;
+    }
+
+    /**
+     * 
+     * @return milliseconds a forced write waits for others to share its sync;
+     *  0 to sync straight away
+     */
+    @Override
+    public int getGroupCommitWindow() {
+        if (this.groupCommitWindow == null || this.groupCommitWindow < 0) {
+            return (int) GroupCommitQueue.DEFAULT_WINDOW_MILLIS;
+        }
+        
+        return this.groupCommitWindow;
+    }
+
+    /**
+     * 
+     * @return forced writes sharing a sync at most
+     */
+    @Override
+    public int getGroupCommitMaxBatchSize() {
+        if (this.groupCommitMaxBatchSize <= 0) {
+            return GroupCommitQueue.DEFAULT_MAX_BATCH_SIZE;
+        }
+        
+        return this.groupCommitMaxBatchSize;
+    }
+
+    /**
+     * 
+     * @return parsed versions kept for reuse at most
+     */
+    @Override
+    public int getVersionCacheCapacity() {
+        if (this.versionCacheCapacity <= 0) {
+            return CachingVersionFactory.DEFAULT_CAPACITY;
+        }
+        
+        return this.versionCacheCapacity;
+    }
+
+    @Override
+    public boolean getCacheNodeEnvironment() {
+        return this.cacheNodeEnvironment;
+    }
+
     @Override
     public VersioningGlobalConfiguration setPreviousVersionEnvVariable(String previousVersionEnvVariable) {
         this.previousVersionEnvVariable = previousVersionEnvVariable;
@@ -55,5 +168,68 @@ public class VersioningGlobalConfiguration implements VersioningGlobalConfigurat
         
         return this;
     }
+
+    @Override
+    public VersioningGlobalConfiguration setCommitMode(String commitMode) {
+        this.commitMode = commitMode;
+        
+        return this;
+    }
+
+    @Override
+    public VersioningGlobalConfiguration setFsyncPolicy(String fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+        
+        return this;
+    }
+
+    @Override
+    public VersioningGlobalConfiguration setCrossProcessLocking(boolean crossProcessLocking) {
+        this.crossProcessLocking = crossProcessLocking;
+        
+        return this;
+    }
+
+    @Override
+    public VersioningGlobalConfiguration setLockTimeout(int lockTimeout) {
+        this.lockTimeout = lockTimeout;
+        
+        return this;
+    }
+
+    @Override
+    public VersioningGlobalConfiguration setWriteBehindFlushInterval(int writeBehindFlushInterval) {
+        this.writeBehindFlushInterval = writeBehindFlushInterval;
+        
+        return this;
+    }
+
+    @Override
+    public VersioningGlobalConfiguration setGroupCommitWindow(int groupCommitWindow) {
+        this.groupCommitWindow = groupCommitWindow;
+        
+        return this;
+    }
+
+    @Override
+    public VersioningGlobalConfiguration setGroupCommitMaxBatchSize(int groupCommitMaxBatchSize) {
+        this.groupCommitMaxBatchSize = groupCommitMaxBatchSize;
+        
+        return this;
+    }
+
+    @Override
+    public VersioningGlobalConfiguration setVersionCacheCapacity(int versionCacheCapacity) {
+        this.versionCacheCapacity = versionCacheCapacity;
+        
+        return this;
+    }
+
+    @Override
+    public VersioningGlobalConfiguration setCacheNodeEnvironment(boolean cacheNodeEnvironment) {
+        this.cacheNodeEnvironment = cacheNodeEnvironment;
+        
+        return this;
+    }
     
 }
@@ -33,4 +33,22 @@ public interface VersioningGlobalConfigurationProvider {
     
     public String getCurrentVersionEnvVariable();
     
+    public String getCommitMode();
+    
+    public String getFsyncPolicy();
+    
+    public boolean getCrossProcessLocking();
+    
+    public int getLockTimeout();
+    
+    public int getWriteBehindFlushInterval();
+    
+    public int getGroupCommitWindow();
+    
+    public int getGroupCommitMaxBatchSize();
+    
+    public int getVersionCacheCapacity();
+    
+    public boolean getCacheNodeEnvironment();
+    
 }
@@ -33,4 +33,22 @@ public interface VersioningGlobalConfigurationWriteableProvider extends Versioni
     
     public VersioningGlobalConfigurationWriteableProvider setCurrentVersionEnvVariable(String currentVersionEnvVariable);
     
+    public VersioningGlobalConfigurationWriteableProvider setCommitMode(String commitMode);
+    
+    public VersioningGlobalConfigurationWriteableProvider setFsyncPolicy(String fsyncPolicy);
+    
+    public VersioningGlobalConfigurationWriteableProvider setCrossProcessLocking(boolean crossProcessLocking);
+    
+    public VersioningGlobalConfigurationWriteableProvider setLockTimeout(int lockTimeout);
+    
+    public VersioningGlobalConfigurationWriteableProvider setWriteBehindFlushInterval(int writeBehindFlushInterval);
+    
+    public VersioningGlobalConfigurationWriteableProvider setGroupCommitWindow(int groupCommitWindow);
+    
+    public VersioningGlobalConfigurationWriteableProvider setGroupCommitMaxBatchSize(int groupCommitMaxBatchSize);
+    
+    public VersioningGlobalConfigurationWriteableProvider setVersionCacheCapacity(int versionCacheCapacity);
+    
+    public VersioningGlobalConfigurationWriteableProvider setCacheNodeEnvironment(boolean cacheNodeEnvironment);
+    
 }
@@ -0,0 +1,244 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares one sync barrier between writes made at about the same time.  A
+ * writer makes its write and then commits it; the first writer to commit
+ * leads a batch, waits up to the batch window for others to join it, then
+ * syncs once on behalf of the whole batch while its followers wait.  Writers
+ * arriving while a batch is syncing form the next batch, so even without a
+ * window a burst of writes costs far fewer syncs than writes.
+ * 
+ * Every member of a batch sees the sync's failure, if it fails.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class GroupCommitQueue {
+    
+    public static final long DEFAULT_WINDOW_MILLIS = 2;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    
+    /**
+     * 
+     */
+    protected final Barrier barrier;
+    
+    protected volatile long windowNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_WINDOW_MILLIS);
+    protected volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    
+    /**
+     * Batch still open to new writers, if any
+     */
+    protected Batch pendingBatch;
+    
+    /**
+     * Whether a batch is currently syncing
+     */
+    protected boolean syncing;
+    
+    protected final AtomicLong commits = new AtomicLong();
+    protected final AtomicLong syncs = new AtomicLong();
+    
+    
+    
+    /**
+     * 
+     * @param barrier 
+     */
+    public GroupCommitQueue(Barrier barrier) {
+        this.barrier = barrier;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public long getWindowNanos() {
+        return this.windowNanos;
+    }
+
+    /**
+     * 
+     * @param windowNanos how long the leader of a batch waits for others to
+     *  join it; 0 to sync as soon as no other batch is syncing
+     */
+    public void setWindowNanos(long windowNanos) {
+        if (windowNanos < 0) {
+            throw new IllegalArgumentException("Batch window cannot be negative");
+        }
+        
+        this.windowNanos = windowNanos;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public int getMaxBatchSize() {
+        return this.maxBatchSize;
+    }
+
+    /**
+     * 
+     * @param maxBatchSize writers in a batch at which it syncs without
+     *  waiting for the rest of its window
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        
+        this.maxBatchSize = maxBatchSize;
+    }
+    
+    /**
+     * 
+     * @return number of writes committed
+     */
+    public long getCommitCount() {
+        return this.commits.get();
+    }
+    
+    /**
+     * 
+     * @return number of syncs made for them
+     */
+    public long getSyncCount() {
+        return this.syncs.get();
+    }
+    
+    /**
+     * Waits until a sync begun after this call has completed, so that
+     * everything the caller wrote beforehand is durable
+     * 
+     * @throws IOException if the batch's sync failed
+     * @throws InterruptedException 
+     */
+    public void commit() throws IOException, InterruptedException {
+        Batch batch;
+        boolean interrupted = false;
+        
+        synchronized (this) {
+            this.commits.incrementAndGet();
+            
+            if (this.pendingBatch == null || this.pendingBatch.size >= this.maxBatchSize) {
+                this.pendingBatch = new Batch();
+            }
+            
+            batch = this.pendingBatch;
+            batch.size++;
+            
+            if (batch.size > 1) {
+                if (batch.size >= this.maxBatchSize) {
+                    this.notifyAll();
+                }
+                
+                while (!batch.done) {
+                    this.wait();
+                }
+                
+                if (batch.failure != null) {
+                    throw new IOException(batch.failure.getMessage(), batch.failure);
+                }
+                
+                return;
+            }
+            
+            // The leader syncs even if interrupted, as its followers rely on it
+            long deadline = System.nanoTime() + this.windowNanos;
+            long remaining;
+            
+            while (batch.size < this.maxBatchSize && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            
+            while (this.syncing) {
+                try {
+                    this.wait();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            
+            if (this.pendingBatch == batch) {
+                this.pendingBatch = null;
+            }
+            
+            this.syncing = true;
+        }
+        
+        IOException failure = null;
+        
+        try {
+            this.syncs.incrementAndGet();
+            this.barrier.sync();
+        } catch (IOException ex) {
+            failure = ex;
+        } catch (RuntimeException ex) {
+            failure = new IOException(ex.getMessage(), ex);
+        } finally {
+            synchronized (this) {
+                batch.failure = failure;
+                batch.done = true;
+                this.syncing = false;
+                this.notifyAll();
+            }
+        }
+        
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    /**
+     * Makes every write made before it durable
+     */
+    public interface Barrier {
+        
+        public void sync() throws IOException;
+        
+    }
+    
+    protected static class Batch {
+        
+        protected int size;
+        protected boolean done;
+        protected IOException failure;
+        
+    }
+    
+}
@@ -0,0 +1,243 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler;
+
+import co.byng.versioningplugin.handler.file.AutoCreatingPropertyFileVersionHandler;
+import co.byng.versioningplugin.handler.file.PathLockRegistry;
+import co.byng.versioningplugin.handler.mapped.PropertyFileVersionConverter;
+import co.byng.versioningplugin.versioning.VersionFactory;
+import com.github.zafarkhaja.semver.Version;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Base for stores which keep a version in their own format, updating it under
+ * a lock: the stored version is read, changed and written back only if it
+ * differs.
+ * 
+ * When nothing is stored yet, the version is imported from the converter's
+ * property file if there is one, or else starts from the default version.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public abstract class LockedVersionHandler implements VersionRetrievable, VersionCommittable, VersionLockable, VersionStore {
+    
+    /**
+     * 
+     */
+    protected VersionFactory versionFactory;
+    
+    /**
+     * Imports the version from a property file, if set
+     */
+    protected PropertyFileVersionConverter converter;
+    
+    /**
+     * 
+     */
+    protected PathLockRegistry lockRegistry = PathLockRegistry.getDefault();
+    
+    
+    
+    /**
+     * 
+     * @param versionFactory 
+     */
+    public LockedVersionHandler(VersionFactory versionFactory) {
+        this.versionFactory = versionFactory;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public VersionFactory getVersionFactory() {
+        return this.versionFactory;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public PropertyFileVersionConverter getConverter() {
+        return this.converter;
+    }
+
+    /**
+     * 
+     * @param converter converter to import a missing version with, or null
+     *  to start from the default version
+     * @return 
+     */
+    public LockedVersionHandler setConverter(PropertyFileVersionConverter converter) {
+        this.converter = converter;
+        
+        return this;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public PathLockRegistry getLockRegistry() {
+        return this.lockRegistry;
+    }
+
+    /**
+     * 
+     * @param lockRegistry
+     * @return 
+     */
+    public LockedVersionHandler setLockRegistry(PathLockRegistry lockRegistry) {
+        if (lockRegistry == null) {
+            throw new IllegalArgumentException("Lock registry cannot be null");
+        }
+        
+        this.lockRegistry = lockRegistry;
+        
+        return this;
+    }
+
+    /**
+     * 
+     * @return the stored version, or the version to be imported or started
+     *  from if none is stored yet
+     * @throws IOException 
+     */
+    @Override
+    public Version loadVersion() throws IOException {
+        Version version = this.readStoredVersion();
+        
+        return (version != null ? version : this.buildMissingVersion());
+    }
+
+    /**
+     * Stores the given version, not attributed to any build
+     * 
+     * @param version
+     * @return false if the given version was already stored
+     * @throws IOException 
+     */
+    @Override
+    public boolean saveVersion(Version version) throws IOException {
+        Version storedVersion = this.readStoredVersion();
+        
+        if (this.isSameVersion(storedVersion, version)) {
+            return false;
+        }
+        
+        this.writeVersion((storedVersion != null ? storedVersion : version), version, 0);
+        
+        return true;
+    }
+
+    @Override
+    public VersionChange update(VersionUpdate update, PrintStream logger) throws IOException, InterruptedException {
+        VersionLock lock = this.lockVersion(logger);
+        
+        try {
+            if (lock.isContended()) {
+                logger.append("Waited " + lock.getWaitMillis() + "ms for another build to release the version\n");
+            }
+            
+            Version previousVersion = this.readStoredVersion();
+            boolean missing = (previousVersion == null);
+            
+            if (missing) {
+                previousVersion = this.buildMissingVersion();
+                logger.append("Starting " + this.getStoreDescription() + " from " + previousVersion + "\n");
+            }
+            
+            Version currentVersion = update.apply(previousVersion);
+            boolean saved = false;
+            
+            if (missing || !this.isSameVersion(previousVersion, currentVersion)) {
+                this.writeVersion(
+                    previousVersion,
+                    currentVersion,
+                    (update instanceof BuildVersionUpdate ? ((BuildVersionUpdate) update).getBuildNumber() : 0)
+                );
+                saved = true;
+            }
+            
+            return new VersionChange(previousVersion, currentVersion, saved);
+        } finally {
+            lock.release();
+        }
+    }
+    
+    /**
+     * 
+     * @return the stored version, or null if none is stored yet
+     * @throws IOException 
+     */
+    protected abstract Version readStoredVersion() throws IOException;
+    
+    /**
+     * 
+     * @param previousVersion the version being replaced, or the version
+     *  imported or started from if none was stored
+     * @param version
+     * @param buildNumber the build making the change, or 0 if none
+     * @throws IOException 
+     */
+    protected abstract void writeVersion(Version previousVersion, Version version, int buildNumber) throws IOException;
+    
+    /**
+     * 
+     * @return what the version is stored in, for the build log
+     */
+    protected abstract String getStoreDescription();
+    
+    /**
+     * 
+     * @return the converter's version, or the default version if there is
+     *  no version to convert
+     * @throws IOException 
+     */
+    protected Version buildMissingVersion() throws IOException {
+        if (this.converter != null) {
+            Version version = this.converter.loadVersion();
+            
+            if (version != null) {
+                return version;
+            }
+        }
+        
+        return this.versionFactory.buildVersionFromString(
+            AutoCreatingPropertyFileVersionHandler.DEFAULT_VERSION_STRING
+        );
+    }
+    
+    /**
+     * 
+     * @param storedVersion
+     * @param version
+     * @return whether the versions match, including their build metadata
+     */
+    protected boolean isSameVersion(Version storedVersion, Version version) {
+        return storedVersion != null && storedVersion.toString().equals(version.toString());
+    }
+    
+}
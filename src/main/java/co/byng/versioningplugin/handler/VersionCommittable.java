@@ -32,6 +32,13 @@ import java.io.IOException;
  */
 public interface VersionCommittable {
     
+    /**
+     * 
+     * @param version
+     * @return whether anything was written; implementations may skip saving
+     *  a version which is already stored
+     * @throws IOException 
+     */
     public boolean saveVersion(Version version) throws IOException;
     
 }
@@ -0,0 +1,51 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Storage for a version which is read, updated and written back as one
+ * atomic operation, so callers need no locking of their own and backends are
+ * free to do the whole update in a single pass.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public interface VersionStore {
+    
+    /**
+     * Replaces the stored version with the one computed by the given update;
+     * no other update of the same version can happen in between
+     * 
+     * @param update
+     * @param logger build console, told about anything worth knowing such as
+     *  waits for other builds
+     * @return
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public VersionChange update(VersionUpdate update, PrintStream logger) throws IOException, InterruptedException;
+    
+}
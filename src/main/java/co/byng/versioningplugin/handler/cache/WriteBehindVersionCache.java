@@ -0,0 +1,461 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.cache;
+
+import co.byng.versioningplugin.handler.VersionChange;
+import co.byng.versioningplugin.handler.VersionUpdate;
+import co.byng.versioningplugin.handler.file.PropertyFileVersionHandler;
+import co.byng.versioningplugin.handler.file.VersionFileWatcher;
+import com.github.zafarkhaja.semver.Version;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Holds the authoritative versions of write-behind jobs in memory, one entry
+ * per property file.  Updating an entry only marks it dirty; dirty entries
+ * are written back to their property files when flushed, which is left to a
+ * background task and to shutdown.
+ * 
+ * A version updated since the entry was last flushed is lost if the JVM dies
+ * before the next flush.
+ * 
+ * With a {@link VersionFileWatcher}, a property file edited by hand or by
+ * other tools is read again by the next build, unless its entry holds a
+ * change not yet flushed, which then overwrites the edit.  The flush checks
+ * for such edits, with or without a watcher, and warns when it overwrites
+ * one.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class WriteBehindVersionCache {
+    
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    
+    private static final Logger LOGGER = Logger.getLogger(WriteBehindVersionCache.class.getName());
+    
+    private static final WriteBehindVersionCache DEFAULT = new WriteBehindVersionCache(VersionFileWatcher.getDefault());
+    
+    /**
+     * 
+     */
+    protected final ConcurrentMap<File, Entry> entries = new ConcurrentHashMap<>();
+    
+    /**
+     * 
+     */
+    protected final VersionFileWatcher watcher;
+    
+    
+    
+    /**
+     * 
+     * @param watcher watcher to notice external changes to property files
+     *  with, or null to only ever read them once
+     */
+    public WriteBehindVersionCache(VersionFileWatcher watcher) {
+        this.watcher = watcher;
+    }
+    
+    public WriteBehindVersionCache() {
+        this(null);
+    }
+    
+    /**
+     * 
+     * @return the cache shared by every write-behind job in this JVM
+     */
+    public static WriteBehindVersionCache getDefault() {
+        return DEFAULT;
+    }
+    
+    /**
+     * 
+     * @param delegate handler for the property file the entry is flushed to
+     * @return the entry for the delegate's property file, created with the
+     *  given delegate if there is none yet, or else made to load and flush
+     *  through it from now on, so that changed settings take effect
+     */
+    public Entry getEntry(PropertyFileVersionHandler delegate) {
+        File key = delegate.getPropertyFilePath().getAbsoluteFile();
+        Entry entry = this.entries.get(key);
+        
+        if (entry == null) {
+            Entry created = new Entry(delegate);
+            entry = this.entries.putIfAbsent(key, created);
+            
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        
+        entry.setDelegate(delegate);
+        
+        if (this.watcher != null && !entry.isWatched()) {
+            try {
+                this.watcher.watch(key, entry);
+                entry.setWatched(true);
+                entry.fileChanged();
+            } catch (IOException ex) {
+                // Left unwatched until the next attempt
+            }
+        }
+        
+        return entry;
+    }
+    
+    /**
+     * 
+     * @return number of entries holding versions not yet flushed
+     */
+    public int getDirtyCount() {
+        int count = 0;
+        
+        for (Entry entry : this.entries.values()) {
+            if (entry.isDirty()) {
+                count++;
+            }
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Flushes every dirty entry
+     * 
+     * @param logger
+     * @return number of entries flushed
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public int flush(PrintStream logger) throws IOException, InterruptedException {
+        return this.flushOlderThan(0, logger);
+    }
+    
+    /**
+     * Flushes the entries which have been dirty for at least the given time.
+     * An entry which cannot be written stays dirty and does not stop the
+     * others being flushed; the first failure is rethrown afterwards.
+     * 
+     * @param maxAgeMillis
+     * @param logger
+     * @return number of entries flushed
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public int flushOlderThan(long maxAgeMillis, PrintStream logger) throws IOException, InterruptedException {
+        long dirtyBefore = System.currentTimeMillis() - maxAgeMillis;
+        IOException failure = null;
+        int count = 0;
+        
+        for (Entry entry : this.entries.values()) {
+            if (!entry.isDirty() || entry.getDirtySince() > dirtyBefore) {
+                continue;
+            }
+            
+            try {
+                if (entry.flush(logger)) {
+                    count++;
+                }
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+        
+        if (failure != null) {
+            throw failure;
+        }
+        
+        return count;
+    }
+    
+    /**
+     * The in-memory version of one property file
+     */
+    public static class Entry implements VersionFileWatcher.Listener {
+        
+        protected volatile PropertyFileVersionHandler delegate;
+        
+        /**
+         * Serialises flushes, which are written outside the entry's monitor
+         * so that updates never wait for the disk
+         */
+        protected final Object flushLock = new Object();
+        
+        protected Version version;
+        protected boolean loaded;
+        protected long revision;
+        protected long flushedRevision;
+        protected long dirtySince;
+        protected volatile boolean watched;
+        
+        /**
+         * The version last read from or written to the property file, which
+         * it still holds unless something else has changed it
+         */
+        protected Version fileVersion;
+        
+        /**
+         * Incremented whenever the property file changes, so that a version
+         * read before a change is not cached after it
+         */
+        protected long fileGeneration;
+        
+        
+        
+        public Entry(PropertyFileVersionHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        public PropertyFileVersionHandler getDelegate() {
+            return this.delegate;
+        }
+        
+        /**
+         * 
+         * @param delegate handler for the same property file, to be used for
+         *  later loads and flushes
+         */
+        public void setDelegate(PropertyFileVersionHandler delegate) {
+            if (delegate == null) {
+                throw new IllegalArgumentException("Delegate cannot be null");
+            }
+            
+            this.delegate = delegate;
+        }
+        
+        /**
+         * 
+         * @return the cached version, loaded from the property file the first
+         *  time it is asked for
+         * @throws IOException 
+         */
+        public Version getVersion() throws IOException {
+            while (true) {
+                this.load();
+                
+                synchronized (this) {
+                    if (this.loaded) {
+                        return this.version;
+                    }
+                }
+            }
+        }
+        
+        /**
+         * 
+         * @param version
+         * @return false if the entry already held the given version
+         * @throws IOException 
+         */
+        public boolean setVersion(final Version version) throws IOException {
+            return this.update(
+                new VersionUpdate() {
+                    @Override
+                    public Version apply(Version currentVersion) {
+                        return version;
+                    }
+                }
+            ).isSaved();
+        }
+        
+        /**
+         * Applies the update to the cached version; nothing is written
+         * 
+         * @param update
+         * @return
+         * @throws IOException 
+         */
+        public VersionChange update(VersionUpdate update) throws IOException {
+            while (true) {
+                this.load();
+                
+                synchronized (this) {
+                    if (!this.loaded) {
+                        // The file changed again since it was loaded
+                        continue;
+                    }
+                    
+                    Version previousVersion = this.version;
+                    Version currentVersion = update.apply(previousVersion);
+                    
+                    if (previousVersion != null && previousVersion.toString().equals(currentVersion.toString())) {
+                        return new VersionChange(previousVersion, currentVersion, false);
+                    }
+                    
+                    if (!this.isDirty()) {
+                        this.dirtySince = System.currentTimeMillis();
+                    }
+                    
+                    this.version = currentVersion;
+                    this.revision++;
+                    
+                    return new VersionChange(previousVersion, currentVersion, true);
+                }
+            }
+        }
+        
+        /**
+         * Reads the version from the property file unless it is cached.  The
+         * file is read outside the entry's monitor, so that the watching
+         * thread is never held up by the disk or the file's lock, and a
+         * version read while the file changed is read again.
+         * 
+         * @throws IOException 
+         */
+        protected void load() throws IOException {
+            while (true) {
+                long generation;
+                
+                synchronized (this) {
+                    if (this.loaded) {
+                        return;
+                    }
+                    
+                    generation = this.fileGeneration;
+                }
+                
+                Version loadedVersion = this.delegate.loadVersion();
+                
+                synchronized (this) {
+                    if (this.loaded) {
+                        return;
+                    }
+                    
+                    if (generation == this.fileGeneration) {
+                        this.version = loadedVersion;
+                        this.fileVersion = loadedVersion;
+                        this.loaded = true;
+                        
+                        return;
+                    }
+                }
+            }
+        }
+        
+        public boolean isWatched() {
+            return this.watched;
+        }
+
+        public void setWatched(boolean watched) {
+            this.watched = watched;
+        }
+        
+        /**
+         * Drops the cached version so that it is read again, unless it holds
+         * a change not yet flushed
+         */
+        @Override
+        public synchronized void fileChanged() {
+            this.fileGeneration++;
+            
+            if (!this.isDirty()) {
+                this.version = null;
+                this.loaded = false;
+            }
+        }
+
+        @Override
+        public void watchCancelled() {
+            this.watched = false;
+        }
+        
+        public synchronized boolean isDirty() {
+            return this.revision != this.flushedRevision;
+        }
+        
+        /**
+         * 
+         * @return when the oldest change not yet flushed was made
+         */
+        public synchronized long getDirtySince() {
+            return this.dirtySince;
+        }
+        
+        /**
+         * Writes the cached version to the property file under the file's
+         * lock, if it has changed since the last flush, warning if this
+         * overwrites a version the file was given by something else
+         * 
+         * @param logger
+         * @return false if there was nothing to write
+         * @throws IOException
+         * @throws InterruptedException 
+         */
+        public boolean flush(PrintStream logger) throws IOException, InterruptedException {
+            synchronized (this.flushLock) {
+                final PropertyFileVersionHandler delegate = this.delegate;
+                final PrintStream flushLogger = logger;
+                final Version pendingVersion;
+                final Version expectedVersion;
+                long pendingRevision;
+                
+                synchronized (this) {
+                    if (!this.isDirty()) {
+                        return false;
+                    }
+                    
+                    pendingVersion = this.version;
+                    pendingRevision = this.revision;
+                    expectedVersion = this.fileVersion;
+                }
+                
+                delegate.update(
+                    new VersionUpdate() {
+                        @Override
+                        public Version apply(Version currentVersion) {
+                            if (expectedVersion != null && currentVersion != null
+                                && !expectedVersion.toString().equals(currentVersion.toString())
+                            ) {
+                                String message = "Overwriting version " + currentVersion + " set elsewhere in "
+                                    + delegate.getPropertyFilePath() + " with cached version " + pendingVersion;
+                                
+                                LOGGER.warning(message);
+                                flushLogger.append(message + "\n");
+                            }
+                            
+                            return pendingVersion;
+                        }
+                    },
+                    logger
+                );
+                
+                synchronized (this) {
+                    this.flushedRevision = pendingRevision;
+                    this.fileVersion = pendingVersion;
+                }
+                
+                return true;
+            }
+        }
+        
+    }
+    
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.cache;
+
+import co.byng.versioningplugin.handler.VersionChange;
+import co.byng.versioningplugin.handler.VersionCommittable;
+import co.byng.versioningplugin.handler.VersionRetrievable;
+import co.byng.versioningplugin.handler.VersionStore;
+import co.byng.versioningplugin.handler.VersionUpdate;
+import co.byng.versioningplugin.handler.file.PropertyFileVersionHandler;
+import com.github.zafarkhaja.semver.Version;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Keeps a job's version in a {@link WriteBehindVersionCache}.  Saving or
+ * updating the version only changes the cached copy, so builds never wait
+ * on the disk; the property file is brought up to date when the cache is
+ * flushed.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class WriteBehindVersionHandler implements VersionRetrievable, VersionCommittable, VersionStore {
+    
+    /**
+     * 
+     */
+    protected WriteBehindVersionCache cache;
+    
+    /**
+     * Handler for the property file the version is flushed to
+     */
+    protected PropertyFileVersionHandler delegate;
+    
+    
+    
+    /**
+     * 
+     * @param cache
+     * @param delegate 
+     */
+    public WriteBehindVersionHandler(WriteBehindVersionCache cache, PropertyFileVersionHandler delegate) {
+        this.cache = cache;
+        this.delegate = delegate;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public WriteBehindVersionCache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public PropertyFileVersionHandler getDelegate() {
+        return this.delegate;
+    }
+    
+    /**
+     * 
+     * @return 
+     */
+    protected WriteBehindVersionCache.Entry getEntry() {
+        return this.cache.getEntry(this.delegate);
+    }
+
+    @Override
+    public Version loadVersion() throws IOException {
+        return this.getEntry().getVersion();
+    }
+
+    /**
+     * 
+     * @param version
+     * @return false if the cache already held the given version
+     * @throws IOException 
+     */
+    @Override
+    public boolean saveVersion(Version version) throws IOException {
+        return this.getEntry().setVersion(version);
+    }
+
+    @Override
+    public VersionChange update(VersionUpdate update, PrintStream logger) throws IOException, InterruptedException {
+        return this.getEntry().update(update);
+    }
+    
+    /**
+     * Writes the cached version to the property file now, rather than
+     * waiting for the next flush
+     * 
+     * @param logger
+     * @return false if the property file was already up to date
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public boolean flush(PrintStream logger) throws IOException, InterruptedException {
+        return this.getEntry().flush(logger);
+    }
+    
+}
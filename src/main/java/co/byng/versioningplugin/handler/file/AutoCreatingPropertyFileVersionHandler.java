@@ -68,5 +68,22 @@ public class AutoCreatingPropertyFileVersionHandler extends PropertyFileVersionH
 
         return super.loadVersion();
     }
+    
+    /**
+     * Updates from the default version when the file, or the version within
+     * it, is missing; both are created by the save
+     * 
+     * @return
+     * @throws IOException 
+     */
+    @Override
+    protected PropertyLocation locateVersion() throws IOException {
+        return this.fileHandler.locatePropertyIfExists(this.propertyFilePath, this.propertyKey);
+    }
+
+    @Override
+    protected Version buildMissingVersion() {
+        return this.versionFactory.buildVersionFromString(DEFAULT_VERSION_STRING);
+    }
 
 }
@@ -0,0 +1,309 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.file;
+
+import co.byng.versioningplugin.handler.VersionLock;
+import co.byng.versioningplugin.handler.VersionLockTimeoutException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Locks property files against other processes, such as Jenkins controllers
+ * sharing a volume, by holding an OS-level lock on a sidecar
+ * <code>&lt;file&gt;.lock</code> next to the property file.  The property file
+ * itself cannot be locked, as atomic saves replace it with a new file.
+ * 
+ * The locks are advisory, so only processes using the same sidecar are
+ * excluded; on NFS they rely on the server's lock manager.  While locked, the
+ * sidecar holds the holder's process name (usually pid@host) so that waiting
+ * builds can say who they are waiting for.  Sidecars are left in place, as
+ * deleting one could let two processes lock different files.
+ * 
+ * File locks are held on behalf of the whole JVM, so callers must already
+ * hold the file's in-process lock from {@link PathLockRegistry}.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class CrossProcessFileLocker {
+    
+    public static final String LOCK_FILE_SUFFIX = ".lock";
+    
+    public static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    
+    /**
+     * Bounds on the interval between attempts to take a contended lock,
+     * which doubles from the minimum after each attempt
+     */
+    protected static final long MIN_POLL_MILLIS = 10;
+    protected static final long MAX_POLL_MILLIS = 500;
+    
+    /**
+     * 
+     */
+    protected long timeoutMillis;
+    
+    
+    
+    /**
+     * 
+     * @param timeoutMillis 
+     */
+    public CrossProcessFileLocker(long timeoutMillis) {
+        this.setTimeoutMillis(timeoutMillis);
+    }
+    
+    /**
+     * 
+     */
+    public CrossProcessFileLocker() {
+        this(DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public long getTimeoutMillis() {
+        return this.timeoutMillis;
+    }
+
+    /**
+     * 
+     * @param timeoutMillis 
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("Lock timeout cannot be negative");
+        }
+        
+        this.timeoutMillis = timeoutMillis;
+    }
+    
+    /**
+     * 
+     * @param f
+     * @return the sidecar lock file for the given property file
+     * @throws IOException 
+     */
+    public File getLockFile(File f) throws IOException {
+        File canonicalFile = f.getCanonicalFile();
+        
+        return new File(canonicalFile.getParentFile(), canonicalFile.getName() + LOCK_FILE_SUFFIX);
+    }
+    
+    /**
+     * Locks the given property file against other processes, waiting at
+     * most the configured timeout.
+     * 
+     * @param f
+     * @param heldLock the file's in-process lock, which is released along with
+     *  the returned lock, or straight away if this lock cannot be taken
+     * @param logger told when another process holds the lock
+     * @return
+     * @throws VersionLockTimeoutException
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public VersionLock acquire(
+        File f,
+        VersionLock heldLock,
+        PrintStream logger
+    ) throws VersionLockTimeoutException, IOException, InterruptedException {
+        File lockFile = this.getLockFile(f);
+        FileChannel channel = null;
+        
+        try {
+            channel = FileChannel.open(
+                lockFile.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+            );
+            
+            FileLock fileLock = channel.tryLock();
+            long waitNanos = 0;
+            
+            if (fileLock == null) {
+                long start = System.nanoTime();
+                String holder = this.readHolder(lockFile);
+                
+                logger.append(
+                    "Version file " + f.getPath() + " is locked by " + holder
+                        + "; waiting up to " + TimeUnit.MILLISECONDS.toSeconds(this.timeoutMillis) + "s\n"
+                );
+                
+                fileLock = this.pollForLock(channel, start, lockFile, holder);
+                waitNanos = System.nanoTime() - start;
+            }
+            
+            this.writeHolder(channel);
+            
+            return new ProcessFileLock(channel, fileLock, heldLock, waitNanos);
+        } catch (IOException | InterruptedException | RuntimeException ex) {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } finally {
+                heldLock.release();
+            }
+            
+            throw ex;
+        }
+    }
+    
+    /**
+     * 
+     * @param channel
+     * @param start
+     * @param lockFile
+     * @param holder
+     * @return
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    protected FileLock pollForLock(
+        FileChannel channel,
+        long start,
+        File lockFile,
+        String holder
+    ) throws IOException, InterruptedException {
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(this.timeoutMillis);
+        long pollMillis = MIN_POLL_MILLIS;
+        FileLock fileLock = null;
+        
+        while (fileLock == null) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            
+            if (remainingMillis <= 0) {
+                throw new VersionLockTimeoutException(
+                    "Timed out after " + this.timeoutMillis + "ms waiting for " + holder
+                        + " to release " + lockFile.getPath()
+                );
+            }
+            
+            Thread.sleep(Math.min(pollMillis, remainingMillis));
+            pollMillis = Math.min(pollMillis * 2, MAX_POLL_MILLIS);
+            
+            fileLock = channel.tryLock();
+        }
+        
+        return fileLock;
+    }
+    
+    /**
+     * 
+     * @param lockFile
+     * @return 
+     */
+    protected String readHolder(File lockFile) {
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(256);
+            channel.read(buffer, 0);
+            buffer.flip();
+            
+            String holder = StandardCharsets.UTF_8.decode(buffer).toString().trim();
+            
+            if (!holder.isEmpty()) {
+                return holder;
+            }
+        } catch (IOException ex) {
+            // Some platforms refuse to read a locked region
+        }
+        
+        return "another process";
+    }
+    
+    /**
+     * 
+     * @param channel
+     * @throws IOException 
+     */
+    protected void writeHolder(FileChannel channel) throws IOException {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(
+            ManagementFactory.getRuntimeMXBean().getName() + "\n"
+        );
+        
+        channel.truncate(0);
+        
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+    }
+    
+    
+    
+    protected static class ProcessFileLock implements VersionLock {
+        
+        protected final FileChannel channel;
+        protected final FileLock fileLock;
+        protected final VersionLock heldLock;
+        protected final long waitNanos;
+        protected boolean released = false;
+
+        public ProcessFileLock(FileChannel channel, FileLock fileLock, VersionLock heldLock, long waitNanos) {
+            this.channel = channel;
+            this.fileLock = fileLock;
+            this.heldLock = heldLock;
+            this.waitNanos = waitNanos;
+        }
+
+        @Override
+        public boolean isContended() {
+            return this.waitNanos > 0 || this.heldLock.isContended();
+        }
+
+        @Override
+        public long getWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(this.waitNanos) + this.heldLock.getWaitMillis();
+        }
+
+        @Override
+        public synchronized void release() {
+            if (this.released) {
+                return;
+            }
+            
+            this.released = true;
+            
+            try {
+                // Closing the channel also releases its file lock
+                this.channel.close();
+            } catch (IOException ex) {
+            } finally {
+                this.heldLock.release();
+            }
+        }
+        
+    }
+    
+}
@@ -0,0 +1,223 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.file;
+
+import co.byng.versioningplugin.handler.VersionLock;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process locks on property files, one per canonical path, so that builds
+ * sharing a file are serialised while builds using different files never
+ * contend.  A path's lock is discarded once nobody holds or waits for it.
+ * 
+ * Locks are not owned by a thread: they are not reentrant, and may be
+ * released by a different thread from the one that acquired them.  Waiters
+ * are granted the lock in arrival order.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class PathLockRegistry {
+    
+    /**
+     * 
+     */
+    private static final PathLockRegistry DEFAULT_REGISTRY = new PathLockRegistry();
+    
+    /**
+     * 
+     */
+    protected final Map<String, PathLockEntry> entries = new HashMap<>();
+    
+    protected final AtomicLong acquisitions = new AtomicLong();
+    protected final AtomicLong contendedAcquisitions = new AtomicLong();
+    protected final AtomicLong totalWaitNanos = new AtomicLong();
+    
+    
+    
+    /**
+     * Registry shared by every property file handler in this JVM
+     * 
+     * @return 
+     */
+    public static PathLockRegistry getDefault() {
+        return DEFAULT_REGISTRY;
+    }
+    
+    /**
+     * 
+     * @param f
+     * @return
+     * @throws IOException if the canonical path cannot be resolved
+     * @throws InterruptedException 
+     */
+    public VersionLock acquire(File f) throws IOException, InterruptedException {
+        return this.acquire(f.getCanonicalPath());
+    }
+    
+    /**
+     * Locks an arbitrary path, such as a single entry within a shared file
+     * 
+     * @param path
+     * @return
+     * @throws InterruptedException 
+     */
+    public VersionLock acquire(String path) throws InterruptedException {
+        PathLockEntry entry;
+        
+        synchronized (this.entries) {
+            entry = this.entries.get(path);
+            
+            if (entry == null) {
+                entry = new PathLockEntry();
+                this.entries.put(path, entry);
+            }
+            
+            entry.references++;
+        }
+        
+        boolean contended;
+        long waitNanos = 0;
+        
+        try {
+            // A zero timeout, unlike tryAcquire(), does not jump the queue
+            contended = !entry.permit.tryAcquire(0, TimeUnit.NANOSECONDS);
+            
+            if (contended) {
+                long start = System.nanoTime();
+                entry.permit.acquire();
+                waitNanos = System.nanoTime() - start;
+            }
+        } catch (InterruptedException ex) {
+            this.dereference(path, entry);
+            
+            throw ex;
+        }
+        
+        if (contended) {
+            this.contendedAcquisitions.incrementAndGet();
+            this.totalWaitNanos.addAndGet(waitNanos);
+        }
+        
+        this.acquisitions.incrementAndGet();
+        
+        return new PathLock(path, entry, contended, waitNanos);
+    }
+    
+    /**
+     * 
+     * @param path
+     * @param entry 
+     */
+    protected void dereference(String path, PathLockEntry entry) {
+        synchronized (this.entries) {
+            if (--entry.references == 0) {
+                this.entries.remove(path);
+            }
+        }
+    }
+    
+    /**
+     * 
+     * @return number of paths currently locked or waited on
+     */
+    public int getActivePathCount() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+    
+    public long getAcquisitions() {
+        return this.acquisitions.get();
+    }
+    
+    public long getContendedAcquisitions() {
+        return this.contendedAcquisitions.get();
+    }
+    
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.totalWaitNanos.get());
+    }
+    
+    
+    
+    protected static class PathLockEntry {
+        
+        protected final Semaphore permit = new Semaphore(1, true);
+        
+        /**
+         * Holders and waiters; guarded by the registry's entry map
+         */
+        protected int references = 0;
+        
+    }
+    
+    protected class PathLock implements VersionLock {
+        
+        protected final String path;
+        protected final PathLockEntry entry;
+        protected final boolean contended;
+        protected final long waitNanos;
+        protected boolean released = false;
+        
+        public PathLock(String path, PathLockEntry entry, boolean contended, long waitNanos) {
+            this.path = path;
+            this.entry = entry;
+            this.contended = contended;
+            this.waitNanos = waitNanos;
+        }
+        
+        public String getPath() {
+            return this.path;
+        }
+
+        @Override
+        public boolean isContended() {
+            return this.contended;
+        }
+
+        @Override
+        public long getWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(this.waitNanos);
+        }
+
+        @Override
+        public void release() {
+            if (this.released) {
+                return;
+            }
+            
+            this.released = true;
+            this.entry.permit.release();
+            PathLockRegistry.this.dereference(this.path, this.entry);
+        }
+        
+    }
+    
+}
@@ -23,14 +23,23 @@
  */
 package co.byng.versioningplugin.handler.file;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  *
@@ -38,122 +47,828 @@ import java.util.Properties;
  */
 public class PropertyFileIoHandler {
     
+    private static final Logger LOGGER = Logger.getLogger(PropertyFileIoHandler.class.getName());
+    
+    /**
+     * Largest buffer kept for reuse by each thread; anything bigger is
+     * allocated for the one operation that needs it
+     */
+    protected static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    
     /**
      * 
      */
-    protected Class<? extends InputStream> inputStreamClass = FileInputStream.class;
+    protected static final int INITIAL_BUFFER_SIZE = 4 * 1024;
     
     /**
      * 
      */
-    protected Class<? extends OutputStream> outputStreamClass = FileOutputStream.class;
-
+    protected static final String HEX_DIGITS = "0123456789ABCDEF";
+    
+    /**
+     * 
+     */
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        }
+    };
+    
+    /**
+     * 
+     */
+    private static final ThreadLocal<ReusableOutputStream> WRITE_BUFFER = new ThreadLocal<ReusableOutputStream>() {
+        @Override
+        protected ReusableOutputStream initialValue() {
+            return new ReusableOutputStream(INITIAL_BUFFER_SIZE);
+        }
+    };
+    
+    /**
+     * 
+     */
+    protected FileChannelFactory channelFactory;
+    
+    /**
+     * How a save reaches the target file; one of {@link CommitMode}
+     */
+    protected String commitMode = CommitMode.ATOMIC;
+    
+    /**
+     * What is flushed to the storage device before a save returns; one of
+     * {@link FsyncPolicy}
+     */
+    protected String fsyncPolicy = FsyncPolicy.FILE;
+    
+    
+    
+    /**
+     * 
+     * @param channelFactory 
+     */
+    public PropertyFileIoHandler(FileChannelFactory channelFactory) {
+        this.setChannelFactory(channelFactory);
+    }
+    
+    /**
+     * 
+     */
+    public PropertyFileIoHandler() {
+        this(new NioFileChannelFactory());
+    }
+    
+    /**
+     * 
+     * @return 
+     */
+    public FileChannelFactory getChannelFactory() {
+        return this.channelFactory;
+    }
 
+    /**
+     * 
+     * @param channelFactory 
+     */
+    public void setChannelFactory(FileChannelFactory channelFactory) {
+        if (channelFactory == null) {
+            throw new IllegalArgumentException("Channel factory cannot be null");
+        }
+        
+        this.channelFactory = channelFactory;
+    }
+    
+    /**
+     * 
+     * @return 
+     */
+    public String getCommitMode() {
+        return this.commitMode;
+    }
 
     /**
      * 
-     * @param inputStreamClass 
+     * @param commitMode 
      */
-    public void setInputStreamClass(Class<? extends InputStream> inputStreamClass) {
-        if (inputStreamClass == null) {
-            throw new IllegalArgumentException("Input stream class cannot be null");
+    public void setCommitMode(String commitMode) {
+        if (commitMode == null) {
+            throw new IllegalArgumentException("Commit mode cannot be null");
         }
         
-        this.inputStreamClass = inputStreamClass;
+        this.commitMode = commitMode;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public String getFsyncPolicy() {
+        return this.fsyncPolicy;
     }
 
     /**
      * 
-     * @param outputStreamClass 
+     * @param fsyncPolicy 
      */
-    public void setOutputStreamClass(Class<? extends OutputStream> outputStreamClass) {
-        if (outputStreamClass == null) {
-            throw new IllegalArgumentException("Input stream class cannot be null");
+    public void setFsyncPolicy(String fsyncPolicy) {
+        if (fsyncPolicy == null) {
+            throw new IllegalArgumentException("Fsync policy cannot be null");
         }
         
-        this.outputStreamClass = outputStreamClass;
+        this.fsyncPolicy = fsyncPolicy;
     }
     
+    /**
+     * 
+     * @return 
+     */
+    protected Properties buildProperties() {
+        return new Properties();
+    }
+
     /**
      * 
      * @param f
      * @return
      * @throws IOException 
      */
-    protected InputStream buildInputStream(File f) throws IOException, Exception {
-        try {
-            return (InputStream) this.inputStreamClass.getConstructor(File.class).newInstance(f);
-        } catch (NoSuchMethodException ex) {
-            throw new IOException(
-                "Unable to instanstiate stream; "
-                        + this.inputStreamClass.getSimpleName()
-                        + " does not have a constructor accepting a single File argument",
-                ex
-            );
+    public Properties loadPropertiesFromFile(File f) throws IOException {
+        Properties properties = this.buildProperties();
+        
+        try (FileChannel channel = this.channelFactory.openForReading(f)) {
+            ByteBuffer buffer = this.readFully(channel);
+            
+            properties.load(new ByteArrayInputStream(buffer.array(), 0, buffer.limit()));
         }
+        
+        return properties;
     }
     
     /**
      * 
      * @param f
+     * @return the file's last-modified time, size and file key, read without
+     *  opening the file
+     * @throws IOException 
+     */
+    public BasicFileAttributes readAttributes(File f) throws IOException {
+        return Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+    }
+    
+    /**
+     * Reads the value of a single property without parsing the rest of the
+     * file; see {@link PropertyFileScanner} for how it differs from
+     * {@link Properties}
+     * 
+     * @param f
+     * @param key
+     * @return the property's value, or null if it is not set
+     * @throws IOException 
+     */
+    public String loadProperty(File f, String key) throws IOException {
+        return this.locateProperty(f, key).getValue();
+    }
+    
+    /**
+     * 
+     * @param f
+     * @param key
      * @return
      * @throws IOException 
      */
-    protected OutputStream buildOutputStream(File f) throws IOException, Exception {
+    public PropertyLocation locateProperty(File f, String key) throws IOException {
+        try (FileChannel channel = this.channelFactory.openForReading(f)) {
+            return this.buildScanner(channel).find(key);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Unable to parse property file " + f.getPath(), ex);
+        }
+    }
+    
+    /**
+     * 
+     * @param f
+     * @param key
+     * @return the property's location, or an empty location at the start of
+     *  the file if the file does not exist
+     * @throws IOException 
+     */
+    public PropertyLocation locatePropertyIfExists(File f, String key) throws IOException {
+        if (!f.exists()) {
+            return new PropertyLocation(null, 0, 0, false, false);
+        }
+        
+        return this.locateProperty(f, key);
+    }
+    
+    /**
+     * 
+     * @param channel
+     * @return 
+     */
+    protected PropertyFileScanner buildScanner(FileChannel channel) {
+        return new PropertyFileScanner(channel, this.acquireReadBuffer(INITIAL_BUFFER_SIZE));
+    }
+    
+    /**
+     * Saves the given properties to the given file.
+     * 
+     * In {@link CommitMode#ATOMIC} mode the properties are written to a
+     * temporary file in the same directory, which is then renamed over the
+     * target; an interrupted save therefore leaves either the old or the new
+     * file in place, never a truncated one.  {@link CommitMode#DIRECT} rewrites
+     * the target in place.
+     * 
+     * @param properties
+     * @param f
+     * @throws IOException 
+     */
+    public void savePropertiesToFile(Properties properties, File f) throws IOException {
+        if (CommitMode.ATOMIC.equals(this.commitMode)) {
+            this.savePropertiesAtomically(properties, f);
+        } else {
+            this.writeProperties(properties, f);
+        }
+    }
+    
+    /**
+     * 
+     * @param properties
+     * @param f
+     * @throws IOException 
+     */
+    protected void savePropertiesAtomically(Properties properties, File f) throws IOException {
+        File temporaryFile = this.createTemporaryFile(f);
+        
         try {
-            return (OutputStream) this.outputStreamClass.getConstructor(File.class).newInstance(f);
-        } catch (NoSuchMethodException ex) {
-            throw new IOException(
-                "Unable to instanstiate stream; "
-                        + this.outputStreamClass.getSimpleName()
-                        + " does not have a constructor accepting a single File argument",
-                ex
-            );
+            this.writeProperties(properties, temporaryFile);
+            this.commitTemporaryFile(temporaryFile, f);
+        } finally {
+            if (temporaryFile.exists()) {
+                temporaryFile.delete();
+            }
         }
     }
     
     /**
+     * Sets a single property in the given file, leaving every other byte of
+     * the file as it was.  Unlike {@link #savePropertiesToFile} no date
+     * comment is written, so a file only changes when the value does.
+     * 
+     * In {@link CommitMode#DIRECT} mode a value of the same encoded length is
+     * patched in place with a single positional write.  In
+     * {@link CommitMode#ATOMIC} mode the unchanged prefix and suffix are
+     * always copied around the new value into a temporary file which
+     * replaces the original, as not every file system writes even a small
+     * patch atomically.  A property
+     * which is not yet set is appended, and a missing file is created.  If
+     * the file already holds the given value nothing is written at all.
      * 
+     * @param f
+     * @param key
+     * @param value
+     * @return whether the file was written
+     * @throws IOException 
+     */
+    public boolean saveProperty(File f, String key, String value) throws IOException {
+        return this.saveProperty(f, this.locatePropertyIfExists(f, key), key, value);
+    }
+    
+    /**
+     * Sets a single property at a location already found by
+     * {@link #locatePropertyIfExists}; the file must not have changed since.
+     * 
+     * @param f
+     * @param location
+     * @param key
+     * @param value
+     * @return whether the file was written
+     * @throws IOException 
+     */
+    public boolean saveProperty(File f, PropertyLocation location, String key, String value) throws IOException {
+        if (location.isFound() && location.getValue().equals(value)) {
+            return false;
+        }
+        
+        ByteBuffer replacement = this.encodeReplacement(location, key, value);
+        
+        if (this.isPatchableInPlace(location, replacement.remaining())) {
+            this.patchProperty(f, location, replacement);
+        } else if (CommitMode.ATOMIC.equals(this.commitMode)) {
+            this.splicePropertyAtomically(f, location, replacement);
+        } else {
+            this.splicePropertyDirectly(f, location, replacement);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Works out where a value written by
+     * {@link #saveProperty(File, PropertyLocation, String, String)} ends up,
+     * so that the file need not be scanned again to find it
+     * 
+     * @param location the location the value was saved at
+     * @param key
+     * @param value
+     * @return the saved value's location
+     */
+    public PropertyLocation locateSavedProperty(PropertyLocation location, String key, String value) {
+        StringBuilder escaped = new StringBuilder(Math.max(key.length(), value.length()) + 4);
+        long valueStart;
+        
+        if (location.isFound()) {
+            valueStart = location.getValueStart() + (location.isSeparatorRequired() ? 1 : 0);
+        } else {
+            this.escape(key, true, escaped);
+            valueStart = location.getValueStart() + (location.isLineBreakRequired() ? 1 : 0) + escaped.length() + 1;
+            escaped.setLength(0);
+        }
+        
+        this.escape(value, false, escaped);
+        
+        return new PropertyLocation(
+            value,
+            valueStart,
+            valueStart + escaped.length(),
+            false,
+            location.isFound() && location.isLineBreakRequired()
+        );
+    }
+    
+    /**
+     * Builds the bytes which replace the located value: the escaped value
+     * itself, or a whole new line when the property is not yet set
+     * 
+     * @param location
+     * @param key
+     * @param value
      * @return 
      */
-    protected Properties buildProperties() {
-        return new Properties();
+    protected ByteBuffer encodeReplacement(PropertyLocation location, String key, String value) {
+        StringBuilder replacement = new StringBuilder(key.length() + value.length() + 4);
+        
+        if (location.isFound()) {
+            if (location.isSeparatorRequired()) {
+                replacement.append('=');
+            }
+            
+            this.escape(value, false, replacement);
+        } else {
+            if (location.isLineBreakRequired()) {
+                replacement.append('\n');
+            }
+            
+            this.escape(key, true, replacement);
+            replacement.append('=');
+            this.escape(value, false, replacement);
+            replacement.append('\n');
+        }
+        
+        // Escaping leaves only ASCII, so each char is one byte
+        ByteBuffer buffer = ByteBuffer.allocate(replacement.length());
+        
+        for (int i = 0; i < replacement.length(); i++) {
+            buffer.put((byte) replacement.charAt(i));
+        }
+        
+        buffer.flip();
+        
+        return buffer;
     }
-
+    
+    /**
+     * Escapes a key or value the same way as {@link Properties#store}
+     * 
+     * @param text
+     * @param isKey
+     * @param output 
+     */
+    protected void escape(String text, boolean isKey, StringBuilder output) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            
+            switch (c) {
+                case ' ':
+                    if (i == 0 || isKey) {
+                        output.append('\\');
+                    }
+                    output.append(' ');
+                    break;
+                case '\t':
+                    output.append("\\t");
+                    break;
+                case '\n':
+                    output.append("\\n");
+                    break;
+                case '\r':
+                    output.append("\\r");
+                    break;
+                case '\f':
+                    output.append("\\f");
+                    break;
+                case '\\':
+                case '=':
+                case ':':
+                case '#':
+                case '!':
+                    output.append('\\').append(c);
+                    break;
+                default:
+                    if (c < 0x0020 || c > 0x007e) {
+                        output.append('\\').append('u')
+                            .append(HEX_DIGITS.charAt((c >> 12) & 0xF))
+                            .append(HEX_DIGITS.charAt((c >> 8) & 0xF))
+                            .append(HEX_DIGITS.charAt((c >> 4) & 0xF))
+                            .append(HEX_DIGITS.charAt(c & 0xF));
+                    } else {
+                        output.append(c);
+                    }
+            }
+        }
+    }
+    
+    /**
+     * 
+     * @param location
+     * @param length
+     * @return whether the value can be overwritten where it is, which is
+     *  only done in {@link CommitMode#DIRECT} mode
+     */
+    protected boolean isPatchableInPlace(PropertyLocation location, int length) {
+        return CommitMode.DIRECT.equals(this.commitMode)
+            && location.isFound()
+            && length != 0
+            && location.getValueEnd() - location.getValueStart() == length;
+    }
+    
     /**
      * 
      * @param f
-     * @return
+     * @param location
+     * @param replacement
      * @throws IOException 
      */
-    public Properties loadPropertiesFromFile(File f) throws IOException {
-        Properties properties = this.buildProperties();
+    protected void patchProperty(File f, PropertyLocation location, ByteBuffer replacement) throws IOException {
+        try (FileChannel channel = this.channelFactory.openForUpdating(f)) {
+            long position = location.getValueStart();
+            
+            while (replacement.hasRemaining()) {
+                position += channel.write(replacement, position);
+            }
+            
+            if (this.isFileSyncRequired()) {
+                channel.force(false);
+            }
+        }
+    }
+    
+    /**
+     * 
+     * @param f
+     * @param location
+     * @param replacement
+     * @throws IOException 
+     */
+    protected void splicePropertyAtomically(File f, PropertyLocation location, ByteBuffer replacement) throws IOException {
+        File temporaryFile = this.createTemporaryFile(f);
         
         try {
-            properties.load(this.buildInputStream(f));
+            try (FileChannel target = this.channelFactory.openForWriting(temporaryFile)) {
+                if (f.exists()) {
+                    try (FileChannel source = this.channelFactory.openForReading(f)) {
+                        this.transferFully(source, 0, location.getValueStart(), target);
+                        this.writeFully(target, replacement);
+                        this.transferFully(source, location.getValueEnd(), source.size() - location.getValueEnd(), target);
+                    }
+                } else {
+                    this.writeFully(target, replacement);
+                }
+                
+                if (this.isFileSyncRequired()) {
+                    target.force(false);
+                }
+            }
             
-            return properties;
-        } catch (IOException ex) {
-            throw ex;
-        } catch (Exception ex) {
-            throw new IOException("Unable to instantiate stream", ex);
+            this.commitTemporaryFile(temporaryFile, f);
+        } finally {
+            if (temporaryFile.exists()) {
+                temporaryFile.delete();
+            }
+        }
+    }
+    
+    /**
+     * Rewrites the file from the start of the value onwards; only the suffix
+     * after the value is read back into memory
+     * 
+     * @param f
+     * @param location
+     * @param replacement
+     * @throws IOException 
+     */
+    protected void splicePropertyDirectly(File f, PropertyLocation location, ByteBuffer replacement) throws IOException {
+        if (!f.exists()) {
+            try (FileChannel channel = this.channelFactory.openForWriting(f)) {
+                this.writeFully(channel, replacement);
+                
+                if (this.isFileSyncRequired()) {
+                    channel.force(false);
+                }
+            }
+            
+            return;
+        }
+        
+        try (FileChannel channel = this.channelFactory.openForUpdating(f)) {
+            long suffixLength = channel.size() - location.getValueEnd();
+            ByteBuffer suffix = this.acquireReadBuffer((int) suffixLength);
+            suffix.limit((int) suffixLength);
+            
+            while (suffix.hasRemaining()) {
+                if (channel.read(suffix, location.getValueEnd() + suffix.position()) == -1) {
+                    break;
+                }
+            }
+            
+            suffix.flip();
+            channel.position(location.getValueStart());
+            this.writeFully(channel, replacement);
+            this.writeFully(channel, suffix);
+            channel.truncate(channel.position());
+            
+            if (this.isFileSyncRequired()) {
+                channel.force(false);
+            }
+        }
+    }
+    
+    /**
+     * 
+     * @param source
+     * @param position
+     * @param count
+     * @param target
+     * @throws IOException 
+     */
+    protected void transferFully(FileChannel source, long position, long count, FileChannel target) throws IOException {
+        while (count > 0) {
+            long transferred = source.transferTo(position, count, target);
+            
+            if (transferred <= 0) {
+                throw new IOException("Property file changed while it was being rewritten");
+            }
+            
+            position += transferred;
+            count -= transferred;
+        }
+    }
+    
+    /**
+     * 
+     * @param channel
+     * @param buffer
+     * @throws IOException 
+     */
+    protected void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
+    /**
+     * Creates an empty file next to the file a save will replace, with the
+     * same POSIX permissions as that file, or the default permissions for a
+     * new file if there is none
+     * 
+     * @param f
+     * @return
+     * @throws IOException 
+     */
+    protected File createTemporaryFile(File f) throws IOException {
+        File target = this.resolveTarget(f);
+        File directory = target.getAbsoluteFile().getParentFile();
+        
+        while (true) {
+            File temporaryFile = new File(
+                directory,
+                "." + target.getName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp"
+            );
+            
+            try {
+                Files.createFile(temporaryFile.toPath());
+            } catch (FileAlreadyExistsException ex) {
+                continue;
+            }
+            
+            if (target.exists()) {
+                try {
+                    Files.setPosixFilePermissions(temporaryFile.toPath(), Files.getPosixFilePermissions(target.toPath()));
+                } catch (UnsupportedOperationException ex) {
+                    // Permissions are not POSIX, and are left as the directory gives them
+                } catch (IOException ex) {
+                    temporaryFile.delete();
+                    
+                    throw ex;
+                }
+            }
+            
+            return temporaryFile;
+        }
+    }
+    
+    /**
+     * Renames a fully written temporary file over its target, flushing the
+     * directory entry afterwards if the fsync policy asks for it
+     * 
+     * @param temporaryFile
+     * @param f
+     * @throws IOException 
+     */
+    protected void commitTemporaryFile(File temporaryFile, File f) throws IOException {
+        File target = this.resolveTarget(f);
+        
+        this.replaceFile(temporaryFile, target);
+        
+        if (FsyncPolicy.FILE_AND_DIRECTORY.equals(this.fsyncPolicy)) {
+            this.syncDirectory(target.getAbsoluteFile().getParentFile());
         }
     }
     
+    /**
+     * 
+     * @param f
+     * @return the file a symbolic link points to, so that the link survives
+     *  the file being replaced, or else the given file
+     * @throws IOException 
+     */
+    protected File resolveTarget(File f) throws IOException {
+        Path path = f.toPath();
+        
+        if (Files.isSymbolicLink(path) && Files.exists(path)) {
+            return path.toRealPath().toFile();
+        }
+        
+        return f;
+    }
+    
     /**
      * 
      * @param properties
      * @param f
      * @throws IOException 
      */
-    public void savePropertiesToFile(Properties properties, File f) throws IOException {
+    protected void writeProperties(Properties properties, File f) throws IOException {
+        ReusableOutputStream outputStream = WRITE_BUFFER.get();
+        outputStream.reset();
+        
+        try {
+            properties.store(outputStream, "");
+            
+            try (FileChannel channel = this.channelFactory.openForWriting(f)) {
+                this.writeFully(channel, outputStream.toByteBuffer());
+                
+                if (this.isFileSyncRequired()) {
+                    // The file size is included in the metadata synced by force(false)
+                    channel.force(false);
+                }
+            }
+        } finally {
+            outputStream.release();
+        }
+    }
+    
+    /**
+     * Reads the whole of the given channel into this thread's read buffer.
+     * The returned buffer is only valid until the next read on this thread.
+     * 
+     * @param channel
+     * @return
+     * @throws IOException 
+     */
+    protected ByteBuffer readFully(FileChannel channel) throws IOException {
+        ByteBuffer buffer = this.acquireReadBuffer((int) Math.min(channel.size() + 1, Integer.MAX_VALUE));
+        
+        while (channel.read(buffer) != -1) {
+            if (!buffer.hasRemaining()) {
+                ByteBuffer larger = this.acquireReadBuffer(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+        
+        buffer.flip();
+        
+        return buffer;
+    }
+    
+    /**
+     * 
+     * @param minimumCapacity
+     * @return 
+     */
+    protected ByteBuffer acquireReadBuffer(int minimumCapacity) {
+        ByteBuffer buffer = READ_BUFFER.get();
+        
+        if (buffer.capacity() < minimumCapacity) {
+            buffer = ByteBuffer.allocate(Math.max(minimumCapacity, buffer.capacity() * 2));
+            
+            if (buffer.capacity() <= MAX_RETAINED_BUFFER_SIZE) {
+                READ_BUFFER.set(buffer);
+            }
+        }
+        
+        buffer.clear();
+        
+        return buffer;
+    }
+    
+    /**
+     * 
+     * @param source
+     * @param target
+     * @throws IOException 
+     */
+    protected void replaceFile(File source, File target) throws IOException {
         try {
-            properties.store(this.buildOutputStream(f), "");
+            Files.move(
+                source.toPath(),
+                target.toPath(),
+                StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING
+            );
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Flushes a directory entry to disk so that a completed rename survives a
+     * crash.  A failure is logged rather than thrown, as the rename itself
+     * has already succeeded.
+     * 
+     * @param directory 
+     */
+    protected void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
         } catch (IOException ex) {
-            throw ex;
-        } catch (Exception ex) {
-            throw new IOException("Unable to instantiate stream", ex);
+            LOGGER.log(
+                Level.WARNING,
+                "Unable to flush directory " + directory.getPath() + "; the last version saved to it may not survive a crash",
+                ex
+            );
         }
     }
     
+    /**
+     * 
+     * @return 
+     */
+    protected boolean isFileSyncRequired() {
+        return FsyncPolicy.FILE.equals(this.fsyncPolicy)
+            || FsyncPolicy.FILE_AND_DIRECTORY.equals(this.fsyncPolicy);
+    }
+    
+    
+    
+    public static class CommitMode {
+        public static final String ATOMIC = "atomic";
+        public static final String DIRECT = "direct";
+    }
+    
+    public static class FsyncPolicy {
+        public static final String NONE = "none";
+        public static final String FILE = "file";
+        public static final String FILE_AND_DIRECTORY = "directory";
+    }
+    
+    /**
+     * Byte array stream whose backing array is handed straight to the channel
+     * and kept between saves, unless a save made it unusually large
+     */
+    protected static class ReusableOutputStream extends ByteArrayOutputStream {
+        
+        private final int initialSize;
+        
+        public ReusableOutputStream(int initialSize) {
+            super(initialSize);
+            
+            this.initialSize = initialSize;
+        }
+        
+        public ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(this.buf, 0, this.count);
+        }
+        
+        public void release() {
+            if (this.buf.length > MAX_RETAINED_BUFFER_SIZE) {
+                this.buf = new byte[this.initialSize];
+            }
+            
+            this.reset();
+        }
+        
+    }
+    
 }
@@ -0,0 +1,335 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Streams through a property file looking for a single key, stopping as soon
+ * as it is found, without building a {@link java.util.Properties} table.
+ * 
+ * The syntax accepted is that of {@link java.util.Properties#load(java.io.InputStream)}:
+ * ISO 8859-1 text, comment lines starting with '#' or '!', keys terminated by
+ * an unescaped '=', ':' or whitespace, backslash escapes (including
+ * <code>&#92;uXXXX</code>) and line continuations.  Unlike Properties, where the
+ * last occurrence of a duplicated key wins, the first occurrence is reported.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class PropertyFileScanner {
+    
+    protected static final int END_OF_INPUT = -1;
+    protected static final int NO_PUSHBACK = -2;
+    
+    protected static final int CHARACTER = 0;
+    protected static final int ESCAPED_CHARACTER = 1;
+    protected static final int LINE_END = 2;
+    protected static final int FILE_END = 3;
+    
+    protected final ReadableByteChannel channel;
+    protected final ByteBuffer buffer;
+    
+    /**
+     * File offset of the next byte returned by {@link #read()}
+     */
+    protected long position = 0;
+    protected int pushback = NO_PUSHBACK;
+    protected int lastByte = END_OF_INPUT;
+    
+    protected int tokenType;
+    protected char tokenChar;
+    protected long tokenStart;
+    protected long tokenEnd;
+    
+    
+    
+    /**
+     * 
+     * @param channel channel positioned at the start of the file
+     * @param buffer heap buffer to read through; its contents are discarded
+     */
+    public PropertyFileScanner(ReadableByteChannel channel, ByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+        
+        this.buffer.clear();
+        this.buffer.flip();
+    }
+    
+    /**
+     * 
+     * @param key
+     * @return
+     * @throws IOException
+     * @throws IllegalArgumentException if a malformed unicode escape is read
+     */
+    public PropertyLocation find(String key) throws IOException, IllegalArgumentException {
+        while (true) {
+            this.skipWhitespace();
+            
+            int c = this.read();
+            
+            if (c == END_OF_INPUT) {
+                return this.buildNotFoundLocation();
+            } else if (c == '\n' || c == '\r') {
+                continue;
+            } else if (c == '#' || c == '!') {
+                this.skipNaturalLine();
+                continue;
+            }
+            
+            this.unread(c);
+            this.nextToken();
+            
+            int keyLength = 0;
+            boolean keyMatches = true;
+            boolean separatorSeen = false;
+            boolean whitespaceSeen = false;
+            
+            while (this.isTokenCharacter()) {
+                if (this.tokenType == CHARACTER) {
+                    if (this.tokenChar == '=' || this.tokenChar == ':') {
+                        separatorSeen = true;
+                        this.nextToken();
+                        break;
+                    } else if (this.isWhitespace(this.tokenChar)) {
+                        whitespaceSeen = true;
+                        this.nextToken();
+                        break;
+                    }
+                }
+                
+                keyMatches = keyMatches
+                    && keyLength < key.length()
+                    && key.charAt(keyLength) == this.tokenChar;
+                keyLength++;
+                
+                this.nextToken();
+            }
+            
+            while (this.tokenType == CHARACTER) {
+                if (this.isWhitespace(this.tokenChar)) {
+                    whitespaceSeen = true;
+                } else if (!separatorSeen && (this.tokenChar == '=' || this.tokenChar == ':')) {
+                    separatorSeen = true;
+                } else {
+                    break;
+                }
+                
+                this.nextToken();
+            }
+            
+            if (keyMatches && keyLength == key.length()) {
+                return this.readValue(!separatorSeen && !whitespaceSeen);
+            }
+            
+            while (this.isTokenCharacter()) {
+                this.nextToken();
+            }
+            
+            if (this.tokenType == FILE_END) {
+                return this.buildNotFoundLocation();
+            }
+        }
+    }
+    
+    protected PropertyLocation readValue(boolean separatorRequired) throws IOException {
+        StringBuilder value = new StringBuilder();
+        long valueStart = this.tokenStart;
+        
+        while (this.isTokenCharacter()) {
+            value.append(this.tokenChar);
+            
+            this.nextToken();
+        }
+        
+        // Runs to the line break, taking in any trailing continuation lines
+        return new PropertyLocation(value.toString(), valueStart, this.tokenStart, separatorRequired, false);
+    }
+    
+    protected PropertyLocation buildNotFoundLocation() {
+        boolean lineBreakRequired = this.lastByte != END_OF_INPUT
+            && this.lastByte != '\n'
+            && this.lastByte != '\r';
+        
+        return new PropertyLocation(null, this.position, this.position, false, lineBreakRequired);
+    }
+    
+    /**
+     * Reads the next character of the current logical line, resolving escapes
+     * and joining continuation lines
+     * 
+     * @throws IOException 
+     */
+    protected void nextToken() throws IOException {
+        while (true) {
+            long start = this.position;
+            int c = this.read();
+            
+            if (c == END_OF_INPUT) {
+                this.setToken(FILE_END, '\0', start);
+                return;
+            } else if (c == '\n') {
+                this.setToken(LINE_END, '\0', start);
+                return;
+            } else if (c == '\r') {
+                this.skipLineFeed();
+                this.setToken(LINE_END, '\0', start);
+                return;
+            } else if (c != '\\') {
+                this.setToken(CHARACTER, (char) c, start);
+                return;
+            }
+            
+            int escaped = this.read();
+            
+            if (escaped == END_OF_INPUT) {
+                this.setToken(FILE_END, '\0', start);
+                return;
+            } else if (escaped == '\n' || escaped == '\r') {
+                if (escaped == '\r') {
+                    this.skipLineFeed();
+                }
+                
+                this.skipWhitespace();
+                continue;
+            }
+            
+            this.setToken(ESCAPED_CHARACTER, this.unescape(escaped), start);
+            return;
+        }
+    }
+    
+    protected void setToken(int type, char c, long start) {
+        this.tokenType = type;
+        this.tokenChar = c;
+        this.tokenStart = start;
+        this.tokenEnd = this.position;
+    }
+    
+    protected boolean isTokenCharacter() {
+        return this.tokenType == CHARACTER || this.tokenType == ESCAPED_CHARACTER;
+    }
+    
+    protected char unescape(int c) throws IOException {
+        switch (c) {
+            case 't':
+                return '\t';
+            case 'r':
+                return '\r';
+            case 'n':
+                return '\n';
+            case 'f':
+                return '\f';
+            case 'u':
+                int value = 0;
+                
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(this.read(), 16);
+                    
+                    if (digit < 0) {
+                        throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                    }
+                    
+                    value = (value << 4) | digit;
+                }
+                
+                return (char) value;
+            default:
+                return (char) c;
+        }
+    }
+    
+    protected boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\f';
+    }
+    
+    protected void skipWhitespace() throws IOException {
+        int c;
+        
+        do {
+            c = this.read();
+        } while (this.isWhitespace(c));
+        
+        this.unread(c);
+    }
+    
+    protected void skipNaturalLine() throws IOException {
+        int c;
+        
+        do {
+            c = this.read();
+        } while (c != '\n' && c != '\r' && c != END_OF_INPUT);
+        
+        this.unread(c);
+    }
+    
+    protected void skipLineFeed() throws IOException {
+        int c = this.read();
+        
+        if (c != '\n') {
+            this.unread(c);
+        }
+    }
+    
+    protected int read() throws IOException {
+        if (this.pushback != NO_PUSHBACK) {
+            int c = this.pushback;
+            this.pushback = NO_PUSHBACK;
+            this.position++;
+            
+            return c;
+        }
+        
+        if (!this.buffer.hasRemaining()) {
+            this.buffer.clear();
+            
+            int count;
+            do {
+                count = this.channel.read(this.buffer);
+            } while (count == 0);
+            
+            this.buffer.flip();
+            
+            if (count < 0) {
+                return END_OF_INPUT;
+            }
+        }
+        
+        this.position++;
+        this.lastByte = this.buffer.get() & 0xFF;
+        
+        return this.lastByte;
+    }
+    
+    protected void unread(int c) {
+        if (c != END_OF_INPUT) {
+            this.pushback = c;
+            this.position--;
+        }
+    }
+    
+}
@@ -23,20 +23,26 @@
  */
 package co.byng.versioningplugin.handler.file;
 
+import co.byng.versioningplugin.handler.VersionChange;
 import co.byng.versioningplugin.handler.VersionCommittable;
+import co.byng.versioningplugin.handler.VersionLock;
+import co.byng.versioningplugin.handler.VersionLockable;
 import co.byng.versioningplugin.handler.VersionRetrievable;
+import co.byng.versioningplugin.handler.VersionStore;
+import co.byng.versioningplugin.handler.VersionUpdate;
 import co.byng.versioningplugin.versioning.VersionFactory;
 import com.github.zafarkhaja.semver.Version;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.Properties;
+import java.io.PrintStream;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
  *
  * @author matt
  */
-public class PropertyFileVersionHandler implements VersionRetrievable, VersionCommittable {
+public class PropertyFileVersionHandler implements VersionRetrievable, VersionCommittable, VersionLockable, VersionStore {
 
     /**
      * 
@@ -63,6 +69,26 @@ public class PropertyFileVersionHandler implements VersionRetrievable, VersionCo
      */
     protected String propertyKey;
     
+    /**
+     * 
+     */
+    protected PathLockRegistry lockRegistry = PathLockRegistry.getDefault();
+    
+    /**
+     * Locks the file against other processes as well, if set
+     */
+    protected CrossProcessFileLocker processLocker;
+    
+    /**
+     * 
+     */
+    protected VersionReadCache readCache = new VersionReadCache();
+    
+    /**
+     * Watches the file so that cached versions need no check, if set
+     */
+    protected VersionFileWatcher watcher;
+    
     
     
     /**
@@ -162,7 +188,9 @@ public class PropertyFileVersionHandler implements VersionRetrievable, VersionCo
     public PropertyFileVersionHandler setPropertyFilePath(
         File propertyFilePath
     ) throws IOException {
+        this.unwatchPropertyFile();
         this.propertyFilePath = propertyFilePath;
+        this.readCache.invalidate();
         
         return this;
     }
@@ -186,6 +214,118 @@ public class PropertyFileVersionHandler implements VersionRetrievable, VersionCo
         return this;
     }
 
+    /**
+     * 
+     * @return 
+     */
+    public PathLockRegistry getLockRegistry() {
+        return lockRegistry;
+    }
+
+    /**
+     * 
+     * @param lockRegistry
+     * @return 
+     */
+    public PropertyFileVersionHandler setLockRegistry(PathLockRegistry lockRegistry) {
+        if (lockRegistry == null) {
+            throw new IllegalArgumentException("Lock registry cannot be null");
+        }
+        
+        this.lockRegistry = lockRegistry;
+        
+        return this;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public CrossProcessFileLocker getProcessLocker() {
+        return processLocker;
+    }
+
+    /**
+     * 
+     * @param processLocker locker for other processes, or null to only lock
+     *  within this JVM
+     * @return 
+     */
+    public PropertyFileVersionHandler setProcessLocker(CrossProcessFileLocker processLocker) {
+        this.processLocker = processLocker;
+        
+        return this;
+    }
+
+    /**
+     * 
+     * @return cache of the version last loaded, with its hit and miss counts
+     */
+    public VersionReadCache getReadCache() {
+        return this.readCache;
+    }
+
+    /**
+     * 
+     * @param readCache
+     * @return 
+     */
+    public PropertyFileVersionHandler setReadCache(VersionReadCache readCache) {
+        if (readCache == null) {
+            throw new IllegalArgumentException("Read cache cannot be null");
+        }
+        
+        this.readCache = readCache;
+        
+        return this;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public VersionFileWatcher getWatcher() {
+        return this.watcher;
+    }
+
+    /**
+     * 
+     * @param watcher watcher to invalidate the read cache with, or null to
+     *  check the file's attributes on every load
+     * @return 
+     */
+    public PropertyFileVersionHandler setWatcher(VersionFileWatcher watcher) {
+        this.unwatchPropertyFile();
+        this.watcher = watcher;
+        
+        return this;
+    }
+
+    /**
+     * Locks the property file against other handlers in this JVM, and against
+     * other processes if a process locker is set; handlers for different
+     * files never block each other
+     * 
+     * @param logger
+     * @return
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    @Override
+    public VersionLock lockVersion(PrintStream logger) throws IOException, InterruptedException {
+        if (this.propertyFilePath == null) {
+            throw new IllegalStateException("Property file path is not set");
+        }
+        
+        VersionLock lock = this.lockRegistry.acquire(this.propertyFilePath);
+        
+        if (this.processLocker != null) {
+            return this.processLocker.acquire(this.propertyFilePath, lock, logger);
+        }
+        
+        return lock;
+    }
+
     @Override
     public Version loadVersion() throws IllegalStateException, IOException {
         
@@ -193,35 +333,200 @@ public class PropertyFileVersionHandler implements VersionRetrievable, VersionCo
             throw new IllegalStateException("Property file path is not set");
         }
         
-        if (!this.propertyFilePath.exists()) {
-            throw new FileNotFoundException(
-                "Property file " + this.propertyFilePath.getName() + " not found at " + this.propertyFilePath.getPath()
-            );
+        this.watchPropertyFile();
+        
+        Version watchedVersion = this.readCache.getIfWatched(this.propertyKey);
+        
+        if (watchedVersion != null) {
+            return watchedVersion;
+        }
+        
+        this.checkPropertyFileExists();
+
+        long generation = this.readCache.getGeneration();
+        BasicFileAttributes attributes = this.fileHandler.readAttributes(this.propertyFilePath);
+        Version cachedVersion = this.readCache.get(this.propertyKey, attributes);
+        
+        if (cachedVersion != null) {
+            return cachedVersion;
         }
 
-        Properties properties = this.fileHandler.loadPropertiesFromFile(propertyFilePath);
+        String version = this.fileHandler.loadProperty(this.propertyFilePath, this.propertyKey);
 
-        if (properties.containsKey(this.propertyKey)) {
-            return this.versionFactory.buildVersionFromString((String) properties.get(this.propertyKey));
+        if (version != null) {
+            Version loadedVersion = this.versionFactory.buildVersionFromString(version);
+            this.readCache.put(this.propertyKey, attributes, loadedVersion, generation);
+            
+            return loadedVersion;
         }
         
         return null;
     }
     
+    /**
+     * Registers the read cache with the watcher, if there is one and it is
+     * not already registered; anything cached beforehand is discarded, as a
+     * change made before the registration would not be reported
+     */
+    protected void watchPropertyFile() {
+        if (this.watcher == null || this.readCache.isWatched()) {
+            return;
+        }
+        
+        try {
+            this.watcher.watch(this.propertyFilePath, this.readCache);
+            this.readCache.invalidate();
+            this.readCache.setWatched(true);
+        } catch (IOException ex) {
+            // Left to check the file's attributes instead
+        }
+    }
+    
+    /**
+     * Removes the read cache from the watcher, if it is registered, so the
+     * file's directory is no longer watched on this handler's behalf
+     */
+    protected void unwatchPropertyFile() {
+        if (this.watcher != null && this.readCache.isWatched()) {
+            this.watcher.unwatch(this.propertyFilePath, this.readCache);
+        }
+        
+        this.readCache.setWatched(false);
+    }
+    
+    /**
+     * Loads, updates and saves the version while holding the file's lock.
+     * The version is located once and written back in place, without parsing
+     * the file a second time.  Its location after the write is remembered
+     * against the file's attributes, so that the next update of an unchanged
+     * file need not open and scan it; an atomic save still copies the rest of
+     * the file into its replacement.  The file is always scanned when it is
+     * locked against other processes.
+     * 
+     * @param update
+     * @param logger
+     * @return
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    @Override
+    public VersionChange update(VersionUpdate update, PrintStream logger) throws IOException, InterruptedException {
+        VersionLock lock = this.lockVersion(logger);
+        
+        try {
+            if (lock.isContended()) {
+                logger.append("Waited " + lock.getWaitMillis() + "ms for another build to release the version\n");
+            }
+            
+            long generation = this.readCache.getGeneration();
+            BasicFileAttributes attributes = this.readAttributesIfExists();
+            // Other processes may rewrite the file within its timestamp resolution
+            VersionReadCache.CachedVersion cached = (this.processLocker == null
+                ? this.readCache.getLocated(this.propertyKey, attributes)
+                : null
+            );
+            
+            PropertyLocation location;
+            Version previousVersion;
+            
+            if (cached != null) {
+                location = cached.getLocation();
+                previousVersion = cached.getVersion();
+            } else {
+                location = this.locateVersion();
+                previousVersion = (location.isFound()
+                    ? this.versionFactory.buildVersionFromString(location.getValue())
+                    : this.buildMissingVersion()
+                );
+            }
+            
+            Version currentVersion = update.apply(previousVersion);
+            
+            boolean saved = this.fileHandler.saveProperty(
+                this.propertyFilePath,
+                location,
+                this.propertyKey,
+                currentVersion.toString()
+            );
+            
+            if (saved) {
+                this.readCache.invalidate();
+                generation = this.readCache.getGeneration();
+                
+                this.readCache.put(
+                    this.propertyKey,
+                    this.readAttributesIfExists(),
+                    currentVersion,
+                    this.fileHandler.locateSavedProperty(location, this.propertyKey, currentVersion.toString()),
+                    generation
+                );
+            } else if (cached == null) {
+                this.readCache.put(this.propertyKey, attributes, previousVersion, location, generation);
+            }
+            
+            return new VersionChange(previousVersion, currentVersion, saved);
+        } finally {
+            lock.release();
+        }
+    }
+    
     /**
      * 
-     * @param version
      * @return
      * @throws IOException 
      */
+    protected PropertyLocation locateVersion() throws IOException {
+        this.checkPropertyFileExists();
+        
+        return this.fileHandler.locateProperty(this.propertyFilePath, this.propertyKey);
+    }
+    
+    /**
+     * 
+     * @return the property file's attributes, or null if they cannot be read
+     */
+    protected BasicFileAttributes readAttributesIfExists() {
+        try {
+            return this.fileHandler.readAttributes(this.propertyFilePath);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * 
+     * @return the version to update when none is stored
+     */
+    protected Version buildMissingVersion() {
+        return null;
+    }
+    
+    /**
+     * 
+     * @throws FileNotFoundException 
+     */
+    protected void checkPropertyFileExists() throws FileNotFoundException {
+        if (!this.propertyFilePath.exists()) {
+            throw new FileNotFoundException(
+                "Property file " + this.propertyFilePath.getName() + " not found at " + this.propertyFilePath.getPath()
+            );
+        }
+    }
+    
+    /**
+     * 
+     * @param version
+     * @return false if the file already held the given version and was left
+     *  untouched
+     * @throws IOException 
+     */
     @Override
     public boolean saveVersion(Version version) throws IOException {
-        Properties properties = new Properties();
-        properties.setProperty(this.propertyKey, version.toString());
+        boolean saved = this.fileHandler.saveProperty(this.propertyFilePath, this.propertyKey, version.toString());
         
-        this.fileHandler.savePropertiesToFile(properties, this.propertyFilePath);
+        this.readCache.invalidate();
         
-        return true;
+        return saved;
     }
     
 }
@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.file;
+
+/**
+ * Where, if anywhere, a single property sits within a property file.  Offsets
+ * are byte positions in the file; the value range covers the raw (escaped)
+ * value text, including any continuation lines, and excludes the line break.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class PropertyLocation {
+    
+    protected final String value;
+    protected final long valueStart;
+    protected final long valueEnd;
+    protected final boolean separatorRequired;
+    protected final boolean lineBreakRequired;
+    
+    
+    
+    /**
+     * 
+     * @param value decoded value, or null if the property is not present
+     * @param valueStart
+     * @param valueEnd
+     * @param separatorRequired whether the key is followed directly by the
+     *  end of its line, so that a separator must precede any new value
+     * @param lineBreakRequired whether the file ends without a line break, so
+     *  that one must precede any appended line
+     */
+    public PropertyLocation(
+        String value,
+        long valueStart,
+        long valueEnd,
+        boolean separatorRequired,
+        boolean lineBreakRequired
+    ) {
+        this.value = value;
+        this.valueStart = valueStart;
+        this.valueEnd = valueEnd;
+        this.separatorRequired = separatorRequired;
+        this.lineBreakRequired = lineBreakRequired;
+    }
+    
+    public boolean isFound() {
+        return this.value != null;
+    }
+
+    public String getValue() {
+        return this.value;
+    }
+
+    public long getValueStart() {
+        return this.valueStart;
+    }
+
+    public long getValueEnd() {
+        return this.valueEnd;
+    }
+
+    public boolean isSeparatorRequired() {
+        return this.separatorRequired;
+    }
+
+    public boolean isLineBreakRequired() {
+        return this.lineBreakRequired;
+    }
+    
+}
@@ -0,0 +1,357 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the directories holding version files from a single background
+ * thread, and tells the listeners registered for a file whenever it is
+ * created, changed or deleted, so that caches in front of the file can be
+ * trusted without checking the file on every build.
+ * 
+ * Listeners are held weakly, and a directory stops being watched once none
+ * of its listeners remain.  On platforms where the watch service polls, a
+ * change may take a few seconds to be noticed.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class VersionFileWatcher implements Runnable {
+    
+    private static final Logger LOGGER = Logger.getLogger(VersionFileWatcher.class.getName());
+    
+    private static VersionFileWatcher defaultWatcher;
+    private static boolean defaultWatcherUnavailable;
+    
+    /**
+     * 
+     */
+    protected final WatchService watchService;
+    
+    /**
+     * Watched directories by their watch keys
+     */
+    protected final Map<WatchKey, Path> directories = new HashMap<>();
+    
+    /**
+     * Listeners by watched directory, then by file name
+     */
+    protected final Map<Path, Map<Path, Set<Listener>>> listeners = new HashMap<>();
+    
+    
+    
+    /**
+     * 
+     * @param watchService 
+     */
+    public VersionFileWatcher(WatchService watchService) {
+        this.watchService = watchService;
+    }
+    
+    /**
+     * 
+     * @return the watcher shared by every handler in this JVM, started on
+     *  first use, or null if the file system cannot be watched
+     */
+    public static synchronized VersionFileWatcher getDefault() {
+        if (defaultWatcher == null && !defaultWatcherUnavailable) {
+            try {
+                defaultWatcher = new VersionFileWatcher(FileSystems.getDefault().newWatchService());
+                defaultWatcher.start();
+            } catch (IOException | UnsupportedOperationException ex) {
+                LOGGER.log(Level.WARNING, "Version files cannot be watched; cached versions will be checked against the file instead", ex);
+                defaultWatcherUnavailable = true;
+            }
+        }
+        
+        return defaultWatcher;
+    }
+    
+    /**
+     * Starts the watching thread
+     * 
+     * @return 
+     */
+    public Thread start() {
+        Thread thread = new Thread(this, "Semantic version file watcher");
+        thread.setDaemon(true);
+        thread.start();
+        
+        return thread;
+    }
+    
+    /**
+     * Stops watching every file; the watching thread exits
+     * 
+     * @throws IOException 
+     */
+    public void close() throws IOException {
+        this.watchService.close();
+    }
+    
+    /**
+     * Tells the listener about every later change to the file.  The listener
+     * is only told about changes made once this returns.
+     * 
+     * @param file
+     * @param listener
+     * @throws IOException if the file's directory cannot be watched
+     */
+    public synchronized void watch(File file, Listener listener) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        Path directory = path.getParent();
+        
+        this.cancelUnusedDirectories();
+        
+        Map<Path, Set<Listener>> directoryListeners = this.listeners.get(directory);
+        
+        if (directoryListeners == null) {
+            WatchKey key;
+            
+            try {
+                key = directory.register(
+                    this.watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE
+                );
+            } catch (ClosedWatchServiceException ex) {
+                throw new IOException("Version file watcher is closed", ex);
+            }
+            
+            directoryListeners = new HashMap<>();
+            this.directories.put(key, directory);
+            this.listeners.put(directory, directoryListeners);
+        }
+        
+        Set<Listener> fileListeners = directoryListeners.get(path.getFileName());
+        
+        if (fileListeners == null) {
+            fileListeners = Collections.newSetFromMap(new WeakHashMap<Listener, Boolean>());
+            directoryListeners.put(path.getFileName(), fileListeners);
+        }
+        
+        fileListeners.add(listener);
+    }
+    
+    /**
+     * Stops telling the listener about changes to the file; the directory
+     * stops being watched once nothing in it has a listener left
+     * 
+     * @param file
+     * @param listener 
+     */
+    public synchronized void unwatch(File file, Listener listener) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        Map<Path, Set<Listener>> directoryListeners = this.listeners.get(path.getParent());
+        
+        if (directoryListeners != null) {
+            Set<Listener> fileListeners = directoryListeners.get(path.getFileName());
+            
+            if (fileListeners != null) {
+                fileListeners.remove(listener);
+            }
+        }
+        
+        this.cancelUnusedDirectories();
+    }
+    
+    /**
+     * Cancels the keys of the directories whose listeners have all been
+     * removed or collected, so they are not watched until their next event
+     */
+    protected synchronized void cancelUnusedDirectories() {
+        List<WatchKey> unused = new ArrayList<>();
+        
+        for (Map.Entry<WatchKey, Path> entry : this.directories.entrySet()) {
+            Map<Path, Set<Listener>> directoryListeners = this.listeners.get(entry.getValue());
+            
+            if (directoryListeners != null) {
+                this.removeEmptyFiles(directoryListeners);
+            }
+            
+            if (directoryListeners == null || directoryListeners.isEmpty()) {
+                unused.add(entry.getKey());
+            }
+        }
+        
+        for (WatchKey key : unused) {
+            key.cancel();
+            this.listeners.remove(this.directories.remove(key));
+        }
+    }
+    
+    /**
+     * 
+     * @return number of directories being watched
+     */
+    public synchronized int getWatchedDirectoryCount() {
+        return this.directories.size();
+    }
+    
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                this.dispatch(this.watchService.take());
+            }
+        } catch (ClosedWatchServiceException | InterruptedException ex) {
+            this.cancelAll();
+        }
+    }
+    
+    /**
+     * Tells the listeners of every file named in the key's events, or of
+     * every file in the directory if events were lost
+     * 
+     * @param key 
+     */
+    protected void dispatch(WatchKey key) {
+        List<Listener> changed = new ArrayList<>();
+        List<Listener> cancelled = new ArrayList<>();
+        
+        synchronized (this) {
+            Path directory = this.directories.get(key);
+            Map<Path, Set<Listener>> directoryListeners = (directory != null ? this.listeners.get(directory) : null);
+            
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (directoryListeners == null) {
+                    continue;
+                }
+                
+                if (StandardWatchEventKinds.OVERFLOW.equals(event.kind())) {
+                    for (Set<Listener> fileListeners : directoryListeners.values()) {
+                        changed.addAll(fileListeners);
+                    }
+                } else {
+                    Set<Listener> fileListeners = directoryListeners.get((Path) event.context());
+                    
+                    if (fileListeners != null) {
+                        changed.addAll(fileListeners);
+                    }
+                }
+            }
+            
+            if (directoryListeners != null) {
+                this.removeEmptyFiles(directoryListeners);
+            }
+            
+            if (!key.reset() || directoryListeners == null || directoryListeners.isEmpty()) {
+                key.cancel();
+                this.directories.remove(key);
+                
+                if (directoryListeners != null) {
+                    for (Set<Listener> fileListeners : directoryListeners.values()) {
+                        cancelled.addAll(fileListeners);
+                    }
+                    
+                    this.listeners.remove(directory);
+                }
+            }
+        }
+        
+        for (Listener listener : changed) {
+            listener.fileChanged();
+        }
+        
+        for (Listener listener : cancelled) {
+            listener.watchCancelled();
+        }
+    }
+    
+    /**
+     * 
+     * @param directoryListeners 
+     */
+    protected void removeEmptyFiles(Map<Path, Set<Listener>> directoryListeners) {
+        List<Path> emptyFiles = new ArrayList<>();
+        
+        for (Map.Entry<Path, Set<Listener>> entry : directoryListeners.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                emptyFiles.add(entry.getKey());
+            }
+        }
+        
+        for (Path emptyFile : emptyFiles) {
+            directoryListeners.remove(emptyFile);
+        }
+    }
+    
+    /**
+     * 
+     */
+    protected void cancelAll() {
+        List<Listener> cancelled = new ArrayList<>();
+        
+        synchronized (this) {
+            for (Map<Path, Set<Listener>> directoryListeners : this.listeners.values()) {
+                for (Set<Listener> fileListeners : directoryListeners.values()) {
+                    cancelled.addAll(fileListeners);
+                }
+            }
+            
+            this.directories.clear();
+            this.listeners.clear();
+        }
+        
+        for (Listener listener : cancelled) {
+            listener.watchCancelled();
+        }
+    }
+    
+    /**
+     * Told about changes to a watched file, on the watching thread
+     */
+    public interface Listener {
+        
+        /**
+         * The file has been created, changed or deleted
+         */
+        public void fileChanged();
+        
+        /**
+         * The file is no longer watched, so later changes will go unnoticed
+         */
+        public void watchCancelled();
+        
+    }
+    
+}
@@ -0,0 +1,283 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.file;
+
+import com.github.zafarkhaja.semver.Version;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the version last read from a property file along with the
+ * file's last-modified time, size and file key, so that the file need not be
+ * read again until one of them changes.  Where the version's location within
+ * the file is known too, an update can write the next version without
+ * scanning the file for it first.
+ * 
+ * A file rewritten by another process to the same size within the file
+ * system's timestamp resolution goes unnoticed; versions written through the
+ * handler owning the cache invalidate it themselves.
+ * 
+ * While the file is watched by a {@link VersionFileWatcher}, the watcher
+ * invalidates the cache on every change, and the cached version can be used
+ * without looking at the file at all.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class VersionReadCache implements VersionFileWatcher.Listener {
+    
+    protected volatile CachedVersion cached;
+    protected volatile boolean watched;
+    
+    /**
+     * Incremented on every invalidation, so that a version read before a
+     * change is not cached after it
+     */
+    protected long generation;
+    
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+    
+    
+    
+    /**
+     * 
+     * @param propertyKey
+     * @param attributes the file's current attributes, or null if they are
+     *  unknown
+     * @return the cached version, or null if the file may have changed
+     *  since it was read
+     */
+    public Version get(String propertyKey, BasicFileAttributes attributes) {
+        CachedVersion current = this.cached;
+        
+        if (current != null && attributes != null && current.matches(propertyKey, attributes)) {
+            this.hits.incrementAndGet();
+            
+            return current.version;
+        }
+        
+        this.misses.incrementAndGet();
+        
+        return null;
+    }
+    
+    /**
+     * 
+     * @param propertyKey
+     * @param attributes the file's current attributes, or null if they are
+     *  unknown
+     * @return the cached version and its location, or null if the file may
+     *  have changed since it was read or the location is not known
+     */
+    public CachedVersion getLocated(String propertyKey, BasicFileAttributes attributes) {
+        CachedVersion current = this.cached;
+        
+        if (current != null && current.location != null && attributes != null && current.matches(propertyKey, attributes)) {
+            this.hits.incrementAndGet();
+            
+            return current;
+        }
+        
+        this.misses.incrementAndGet();
+        
+        return null;
+    }
+    
+    /**
+     * 
+     * @param propertyKey
+     * @return the cached version if the file is watched, which needs no
+     *  system call, or else null
+     */
+    public Version getIfWatched(String propertyKey) {
+        CachedVersion current = this.cached;
+        
+        if (this.watched && current != null && Objects.equals(current.propertyKey, propertyKey)) {
+            this.hits.incrementAndGet();
+            
+            return current.version;
+        }
+        
+        return null;
+    }
+    
+    /**
+     * 
+     * @return the generation to give {@link #put(String, BasicFileAttributes, Version, long)}
+     *  for a version about to be read
+     */
+    public synchronized long getGeneration() {
+        return this.generation;
+    }
+    
+    /**
+     * Caches a version unless the cache has been invalidated since the
+     * version began to be read
+     * 
+     * @param propertyKey
+     * @param attributes
+     * @param version
+     * @param generation 
+     */
+    public synchronized void put(String propertyKey, BasicFileAttributes attributes, Version version, long generation) {
+        if (generation == this.generation) {
+            this.put(propertyKey, attributes, version, null);
+        }
+    }
+    
+    /**
+     * Caches a version and its location unless the cache has been
+     * invalidated since the version began to be read
+     * 
+     * @param propertyKey
+     * @param attributes
+     * @param version
+     * @param location
+     * @param generation 
+     */
+    public synchronized void put(String propertyKey, BasicFileAttributes attributes, Version version, PropertyLocation location, long generation) {
+        if (generation == this.generation) {
+            this.put(propertyKey, attributes, version, location);
+        }
+    }
+    
+    /**
+     * 
+     * @param propertyKey
+     * @param attributes the file's attributes from before it was read, or
+     *  null if they are unknown, in which case nothing is cached
+     * @param version 
+     */
+    public synchronized void put(String propertyKey, BasicFileAttributes attributes, Version version) {
+        this.put(propertyKey, attributes, version, null);
+    }
+    
+    /**
+     * 
+     * @param propertyKey
+     * @param attributes the file's attributes from before it was read, or
+     *  null if they are unknown, in which case nothing is cached
+     * @param version
+     * @param location where the version sits within the file, or null if it
+     *  is not known
+     */
+    public synchronized void put(String propertyKey, BasicFileAttributes attributes, Version version, PropertyLocation location) {
+        if (attributes == null || version == null) {
+            this.cached = null;
+            
+            return;
+        }
+        
+        this.cached = new CachedVersion(
+            propertyKey,
+            attributes.lastModifiedTime(),
+            attributes.size(),
+            attributes.fileKey(),
+            version,
+            location
+        );
+    }
+    
+    public synchronized void invalidate() {
+        this.cached = null;
+        this.generation++;
+    }
+    
+    public boolean isWatched() {
+        return this.watched;
+    }
+    
+    /**
+     * 
+     * @param watched whether every change to the file will invalidate the
+     *  cache
+     */
+    public void setWatched(boolean watched) {
+        this.watched = watched;
+    }
+
+    @Override
+    public void fileChanged() {
+        this.invalidate();
+    }
+
+    @Override
+    public void watchCancelled() {
+        this.watched = false;
+        this.invalidate();
+    }
+    
+    public long getHitCount() {
+        return this.hits.get();
+    }
+    
+    public long getMissCount() {
+        return this.misses.get();
+    }
+    
+    public static class CachedVersion {
+        
+        protected final String propertyKey;
+        protected final FileTime lastModified;
+        protected final long size;
+        protected final Object fileKey;
+        protected final Version version;
+        protected final PropertyLocation location;
+        
+        public CachedVersion(
+            String propertyKey,
+            FileTime lastModified,
+            long size,
+            Object fileKey,
+            Version version,
+            PropertyLocation location
+        ) {
+            this.propertyKey = propertyKey;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.fileKey = fileKey;
+            this.version = version;
+            this.location = location;
+        }
+        
+        public Version getVersion() {
+            return this.version;
+        }
+        
+        public PropertyLocation getLocation() {
+            return this.location;
+        }
+        
+        public boolean matches(String propertyKey, BasicFileAttributes attributes) {
+            return Objects.equals(this.propertyKey, propertyKey)
+                && this.size == attributes.size()
+                && Objects.equals(this.lastModified, attributes.lastModifiedTime())
+                && Objects.equals(this.fileKey, attributes.fileKey());
+        }
+        
+    }
+    
+}
@@ -0,0 +1,73 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.journal;
+
+import com.github.zafarkhaja.semver.Version;
+
+/**
+ * A single version change recorded in a {@link VersionJournal}
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class JournalEntry {
+    
+    protected final int buildNumber;
+    protected final long timestamp;
+    protected final Version previousVersion;
+    protected final Version currentVersion;
+    
+    
+    
+    /**
+     * 
+     * @param buildNumber number of the build making the change, or 0 if
+     *  unknown
+     * @param timestamp time of the change in milliseconds since the epoch
+     * @param previousVersion
+     * @param currentVersion 
+     */
+    public JournalEntry(int buildNumber, long timestamp, Version previousVersion, Version currentVersion) {
+        this.buildNumber = buildNumber;
+        this.timestamp = timestamp;
+        this.previousVersion = previousVersion;
+        this.currentVersion = currentVersion;
+    }
+
+    public int getBuildNumber() {
+        return this.buildNumber;
+    }
+
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    public Version getPreviousVersion() {
+        return this.previousVersion;
+    }
+
+    public Version getCurrentVersion() {
+        return this.currentVersion;
+    }
+    
+}
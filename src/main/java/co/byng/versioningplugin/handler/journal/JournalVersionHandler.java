@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.journal;
+
+import co.byng.versioningplugin.handler.LockedVersionHandler;
+import co.byng.versioningplugin.handler.VersionLock;
+import co.byng.versioningplugin.handler.file.CrossProcessFileLocker;
+import co.byng.versioningplugin.versioning.VersionFactory;
+import com.github.zafarkhaja.semver.Version;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Stores a version as the latest entry of a {@link VersionJournal}, keeping
+ * the history of changes which led to it.
+ * 
+ * When the journal is empty, the version is imported from the converter's
+ * property file if there is one, or else starts from the default version.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class JournalVersionHandler extends LockedVersionHandler {
+    
+    /**
+     * 
+     */
+    protected VersionJournal journal;
+    
+    /**
+     * Locks the journal against other processes as well, if set
+     */
+    protected CrossProcessFileLocker processLocker;
+    
+    
+    
+    /**
+     * 
+     * @param journal
+     * @param versionFactory 
+     */
+    public JournalVersionHandler(VersionJournal journal, VersionFactory versionFactory) {
+        super(versionFactory);
+        
+        this.journal = journal;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public VersionJournal getJournal() {
+        return this.journal;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public CrossProcessFileLocker getProcessLocker() {
+        return this.processLocker;
+    }
+
+    /**
+     * 
+     * @param processLocker locker for other processes, or null to only lock
+     *  within this JVM
+     * @return 
+     */
+    public JournalVersionHandler setProcessLocker(CrossProcessFileLocker processLocker) {
+        this.processLocker = processLocker;
+        
+        return this;
+    }
+
+    @Override
+    public VersionLock lockVersion(PrintStream logger) throws IOException, InterruptedException {
+        VersionLock lock = this.lockRegistry.acquire(this.journal.getJournalFile());
+        
+        if (this.processLocker != null) {
+            return this.processLocker.acquire(this.journal.getJournalFile(), lock, logger);
+        }
+        
+        return lock;
+    }
+    
+    @Override
+    protected Version readStoredVersion() throws IOException {
+        JournalEntry entry = this.journal.getLastEntry();
+        
+        return (entry != null ? entry.getCurrentVersion() : null);
+    }
+
+    /**
+     * Appends an entry recording the change
+     * 
+     * @param previousVersion
+     * @param version
+     * @param buildNumber
+     * @throws IOException 
+     */
+    @Override
+    protected void writeVersion(Version previousVersion, Version version, int buildNumber) throws IOException {
+        this.journal.append(
+            new JournalEntry(buildNumber, System.currentTimeMillis(), previousVersion, version)
+        );
+    }
+
+    @Override
+    protected String getStoreDescription() {
+        return "version journal " + this.journal.getJournalFile().getName();
+    }
+    
+}
@@ -0,0 +1,909 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.journal;
+
+import co.byng.versioningplugin.versioning.FastVersionFactory;
+import com.github.zafarkhaja.semver.ParseException;
+import com.github.zafarkhaja.semver.Version;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of version changes, with a snapshot of the latest
+ * change so that the current version is recovered without replaying the
+ * whole log.
+ * 
+ * The log is a 16 byte header followed by records, each of which is a varint
+ * length, a payload and a CRC32 of the payload.  A payload holds the build
+ * number, timestamp and previous and new versions, each encoded as a
+ * zigzag varint difference from the record before it, so a typical record
+ * takes around a dozen bytes.  Recovery stops at the first record failing
+ * its checksum, which is then overwritten by the next append.
+ * 
+ * Every {@link #getSnapshotInterval()} records, the latest change and the
+ * log position it was made at are written to a snapshot, so that recovery
+ * only decodes the records after it.  Once the log holds more than
+ * {@link #getMaxRecords()} records it is compacted, keeping only the latest
+ * {@link #getRetainedRecords()}.
+ * 
+ * Instances cache the recovered state between calls, and are not thread
+ * safe; writers must hold the journal's lock.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class VersionJournal {
+    
+    public static final String JOURNAL_EXTENSION = ".journal";
+    public static final String SNAPSHOT_EXTENSION = ".snapshot";
+    
+    /**
+     * "SVJL" and "SVSN"
+     */
+    public static final int JOURNAL_MAGIC = 0x53564A4C;
+    public static final int SNAPSHOT_MAGIC = 0x5356534E;
+    
+    public static final short FORMAT_VERSION = 1;
+    
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 64;
+    public static final int DEFAULT_MAX_RECORDS = 1024;
+    public static final int DEFAULT_RETAINED_RECORDS = 256;
+    
+    protected static final int HEADER_SIZE = 16;
+    
+    protected static final String PROPERTY_FILE_EXTENSION = ".properties";
+    
+    /**
+     * Flags marking which identifiers of a version differ from the version
+     * it is encoded against
+     */
+    protected static final int PRE_RELEASE_CHANGED = 1;
+    protected static final int BUILD_METADATA_CHANGED = 2;
+    
+    protected static final FastVersionFactory VERSION_FACTORY = new FastVersionFactory();
+    
+    /**
+     * The state the first record of a log is encoded against
+     */
+    protected static final JournalEntry ORIGIN = new JournalEntry(0, 0, null, Version.forIntegers(0, 0, 0));
+    
+    /**
+     * 
+     */
+    protected final File journalFile;
+    
+    /**
+     * 
+     */
+    protected final File snapshotFile;
+    
+    /**
+     * Whether each append is forced to disk before it returns
+     */
+    protected boolean forceWrites = true;
+    
+    protected int snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+    protected int maxRecords = DEFAULT_MAX_RECORDS;
+    protected int retainedRecords = DEFAULT_RETAINED_RECORDS;
+    
+    /**
+     * State recovered from the files, valid while the log's length matches
+     * the end of its last valid record and the log has been neither replaced
+     * nor modified since
+     */
+    protected boolean recovered = false;
+    protected long generation;
+    protected long end;
+    protected int recordCount;
+    protected int recordsSinceSnapshot;
+    protected JournalEntry lastEntry;
+    protected Object fileKey;
+    protected FileTime lastModified;
+    
+    
+    
+    /**
+     * 
+     * @param journalFile
+     * @param snapshotFile 
+     */
+    public VersionJournal(File journalFile, File snapshotFile) {
+        this.journalFile = journalFile;
+        this.snapshotFile = snapshotFile;
+    }
+    
+    /**
+     * Creates a journal kept alongside the given property file, named after
+     * it with {@link #JOURNAL_EXTENSION} and {@link #SNAPSHOT_EXTENSION}
+     * extensions
+     * 
+     * @param propertyFilePath
+     * @return 
+     */
+    public static VersionJournal forPropertyFile(File propertyFilePath) {
+        String name = propertyFilePath.getName();
+        
+        if (name.endsWith(PROPERTY_FILE_EXTENSION)) {
+            name = name.substring(0, name.length() - PROPERTY_FILE_EXTENSION.length());
+        }
+        
+        File directory = propertyFilePath.getParentFile();
+        
+        return new VersionJournal(
+            new File(directory, name + JOURNAL_EXTENSION),
+            new File(directory, name + SNAPSHOT_EXTENSION)
+        );
+    }
+
+    public File getJournalFile() {
+        return this.journalFile;
+    }
+
+    public File getSnapshotFile() {
+        return this.snapshotFile;
+    }
+
+    public boolean getForceWrites() {
+        return this.forceWrites;
+    }
+
+    public VersionJournal setForceWrites(boolean forceWrites) {
+        this.forceWrites = forceWrites;
+        
+        return this;
+    }
+
+    public int getSnapshotInterval() {
+        return this.snapshotInterval;
+    }
+
+    public VersionJournal setSnapshotInterval(int snapshotInterval) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be at least 1");
+        }
+        
+        this.snapshotInterval = snapshotInterval;
+        
+        return this;
+    }
+
+    public int getMaxRecords() {
+        return this.maxRecords;
+    }
+
+    public int getRetainedRecords() {
+        return this.retainedRecords;
+    }
+
+    /**
+     * 
+     * @param maxRecords number of records the log may hold before it is
+     *  compacted
+     * @param retainedRecords number of records kept by compaction
+     * @return 
+     */
+    public VersionJournal setCompaction(int maxRecords, int retainedRecords) {
+        if (retainedRecords < 1 || maxRecords < retainedRecords) {
+            throw new IllegalArgumentException("Compaction must retain at least 1 and at most the maximum number of records");
+        }
+        
+        this.maxRecords = maxRecords;
+        this.retainedRecords = retainedRecords;
+        
+        return this;
+    }
+    
+    /**
+     * 
+     * @return the latest change, or null if the journal is empty
+     * @throws IOException 
+     */
+    public JournalEntry getLastEntry() throws IOException {
+        this.recover();
+        
+        return this.lastEntry;
+    }
+    
+    /**
+     * 
+     * @return the number of records in the log
+     * @throws IOException 
+     */
+    public int getRecordCount() throws IOException {
+        this.recover();
+        
+        return this.recordCount;
+    }
+    
+    /**
+     * Decodes every record in the log
+     * 
+     * @return the retained history, oldest first
+     * @throws IOException 
+     */
+    public List<JournalEntry> readEntries() throws IOException {
+        this.recover();
+        
+        List<JournalEntry> entries = new ArrayList<>(this.recordCount);
+        
+        if (this.end <= HEADER_SIZE) {
+            return entries;
+        }
+        
+        try (FileChannel channel = FileChannel.open(this.journalFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer records = this.read(channel, HEADER_SIZE, this.end - HEADER_SIZE);
+            JournalEntry reference = ORIGIN;
+            
+            while (records.hasRemaining()) {
+                reference = this.decodeRecord(records, reference);
+                
+                if (reference == null) {
+                    break;
+                }
+                
+                entries.add(reference);
+            }
+        }
+        
+        return entries;
+    }
+    
+    /**
+     * Appends a change to the log, snapshotting or compacting it afterwards
+     * when due
+     * 
+     * @param entry
+     * @throws IOException 
+     */
+    public void append(JournalEntry entry) throws IOException {
+        this.recover();
+        
+        ByteBuffer record = this.encodeRecord(entry, (this.lastEntry != null ? this.lastEntry : ORIGIN));
+        
+        if (this.end < HEADER_SIZE) {
+            this.createJournal(System.currentTimeMillis());
+        }
+        
+        try (FileChannel channel = FileChannel.open(this.journalFile.toPath(), StandardOpenOption.WRITE)) {
+            if (channel.size() > this.end) {
+                // Drop a torn record left by a crash
+                channel.truncate(this.end);
+            }
+            
+            this.writeFully(channel, record, this.end);
+            
+            if (this.forceWrites) {
+                channel.force(false);
+            }
+        }
+        
+        this.end += record.limit();
+        this.recordCount++;
+        this.recordsSinceSnapshot++;
+        this.lastEntry = entry;
+        this.rememberAttributes();
+        
+        if (this.recordCount > this.maxRecords) {
+            this.compact();
+        } else if (this.recordsSinceSnapshot >= this.snapshotInterval) {
+            this.writeSnapshot();
+        }
+    }
+    
+    /**
+     * Rewrites the log with only the latest records, under a new generation,
+     * and snapshots its end
+     * 
+     * @throws IOException 
+     */
+    public void compact() throws IOException {
+        List<JournalEntry> entries = this.readEntries();
+        
+        if (entries.isEmpty()) {
+            return;
+        }
+        
+        List<JournalEntry> retained = entries.subList(
+            Math.max(0, entries.size() - this.retainedRecords),
+            entries.size()
+        );
+        
+        long newGeneration = this.generation + 1;
+        File temporaryFile = File.createTempFile(
+            "." + this.journalFile.getName() + ".",
+            ".tmp",
+            this.journalFile.getAbsoluteFile().getParentFile()
+        );
+        
+        long newEnd = HEADER_SIZE;
+        
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.WRITE)) {
+                this.writeFully(channel, this.encodeHeader(newGeneration), 0);
+                
+                JournalEntry reference = ORIGIN;
+                
+                for (JournalEntry entry : retained) {
+                    ByteBuffer record = this.encodeRecord(entry, reference);
+                    this.writeFully(channel, record, newEnd);
+                    newEnd += record.limit();
+                    reference = entry;
+                }
+                
+                channel.force(false);
+            }
+            
+            this.replaceFile(temporaryFile, this.journalFile);
+        } finally {
+            temporaryFile.delete();
+        }
+        
+        this.generation = newGeneration;
+        this.end = newEnd;
+        this.recordCount = retained.size();
+        this.rememberAttributes();
+        
+        this.writeSnapshot();
+    }
+    
+    /**
+     * Loads the state from the snapshot and the records after it, unless the
+     * cached state still matches the log.  A log holding no more than a torn
+     * header, as left by a crash while it was being created, is treated as
+     * missing and created afresh by the next append.
+     * 
+     * @throws IOException if the log is not a version journal
+     */
+    protected void recover() throws IOException {
+        if (!this.journalFile.exists()) {
+            this.resetState();
+            
+            return;
+        }
+        
+        BasicFileAttributes attributes = Files.readAttributes(this.journalFile.toPath(), BasicFileAttributes.class);
+        
+        if (this.recovered
+            && attributes.size() == this.end
+            && Objects.equals(attributes.fileKey(), this.fileKey)
+            && Objects.equals(attributes.lastModifiedTime(), this.lastModified)) {
+            return;
+        }
+        
+        try (FileChannel channel = FileChannel.open(this.journalFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = this.read(channel, 0, Math.min(size, HEADER_SIZE));
+            
+            if (header.limit() < HEADER_SIZE && this.isTornHeader(header)) {
+                this.resetState();
+                
+                return;
+            }
+            
+            if (header.limit() < HEADER_SIZE
+                || header.getInt(0) != JOURNAL_MAGIC
+                || header.getShort(4) != FORMAT_VERSION) {
+                throw new IOException("File " + this.journalFile.getPath() + " is not a version journal");
+            }
+            
+            this.generation = header.getLong(8);
+            
+            long start = HEADER_SIZE;
+            JournalEntry reference = ORIGIN;
+            int count = 0;
+            
+            Snapshot snapshot = this.readSnapshot();
+            
+            if (snapshot != null && snapshot.generation == this.generation && snapshot.offset <= size) {
+                start = snapshot.offset;
+                reference = snapshot.entry;
+                count = snapshot.recordCount;
+            }
+            
+            ByteBuffer records = this.read(channel, start, size - start);
+            int tailCount = 0;
+            
+            while (records.hasRemaining()) {
+                int recordStart = records.position();
+                JournalEntry entry = this.decodeRecord(records, reference);
+                
+                if (entry == null) {
+                    records.position(recordStart);
+                    break;
+                }
+                
+                reference = entry;
+                tailCount++;
+            }
+            
+            this.end = start + records.position();
+            this.recordCount = count + tailCount;
+            this.recordsSinceSnapshot = tailCount;
+            this.lastEntry = (reference != ORIGIN ? reference : null);
+            this.fileKey = attributes.fileKey();
+            this.lastModified = attributes.lastModifiedTime();
+            this.recovered = true;
+        }
+    }
+    
+    /**
+     * Sets the state to that of a missing log
+     */
+    protected void resetState() {
+        this.generation = 0;
+        this.end = 0;
+        this.recordCount = 0;
+        this.recordsSinceSnapshot = 0;
+        this.lastEntry = null;
+        this.fileKey = null;
+        this.lastModified = null;
+        this.recovered = true;
+    }
+    
+    /**
+     * Records the log's file key and last-modified time after this instance
+     * has written it, so that a change made by another process is noticed
+     * 
+     * @throws IOException 
+     */
+    protected void rememberAttributes() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(this.journalFile.toPath(), BasicFileAttributes.class);
+        
+        this.fileKey = attributes.fileKey();
+        this.lastModified = attributes.lastModifiedTime();
+    }
+    
+    /**
+     * 
+     * @param header the bytes of a log shorter than a header
+     * @return whether the bytes are all zeros or the start of a header, as a
+     *  crash while the log was being created may leave
+     */
+    protected boolean isTornHeader(ByteBuffer header) {
+        ByteBuffer expected = this.encodeHeader(0);
+        boolean blank = true;
+        boolean prefix = true;
+        
+        for (int i = 0; i < header.limit(); i++) {
+            blank &= (header.get(i) == 0);
+            // The generation, from offset 8, may hold anything
+            prefix &= (i >= 8 || header.get(i) == expected.get(i));
+        }
+        
+        return blank || prefix;
+    }
+    
+    /**
+     * 
+     * @return the snapshot, or null if it is missing or damaged
+     */
+    protected Snapshot readSnapshot() {
+        if (!this.snapshotFile.exists()) {
+            return null;
+        }
+        
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.snapshotFile.toPath()));
+            
+            if (buffer.limit() < 4 || buffer.getInt(buffer.limit() - 4) != this.checksum(buffer, 0, buffer.limit() - 4)) {
+                return null;
+            }
+            
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getShort() != FORMAT_VERSION) {
+                return null;
+            }
+            
+            Snapshot snapshot = new Snapshot();
+            snapshot.generation = buffer.getLong();
+            snapshot.offset = buffer.getLong();
+            snapshot.recordCount = buffer.getInt();
+            
+            int buildNumber = buffer.getInt();
+            long timestamp = buffer.getLong();
+            
+            int versionLength = buffer.getShort();
+            
+            snapshot.entry = new JournalEntry(
+                buildNumber,
+                timestamp,
+                null,
+                VERSION_FACTORY.buildVersion(buffer, buffer.position(), versionLength)
+            );
+            
+            return snapshot;
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Atomically replaces the snapshot with the current state
+     * 
+     * @throws IOException 
+     */
+    protected void writeSnapshot() throws IOException {
+        byte[] version = this.lastEntry.getCurrentVersion().toString().getBytes(StandardCharsets.UTF_8);
+        
+        ByteBuffer buffer = ByteBuffer.allocate(44 + version.length);
+        buffer.putInt(SNAPSHOT_MAGIC);
+        buffer.putShort(FORMAT_VERSION);
+        buffer.putLong(this.generation);
+        buffer.putLong(this.end);
+        buffer.putInt(this.recordCount);
+        buffer.putInt(this.lastEntry.getBuildNumber());
+        buffer.putLong(this.lastEntry.getTimestamp());
+        buffer.putShort((short) version.length);
+        buffer.put(version);
+        buffer.putInt(this.checksum(buffer, 0, buffer.position()));
+        buffer.flip();
+        
+        File temporaryFile = File.createTempFile(
+            "." + this.snapshotFile.getName() + ".",
+            ".tmp",
+            this.snapshotFile.getAbsoluteFile().getParentFile()
+        );
+        
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.WRITE)) {
+                this.writeFully(channel, buffer, 0);
+                
+                if (this.forceWrites) {
+                    channel.force(false);
+                }
+            }
+            
+            this.replaceFile(temporaryFile, this.snapshotFile);
+        } finally {
+            temporaryFile.delete();
+        }
+        
+        this.recordsSinceSnapshot = 0;
+    }
+    
+    /**
+     * Creates the log, or replaces one holding no more than a torn header
+     * 
+     * @param generation
+     * @throws IOException 
+     */
+    protected void createJournal(long generation) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+            this.journalFile.toPath(),
+            StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            this.writeFully(channel, this.encodeHeader(generation), 0);
+            
+            if (this.forceWrites) {
+                channel.force(false);
+            }
+        }
+        
+        this.generation = generation;
+        this.end = HEADER_SIZE;
+        this.recordCount = 0;
+        this.recordsSinceSnapshot = 0;
+    }
+    
+    /**
+     * 
+     * @param generation
+     * @return 
+     */
+    protected ByteBuffer encodeHeader(long generation) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(0, JOURNAL_MAGIC);
+        header.putShort(4, FORMAT_VERSION);
+        header.putLong(8, generation);
+        
+        return header;
+    }
+    
+    /**
+     * 
+     * @param entry
+     * @param reference the entry recorded before this one
+     * @return the framed record
+     */
+    protected ByteBuffer encodeRecord(JournalEntry entry, JournalEntry reference) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(32);
+        
+        this.writeVarLong(payload, this.zigzag(entry.getBuildNumber() - (long) reference.getBuildNumber()));
+        this.writeVarLong(payload, this.zigzag(entry.getTimestamp() - reference.getTimestamp()));
+        this.encodeVersion(payload, entry.getPreviousVersion(), reference.getCurrentVersion());
+        this.encodeVersion(payload, entry.getCurrentVersion(), entry.getPreviousVersion());
+        
+        ByteArrayOutputStream record = new ByteArrayOutputStream(payload.size() + 8);
+        this.writeVarLong(record, payload.size());
+        record.write(payload.toByteArray(), 0, payload.size());
+        
+        ByteBuffer buffer = ByteBuffer.allocate(record.size() + 4);
+        buffer.put(record.toByteArray());
+        buffer.putInt(this.checksum(ByteBuffer.wrap(payload.toByteArray()), 0, payload.size()));
+        buffer.flip();
+        
+        return buffer;
+    }
+    
+    /**
+     * 
+     * @param records
+     * @param reference the entry recorded before this one
+     * @return the decoded entry, or null if the record is torn or damaged
+     */
+    protected JournalEntry decodeRecord(ByteBuffer records, JournalEntry reference) {
+        try {
+            long length = this.readVarLong(records);
+            
+            if (length < 0 || length > records.remaining() - 4) {
+                return null;
+            }
+            
+            int payloadStart = records.position();
+            int payloadEnd = payloadStart + (int) length;
+            
+            if (records.getInt(payloadEnd) != this.checksum(records, payloadStart, (int) length)) {
+                return null;
+            }
+            
+            int buildNumber = (int) (reference.getBuildNumber() + this.unzigzag(this.readVarLong(records)));
+            long timestamp = reference.getTimestamp() + this.unzigzag(this.readVarLong(records));
+            Version previousVersion = this.decodeVersion(records, reference.getCurrentVersion());
+            Version currentVersion = this.decodeVersion(records, previousVersion);
+            
+            if (records.position() != payloadEnd) {
+                return null;
+            }
+            
+            records.position(payloadEnd + 4);
+            
+            return new JournalEntry(buildNumber, timestamp, previousVersion, currentVersion);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | ParseException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Writes the differences between a version's components and the
+     * reference's, followed by whichever identifiers differ
+     * 
+     * @param output
+     * @param version
+     * @param reference 
+     */
+    protected void encodeVersion(ByteArrayOutputStream output, Version version, Version reference) {
+        this.writeVarLong(output, this.zigzag(version.getMajorVersion() - (long) reference.getMajorVersion()));
+        this.writeVarLong(output, this.zigzag(version.getMinorVersion() - (long) reference.getMinorVersion()));
+        this.writeVarLong(output, this.zigzag(version.getPatchVersion() - (long) reference.getPatchVersion()));
+        
+        boolean preReleaseChanged = !version.getPreReleaseVersion().equals(reference.getPreReleaseVersion());
+        boolean buildMetadataChanged = !version.getBuildMetadata().equals(reference.getBuildMetadata());
+        
+        output.write((preReleaseChanged ? PRE_RELEASE_CHANGED : 0) | (buildMetadataChanged ? BUILD_METADATA_CHANGED : 0));
+        
+        if (preReleaseChanged) {
+            this.writeString(output, version.getPreReleaseVersion());
+        }
+        
+        if (buildMetadataChanged) {
+            this.writeString(output, version.getBuildMetadata());
+        }
+    }
+    
+    /**
+     * 
+     * @param input
+     * @param reference
+     * @return 
+     */
+    protected Version decodeVersion(ByteBuffer input, Version reference) {
+        Version version = Version.forIntegers(
+            (int) (reference.getMajorVersion() + this.unzigzag(this.readVarLong(input))),
+            (int) (reference.getMinorVersion() + this.unzigzag(this.readVarLong(input))),
+            (int) (reference.getPatchVersion() + this.unzigzag(this.readVarLong(input)))
+        );
+        
+        int flags = input.get();
+        
+        String preRelease = ((flags & PRE_RELEASE_CHANGED) != 0 ? this.readString(input) : reference.getPreReleaseVersion());
+        String buildMetadata = ((flags & BUILD_METADATA_CHANGED) != 0 ? this.readString(input) : reference.getBuildMetadata());
+        
+        if (!preRelease.isEmpty()) {
+            version = version.setPreReleaseVersion(preRelease);
+        }
+        
+        if (!buildMetadata.isEmpty()) {
+            version = version.setBuildMetadata(buildMetadata);
+        }
+        
+        return version;
+    }
+    
+    protected void writeString(ByteArrayOutputStream output, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        
+        this.writeVarLong(output, bytes.length);
+        output.write(bytes, 0, bytes.length);
+    }
+    
+    protected String readString(ByteBuffer input) {
+        long length = this.readVarLong(input);
+        
+        if (length < 0 || length > input.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        
+        byte[] bytes = new byte[(int) length];
+        input.get(bytes);
+        
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Writes an unsigned LEB128 varint
+     * 
+     * @param output
+     * @param value 
+     */
+    protected void writeVarLong(ByteArrayOutputStream output, long value) {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        
+        output.write((int) value);
+    }
+    
+    /**
+     * 
+     * @param input
+     * @return
+     * @throws BufferUnderflowException if the varint is truncated
+     */
+    protected long readVarLong(ByteBuffer input) {
+        long value = 0;
+        
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = input.get();
+            value |= (long) (b & 0x7F) << shift;
+            
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        
+        throw new IllegalArgumentException("Malformed varint");
+    }
+    
+    protected long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    protected long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    /**
+     * 
+     * @param buffer
+     * @param offset
+     * @param length
+     * @return the CRC32 of the given range of the buffer
+     */
+    protected int checksum(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.clear();
+        source.position(offset);
+        source.get(bytes);
+        
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        
+        return (int) crc.getValue();
+    }
+    
+    /**
+     * 
+     * @param channel
+     * @param position
+     * @param length
+     * @return the given range of the channel, ready for reading
+     * @throws IOException 
+     */
+    protected ByteBuffer read(FileChannel channel, long position, long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of version journal " + this.journalFile.getPath());
+            }
+        }
+        
+        buffer.flip();
+        
+        return buffer;
+    }
+    
+    /**
+     * 
+     * @param channel
+     * @param buffer
+     * @param position
+     * @throws IOException 
+     */
+    protected void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position() - start);
+        }
+    }
+    
+    /**
+     * 
+     * @param source
+     * @param target
+     * @throws IOException 
+     */
+    protected void replaceFile(File source, File target) throws IOException {
+        try {
+            Files.move(
+                source.toPath(),
+                target.toPath(),
+                StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING
+            );
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * State saved by a snapshot
+     */
+    protected static class Snapshot {
+        protected long generation;
+        protected long offset;
+        protected int recordCount;
+        protected JournalEntry entry;
+    }
+    
+}
@@ -0,0 +1,226 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.mapped;
+
+import com.github.zafarkhaja.semver.Version;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A version held in a small fixed-layout file which is mapped into memory, so
+ * that reading or storing it takes a few positional reads and writes rather
+ * than a parse and rewrite of a text file.
+ * 
+ * After a 16 byte header the file holds a {@link VersionRecordPair}, so a
+ * write torn by a crash leaves the previous version readable.
+ * 
+ * Instances are not thread safe; writers must hold the file's lock.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class MappedVersionFile {
+    
+    /**
+     * "SVER"
+     */
+    public static final int MAGIC = 0x53564552;
+    
+    public static final short FORMAT_VERSION = 1;
+    
+    protected static final int HEADER_SIZE = 16;
+    
+    public static final int FILE_SIZE = HEADER_SIZE + VersionRecordPair.SIZE;
+    
+    /**
+     * Offsets of the header fields
+     */
+    protected static final int MAGIC_OFFSET = 0;
+    protected static final int FORMAT_VERSION_OFFSET = 4;
+    
+    /**
+     * 
+     */
+    protected final File file;
+    
+    /**
+     * 
+     */
+    protected final MappedByteBuffer buffer;
+    
+    /**
+     * 
+     */
+    protected final VersionRecordPair records;
+    
+    /**
+     * Whether each write is forced to disk before it returns
+     */
+    protected final boolean forceWrites;
+    
+    /**
+     * 
+     */
+    protected volatile boolean closed = false;
+    
+    
+    
+    /**
+     * 
+     * @param file
+     * @param buffer
+     * @param forceWrites 
+     */
+    protected MappedVersionFile(File file, MappedByteBuffer buffer, boolean forceWrites) {
+        this.file = file;
+        this.buffer = buffer;
+        this.records = new VersionRecordPair(buffer, HEADER_SIZE, "version file " + file.getPath());
+        this.forceWrites = forceWrites;
+    }
+    
+    /**
+     * Maps the given version file, creating it if it does not exist.  A file
+     * whose header is still all zeros, as left by a crash or a full disk
+     * between the file being grown and its header being written, is taken
+     * to be new.
+     * 
+     * @param file
+     * @param forceWrites
+     * @return
+     * @throws IOException if the file exists but is not a version file
+     */
+    public static MappedVersionFile open(File file, boolean forceWrites) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE
+        )) {
+            long size = channel.size();
+            
+            if (size != 0 && size != FILE_SIZE) {
+                throw new IOException("File " + file.getPath() + " is not a version file");
+            }
+            
+            // The mapping remains valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            
+            if (size == 0 || isBlankHeader(buffer)) {
+                buffer.putInt(MAGIC_OFFSET, MAGIC);
+                buffer.putShort(FORMAT_VERSION_OFFSET, FORMAT_VERSION);
+                
+                if (forceWrites) {
+                    buffer.force();
+                }
+            } else if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException("File " + file.getPath() + " is not a version file");
+            } else if (buffer.getShort(FORMAT_VERSION_OFFSET) != FORMAT_VERSION) {
+                throw new IOException(
+                    "Version file " + file.getPath() + " has unsupported format " + buffer.getShort(FORMAT_VERSION_OFFSET)
+                );
+            }
+            
+            return new MappedVersionFile(file, buffer, forceWrites);
+        }
+    }
+    
+    /**
+     * 
+     * @param buffer
+     * @return whether no byte of the header has been written
+     */
+    protected static boolean isBlankHeader(MappedByteBuffer buffer) {
+        for (int i = 0; i < HEADER_SIZE; i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public File getFile() {
+        return this.file;
+    }
+    
+    /**
+     * 
+     * @return the sequence number of the current version, or 0 if no version
+     *  has been stored
+     * @throws IOException 
+     */
+    public long getSequence() throws IOException {
+        return this.records.getSequence();
+    }
+    
+    /**
+     * 
+     * @return the current version, or null if no version has been stored
+     * @throws IOException if the stored version is corrupt
+     */
+    public Version read() throws IOException {
+        return this.records.read();
+    }
+    
+    /**
+     * 
+     * @param version
+     * @throws IOException 
+     */
+    public void write(Version version) throws IOException {
+        if (this.closed) {
+            throw new IOException("Version file " + this.file.getPath() + " has been closed");
+        }
+        
+        this.records.write(version);
+        
+        if (this.forceWrites) {
+            this.buffer.force();
+        }
+    }
+    
+    /**
+     * Forces any unforced writes to disk, after which writes fail.  Reads
+     * still see the last version written, and the mapping itself is released
+     * once the instance is no longer referenced.
+     */
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        
+        this.closed = true;
+        
+        if (!this.forceWrites) {
+            this.buffer.force();
+        }
+    }
+    
+}
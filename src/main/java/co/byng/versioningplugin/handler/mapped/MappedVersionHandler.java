@@ -0,0 +1,254 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.mapped;
+
+import co.byng.versioningplugin.handler.LockedVersionHandler;
+import co.byng.versioningplugin.handler.VersionLock;
+import co.byng.versioningplugin.handler.file.CrossProcessFileLocker;
+import co.byng.versioningplugin.versioning.VersionFactory;
+import com.github.zafarkhaja.semver.Version;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Stores a version in a {@link MappedVersionFile}.  The file is mapped once
+ * and kept mapped between builds, so an update is a couple of positional
+ * reads and writes under the file's lock.
+ * 
+ * When the version file does not yet hold a version, the version is imported
+ * from the converter's property file if there is one, or else starts from
+ * the default version.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class MappedVersionHandler extends LockedVersionHandler {
+    
+    public static final String FILE_EXTENSION = ".semver";
+    
+    protected static final String PROPERTY_FILE_EXTENSION = ".properties";
+    
+    /**
+     * 
+     */
+    protected File versionFilePath;
+    
+    /**
+     * Locks the file against other processes as well, if set
+     */
+    protected CrossProcessFileLocker processLocker;
+    
+    /**
+     * 
+     */
+    protected boolean forceWrites = true;
+    
+    /**
+     * 
+     */
+    protected MappedVersionFile mappedFile;
+    
+    /**
+     * Guards {@link #mappedFile}, which is mapped on first use by whichever
+     * of the build threads sharing the handler gets there first
+     */
+    protected final Object mappingLock = new Object();
+    
+    
+    
+    /**
+     * 
+     * @param versionFactory
+     * @param versionFilePath 
+     */
+    public MappedVersionHandler(VersionFactory versionFactory, File versionFilePath) {
+        super(versionFactory);
+        
+        this.versionFilePath = versionFilePath;
+    }
+    
+    /**
+     * 
+     * @param propertyFilePath
+     * @return the version file kept alongside the given property file, which
+     *  is the property file's name with a {@link #FILE_EXTENSION} extension
+     */
+    public static File getVersionFileFor(File propertyFilePath) {
+        String name = propertyFilePath.getName();
+        
+        if (name.endsWith(PROPERTY_FILE_EXTENSION)) {
+            name = name.substring(0, name.length() - PROPERTY_FILE_EXTENSION.length());
+        }
+        
+        return new File(propertyFilePath.getParentFile(), name + FILE_EXTENSION);
+    }
+
+    /**
+     * 
+     * @param versionFactory
+     * @return 
+     */
+    public MappedVersionHandler setVersionFactory(VersionFactory versionFactory) {
+        this.versionFactory = versionFactory;
+        
+        return this;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public File getVersionFilePath() {
+        return this.versionFilePath;
+    }
+
+    /**
+     * 
+     * @param versionFilePath
+     * @return 
+     */
+    public MappedVersionHandler setVersionFilePath(File versionFilePath) {
+        this.versionFilePath = versionFilePath;
+        this.closeMappedFile();
+        
+        return this;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public CrossProcessFileLocker getProcessLocker() {
+        return this.processLocker;
+    }
+
+    /**
+     * 
+     * @param processLocker locker for other processes, or null to only lock
+     *  within this JVM
+     * @return 
+     */
+    public MappedVersionHandler setProcessLocker(CrossProcessFileLocker processLocker) {
+        this.processLocker = processLocker;
+        
+        return this;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public boolean getForceWrites() {
+        return this.forceWrites;
+    }
+
+    /**
+     * 
+     * @param forceWrites whether each write is forced to disk before the
+     *  build continues
+     * @return 
+     */
+    public MappedVersionHandler setForceWrites(boolean forceWrites) {
+        this.forceWrites = forceWrites;
+        this.closeMappedFile();
+        
+        return this;
+    }
+
+    @Override
+    public VersionLock lockVersion(PrintStream logger) throws IOException, InterruptedException {
+        if (this.versionFilePath == null) {
+            throw new IllegalStateException("Version file path is not set");
+        }
+        
+        VersionLock lock = this.lockRegistry.acquire(this.versionFilePath);
+        
+        if (this.processLocker != null) {
+            return this.processLocker.acquire(this.versionFilePath, lock, logger);
+        }
+        
+        return lock;
+    }
+
+    /**
+     * Maps the version file on first use, or again if it has been deleted
+     * since it was mapped, closing the previous mapping
+     * 
+     * @return
+     * @throws IOException 
+     */
+    protected MappedVersionFile getMappedFile() throws IOException {
+        if (this.versionFilePath == null) {
+            throw new IllegalStateException("Version file path is not set");
+        }
+        
+        synchronized (this.mappingLock) {
+            if (this.mappedFile == null || !this.versionFilePath.exists()) {
+                MappedVersionFile mappedFile = MappedVersionFile.open(this.versionFilePath, this.forceWrites);
+                
+                this.closeMappedFile();
+                this.mappedFile = mappedFile;
+            }
+            
+            return this.mappedFile;
+        }
+    }
+    
+    /**
+     * Closes the current mapping, if any, so that the next use maps the file
+     * afresh
+     */
+    protected void closeMappedFile() {
+        synchronized (this.mappingLock) {
+            if (this.mappedFile != null) {
+                this.mappedFile.close();
+                this.mappedFile = null;
+            }
+        }
+    }
+    
+    @Override
+    protected Version readStoredVersion() throws IOException {
+        if (this.versionFilePath == null) {
+            throw new IllegalStateException("Version file path is not set");
+        }
+        
+        if (!this.versionFilePath.exists()) {
+            return null;
+        }
+        
+        return this.getMappedFile().read();
+    }
+
+    @Override
+    protected void writeVersion(Version previousVersion, Version version, int buildNumber) throws IOException {
+        this.getMappedFile().write(version);
+    }
+
+    @Override
+    protected String getStoreDescription() {
+        return "version file " + this.versionFilePath.getName();
+    }
+    
+}
@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.mapped;
+
+import co.byng.versioningplugin.handler.file.PropertyFileIoHandler;
+import co.byng.versioningplugin.handler.file.PropertyFileVersionHandler;
+import co.byng.versioningplugin.versioning.VersionFactory;
+import com.github.zafarkhaja.semver.Version;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Carries the version in an existing property file over to a mapped version
+ * file, so that a job can switch storage backend without losing its version.
+ * The property file is left in place.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class PropertyFileVersionConverter {
+    
+    /**
+     * 
+     */
+    protected PropertyFileIoHandler fileHandler;
+    
+    /**
+     * 
+     */
+    protected VersionFactory versionFactory;
+    
+    /**
+     * 
+     */
+    protected File propertyFilePath;
+    
+    /**
+     * 
+     */
+    protected String propertyKey;
+    
+    
+    
+    /**
+     * 
+     * @param fileHandler
+     * @param versionFactory
+     * @param propertyFilePath
+     * @param propertyKey 
+     */
+    public PropertyFileVersionConverter(
+        PropertyFileIoHandler fileHandler,
+        VersionFactory versionFactory,
+        File propertyFilePath,
+        String propertyKey
+    ) {
+        this.fileHandler = fileHandler;
+        this.versionFactory = versionFactory;
+        this.propertyFilePath = propertyFilePath;
+        this.propertyKey = propertyKey;
+    }
+    
+    /**
+     * 
+     * @param fileHandler
+     * @param versionFactory
+     * @param propertyFilePath 
+     */
+    public PropertyFileVersionConverter(
+        PropertyFileIoHandler fileHandler,
+        VersionFactory versionFactory,
+        File propertyFilePath
+    ) {
+        this(fileHandler, versionFactory, propertyFilePath, PropertyFileVersionHandler.DEFAULT_PROPERTY_KEY);
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public File getPropertyFilePath() {
+        return this.propertyFilePath;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public String getPropertyKey() {
+        return this.propertyKey;
+    }
+    
+    /**
+     * 
+     * @return the version in the property file, or null if the file or the
+     *  version within it is missing
+     * @throws IOException 
+     */
+    public Version loadVersion() throws IOException {
+        if (!this.propertyFilePath.exists()) {
+            return null;
+        }
+        
+        String version = this.fileHandler.loadProperty(this.propertyFilePath, this.propertyKey);
+        
+        if (version == null) {
+            return null;
+        }
+        
+        return this.versionFactory.buildVersionFromString(version);
+    }
+    
+    /**
+     * Stores the property file's version in the given handler's file
+     * 
+     * @param target
+     * @return false if there was no version to convert
+     * @throws IOException 
+     */
+    public boolean convert(MappedVersionHandler target) throws IOException {
+        Version version = this.loadVersion();
+        
+        if (version == null) {
+            return false;
+        }
+        
+        target.saveVersion(version);
+        
+        return true;
+    }
+    
+}
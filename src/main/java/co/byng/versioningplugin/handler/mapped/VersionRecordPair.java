@@ -0,0 +1,293 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.mapped;
+
+import com.github.zafarkhaja.semver.Version;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * A version held as a pair of fixed-size records in a buffer.  Each record
+ * holds the version's numeric components, its pre-release and build
+ * identifiers, a sequence number and a CRC32 of the rest of the record.  A
+ * new version is written to the record not holding the current one under the
+ * next sequence number, so a write torn by a crash fails its checksum and
+ * readers fall back to the previous version in the other record.
+ * 
+ * Instances are not thread safe; writers must hold the version's lock.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class VersionRecordPair {
+    
+    public static final int RECORD_SIZE = 256;
+    public static final int RECORD_COUNT = 2;
+    
+    public static final int SIZE = RECORD_COUNT * RECORD_SIZE;
+    
+    /**
+     * Offsets of the fields within a record
+     */
+    protected static final int SEQUENCE_OFFSET = 0;
+    protected static final int CHECKSUM_OFFSET = 8;
+    protected static final int MAJOR_OFFSET = 12;
+    protected static final int MINOR_OFFSET = 16;
+    protected static final int PATCH_OFFSET = 20;
+    protected static final int PRE_RELEASE_LENGTH_OFFSET = 24;
+    protected static final int BUILD_METADATA_LENGTH_OFFSET = 26;
+    protected static final int IDENTIFIERS_OFFSET = 28;
+    
+    /**
+     * Combined length in bytes of the pre-release and build identifiers
+     */
+    public static final int MAX_IDENTIFIERS_LENGTH = RECORD_SIZE - IDENTIFIERS_OFFSET;
+    
+    /**
+     * 
+     */
+    protected final ByteBuffer buffer;
+    
+    /**
+     * 
+     */
+    protected final int offset;
+    
+    /**
+     * Names the version in error messages
+     */
+    protected final String description;
+    
+    /**
+     * Copy of a single record, which is checksummed from here as CRC32
+     * cannot read a buffer directly before Java 8
+     */
+    protected final byte[] record = new byte[RECORD_SIZE];
+    
+    
+    
+    /**
+     * 
+     * @param buffer
+     * @param offset position of the first record within the buffer
+     * @param description 
+     */
+    public VersionRecordPair(ByteBuffer buffer, int offset, String description) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.description = description;
+    }
+    
+    /**
+     * 
+     * @return the sequence number of the current version, or 0 if no version
+     *  has been stored
+     * @throws IOException 
+     */
+    public long getSequence() throws IOException {
+        int record = this.findCurrentRecord();
+        
+        return (record < 0 ? 0 : this.buffer.getLong(this.getRecordOffset(record) + SEQUENCE_OFFSET));
+    }
+    
+    /**
+     * 
+     * @return the current version, or null if no version has been stored
+     * @throws IOException if neither record is intact
+     */
+    public Version read() throws IOException {
+        int record = this.findCurrentRecord();
+        
+        if (record < 0) {
+            return null;
+        }
+        
+        int offset = this.getRecordOffset(record);
+        
+        Version version = Version.forIntegers(
+            this.buffer.getInt(offset + MAJOR_OFFSET),
+            this.buffer.getInt(offset + MINOR_OFFSET),
+            this.buffer.getInt(offset + PATCH_OFFSET)
+        );
+        
+        int preReleaseLength = this.buffer.getShort(offset + PRE_RELEASE_LENGTH_OFFSET);
+        int buildMetadataLength = this.buffer.getShort(offset + BUILD_METADATA_LENGTH_OFFSET);
+        
+        if (preReleaseLength > 0) {
+            version = version.setPreReleaseVersion(
+                new String(this.record, IDENTIFIERS_OFFSET, preReleaseLength, StandardCharsets.UTF_8)
+            );
+        }
+        
+        if (buildMetadataLength > 0) {
+            version = version.setBuildMetadata(
+                new String(this.record, IDENTIFIERS_OFFSET + preReleaseLength, buildMetadataLength, StandardCharsets.UTF_8)
+            );
+        }
+        
+        return version;
+    }
+    
+    /**
+     * Stores the given version under the next sequence number, in the record
+     * not holding the current version
+     * 
+     * @param version
+     * @return the position within the buffer of the record written
+     * @throws IOException 
+     */
+    public int write(Version version) throws IOException {
+        byte[] preRelease = version.getPreReleaseVersion().getBytes(StandardCharsets.UTF_8);
+        byte[] buildMetadata = version.getBuildMetadata().getBytes(StandardCharsets.UTF_8);
+        
+        if (preRelease.length + buildMetadata.length > MAX_IDENTIFIERS_LENGTH) {
+            throw new IOException("Version " + version + " is too long to store for " + this.description);
+        }
+        
+        long sequence = this.getSequence() + 1;
+        int offset = this.getRecordOffset((int) (sequence % RECORD_COUNT));
+        
+        ByteBuffer record = ByteBuffer.wrap(this.record);
+        record.putLong(SEQUENCE_OFFSET, sequence);
+        record.putInt(MAJOR_OFFSET, version.getMajorVersion());
+        record.putInt(MINOR_OFFSET, version.getMinorVersion());
+        record.putInt(PATCH_OFFSET, version.getPatchVersion());
+        record.putShort(PRE_RELEASE_LENGTH_OFFSET, (short) preRelease.length);
+        record.putShort(BUILD_METADATA_LENGTH_OFFSET, (short) buildMetadata.length);
+        
+        record.position(IDENTIFIERS_OFFSET);
+        record.put(preRelease);
+        record.put(buildMetadata);
+        
+        int length = record.position();
+        record.putInt(CHECKSUM_OFFSET, this.checksum(length));
+        
+        ByteBuffer target = this.buffer.duplicate();
+        target.position(offset);
+        target.put(this.record, 0, length);
+        
+        return offset;
+    }
+    
+    /**
+     * 
+     * @return the record holding the intact version with the highest
+     *  sequence number, or -1 if neither record has been written
+     * @throws IOException if only torn or corrupt records are found
+     */
+    protected int findCurrentRecord() throws IOException {
+        int currentRecord = -1;
+        long currentSequence = 0;
+        boolean corrupt = false;
+        
+        for (int record = 0; record < RECORD_COUNT; record++) {
+            long sequence = this.buffer.getLong(this.getRecordOffset(record) + SEQUENCE_OFFSET);
+            
+            if (sequence == 0) {
+                continue;
+            }
+            
+            if (!this.isIntact(record)) {
+                corrupt = true;
+            } else if (sequence > currentSequence) {
+                currentRecord = record;
+                currentSequence = sequence;
+            }
+        }
+        
+        if (currentRecord < 0 && corrupt) {
+            throw new IOException("Stored version for " + this.description + " is corrupt");
+        }
+        
+        if (currentRecord >= 0) {
+            // Leave the current record in the copy for read()
+            this.copyRecord(currentRecord);
+        }
+        
+        return currentRecord;
+    }
+    
+    /**
+     * 
+     * @param record
+     * @return whether the record matches its checksum
+     */
+    protected boolean isIntact(int record) {
+        int length = this.copyRecord(record);
+        
+        if (length < 0) {
+            return false;
+        }
+        
+        return ByteBuffer.wrap(this.record).getInt(CHECKSUM_OFFSET) == this.checksum(length);
+    }
+    
+    /**
+     * Copies a record into the record array
+     * 
+     * @param record
+     * @return the length of the record, or -1 if its identifier lengths are
+     *  out of range
+     */
+    protected int copyRecord(int record) {
+        ByteBuffer source = this.buffer.duplicate();
+        source.position(this.getRecordOffset(record));
+        source.get(this.record);
+        
+        ByteBuffer copy = ByteBuffer.wrap(this.record);
+        int preReleaseLength = copy.getShort(PRE_RELEASE_LENGTH_OFFSET);
+        int buildMetadataLength = copy.getShort(BUILD_METADATA_LENGTH_OFFSET);
+        
+        if (preReleaseLength < 0 || buildMetadataLength < 0
+            || preReleaseLength + buildMetadataLength > MAX_IDENTIFIERS_LENGTH) {
+            return -1;
+        }
+        
+        return IDENTIFIERS_OFFSET + preReleaseLength + buildMetadataLength;
+    }
+    
+    /**
+     * 
+     * @param length
+     * @return the checksum of the record array, skipping the checksum itself
+     */
+    protected int checksum(int length) {
+        CRC32 crc = new CRC32();
+        crc.update(this.record, SEQUENCE_OFFSET, CHECKSUM_OFFSET - SEQUENCE_OFFSET);
+        crc.update(this.record, MAJOR_OFFSET, length - MAJOR_OFFSET);
+        
+        return (int) crc.getValue();
+    }
+    
+    /**
+     * 
+     * @param record
+     * @return 
+     */
+    protected int getRecordOffset(int record) {
+        return this.offset + record * RECORD_SIZE;
+    }
+    
+}
@@ -0,0 +1,266 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.reservation;
+
+import co.byng.versioningplugin.handler.PatchIncrementUpdate;
+import co.byng.versioningplugin.handler.VersionChange;
+import co.byng.versioningplugin.handler.VersionRetrievable;
+import co.byng.versioningplugin.handler.VersionStore;
+import co.byng.versioningplugin.handler.VersionUpdate;
+import co.byng.versioningplugin.versioning.VersionNumberUpdater;
+import com.github.zafarkhaja.semver.Version;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Hands out patch numbers from blocks reserved in another store, in the
+ * manner of a hi/lo sequence: one write to the store reserves the next
+ * block of patch numbers, which the following builds take from memory.
+ * The store therefore holds the highest version reserved rather than the
+ * last version used, and numbers left in a block when Jenkins restarts, or
+ * when another kind of update is made, are skipped.
+ * 
+ * Only updates which say they are plain patch increments are served from
+ * the block; any other update is applied to the last version handed out and
+ * written through, giving up what is left of the block.  A block is also
+ * given up if the stored version no longer matches it, such as after the
+ * file was edited by hand.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class PatchReservingVersionStore implements VersionStore {
+    
+    /**
+     * 
+     */
+    protected final VersionStore store;
+    
+    /**
+     * 
+     */
+    protected final int blockSize;
+    
+    /**
+     * 
+     */
+    protected VersionNumberUpdater updater;
+    
+    /**
+     * Highest version reserved, as held by the store
+     */
+    protected Version reservedVersion;
+    
+    /**
+     * 
+     */
+    protected Version lastIssuedVersion;
+    
+    
+    
+    /**
+     * 
+     * @param store store to reserve blocks in
+     * @param blockSize patch numbers reserved by each write
+     * @param updater 
+     */
+    public PatchReservingVersionStore(VersionStore store, int blockSize, VersionNumberUpdater updater) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1");
+        }
+        
+        this.store = store;
+        this.blockSize = blockSize;
+        this.updater = updater;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public VersionStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public int getBlockSize() {
+        return this.blockSize;
+    }
+    
+    /**
+     * 
+     * @return patch numbers left in the current block
+     */
+    public synchronized int getRemainingPatchCount() {
+        if (this.reservedVersion == null) {
+            return 0;
+        }
+        
+        return this.reservedVersion.getPatchVersion() - this.lastIssuedVersion.getPatchVersion();
+    }
+
+    @Override
+    public synchronized VersionChange update(VersionUpdate update, PrintStream logger) throws IOException, InterruptedException {
+        if (!this.isPatchIncrement(update)) {
+            return this.releaseAndUpdate(update, logger);
+        }
+        
+        if (this.getRemainingPatchCount() > 0 && this.isReservationCurrent()) {
+            Version previousVersion = this.lastIssuedVersion;
+            Version currentVersion = update.apply(previousVersion);
+            
+            if (this.isNextPatch(previousVersion, currentVersion)) {
+                this.lastIssuedVersion = currentVersion;
+                
+                return new VersionChange(previousVersion, currentVersion, true);
+            }
+            
+            return this.releaseAndUpdate(update, logger);
+        }
+        
+        return this.reserveAndUpdate(update, logger);
+    }
+    
+    /**
+     * Reserves a new block from the stored version, and hands out its first
+     * patch number
+     * 
+     * @param update
+     * @param logger
+     * @return
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    protected VersionChange reserveAndUpdate(final VersionUpdate update, PrintStream logger) throws IOException, InterruptedException {
+        final Version[] issuedVersion = new Version[1];
+        
+        VersionChange reservation = this.store.update(
+            new VersionUpdate() {
+                @Override
+                public Version apply(Version storedVersion) throws IOException {
+                    Version currentVersion = update.apply(storedVersion);
+                    
+                    if (!PatchReservingVersionStore.this.isNextPatch(storedVersion, currentVersion)) {
+                        return currentVersion;
+                    }
+                    
+                    issuedVersion[0] = currentVersion;
+                    
+                    return PatchReservingVersionStore.this.updater.incrementPatchVersion(
+                        currentVersion,
+                        PatchReservingVersionStore.this.blockSize - 1
+                    );
+                }
+            },
+            logger
+        );
+        
+        if (issuedVersion[0] == null) {
+            this.clearReservation();
+            
+            return reservation;
+        }
+        
+        this.reservedVersion = reservation.getCurrentVersion();
+        this.lastIssuedVersion = issuedVersion[0];
+        
+        return new VersionChange(reservation.getPreviousVersion(), issuedVersion[0], true);
+    }
+    
+    /**
+     * Writes the update through, applied to the last version handed out
+     * rather than the reserved one, and gives up the rest of the block
+     * 
+     * @param update
+     * @param logger
+     * @return
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    protected VersionChange releaseAndUpdate(final VersionUpdate update, PrintStream logger) throws IOException, InterruptedException {
+        if (this.reservedVersion == null) {
+            return this.store.update(update, logger);
+        }
+        
+        final Version reserved = this.reservedVersion;
+        final Version lastIssued = this.lastIssuedVersion;
+        final Version[] previousVersion = new Version[1];
+        
+        this.clearReservation();
+        
+        VersionChange change = this.store.update(
+            new VersionUpdate() {
+                @Override
+                public Version apply(Version storedVersion) throws IOException {
+                    previousVersion[0] = (PatchReservingVersionStore.this.isSameVersion(storedVersion, reserved)
+                        ? lastIssued
+                        : storedVersion
+                    );
+                    
+                    return update.apply(previousVersion[0]);
+                }
+            },
+            logger
+        );
+        
+        return new VersionChange(previousVersion[0], change.getCurrentVersion(), change.isSaved());
+    }
+    
+    /**
+     * 
+     * @return false if the store can be seen to hold something other than
+     *  the reserved version
+     * @throws IOException 
+     */
+    protected boolean isReservationCurrent() throws IOException {
+        if (!(this.store instanceof VersionRetrievable)) {
+            return true;
+        }
+        
+        return this.isSameVersion(((VersionRetrievable) this.store).loadVersion(), this.reservedVersion);
+    }
+    
+    protected void clearReservation() {
+        this.reservedVersion = null;
+        this.lastIssuedVersion = null;
+    }
+    
+    protected boolean isPatchIncrement(VersionUpdate update) {
+        return this.blockSize > 1
+            && update instanceof PatchIncrementUpdate
+            && ((PatchIncrementUpdate) update).isPatchIncrement();
+    }
+    
+    protected boolean isNextPatch(Version previousVersion, Version currentVersion) {
+        return previousVersion != null
+            && this.isSameVersion(currentVersion, this.updater.incrementPatchVersion(previousVersion, 1));
+    }
+    
+    protected boolean isSameVersion(Version version, Version otherVersion) {
+        return version != null && otherVersion != null && version.toString().equals(otherVersion.toString());
+    }
+    
+}
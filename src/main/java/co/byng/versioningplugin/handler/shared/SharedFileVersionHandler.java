@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.shared;
+
+import co.byng.versioningplugin.handler.LockedVersionHandler;
+import co.byng.versioningplugin.handler.VersionLock;
+import co.byng.versioningplugin.versioning.VersionFactory;
+import com.github.zafarkhaja.semver.Version;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Stores a job's version in its slot of a {@link SharedVersionFile}.
+ * 
+ * When the job has no slot yet, the version is imported from the converter's
+ * property file if there is one, or else starts from the default version.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class SharedFileVersionHandler extends LockedVersionHandler {
+    
+    /**
+     * 
+     */
+    protected SharedVersionFile sharedFile;
+    
+    /**
+     * Full name of the job, which keys its slot
+     */
+    protected String jobName;
+    
+    
+    
+    /**
+     * 
+     * @param sharedFile
+     * @param jobName
+     * @param versionFactory 
+     */
+    public SharedFileVersionHandler(SharedVersionFile sharedFile, String jobName, VersionFactory versionFactory) {
+        super(versionFactory);
+        
+        this.sharedFile = sharedFile;
+        this.jobName = jobName;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public SharedVersionFile getSharedFile() {
+        return this.sharedFile;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public String getJobName() {
+        return this.jobName;
+    }
+
+    /**
+     * Locks the job's slot; jobs sharing the file never block each other
+     * 
+     * @param logger
+     * @return
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    @Override
+    public VersionLock lockVersion(PrintStream logger) throws IOException, InterruptedException {
+        return this.lockRegistry.acquire(getSlotLockPath(this.sharedFile, this.jobName));
+    }
+    
+    /**
+     * 
+     * @param sharedFile
+     * @param jobName
+     * @return the path under which the job's slot is locked
+     */
+    public static String getSlotLockPath(SharedVersionFile sharedFile, String jobName) {
+        return sharedFile.getFile().getPath() + "#" + jobName;
+    }
+    
+    @Override
+    protected Version readStoredVersion() throws IOException {
+        return this.sharedFile.read(this.jobName);
+    }
+
+    @Override
+    protected void writeVersion(Version previousVersion, Version version, int buildNumber) throws IOException {
+        this.sharedFile.write(this.jobName, version);
+    }
+
+    @Override
+    protected String getStoreDescription() {
+        return "shared version of " + this.jobName;
+    }
+    
+}
@@ -0,0 +1,570 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.shared;
+
+import co.byng.versioningplugin.handler.mapped.VersionRecordPair;
+import co.byng.versioningplugin.handler.GroupCommitQueue;
+import com.github.zafarkhaja.semver.Version;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Versions for many jobs held in one page-structured file, so that a
+ * controller with thousands of jobs keeps one file open rather than creating,
+ * opening and closing a property file per job on every build.
+ * 
+ * The first page is a header and each following page holds four 1KB slots.
+ * A slot holds a job's full name, checksummed on its own, followed by a
+ * {@link VersionRecordPair}.  Slots are allocated on a job's first write and
+ * only move when the job is renamed, so an update is a single positional
+ * write of one record.  Freed slots, and slots whose allocation was torn, are
+ * reused by later allocations.
+ * 
+ * One instance, holding the file open and its slots indexed by job name, is
+ * shared by every handler for the file in this JVM.  Writers must hold the
+ * job's lock; the file must not be shared between processes.  Writes made by
+ * different jobs at about the same time are forced to disk together through
+ * the file's {@link GroupCommitQueue}.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class SharedVersionFile {
+    
+    /**
+     * "SVDB"
+     */
+    public static final int MAGIC = 0x53564442;
+    
+    public static final short FORMAT_VERSION = 1;
+    
+    public static final int PAGE_SIZE = 4096;
+    public static final int SLOT_SIZE = 1024;
+    public static final int SLOTS_PER_PAGE = PAGE_SIZE / SLOT_SIZE;
+    
+    /**
+     * Offsets of the header fields
+     */
+    protected static final int MAGIC_OFFSET = 0;
+    protected static final int FORMAT_VERSION_OFFSET = 4;
+    protected static final int PAGE_SIZE_OFFSET = 8;
+    protected static final int SLOT_SIZE_OFFSET = 12;
+    
+    /**
+     * Offsets of the fields within a slot
+     */
+    protected static final int KEY_LENGTH_OFFSET = 0;
+    protected static final int KEY_CHECKSUM_OFFSET = 4;
+    protected static final int KEY_OFFSET = 8;
+    protected static final int RECORDS_OFFSET = SLOT_SIZE - VersionRecordPair.SIZE;
+    
+    /**
+     * Length in bytes of a job's full name
+     */
+    public static final int MAX_KEY_LENGTH = RECORDS_OFFSET - KEY_OFFSET;
+    
+    /**
+     * Open files by canonical path
+     */
+    private static final Map<String, SharedVersionFile> OPEN_FILES = new HashMap<>();
+    
+    /**
+     * 
+     */
+    protected final File file;
+    
+    /**
+     * 
+     */
+    protected final FileChannel channel;
+    
+    /**
+     * Slot indexes by job name
+     */
+    protected final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    
+    /**
+     * Number of slots in the file, whether allocated or free
+     */
+    protected int slotCount = 0;
+    
+    /**
+     * Slots which can be reused by the next allocation
+     */
+    protected final Deque<Integer> freeSlots = new ArrayDeque<>();
+    
+    /**
+     * Whether each write is forced to disk before it returns
+     */
+    protected volatile boolean forceWrites = true;
+    
+    /**
+     * 
+     */
+    protected final GroupCommitQueue commitQueue;
+    
+    
+    
+    /**
+     * 
+     * @param file
+     * @param channel 
+     */
+    protected SharedVersionFile(File file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+        this.commitQueue = new GroupCommitQueue(
+            new GroupCommitQueue.Barrier() {
+                @Override
+                public void sync() throws IOException {
+                    SharedVersionFile.this.channel.force(false);
+                }
+            }
+        );
+    }
+    
+    /**
+     * Opens the given file, creating it if it does not exist, or returns the
+     * instance already open for it
+     * 
+     * @param file
+     * @return
+     * @throws IOException if the file exists but is not a shared version file
+     */
+    public static SharedVersionFile open(File file) throws IOException {
+        File canonicalFile = file.getCanonicalFile();
+        
+        synchronized (OPEN_FILES) {
+            SharedVersionFile sharedFile = OPEN_FILES.get(canonicalFile.getPath());
+            
+            if (sharedFile == null) {
+                canonicalFile.getParentFile().mkdirs();
+                
+                FileChannel channel = FileChannel.open(
+                    canonicalFile.toPath(),
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE
+                );
+                
+                try {
+                    sharedFile = new SharedVersionFile(canonicalFile, channel);
+                    sharedFile.load();
+                } catch (IOException | RuntimeException ex) {
+                    channel.close();
+                    
+                    throw ex;
+                }
+                
+                OPEN_FILES.put(canonicalFile.getPath(), sharedFile);
+            }
+            
+            return sharedFile;
+        }
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * 
+     * @return 
+     */
+    public boolean getForceWrites() {
+        return this.forceWrites;
+    }
+
+    /**
+     * 
+     * @param forceWrites 
+     */
+    public void setForceWrites(boolean forceWrites) {
+        this.forceWrites = forceWrites;
+    }
+
+    /**
+     * 
+     * @return queue through which forced writes share their syncs
+     */
+    public GroupCommitQueue getCommitQueue() {
+        return this.commitQueue;
+    }
+    
+    /**
+     * 
+     * @return the number of jobs with a slot in the file
+     */
+    public int getSlotCount() {
+        return this.slots.size();
+    }
+    
+    /**
+     * 
+     * @return the names of the jobs with a slot in the file
+     */
+    public Set<String> getJobNames() {
+        return new HashSet<>(this.slots.keySet());
+    }
+    
+    /**
+     * 
+     * @param jobName
+     * @return the job's version, or null if none has been stored
+     * @throws IOException 
+     */
+    public Version read(String jobName) throws IOException {
+        Integer slot = this.slots.get(jobName);
+        
+        if (slot == null) {
+            return null;
+        }
+        
+        return this.readRecords(jobName, slot).read();
+    }
+    
+    /**
+     * Stores the job's version in its slot, allocating one first if needed
+     * 
+     * @param jobName
+     * @param version
+     * @throws IOException 
+     */
+    public void write(String jobName, Version version) throws IOException {
+        Integer slot = this.slots.get(jobName);
+        
+        if (slot == null) {
+            slot = this.allocate(jobName);
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(VersionRecordPair.SIZE);
+        VersionRecordPair records = this.readRecords(jobName, slot, buffer);
+        int recordOffset = records.write(version);
+        
+        buffer.limit(recordOffset + VersionRecordPair.RECORD_SIZE);
+        buffer.position(recordOffset);
+        
+        this.writeFully(buffer, this.getSlotPosition(slot) + RECORDS_OFFSET + recordOffset);
+        
+        if (this.forceWrites) {
+            try {
+                this.commitQueue.commit();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                
+                throw new InterruptedIOException("Interrupted while forcing " + this.file.getPath() + " to disk");
+            }
+        }
+    }
+    
+    /**
+     * Moves the job's version to a slot under its new name, replacing any
+     * version already stored under that name.  The new slot is written before
+     * the old one is freed, so a crash in between leaves both.
+     * 
+     * @param jobName
+     * @param newJobName
+     * @return false if no version is stored for the job
+     * @throws IOException 
+     */
+    public synchronized boolean rename(String jobName, String newJobName) throws IOException {
+        Integer slot = this.slots.get(jobName);
+        
+        if (slot == null) {
+            return false;
+        }
+        
+        if (jobName.equals(newJobName)) {
+            return true;
+        }
+        
+        this.free(newJobName);
+        
+        ByteBuffer buffer = ByteBuffer.allocate(VersionRecordPair.SIZE);
+        this.readFully(buffer, this.getSlotPosition(slot) + RECORDS_OFFSET);
+        buffer.clear();
+        
+        int newSlot = this.allocate(newJobName);
+        this.writeFully(buffer, this.getSlotPosition(newSlot) + RECORDS_OFFSET);
+        
+        if (this.forceWrites) {
+            this.channel.force(false);
+        }
+        
+        this.free(jobName);
+        
+        return true;
+    }
+    
+    /**
+     * Clears the job's slot so that it can be reused by another job
+     * 
+     * @param jobName
+     * @return false if no version is stored for the job
+     * @throws IOException 
+     */
+    public synchronized boolean free(String jobName) throws IOException {
+        Integer slot = this.slots.remove(jobName);
+        
+        if (slot == null) {
+            return false;
+        }
+        
+        // A zero key length marks the slot free
+        this.writeFully(ByteBuffer.allocate(KEY_OFFSET), this.getSlotPosition(slot));
+        this.freeSlots.add(slot);
+        
+        return true;
+    }
+    
+    /**
+     * Closes the file, after which {@link #open(File)} opens it afresh
+     * 
+     * @throws IOException 
+     */
+    public void close() throws IOException {
+        synchronized (OPEN_FILES) {
+            OPEN_FILES.remove(this.file.getPath());
+            this.channel.close();
+        }
+    }
+    
+    /**
+     * Checks the header of an existing file, or writes one to a new file,
+     * and indexes the allocated slots
+     * 
+     * @throws IOException 
+     */
+    protected void load() throws IOException {
+        ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+        
+        if (this.channel.size() == 0) {
+            page.putInt(MAGIC_OFFSET, MAGIC);
+            page.putShort(FORMAT_VERSION_OFFSET, FORMAT_VERSION);
+            page.putInt(PAGE_SIZE_OFFSET, PAGE_SIZE);
+            page.putInt(SLOT_SIZE_OFFSET, SLOT_SIZE);
+            
+            this.writeFully(page, 0);
+            this.channel.force(true);
+            
+            return;
+        }
+        
+        this.readFully(page, 0);
+        
+        if (page.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("File " + this.file.getPath() + " is not a shared version file");
+        }
+        
+        if (page.getShort(FORMAT_VERSION_OFFSET) != FORMAT_VERSION
+            || page.getInt(PAGE_SIZE_OFFSET) != PAGE_SIZE
+            || page.getInt(SLOT_SIZE_OFFSET) != SLOT_SIZE) {
+            throw new IOException(
+                "Shared version file " + this.file.getPath() + " has unsupported format " + page.getShort(FORMAT_VERSION_OFFSET)
+            );
+        }
+        
+        long size = this.channel.size();
+        int slot = 0;
+        
+        while (this.getSlotPosition(slot) + SLOT_SIZE <= size) {
+            if (slot % SLOTS_PER_PAGE == 0) {
+                long position = this.getSlotPosition(slot);
+                
+                page.clear();
+                page.limit((int) Math.min(PAGE_SIZE, size - position));
+                this.readFully(page, position);
+            }
+            
+            String jobName = this.readKey(page, (slot % SLOTS_PER_PAGE) * SLOT_SIZE);
+            
+            if (jobName == null) {
+                this.freeSlots.add(slot++);
+            } else {
+                this.slots.put(jobName, slot++);
+            }
+        }
+        
+        this.slotCount = slot;
+    }
+    
+    /**
+     * 
+     * @param page
+     * @param offset offset of the slot within the page
+     * @return the slot's job name, or null if the slot is free or its
+     *  allocation was torn
+     */
+    protected String readKey(ByteBuffer page, int offset) {
+        int length = page.getShort(offset + KEY_LENGTH_OFFSET);
+        
+        if (length <= 0 || length > MAX_KEY_LENGTH) {
+            return null;
+        }
+        
+        byte[] key = new byte[length];
+        ByteBuffer source = page.duplicate();
+        source.position(offset + KEY_OFFSET);
+        source.get(key);
+        
+        if (page.getInt(offset + KEY_CHECKSUM_OFFSET) != this.checksum(key)) {
+            return null;
+        }
+        
+        return new String(key, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Writes the job's name to a free slot, or a new one at the end of the
+     * file, along with empty records
+     * 
+     * @param jobName
+     * @return the allocated slot
+     * @throws IOException 
+     */
+    protected synchronized int allocate(String jobName) throws IOException {
+        Integer existingSlot = this.slots.get(jobName);
+        
+        if (existingSlot != null) {
+            return existingSlot;
+        }
+        
+        byte[] key = jobName.getBytes(StandardCharsets.UTF_8);
+        
+        if (key.length > MAX_KEY_LENGTH) {
+            throw new IOException("Job name " + jobName + " is too long to store in " + this.file.getPath());
+        }
+        
+        ByteBuffer slotBuffer = ByteBuffer.allocate(SLOT_SIZE);
+        slotBuffer.putShort(KEY_LENGTH_OFFSET, (short) key.length);
+        slotBuffer.putInt(KEY_CHECKSUM_OFFSET, this.checksum(key));
+        slotBuffer.position(KEY_OFFSET);
+        slotBuffer.put(key);
+        slotBuffer.clear();
+        
+        Integer freeSlot = this.freeSlots.poll();
+        int slot = (freeSlot != null ? freeSlot : this.slotCount);
+        this.writeFully(slotBuffer, this.getSlotPosition(slot));
+        
+        if (freeSlot == null) {
+            this.slotCount++;
+        }
+        
+        this.slots.put(jobName, slot);
+        
+        return slot;
+    }
+    
+    /**
+     * 
+     * @param jobName
+     * @param slot
+     * @return
+     * @throws IOException 
+     */
+    protected VersionRecordPair readRecords(String jobName, int slot) throws IOException {
+        return this.readRecords(jobName, slot, ByteBuffer.allocate(VersionRecordPair.SIZE));
+    }
+    
+    /**
+     * 
+     * @param jobName
+     * @param slot
+     * @param buffer
+     * @return the slot's records, read into the given buffer
+     * @throws IOException 
+     */
+    protected VersionRecordPair readRecords(String jobName, int slot, ByteBuffer buffer) throws IOException {
+        this.readFully(buffer, this.getSlotPosition(slot) + RECORDS_OFFSET);
+        
+        return new VersionRecordPair(buffer, 0, "job " + jobName + " in " + this.file.getPath());
+    }
+    
+    /**
+     * 
+     * @param slot
+     * @return the position of the slot within the file, after the header page
+     */
+    protected long getSlotPosition(int slot) {
+        return (long) PAGE_SIZE * (1 + slot / SLOTS_PER_PAGE) + (long) (slot % SLOTS_PER_PAGE) * SLOT_SIZE;
+    }
+    
+    /**
+     * 
+     * @param key
+     * @return 
+     */
+    protected int checksum(byte[] key) {
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        
+        return (int) crc.getValue();
+    }
+    
+    /**
+     * 
+     * @param buffer
+     * @param position
+     * @throws IOException 
+     */
+    protected void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of shared version file " + this.file.getPath());
+            }
+        }
+    }
+    
+    /**
+     * 
+     * @param buffer
+     * @param position file position of the buffer's current position
+     * @throws IOException 
+     */
+    protected void writeFully(ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer, position + buffer.position() - start);
+        }
+    }
+    
+}
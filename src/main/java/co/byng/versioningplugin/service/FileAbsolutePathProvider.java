@@ -25,6 +25,7 @@ package co.byng.versioningplugin.service;
 
 import hudson.model.AbstractProject;
 import java.io.File;
+import jenkins.model.Jenkins;
 
 /**
  *
@@ -32,6 +33,8 @@ import java.io.File;
  */
 public class FileAbsolutePathProvider implements PathProvider {
     
+    public static final String SHARED_VERSION_FILE_PATH = "semantic-versioning" + File.separator + "versions.db";
+    
     public File getPropertyFilePath(AbstractProject project, String propertyFilePath)
     {
         File propertyFile;
@@ -43,4 +46,9 @@ public class FileAbsolutePathProvider implements PathProvider {
         return new File(project.getRootDir(), propertyFilePath);
     }
 
+    public File getSharedVersionFilePath()
+    {
+        return new File(Jenkins.getInstance().getRootDir(), SHARED_VERSION_FILE_PATH);
+    }
+
 }
@@ -25,15 +25,30 @@ package co.byng.versioningplugin.service;
 
 import co.byng.versioningplugin.AddEnvVarsAction;
 import co.byng.versioningplugin.VariableExporter;
-import co.byng.versioningplugin.handler.VersionCommittable;
-import co.byng.versioningplugin.handler.VersionRetrievable;
+import co.byng.versioningplugin.configuration.VersioningGlobalConfiguration;
+import co.byng.versioningplugin.configuration.VersioningGlobalConfigurationProvider;
+import co.byng.versioningplugin.handler.VersionStore;
+import co.byng.versioningplugin.handler.cache.WriteBehindVersionCache;
+import co.byng.versioningplugin.handler.cache.WriteBehindVersionHandler;
 import co.byng.versioningplugin.handler.file.AutoCreatingPropertyFileVersionHandler;
+import co.byng.versioningplugin.handler.file.CrossProcessFileLocker;
 import co.byng.versioningplugin.handler.file.PropertyFileIoHandler;
+import co.byng.versioningplugin.handler.journal.JournalVersionHandler;
+import co.byng.versioningplugin.handler.journal.VersionJournal;
+import co.byng.versioningplugin.handler.mapped.MappedVersionHandler;
+import co.byng.versioningplugin.handler.mapped.PropertyFileVersionConverter;
+import co.byng.versioningplugin.handler.reservation.PatchReservingVersionStore;
+import co.byng.versioningplugin.handler.shared.SharedFileVersionHandler;
+import co.byng.versioningplugin.handler.shared.SharedVersionFile;
 import co.byng.versioningplugin.versioning.VersionNumberUpdater;
-import co.byng.versioningplugin.versioning.StaticVersionFactory;
+import co.byng.versioningplugin.versioning.CachingVersionFactory;
 import co.byng.versioningplugin.versioning.VersionFactory;
 import hudson.model.AbstractProject;
+import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -41,52 +56,394 @@ import java.io.IOException;
  */
 public class LazyLoadingServiceFactory implements ServiceFactory {
     
+    /**
+     * The updater holds no state, so one is shared by every job
+     */
+    protected static final VersionNumberUpdater SHARED_UPDATER = new VersionNumberUpdater();
+    
+    /**
+     * I/O handlers only hold their commit mode and fsync policy, so one is
+     * shared by every job using the same pair of them
+     */
+    protected static final ConcurrentMap<String, PropertyFileIoHandler> SHARED_IO_HANDLERS = new ConcurrentHashMap<>();
+    
     protected PathProvider pathProvider;
+    protected transient VersioningGlobalConfigurationProvider globalConfiguration;
+    protected transient VersionStoreRegistry storeRegistry;
 
     public LazyLoadingServiceFactory(PathProvider pathProvider) {
         this.pathProvider = pathProvider;
     }
     
+    /**
+     * 
+     * @return the global configuration given to this factory, or the default
+     *  configuration if none has been given since it was created or loaded;
+     *  it is not saved with the job, so is given again before each use
+     */
+    public VersioningGlobalConfigurationProvider getGlobalConfiguration() {
+        if (this.globalConfiguration == null) {
+            this.globalConfiguration = new VersioningGlobalConfiguration();
+        }
+        
+        return this.globalConfiguration;
+    }
+
+    public void setGlobalConfiguration(VersioningGlobalConfigurationProvider globalConfiguration) {
+        if (globalConfiguration == null) {
+            throw new IllegalArgumentException("Global configuration cannot be given as a null object");
+        }
+        
+        this.globalConfiguration = globalConfiguration;
+    }
+
+    /**
+     * 
+     * @return the registry given to this factory, or the shared registry if
+     *  none has been given since it was created or loaded
+     */
+    public VersionStoreRegistry getStoreRegistry() {
+        if (this.storeRegistry == null) {
+            this.storeRegistry = VersionStoreRegistry.getDefault();
+        }
+        
+        return this.storeRegistry;
+    }
+
+    public void setStoreRegistry(VersionStoreRegistry storeRegistry) {
+        if (storeRegistry == null) {
+            throw new IllegalArgumentException("Store registry cannot be given as a null object");
+        }
+        
+        this.storeRegistry = storeRegistry;
+    }
     
     
-    public VersionCommittable createCommitter(
+    /**
+     * Returns the store for the given file and backend, which is shared with
+     * any other job using the same file and backend. The current store is
+     * kept only while it is still the one for the file, so changing the path
+     * or backend (or the global settings the store is built from) replaces it
+     * 
+     * @param project
+     * @param propertyFilePath
+     * @param storageBackend
+     * @param currentStore
+     * @return
+     * @throws IOException 
+     */
+    public VersionStore createStore(
         AbstractProject project,
         String propertyFilePath,
-        VersionCommittable currentCommitter
+        String storageBackend,
+        VersionStore currentStore
     ) throws IOException {
-        if (currentCommitter == null) {
-            return this.createDefaultFileHandler(project, propertyFilePath);
+        File propertyFile = this.pathProvider.getPropertyFilePath(project, propertyFilePath);
+        String key = this.getStoreKey(project, propertyFile, storageBackend);
+        
+        VersionStore registeredStore = this.getStoreRegistry().get(key);
+        
+        if (registeredStore != null) {
+            if (currentStore == registeredStore) {
+                return currentStore;
+            }
+            
+            if (currentStore instanceof PatchReservingVersionStore
+                && ((PatchReservingVersionStore) currentStore).getStore() == registeredStore
+            ) {
+                return currentStore;
+            }
+            
+            return registeredStore;
         }
         
-        return currentCommitter;
+        return this.getStoreRegistry().register(
+            key,
+            this.createUnregisteredStore(project, propertyFile, storageBackend)
+        );
     }
-
-    public VersionRetrievable createRetriever(
+    
+    /**
+     * 
+     * @param project
+     * @param propertyFile
+     * @param storageBackend
+     * @return the key identifying the store in the registry, made up of the
+     *  backend, the global settings the store is built from, and the file
+     */
+    protected String getStoreKey(AbstractProject project, File propertyFile, String storageBackend) {
+        StringBuilder key = new StringBuilder(128);
+        
+        key.append(storageBackend == null ? StorageBackend.PROPERTY_FILE : storageBackend)
+            .append('|').append(this.getGlobalConfiguration().getCommitMode())
+            .append('|').append(this.getGlobalConfiguration().getFsyncPolicy())
+            .append('|').append(this.getGlobalConfiguration().getCrossProcessLocking())
+            .append('|').append(this.getGlobalConfiguration().getLockTimeout());
+        
+        if (StorageBackend.SHARED_FILE.equals(storageBackend)) {
+            key.append('|').append(this.getGlobalConfiguration().getGroupCommitWindow())
+                .append('|').append(this.getGlobalConfiguration().getGroupCommitMaxBatchSize())
+                .append('|').append(project.getFullName());
+        }
+        
+        return key.append('|').append(this.getCanonicalPath(propertyFile)).toString();
+    }
+    
+    protected String getCanonicalPath(File file) {
+        if (file == null) {
+            return null;
+        }
+        
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException ex) {
+            return file.getAbsolutePath();
+        }
+    }
+    
+    protected VersionStore createUnregisteredStore(
         AbstractProject project,
-        String propertyFilePath,
-        VersionRetrievable currentRetriever
+        File propertyFile,
+        String storageBackend
     ) throws IOException {
-        if (currentRetriever == null) {
-            return this.createDefaultFileHandler(project, propertyFilePath);
+        if (StorageBackend.MAPPED_FILE.equals(storageBackend)) {
+            return this.createMappedFileHandler(propertyFile);
+        }
+        
+        if (StorageBackend.SHARED_FILE.equals(storageBackend)) {
+            return this.createSharedFileHandler(project, propertyFile);
         }
         
-        return currentRetriever;
+        if (StorageBackend.JOURNAL.equals(storageBackend)) {
+            return this.createJournalHandler(propertyFile);
+        }
+        
+        if (StorageBackend.WRITE_BEHIND.equals(storageBackend)) {
+            return this.createWriteBehindHandler(propertyFile);
+        }
+        
+        return this.createDefaultFileHandler(propertyFile);
+    }
+
+    protected AutoCreatingPropertyFileVersionHandler createDefaultFileHandler(File propertyFile) {
+        AutoCreatingPropertyFileVersionHandler handler = new AutoCreatingPropertyFileVersionHandler(
+            this.createIoHandler(),
+            this.createVersionFactory(null),
+            propertyFile
+        );
+        
+        if (this.getGlobalConfiguration().getCrossProcessLocking()) {
+            handler.setProcessLocker(this.createProcessLocker());
+        }
+        
+        return handler;
     }
 
-    protected AutoCreatingPropertyFileVersionHandler createDefaultFileHandler(
+    /**
+     * Creates a handler for the mapped version file kept alongside the
+     * property file, which takes its first version from the property file
+     * 
+     * @param propertyFile
+     * @return 
+     * @throws IOException if cross-process locking is enabled, as mapped
+     *  pages are not kept coherent between hosts sharing a network volume
+     */
+    protected MappedVersionHandler createMappedFileHandler(File propertyFile) throws IOException {
+        if (this.getGlobalConfiguration().getCrossProcessLocking()) {
+            throw new IOException(
+                "The memory-mapped version file cannot be shared with other processes; "
+                    + "choose another storage backend or disable cross-process locking"
+            );
+        }
+        
+        VersionFactory versionFactory = this.createVersionFactory(null);
+        
+        MappedVersionHandler handler = new MappedVersionHandler(
+            versionFactory,
+            MappedVersionHandler.getVersionFileFor(propertyFile)
+        );
+        
+        handler.setConverter(
+            new PropertyFileVersionConverter(this.createIoHandler(), versionFactory, propertyFile)
+        );
+        
+        handler.setForceWrites(
+            !PropertyFileIoHandler.FsyncPolicy.NONE.equals(this.getGlobalConfiguration().getFsyncPolicy())
+        );
+        
+        return handler;
+    }
+
+    /**
+     * Creates a handler for the job's slot in the controller's shared version
+     * file, which takes its first version from the job's property file
+     * 
+     * @param project
+     * @param propertyFile
+     * @return
+     * @throws IOException if cross-process locking is enabled, as the shared
+     *  file is only locked within this JVM
+     */
+    protected SharedFileVersionHandler createSharedFileHandler(
         AbstractProject project,
-        String propertyFilePath
-    ) {
-        return new AutoCreatingPropertyFileVersionHandler(
-            new PropertyFileIoHandler(),
-            new StaticVersionFactory(),
-            this.pathProvider.getPropertyFilePath(project, propertyFilePath)
+        File propertyFile
+    ) throws IOException {
+        if (this.getGlobalConfiguration().getCrossProcessLocking()) {
+            throw new IOException(
+                "The shared version file cannot be locked against other processes; "
+                    + "choose another storage backend or disable cross-process locking"
+            );
+        }
+        
+        SharedVersionFile sharedFile = SharedVersionFile.open(this.pathProvider.getSharedVersionFilePath());
+        sharedFile.setForceWrites(
+            !PropertyFileIoHandler.FsyncPolicy.NONE.equals(this.getGlobalConfiguration().getFsyncPolicy())
+        );
+        sharedFile.getCommitQueue().setWindowNanos(
+            TimeUnit.MILLISECONDS.toNanos(this.getGlobalConfiguration().getGroupCommitWindow())
+        );
+        sharedFile.getCommitQueue().setMaxBatchSize(this.getGlobalConfiguration().getGroupCommitMaxBatchSize());
+        
+        VersionFactory versionFactory = this.createVersionFactory(null);
+        
+        SharedFileVersionHandler handler = new SharedFileVersionHandler(
+            sharedFile,
+            project.getFullName(),
+            versionFactory
+        );
+        
+        handler.setConverter(
+            new PropertyFileVersionConverter(this.createIoHandler(), versionFactory, propertyFile)
+        );
+        
+        return handler;
+    }
+
+    /**
+     * Creates a handler for the version journal kept alongside the property
+     * file, which takes its first version from the property file
+     * 
+     * @param propertyFile
+     * @return 
+     */
+    protected JournalVersionHandler createJournalHandler(File propertyFile) {
+        VersionFactory versionFactory = this.createVersionFactory(null);
+        
+        VersionJournal journal = VersionJournal.forPropertyFile(propertyFile);
+        journal.setForceWrites(
+            !PropertyFileIoHandler.FsyncPolicy.NONE.equals(this.getGlobalConfiguration().getFsyncPolicy())
+        );
+        
+        JournalVersionHandler handler = new JournalVersionHandler(journal, versionFactory);
+        
+        handler.setConverter(
+            new PropertyFileVersionConverter(this.createIoHandler(), versionFactory, propertyFile)
+        );
+        
+        if (this.getGlobalConfiguration().getCrossProcessLocking()) {
+            handler.setProcessLocker(this.createProcessLocker());
+        }
+        
+        return handler;
+    }
+
+    /**
+     * Creates a handler keeping the version in the shared write-behind cache,
+     * which is flushed to the property file in the background
+     * 
+     * @param propertyFile
+     * @return 
+     */
+    protected WriteBehindVersionHandler createWriteBehindHandler(File propertyFile) {
+        return new WriteBehindVersionHandler(
+            WriteBehindVersionCache.getDefault(),
+            this.createDefaultFileHandler(propertyFile)
         );
     }
 
+    /**
+     * Wraps the store to reserve blocks of patch numbers in it.  The wrapper
+     * is registered alongside the store, so that jobs sharing a store with
+     * the same block size also share its block rather than each giving up
+     * the others' blocks.
+     * 
+     * @param store
+     * @param blockSize patch numbers to reserve with each write
+     * @return the store, wrapped to reserve blocks of patch numbers in it if
+     *  the block size is more than 1 and it is not wrapped for that block
+     *  size already
+     */
+    public VersionStore createPatchReservingStore(VersionStore store, int blockSize) {
+        if (store instanceof PatchReservingVersionStore) {
+            PatchReservingVersionStore reservingStore = (PatchReservingVersionStore) store;
+            
+            if (reservingStore.getBlockSize() == blockSize) {
+                return store;
+            }
+            
+            store = reservingStore.getStore();
+        }
+        
+        if (blockSize <= 1) {
+            return store;
+        }
+        
+        String key = "reservation|" + blockSize + "|" + Integer.toHexString(System.identityHashCode(store));
+        VersionStore registeredStore = this.getStoreRegistry().get(key);
+        
+        if (this.isReservingIn(registeredStore, store)) {
+            return registeredStore;
+        }
+        
+        PatchReservingVersionStore reservingStore = new PatchReservingVersionStore(store, blockSize, SHARED_UPDATER);
+        registeredStore = this.getStoreRegistry().register(key, reservingStore);
+        
+        // Another store with the same identity hash keeps its own registration
+        return this.isReservingIn(registeredStore, store) ? registeredStore : reservingStore;
+    }
+    
+    protected boolean isReservingIn(VersionStore reservingStore, VersionStore store) {
+        return reservingStore instanceof PatchReservingVersionStore
+            && ((PatchReservingVersionStore) reservingStore).getStore() == store;
+    }
+
+    protected CrossProcessFileLocker createProcessLocker() {
+        return new CrossProcessFileLocker(
+            TimeUnit.SECONDS.toMillis(this.getGlobalConfiguration().getLockTimeout())
+        );
+    }
+
+    protected PropertyFileIoHandler createIoHandler() {
+        String commitMode = this.getGlobalConfiguration().getCommitMode();
+        String fsyncPolicy = this.getGlobalConfiguration().getFsyncPolicy();
+        String key = commitMode + "|" + fsyncPolicy;
+        
+        PropertyFileIoHandler ioHandler = SHARED_IO_HANDLERS.get(key);
+        
+        if (ioHandler == null) {
+            ioHandler = new PropertyFileIoHandler();
+            
+            if (commitMode != null) {
+                ioHandler.setCommitMode(commitMode);
+            }
+            
+            if (fsyncPolicy != null) {
+                ioHandler.setFsyncPolicy(fsyncPolicy);
+            }
+            
+            PropertyFileIoHandler existingHandler = SHARED_IO_HANDLERS.putIfAbsent(key, ioHandler);
+            
+            if (existingHandler != null) {
+                ioHandler = existingHandler;
+            }
+        }
+        
+        return ioHandler;
+    }
+
     public VersionNumberUpdater createUpdater(VersionNumberUpdater currentUpdater) {
         if (currentUpdater == null) {
-            return new VersionNumberUpdater();
+            return SHARED_UPDATER;
         }
         
         return currentUpdater;
@@ -102,7 +459,7 @@ public class LazyLoadingServiceFactory implements ServiceFactory {
 
     public VersionFactory createVersionFactory(VersionFactory versionFactory) {
         if (versionFactory == null) {
-            return new StaticVersionFactory();
+            return CachingVersionFactory.getDefault();
         }
         
         return versionFactory;
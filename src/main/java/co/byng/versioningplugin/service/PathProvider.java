@@ -34,4 +34,6 @@ public interface PathProvider {
     
     public File getPropertyFilePath(AbstractProject project, String propertyFilePath);
     
+    public File getSharedVersionFilePath();
+    
 }
@@ -24,8 +24,8 @@
 package co.byng.versioningplugin.service;
 
 import co.byng.versioningplugin.VariableExporter;
-import co.byng.versioningplugin.handler.VersionCommittable;
-import co.byng.versioningplugin.handler.VersionRetrievable;
+import co.byng.versioningplugin.configuration.VersioningGlobalConfigurationProvider;
+import co.byng.versioningplugin.handler.VersionStore;
 import co.byng.versioningplugin.versioning.VersionNumberUpdater;
 import co.byng.versioningplugin.versioning.VersionFactory;
 import hudson.model.AbstractProject;
@@ -37,21 +37,28 @@ import java.io.IOException;
  */
 public interface ServiceFactory {
     
-    public VersionCommittable createCommitter(
-        AbstractProject project,
-        String propertyFilePath,
-        VersionCommittable currentCommitter
-    ) throws IOException;
+    public void setGlobalConfiguration(VersioningGlobalConfigurationProvider globalConfiguration);
     
-    public VersionRetrievable createRetriever(
+    public VersionStore createStore(
         AbstractProject project,
         String propertyFilePath,
-        VersionRetrievable currentRetriever
+        String storageBackend,
+        VersionStore currentStore
     ) throws IOException;
     
+    public VersionStore createPatchReservingStore(VersionStore store, int blockSize);
+    
     public VersionNumberUpdater createUpdater(VersionNumberUpdater currentUpdater);
     
     public VariableExporter createVarExporter(VariableExporter currentVarExporter);
     
     public VersionFactory createVersionFactory(VersionFactory versionFactory);
+    
+    public static class StorageBackend {
+        public static final String PROPERTY_FILE = "properties";
+        public static final String MAPPED_FILE = "mapped";
+        public static final String SHARED_FILE = "shared";
+        public static final String JOURNAL = "journal";
+        public static final String WRITE_BEHIND = "memory";
+    }
 }
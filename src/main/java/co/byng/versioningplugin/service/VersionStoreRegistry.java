@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.service;
+
+import co.byng.versioningplugin.handler.VersionStore;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the version stores in use, by a key naming what they store (such as
+ * the backend and canonical path of the file), so that jobs using the same
+ * file share one store rather than each creating their own. Stores are held
+ * weakly and dropped once no job uses them.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class VersionStoreRegistry {
+    
+    private static final VersionStoreRegistry DEFAULT = new VersionStoreRegistry();
+    
+    protected final ConcurrentMap<String, StoreReference> stores = new ConcurrentHashMap<>();
+    protected final ReferenceQueue<VersionStore> collectedStores = new ReferenceQueue<>();
+    
+    
+    
+    /**
+     * 
+     * @return the registry shared by all jobs
+     */
+    public static VersionStoreRegistry getDefault() {
+        return DEFAULT;
+    }
+    
+    /**
+     * 
+     * @param key
+     * @return the store registered under the given key, or null if there is
+     *  none or it is no longer used
+     */
+    public VersionStore get(String key) {
+        this.expungeCollectedStores();
+        
+        StoreReference reference = this.stores.get(key);
+        
+        return (reference == null) ? null : reference.get();
+    }
+    
+    /**
+     * 
+     * @param key
+     * @param store
+     * @return whether the given store is the one registered under the key
+     */
+    public boolean isRegistered(String key, VersionStore store) {
+        return store != null && this.get(key) == store;
+    }
+    
+    /**
+     * Registers a store unless another has been registered under the same key
+     * in the meantime
+     * 
+     * @param key
+     * @param store
+     * @return the store now registered under the key
+     */
+    public VersionStore register(String key, VersionStore store) {
+        this.expungeCollectedStores();
+        
+        StoreReference reference = new StoreReference(key, store, this.collectedStores);
+        
+        while (true) {
+            StoreReference existingReference = this.stores.putIfAbsent(key, reference);
+            
+            if (existingReference == null) {
+                return store;
+            }
+            
+            VersionStore existingStore = existingReference.get();
+            
+            if (existingStore != null) {
+                return existingStore;
+            }
+            
+            if (this.stores.replace(key, existingReference, reference)) {
+                return store;
+            }
+        }
+    }
+    
+    /**
+     * 
+     * @return the number of stores still in use
+     */
+    public int size() {
+        this.expungeCollectedStores();
+        
+        return this.stores.size();
+    }
+    
+    public void clear() {
+        this.stores.clear();
+    }
+    
+    protected void expungeCollectedStores() {
+        Reference<? extends VersionStore> reference;
+        
+        while ((reference = this.collectedStores.poll()) != null) {
+            StoreReference storeReference = (StoreReference) reference;
+            
+            this.stores.remove(storeReference.key, storeReference);
+        }
+    }
+    
+    
+    
+    protected static class StoreReference extends WeakReference<VersionStore> {
+        
+        protected final String key;
+        
+        public StoreReference(String key, VersionStore store, ReferenceQueue<VersionStore> queue) {
+            super(store, queue);
+            
+            this.key = key;
+        }
+        
+    }
+    
+}
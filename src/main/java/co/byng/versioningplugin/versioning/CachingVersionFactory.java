@@ -0,0 +1,273 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import com.github.zafarkhaja.semver.ParseException;
+import com.github.zafarkhaja.semver.Version;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps the versions most often parsed by another factory, so that the same
+ * version string gives the same (immutable) {@link Version} without being
+ * parsed again.
+ * 
+ * Versions are kept in least recently used order; when the cache is full, a
+ * newly parsed version only replaces the least recently used one if it has
+ * been asked for more often recently (estimated with a small frequency
+ * sketch), so that a burst of one-off versions cannot push out the ones used
+ * by every build.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class CachingVersionFactory implements VersionFactory {
+    
+    public static final int DEFAULT_CAPACITY = 256;
+    
+    private static final CachingVersionFactory DEFAULT = new CachingVersionFactory(
+        new FastVersionFactory(),
+        DEFAULT_CAPACITY
+    );
+    
+    protected final VersionFactory delegate;
+    protected final LinkedHashMap<String, Version> versions = new LinkedHashMap<>(16, 0.75f, true);
+    protected FrequencySketch sketch;
+    protected int capacity;
+    protected long hitCount;
+    protected long missCount;
+    
+    
+    
+    public CachingVersionFactory(VersionFactory delegate, int capacity) throws IllegalArgumentException {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Version factory cannot be given as null");
+        }
+        
+        this.delegate = delegate;
+        this.setCapacity(capacity);
+    }
+    
+    /**
+     * 
+     * @return the cache shared by all jobs, in front of a
+     *  {@link FastVersionFactory}
+     */
+    public static CachingVersionFactory getDefault() {
+        return DEFAULT;
+    }
+
+    public VersionFactory getDelegate() {
+        return this.delegate;
+    }
+    
+    public synchronized int getCapacity() {
+        return this.capacity;
+    }
+    
+    /**
+     * 
+     * @param capacity the most versions to keep, or 0 or less for
+     *  {@link #DEFAULT_CAPACITY}; versions beyond it are evicted at once
+     */
+    public synchronized void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            capacity = DEFAULT_CAPACITY;
+        }
+        
+        if (capacity == this.capacity) {
+            return;
+        }
+        
+        this.capacity = capacity;
+        this.sketch = new FrequencySketch(capacity);
+        
+        Iterator<String> eldest = this.versions.keySet().iterator();
+        
+        while (this.versions.size() > capacity) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+    
+    public synchronized int getSize() {
+        return this.versions.size();
+    }
+    
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+    
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+    
+    /**
+     * 
+     * @return the fraction of versions found in the cache, or 0 if none have
+     *  been asked for
+     */
+    public synchronized double getHitRate() {
+        long requestCount = this.hitCount + this.missCount;
+        
+        return (requestCount == 0) ? 0 : (double) this.hitCount / requestCount;
+    }
+    
+    public synchronized void clear() {
+        this.versions.clear();
+        this.sketch = new FrequencySketch(this.capacity);
+        this.hitCount = 0;
+        this.missCount = 0;
+    }
+    
+    @Override
+    public Version buildVersionFromString(String version) throws ParseException {
+        if (version == null) {
+            return this.delegate.buildVersionFromString(version);
+        }
+        
+        synchronized (this) {
+            this.sketch.increment(version);
+            
+            Version cachedVersion = this.versions.get(version);
+            
+            if (cachedVersion != null) {
+                this.hitCount++;
+                
+                return cachedVersion;
+            }
+            
+            this.missCount++;
+        }
+        
+        Version parsedVersion = this.delegate.buildVersionFromString(version);
+        
+        return this.admit(version, parsedVersion);
+    }
+    
+    /**
+     * 
+     * @param versionString
+     * @param version
+     * @return the version now cached for the given string, or the given
+     *  version if it was not admitted
+     */
+    protected synchronized Version admit(String versionString, Version version) {
+        Version cachedVersion = this.versions.get(versionString);
+        
+        if (cachedVersion != null) {
+            return cachedVersion;
+        }
+        
+        if (this.versions.size() >= this.capacity) {
+            Iterator<String> eldest = this.versions.keySet().iterator();
+            String victim = eldest.next();
+            
+            if (this.sketch.frequency(versionString) <= this.sketch.frequency(victim)) {
+                return version;
+            }
+            
+            eldest.remove();
+        }
+        
+        this.versions.put(versionString, version);
+        
+        return version;
+    }
+    
+    
+    
+    /**
+     * Estimates how often each key has been seen recently, in a fixed amount
+     * of memory; estimates can be too high but never too low, and are halved
+     * once enough keys have been counted so that old popularity fades
+     */
+    protected static class FrequencySketch {
+        
+        protected static final int DEPTH = 4;
+        protected static final int MAX_COUNT = 15;
+        protected static final int WIDTH_FACTOR = 4;
+        protected static final int MIN_WIDTH = 64;
+        protected static final int SAMPLE_SIZE_FACTOR = 10;
+        
+        private static final int[] SEEDS = {0x97cb3127, 0x8f5cb2e1, 0xc2b2ae35, 0x27d4eb2f};
+        
+        protected final int[][] counts;
+        protected final int mask;
+        protected final int sampleSize;
+        protected int additions;
+        
+        public FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(capacity * WIDTH_FACTOR, MIN_WIDTH) * 2 - 1);
+            
+            this.counts = new int[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = capacity * SAMPLE_SIZE_FACTOR;
+        }
+        
+        public void increment(String key) {
+            int hash = key.hashCode();
+            
+            for (int i = 0; i < DEPTH; i++) {
+                int index = this.indexOf(hash, i);
+                
+                if (this.counts[i][index] < MAX_COUNT) {
+                    this.counts[i][index]++;
+                }
+            }
+            
+            if (++this.additions >= this.sampleSize) {
+                this.halve();
+            }
+        }
+        
+        public int frequency(String key) {
+            int hash = key.hashCode();
+            int frequency = MAX_COUNT;
+            
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, this.counts[i][this.indexOf(hash, i)]);
+            }
+            
+            return frequency;
+        }
+        
+        protected int indexOf(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * SEEDS[row];
+            
+            return (h ^ (h >>> 16)) & this.mask;
+        }
+        
+        protected void halve() {
+            for (int[] row : this.counts) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>>= 1;
+                }
+            }
+            
+            this.additions /= 2;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import hudson.EnvVars;
+
+/**
+ * The result of looking up an environment variable holding a version
+ * component, which says why it could not be used rather than throwing
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public final class EnvVariableLookup {
+    
+    private final String name;
+    private final Status status;
+    private final String rawValue;
+    private final int value;
+    
+    
+    
+    private EnvVariableLookup(String name, Status status, String rawValue, int value) {
+        this.name = name;
+        this.status = status;
+        this.rawValue = rawValue;
+        this.value = value;
+    }
+    
+    /**
+     * 
+     * @param environment
+     * @param name
+     * @return the variable's value as a version component, or why it is not
+     *  one
+     */
+    public static EnvVariableLookup lookup(EnvVars environment, String name) {
+        String rawValue = (name == null || environment == null || !environment.containsKey(name))
+            ? null
+            : environment.get(name);
+        
+        if (rawValue == null) {
+            return new EnvVariableLookup(name, Status.MISSING, null, 0);
+        }
+        
+        try {
+            return new EnvVariableLookup(name, Status.FOUND, rawValue, Integer.parseInt(rawValue.trim()));
+        } catch (NumberFormatException ex) {
+            return new EnvVariableLookup(name, Status.INVALID, rawValue, 0);
+        }
+    }
+    
+    public String getName() {
+        return this.name;
+    }
+    
+    public Status getStatus() {
+        return this.status;
+    }
+    
+    public boolean isFound() {
+        return this.status == Status.FOUND;
+    }
+    
+    /**
+     * 
+     * @return the variable's value as it was set, or null if it is missing
+     */
+    public String getRawValue() {
+        return this.rawValue;
+    }
+    
+    /**
+     * 
+     * @return the variable's value, if it was found; this may be negative,
+     *  which no version component can be set to
+     */
+    public int getValue() {
+        return this.value;
+    }
+    
+    /**
+     * 
+     * @return a description of why the variable could not be used, or null if
+     *  it was found
+     */
+    public String getMessage() {
+        switch (this.status) {
+            case MISSING:
+                return "Environment variable '" + this.name + "' is not set in the current context";
+            case INVALID:
+                return "Environment variable '" + this.name + "' is not a valid version number: '"
+                    + this.rawValue + "'";
+            default:
+                return null;
+        }
+    }
+    
+    
+    
+    public static enum Status {
+        FOUND,
+        MISSING,
+        INVALID
+    }
+    
+}
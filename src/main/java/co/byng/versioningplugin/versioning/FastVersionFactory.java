@@ -0,0 +1,322 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import com.github.zafarkhaja.semver.ParseException;
+import com.github.zafarkhaja.semver.Version;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses the common forms of version (<code>1.2.3</code> and
+ * <code>1.2.3-rc.1</code>) directly from the characters or bytes given,
+ * without first copying them into strings, and hands anything else - build
+ * metadata, leading zeros, surrounding whitespace or invalid input - to
+ * another factory, so the results and errors are always those of the
+ * library's own parser.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class FastVersionFactory implements VersionFactory {
+    
+    protected static final int MAX_NUMBER_DIGITS = 9;
+    
+    private static final String[] KNOWN_PRE_RELEASES = {
+        VersionNumberUpdater.PreReleaseVersion.ALPHA,
+        VersionNumberUpdater.PreReleaseVersion.BETA,
+        VersionNumberUpdater.PreReleaseVersion.RELEASE_CANDIDATE,
+        VersionNumberUpdater.PreReleaseVersion.NIGHTLY,
+        VersionNumberUpdater.PreReleaseVersion.BUILD
+    };
+    
+    protected final VersionFactory fallbackFactory;
+    
+    
+    
+    public FastVersionFactory() {
+        this(new StaticVersionFactory());
+    }
+    
+    public FastVersionFactory(VersionFactory fallbackFactory) throws IllegalArgumentException {
+        if (fallbackFactory == null) {
+            throw new IllegalArgumentException("Fallback version factory cannot be given as null");
+        }
+        
+        this.fallbackFactory = fallbackFactory;
+    }
+
+    public VersionFactory getFallbackFactory() {
+        return this.fallbackFactory;
+    }
+    
+    @Override
+    public Version buildVersionFromString(String version) throws ParseException {
+        if (version == null) {
+            return this.fallbackFactory.buildVersionFromString(version);
+        }
+        
+        return this.buildVersion(version, 0, version.length());
+    }
+    
+    /**
+     * 
+     * @param chars
+     * @param start
+     * @param end
+     * @return the version held between the given positions
+     * @throws ParseException if the characters do not hold a valid version
+     */
+    public Version buildVersion(CharSequence chars, int start, int end) throws ParseException {
+        Version version = this.parse(chars, start, end);
+        
+        if (version == null) {
+            return this.fallbackFactory.buildVersionFromString(chars.subSequence(start, end).toString());
+        }
+        
+        return version;
+    }
+    
+    /**
+     * 
+     * @param buffer
+     * @param offset
+     * @param length
+     * @return the version held in the given region of the buffer as ASCII
+     *  (or UTF-8) bytes; the buffer's position is not changed
+     * @throws ParseException if the bytes do not hold a valid version
+     */
+    public Version buildVersion(ByteBuffer buffer, int offset, int length) throws ParseException {
+        return this.buildVersion(new AsciiRegion(buffer, offset, length), 0, length);
+    }
+    
+    /**
+     * 
+     * @param chars
+     * @param start
+     * @param end
+     * @return the version, or null if it is not in one of the forms parsed
+     *  here
+     */
+    protected Version parse(CharSequence chars, int start, int end) {
+        int majorEnd = this.findNumberEnd(chars, start, end);
+        int minorEnd = this.findNumberEnd(chars, majorEnd + 1, end);
+        int patchEnd = this.findNumberEnd(chars, minorEnd + 1, end);
+        
+        if (majorEnd < 0 || minorEnd < 0 || patchEnd < 0
+            || chars.charAt(majorEnd) != '.'
+            || chars.charAt(minorEnd) != '.'
+        ) {
+            return null;
+        }
+        
+        Version version = Version.forIntegers(
+            this.parseNumber(chars, start, majorEnd),
+            this.parseNumber(chars, majorEnd + 1, minorEnd),
+            this.parseNumber(chars, minorEnd + 1, patchEnd)
+        );
+        
+        if (patchEnd == end) {
+            return version;
+        }
+        
+        if (chars.charAt(patchEnd) != '-' || !this.isSimplePreRelease(chars, patchEnd + 1, end)) {
+            return null;
+        }
+        
+        return version.setPreReleaseVersion(this.getPreRelease(chars, patchEnd + 1, end));
+    }
+    
+    /**
+     * 
+     * @param chars
+     * @param start
+     * @param end
+     * @return the end of the number starting at the given position, or -1 if
+     *  there is none, or it has a leading zero or too many digits to parse
+     *  here
+     */
+    protected int findNumberEnd(CharSequence chars, int start, int end) {
+        if (start < 0 || start >= end) {
+            return -1;
+        }
+        
+        int position = start;
+        
+        while (position < end && isDigit(chars.charAt(position))) {
+            position++;
+        }
+        
+        int digits = position - start;
+        
+        if (digits == 0 || digits > MAX_NUMBER_DIGITS || (digits > 1 && chars.charAt(start) == '0')) {
+            return -1;
+        }
+        
+        return position;
+    }
+    
+    protected int parseNumber(CharSequence chars, int start, int end) {
+        int number = 0;
+        
+        for (int i = start; i < end; i++) {
+            number = number * 10 + (chars.charAt(i) - '0');
+        }
+        
+        return number;
+    }
+    
+    /**
+     * 
+     * @param chars
+     * @param start
+     * @param end
+     * @return whether the given characters are one or more dot-separated,
+     *  non-empty identifiers of letters, digits and hyphens, with no leading
+     *  zeros in numeric identifiers
+     */
+    protected boolean isSimplePreRelease(CharSequence chars, int start, int end) {
+        int identifierStart = start;
+        
+        for (int i = start; i <= end; i++) {
+            if (i < end && chars.charAt(i) != '.') {
+                if (!isIdentifierChar(chars.charAt(i))) {
+                    return false;
+                }
+                
+                continue;
+            }
+            
+            if (i == identifierStart) {
+                return false;
+            }
+            
+            if (chars.charAt(identifierStart) == '0' && i - identifierStart > 1
+                && this.isNumeric(chars, identifierStart, i)
+            ) {
+                return false;
+            }
+            
+            identifierStart = i + 1;
+        }
+        
+        return true;
+    }
+    
+    protected boolean isNumeric(CharSequence chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isDigit(chars.charAt(i))) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * 
+     * @param chars
+     * @param start
+     * @param end
+     * @return the pre-release version between the given positions, reusing
+     *  the plugin's own pre-release values rather than copying them; any
+     *  other value is copied, not interned, as the parser also checks
+     *  partly typed versions
+     */
+    protected String getPreRelease(CharSequence chars, int start, int end) {
+        int length = end - start;
+        
+        for (String preRelease : KNOWN_PRE_RELEASES) {
+            if (preRelease.length() == length && this.regionEquals(chars, start, preRelease)) {
+                return preRelease;
+            }
+        }
+        
+        return chars.subSequence(start, end).toString();
+    }
+    
+    protected boolean regionEquals(CharSequence chars, int start, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (chars.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+    
+    private static boolean isIdentifierChar(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-';
+    }
+    
+    
+    
+    /**
+     * Presents a region of a byte buffer as characters, one per byte, without
+     * copying it
+     */
+    protected static class AsciiRegion implements CharSequence {
+        
+        protected final ByteBuffer buffer;
+        protected final int offset;
+        protected final int length;
+        
+        public AsciiRegion(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return this.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (this.buffer.get(this.offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiRegion(this.buffer, this.offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[this.length];
+            
+            for (int i = 0; i < this.length; i++) {
+                bytes[i] = this.buffer.get(this.offset + i);
+            }
+            
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Computer;
+import hudson.model.Environment;
+import hudson.model.EnvironmentContributingAction;
+import hudson.model.EnvironmentContributor;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.scm.SCM;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A build's environment, which is only resolved when a variable is first
+ * looked up, as resolving it runs every environment contributor and asks the
+ * node for its environment
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class LazyEnvironment {
+    
+    protected final Run<?, ?> build;
+    protected final TaskListener listener;
+    protected final NodeEnvironmentCache nodeCache;
+    protected EnvVars environment;
+    protected Map<String, EnvVariableLookup> lookups;
+    
+    
+    
+    public LazyEnvironment(Run<?, ?> build, TaskListener listener) {
+        this(build, listener, null);
+    }
+    
+    /**
+     * 
+     * @param build
+     * @param listener
+     * @param nodeCache the cache to take the node's environment from, with
+     *  everything else the build contributes applied on top; null to resolve
+     *  the whole environment from the build
+     */
+    public LazyEnvironment(Run<?, ?> build, TaskListener listener, NodeEnvironmentCache nodeCache) {
+        if (build == null) {
+            throw new IllegalArgumentException("Build cannot be given as a null object");
+        }
+        
+        this.build = build;
+        this.listener = listener;
+        this.nodeCache = nodeCache;
+    }
+    
+    /**
+     * 
+     * @param environment an environment which has already been resolved
+     */
+    public LazyEnvironment(EnvVars environment) {
+        this.build = null;
+        this.listener = null;
+        this.nodeCache = null;
+        this.environment = (environment == null) ? new EnvVars() : environment;
+    }
+    
+    public boolean isResolved() {
+        return this.environment != null;
+    }
+    
+    /**
+     * 
+     * @return the build's environment, resolving it on the first call
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public EnvVars getEnvironment() throws IOException, InterruptedException {
+        if (this.environment == null) {
+            EnvVars environment = this.resolveFromNodeCache();
+            
+            if (environment == null) {
+                environment = this.build.getEnvironment(this.listener);
+            }
+            
+            this.environment = (environment == null) ? new EnvVars() : environment;
+        }
+        
+        return this.environment;
+    }
+    
+    /**
+     * Builds the environment as {@link AbstractBuild#getEnvironment} does,
+     * but starting from the cached environment of the node rather than
+     * fetching it again
+     * 
+     * @return the build's environment, or null if there is no cache or the
+     *  build is not running on a node
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    protected EnvVars resolveFromNodeCache() throws IOException, InterruptedException {
+        if (this.nodeCache == null || !(this.build instanceof AbstractBuild)) {
+            return null;
+        }
+        
+        Computer computer = this.getCurrentComputer();
+        
+        if (computer == null) {
+            return null;
+        }
+        
+        AbstractBuild<?, ?> build = (AbstractBuild<?, ?>) this.build;
+        AbstractProject<?, ?> project = build.getProject();
+        EnvVars environment = this.nodeCache.getEnvironment(computer, this.listener);
+        Iterable<EnvironmentContributor> contributors = this.getEnvironmentContributors();
+        
+        // As contributed to the job's environment
+        environment.putAll(project.getCharacteristicEnvVars());
+        environment.put("CLASSPATH", "");
+        
+        for (EnvironmentContributor contributor : contributors) {
+            contributor.buildEnvironmentFor(project, environment, this.listener);
+        }
+        
+        // As contributed to the run's environment
+        environment.putAll(build.getCharacteristicEnvVars());
+        
+        for (EnvironmentContributor contributor : contributors) {
+            contributor.buildEnvironmentFor(build, environment, this.listener);
+        }
+        
+        // As contributed to the build's environment
+        FilePath workspace = build.getWorkspace();
+        
+        if (workspace != null) {
+            environment.put("WORKSPACE", workspace.getRemote());
+        }
+        
+        SCM scm = project.getScm();
+        
+        if (scm != null) {
+            scm.buildEnvVars(build, environment);
+        }
+        
+        for (Environment wrapperEnvironment : build.getEnvironments()) {
+            wrapperEnvironment.buildEnvVars(environment);
+        }
+        
+        for (EnvironmentContributingAction action : build.getActions(EnvironmentContributingAction.class)) {
+            action.buildEnvVars(build, environment);
+        }
+        
+        EnvVars.resolve(environment);
+        
+        return environment;
+    }
+    
+    /**
+     * 
+     * @return the environment contributors, in the order Jenkins applies
+     *  them so that higher ordinal ones can modify what lower ones add
+     */
+    protected Iterable<EnvironmentContributor> getEnvironmentContributors() {
+        return EnvironmentContributor.all().reverseView();
+    }
+    
+    protected Computer getCurrentComputer() {
+        return Computer.currentComputer();
+    }
+    
+    /**
+     * 
+     * @param name
+     * @return the variable's value as a version component, or why it is not
+     *  one
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public EnvVariableLookup lookup(String name) throws IOException, InterruptedException {
+        if (this.lookups == null) {
+            this.lookups = new HashMap<>(4);
+        }
+        
+        EnvVariableLookup lookup = this.lookups.get(name);
+        
+        if (lookup == null) {
+            lookup = EnvVariableLookup.lookup(this.getEnvironment(), name);
+            this.lookups.put(name, lookup);
+        }
+        
+        return lookup;
+    }
+    
+}
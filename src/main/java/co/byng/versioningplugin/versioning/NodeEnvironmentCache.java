@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import hudson.EnvVars;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Holds a snapshot of each node's environment: its own environment, fetched
+ * over remoting, with the global and node-level environment variables
+ * configured in Jenkins applied on top. Snapshots are kept until the node
+ * goes on or offline or the node configuration changes, so that builds on
+ * the node need not fetch its environment again.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class NodeEnvironmentCache {
+    
+    private static final NodeEnvironmentCache DEFAULT = new NodeEnvironmentCache();
+    
+    protected final Map<Computer, EnvVars> snapshots = new WeakHashMap<>();
+    
+    /**
+     * Counts invalidations, so that a snapshot taken while the cache was
+     * being invalidated is not kept
+     */
+    protected long generation;
+    
+    
+    
+    /**
+     * 
+     * @return the cache shared by all jobs
+     */
+    public static NodeEnvironmentCache getDefault() {
+        return DEFAULT;
+    }
+    
+    /**
+     * 
+     * @param computer
+     * @param listener
+     * @return a copy of the node's environment, taking a snapshot of it if
+     *  there is none yet
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    public EnvVars getEnvironment(Computer computer, TaskListener listener) throws IOException, InterruptedException {
+        EnvVars snapshot;
+        long generation;
+        
+        synchronized (this.snapshots) {
+            snapshot = this.snapshots.get(computer);
+            generation = this.generation;
+        }
+        
+        if (snapshot == null) {
+            snapshot = this.takeSnapshot(computer, listener);
+            
+            synchronized (this.snapshots) {
+                if (this.generation == generation) {
+                    this.snapshots.put(computer, snapshot);
+                }
+            }
+        }
+        
+        return new EnvVars(snapshot);
+    }
+    
+    /**
+     * Merges the node's environment as {@link hudson.model.Job#getEnvironment}
+     * does; {@link Computer#buildEnvironment} already applies the global and
+     * node properties
+     * 
+     * @param computer
+     * @param listener
+     * @return the node's environment as it is now
+     * @throws IOException
+     * @throws InterruptedException 
+     */
+    protected EnvVars takeSnapshot(Computer computer, TaskListener listener) throws IOException, InterruptedException {
+        EnvVars environment = new EnvVars(computer.getEnvironment());
+        environment.putAll(computer.buildEnvironment(listener));
+        
+        return environment;
+    }
+    
+    public boolean contains(Computer computer) {
+        synchronized (this.snapshots) {
+            return this.snapshots.containsKey(computer);
+        }
+    }
+    
+    public int size() {
+        synchronized (this.snapshots) {
+            return this.snapshots.size();
+        }
+    }
+    
+    public void invalidate(Computer computer) {
+        synchronized (this.snapshots) {
+            this.snapshots.remove(computer);
+            this.generation++;
+        }
+    }
+    
+    public void invalidateAll() {
+        synchronized (this.snapshots) {
+            this.snapshots.clear();
+            this.generation++;
+        }
+    }
+    
+}
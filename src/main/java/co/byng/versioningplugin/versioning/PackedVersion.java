@@ -0,0 +1,234 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import com.github.zafarkhaja.semver.Version;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Operations on a release version packed into a single long, with 21 bits
+ * each for the major, minor and patch components (major highest), so that
+ * versions can be incremented, set, compared and formatted without creating
+ * {@link Version} objects; the pre-release version is kept alongside as an
+ * interned string. Versions are converted to and from {@link Version} only
+ * where they enter and leave the plugin.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public final class PackedVersion {
+    
+    public static final int COMPONENT_BITS = 21;
+    public static final int MAX_COMPONENT = (1 << COMPONENT_BITS) - 1;
+    
+    protected static final int MAX_INTERNED_PRE_RELEASES = 64;
+    
+    private static final int MINOR_SHIFT = COMPONENT_BITS;
+    private static final int MAJOR_SHIFT = COMPONENT_BITS * 2;
+    private static final ConcurrentMap<String, String> PRE_RELEASES = new ConcurrentHashMap<>();
+    
+    static {
+        internPreRelease(VersionNumberUpdater.PreReleaseVersion.ALPHA);
+        internPreRelease(VersionNumberUpdater.PreReleaseVersion.BETA);
+        internPreRelease(VersionNumberUpdater.PreReleaseVersion.RELEASE_CANDIDATE);
+        internPreRelease(VersionNumberUpdater.PreReleaseVersion.NIGHTLY);
+        internPreRelease(VersionNumberUpdater.PreReleaseVersion.BUILD);
+    }
+    
+    
+    
+    private PackedVersion() {
+    }
+    
+    public static boolean isPackable(int major, int minor, int patch) {
+        return major >= 0 && major <= MAX_COMPONENT
+            && minor >= 0 && minor <= MAX_COMPONENT
+            && patch >= 0 && patch <= MAX_COMPONENT;
+    }
+    
+    public static boolean isPackable(Version version) {
+        return isPackable(
+            version.getMajorVersion(),
+            version.getMinorVersion(),
+            version.getPatchVersion()
+        );
+    }
+    
+    public static long pack(int major, int minor, int patch) throws IllegalArgumentException {
+        if (!isPackable(major, minor, patch)) {
+            throw new IllegalArgumentException(
+                "Version " + major + "." + minor + "." + patch + " has a component outside 0-" + MAX_COMPONENT
+            );
+        }
+        
+        return ((long) major << MAJOR_SHIFT) | ((long) minor << MINOR_SHIFT) | patch;
+    }
+    
+    /**
+     * 
+     * @param version
+     * @return the normal version of the given version, packed
+     * @throws IllegalArgumentException if a component cannot be packed
+     */
+    public static long fromVersion(Version version) throws IllegalArgumentException {
+        return pack(
+            version.getMajorVersion(),
+            version.getMinorVersion(),
+            version.getPatchVersion()
+        );
+    }
+    
+    /**
+     * 
+     * @param packed
+     * @param preRelease the pre-release version, or null or empty for none
+     * @return 
+     */
+    public static Version toVersion(long packed, String preRelease) {
+        Version version = Version.forIntegers(getMajor(packed), getMinor(packed), getPatch(packed));
+        
+        if (preRelease != null && !preRelease.isEmpty()) {
+            version = version.setPreReleaseVersion(preRelease);
+        }
+        
+        return version;
+    }
+    
+    public static int getMajor(long packed) {
+        return (int) (packed >>> MAJOR_SHIFT) & MAX_COMPONENT;
+    }
+    
+    public static int getMinor(long packed) {
+        return (int) (packed >>> MINOR_SHIFT) & MAX_COMPONENT;
+    }
+    
+    public static int getPatch(long packed) {
+        return (int) packed & MAX_COMPONENT;
+    }
+    
+    public static long incrementMajor(long packed) throws IllegalArgumentException {
+        return majorVersion(getMajor(packed) + 1);
+    }
+    
+    public static long incrementMinor(long packed) throws IllegalArgumentException {
+        return withMinor(packed, getMinor(packed) + 1);
+    }
+    
+    public static long incrementPatch(long packed) throws IllegalArgumentException {
+        return addPatch(packed, 1);
+    }
+    
+    public static long addPatch(long packed, int increment) throws IllegalArgumentException {
+        return pack(getMajor(packed), getMinor(packed), getPatch(packed) + increment);
+    }
+    
+    /**
+     * 
+     * @param major
+     * @return the packed form of major.0.0; the minor and patch components are
+     *  always reset, as incrementing the major version would
+     * @throws IllegalArgumentException 
+     */
+    public static long majorVersion(int major) throws IllegalArgumentException {
+        return pack(major, 0, 0);
+    }
+    
+    /**
+     * 
+     * @param packed
+     * @param minor
+     * @return the version with the given minor component and the patch
+     *  component reset, as incrementing the minor version would
+     * @throws IllegalArgumentException 
+     */
+    public static long withMinor(long packed, int minor) throws IllegalArgumentException {
+        return pack(getMajor(packed), minor, 0);
+    }
+    
+    /**
+     * 
+     * @param packed1
+     * @param packed2
+     * @return the same ordering as comparing the two normal versions
+     */
+    public static int compare(long packed1, long packed2) {
+        return Long.compare(packed1, packed2);
+    }
+    
+    /**
+     * 
+     * @param packed
+     * @param preRelease the pre-release version, or null or empty for none
+     * @param builder
+     * @return the given builder, with the version appended as it would be
+     *  formatted by {@link Version#toString()}
+     */
+    public static StringBuilder appendTo(long packed, String preRelease, StringBuilder builder) {
+        builder
+            .append(getMajor(packed))
+            .append('.')
+            .append(getMinor(packed))
+            .append('.')
+            .append(getPatch(packed))
+        ;
+        
+        if (preRelease != null && !preRelease.isEmpty()) {
+            builder.append('-').append(preRelease);
+        }
+        
+        return builder;
+    }
+    
+    public static String toString(long packed, String preRelease) {
+        return appendTo(packed, preRelease, new StringBuilder(24)).toString();
+    }
+    
+    /**
+     * 
+     * @param preRelease
+     * @return the shared instance of the given pre-release version, or the
+     *  empty string for none; values beyond the first few distinct ones seen
+     *  are returned as given rather than being held indefinitely
+     */
+    public static String internPreRelease(String preRelease) {
+        if (preRelease == null || preRelease.isEmpty()) {
+            return VersionNumberUpdater.PreReleaseVersion.NONE;
+        }
+        
+        String interned = PRE_RELEASES.get(preRelease);
+        
+        if (interned != null) {
+            return interned;
+        }
+        
+        if (PRE_RELEASES.size() >= MAX_INTERNED_PRE_RELEASES) {
+            return preRelease;
+        }
+        
+        interned = PRE_RELEASES.putIfAbsent(preRelease, preRelease);
+        
+        return (interned != null) ? interned : preRelease;
+    }
+    
+}
@@ -49,10 +49,51 @@ public class VersionNumberUpdater {
         return currentVersion;
     }
     
+    /**
+     * 
+     * @param currentVersion
+     * @param increment
+     * @return the release version with the given number added to the patch
+     *  component, as if it were incremented that many times
+     */
+    public Version incrementPatchVersion(Version currentVersion, int increment) {
+        return Version.forIntegers(
+            currentVersion.getMajorVersion(),
+            currentVersion.getMinorVersion(),
+            currentVersion.getPatchVersion() + increment
+        );
+    }
+    
     public Version updateMajorBasedOnEnvironmentVariable(
         Version currentVersion,
         EnvVars environment,
         String envVariableName
+    ) throws Exception, NumberFormatException {
+        return this.updateMajorBasedOnEnvironmentVariable(
+            currentVersion,
+            environment,
+            envVariableName,
+            DecreasePolicy.IGNORE
+        );
+    }
+    
+    /**
+     * 
+     * @param currentVersion
+     * @param environment
+     * @param envVariableName
+     * @param decreasePolicy one of the {@link DecreasePolicy} values; null is
+     *  treated as {@link DecreasePolicy#IGNORE}
+     * @return the version with the major component set to the variable's
+     *  value and the lower components reset, built in a single step
+     * @throws Exception if the variable is missing, or if it would lower the
+     *  major component under {@link DecreasePolicy#REJECT}
+     */
+    public Version updateMajorBasedOnEnvironmentVariable(
+        Version currentVersion,
+        EnvVars environment,
+        String envVariableName,
+        String decreasePolicy
     ) throws Exception, NumberFormatException {
         int diff = this.getVersionDiffFromEnvVariable(
             environment,
@@ -60,17 +101,45 @@ public class VersionNumberUpdater {
             currentVersion.getMajorVersion()
         );
         
-        for (int i = 0; i < diff; i++) {
-            currentVersion = currentVersion.incrementMajorVersion();
+        if (!this.shouldApplyDiff(diff, decreasePolicy, "major", envVariableName)
+            || currentVersion.getMajorVersion() + diff < 0
+        ) {
+            return currentVersion;
         }
         
-        return currentVersion;
+        return Version.forIntegers(currentVersion.getMajorVersion() + diff, 0, 0);
     }
     
     public Version updateMinorBasedOnEnvironmentVariable(
         Version currentVersion,
         EnvVars environment,
         String envVariableName
+    ) throws Exception, NumberFormatException {
+        return this.updateMinorBasedOnEnvironmentVariable(
+            currentVersion,
+            environment,
+            envVariableName,
+            DecreasePolicy.IGNORE
+        );
+    }
+    
+    /**
+     * 
+     * @param currentVersion
+     * @param environment
+     * @param envVariableName
+     * @param decreasePolicy one of the {@link DecreasePolicy} values; null is
+     *  treated as {@link DecreasePolicy#IGNORE}
+     * @return the version with the minor component set to the variable's
+     *  value and the patch component reset, built in a single step
+     * @throws Exception if the variable is missing, or if it would lower the
+     *  minor component under {@link DecreasePolicy#REJECT}
+     */
+    public Version updateMinorBasedOnEnvironmentVariable(
+        Version currentVersion,
+        EnvVars environment,
+        String envVariableName,
+        String decreasePolicy
     ) throws Exception, NumberFormatException {
         int diff = this.getVersionDiffFromEnvVariable(
             environment,
@@ -78,11 +147,41 @@ public class VersionNumberUpdater {
             currentVersion.getMinorVersion()
         );
         
-        for (int i = 0; i < diff; i++) {
-            currentVersion = currentVersion.incrementMinorVersion();
+        if (!this.shouldApplyDiff(diff, decreasePolicy, "minor", envVariableName)
+            || currentVersion.getMinorVersion() + diff < 0
+        ) {
+            return currentVersion;
         }
         
-        return currentVersion;
+        return Version.forIntegers(
+            currentVersion.getMajorVersion(),
+            currentVersion.getMinorVersion() + diff,
+            0
+        );
+    }
+    
+    protected boolean shouldApplyDiff(
+        int diff,
+        String decreasePolicy,
+        String componentName,
+        String envVariableName
+    ) throws Exception {
+        if (diff > 0) {
+            return true;
+        }
+        
+        if (diff == 0) {
+            return false;
+        }
+        
+        if (DecreasePolicy.REJECT.equals(decreasePolicy)) {
+            throw new Exception(
+                "Environment variable '" + envVariableName + "' would decrease the "
+                    + componentName + " version by " + (-diff)
+            );
+        }
+        
+        return DecreasePolicy.ALLOW.equals(decreasePolicy);
     }
     
     protected int getVersionDiffFromEnvVariable(
@@ -90,13 +189,16 @@ public class VersionNumberUpdater {
         String envVariableName,
         int currentComponentVersion
     ) throws Exception, NumberFormatException {
-        if (envVariableName == null || !environment.containsKey(envVariableName)) {
-            throw new Exception(
-                "Environment variable '" + envVariableName + "' is not set in the current context"
-            );
-        }
+        EnvVariableLookup lookup = EnvVariableLookup.lookup(environment, envVariableName);
         
-        return Integer.valueOf(environment.get(envVariableName)) - currentComponentVersion;
+        switch (lookup.getStatus()) {
+            case MISSING:
+                throw new Exception(lookup.getMessage());
+            case INVALID:
+                throw new NumberFormatException(lookup.getMessage());
+            default:
+                return lookup.getValue() - currentComponentVersion;
+        }
     }
     
     public Version setPreReleaseVersion(Version currentVersion, String preRelease) {
@@ -117,6 +219,12 @@ public class VersionNumberUpdater {
         public static final String PATCH = "patch";
     }
     
+    public static class DecreasePolicy {
+        public static final String IGNORE = "ignore";
+        public static final String REJECT = "reject";
+        public static final String ALLOW = "allow";
+    }
+    
     public static class PreReleaseVersion {
         public static final String NONE = "";
         public static final String ALPHA = "alpha";
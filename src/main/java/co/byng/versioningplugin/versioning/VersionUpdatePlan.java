@@ -0,0 +1,342 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import co.byng.versioningplugin.configuration.VersioningConfigurationProvider;
+import com.github.zafarkhaja.semver.Version;
+import hudson.EnvVars;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The changes a job's configuration makes to its version on each build,
+ * resolved once from the configuration into an ordered list of operations
+ * on a {@link PackedVersion}, so that builds need not read and match the
+ * configuration's strings again.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public final class VersionUpdatePlan {
+    
+    /**
+     * Returned by an operation whose result has a component too large to be
+     * packed; packed versions are never negative
+     */
+    protected static final long UNPACKABLE = -1L;
+    
+    /**
+     * Decides whether an environment variable's value is applied, so that the
+     * decrease policy means the same here as for unpacked versions
+     */
+    private static final VersionNumberUpdater UPDATER = new VersionNumberUpdater();
+    
+    private final Operation[] operations;
+    private final String preRelease;
+    private final boolean patchIncrement;
+    private final boolean environmentNeeded;
+    
+    
+    
+    private VersionUpdatePlan(
+        Operation[] operations,
+        String preRelease,
+        boolean patchIncrement,
+        boolean environmentNeeded
+    ) {
+        this.operations = operations;
+        this.preRelease = preRelease;
+        this.patchIncrement = patchIncrement;
+        this.environmentNeeded = environmentNeeded;
+    }
+    
+    /**
+     * 
+     * @param configuration
+     * @return the plan for the given configuration as it is now; later
+     *  changes to the configuration are not reflected in it
+     */
+    public static VersionUpdatePlan compile(VersioningConfigurationProvider configuration) {
+        List<Operation> operations = new ArrayList<>(3);
+        
+        Component incrementedComponent = Component.forName(configuration.getFieldToIncrement());
+        
+        if (incrementedComponent != null) {
+            operations.add(new IncrementOperation(incrementedComponent));
+        }
+        
+        boolean baseMajorOnEnvVariable = configuration.getBaseMajorOnEnvVariable();
+        boolean baseMinorOnEnvVariable = configuration.getBaseMinorOnEnvVariable();
+        String decreasePolicy = configuration.getVersionDecreasePolicy();
+        
+        if (baseMajorOnEnvVariable) {
+            operations.add(
+                new EnvVariableOperation(Component.MAJOR, configuration.getMajorEnvVariable(), decreasePolicy)
+            );
+        }
+        
+        if (baseMinorOnEnvVariable) {
+            operations.add(
+                new EnvVariableOperation(Component.MINOR, configuration.getMinorEnvVariable(), decreasePolicy)
+            );
+        }
+        
+        String preRelease = configuration.getPreReleaseVersion();
+        
+        if (preRelease != null) {
+            preRelease = PackedVersion.internPreRelease(preRelease);
+        }
+        
+        return new VersionUpdatePlan(
+            operations.toArray(new Operation[operations.size()]),
+            preRelease,
+            incrementedComponent == Component.PATCH
+                && !baseMajorOnEnvVariable
+                && !baseMinorOnEnvVariable
+                && (preRelease == null || preRelease.isEmpty()),
+            baseMajorOnEnvVariable || baseMinorOnEnvVariable
+        );
+    }
+    
+    public int getOperationCount() {
+        return this.operations.length;
+    }
+    
+    /**
+     * 
+     * @return the pre-release version set by the plan, the empty string if
+     *  it clears it, or null if it leaves it alone
+     */
+    public String getPreRelease() {
+        return this.preRelease;
+    }
+    
+    /**
+     * 
+     * @return whether the plan does nothing but increment the patch version
+     */
+    public boolean isPatchIncrement() {
+        return this.patchIncrement;
+    }
+    
+    /**
+     * 
+     * @return whether applying the plan looks up any environment variables
+     */
+    public boolean isEnvironmentNeeded() {
+        return this.environmentNeeded;
+    }
+    
+    /**
+     * 
+     * @param version
+     * @param environment
+     * @return the version with the plan's changes applied; the given version
+     *  itself if the plan changes nothing; or null if the version or the
+     *  result has a component too large to be packed, in which case the
+     *  changes must be applied to the {@link Version} itself
+     * @throws Exception if a version component is based on a missing or
+     *  invalid environment variable, or would be lowered against the plan's
+     *  decrease policy
+     */
+    public Version apply(Version version, EnvVars environment) throws Exception {
+        return this.apply(version, new LazyEnvironment(environment));
+    }
+    
+    /**
+     * 
+     * @param version
+     * @param environment the build's environment, which is only resolved if
+     *  the plan looks up a variable
+     * @return the version with the plan's changes applied; the given version
+     *  itself if the plan changes nothing; or null if the version or the
+     *  result has a component too large to be packed, in which case the
+     *  changes must be applied to the {@link Version} itself
+     * @throws Exception if a version component is based on a missing or
+     *  invalid environment variable, or would be lowered against the plan's
+     *  decrease policy
+     */
+    public Version apply(Version version, LazyEnvironment environment) throws Exception {
+        if (!PackedVersion.isPackable(version)) {
+            return null;
+        }
+        
+        long originalVersion = PackedVersion.fromVersion(version);
+        long packedVersion = originalVersion;
+        
+        for (Operation operation : this.operations) {
+            packedVersion = operation.apply(packedVersion, environment);
+            
+            if (packedVersion == UNPACKABLE) {
+                return null;
+            }
+        }
+        
+        if (this.preRelease == null) {
+            if (packedVersion == originalVersion) {
+                return version;
+            }
+            
+            return PackedVersion.toVersion(packedVersion, null);
+        }
+        
+        return PackedVersion.toVersion(packedVersion, this.preRelease);
+    }
+    
+    
+    
+    public static enum Component {
+        MAJOR(VersionNumberUpdater.VersionComponent.MAJOR),
+        MINOR(VersionNumberUpdater.VersionComponent.MINOR),
+        PATCH(VersionNumberUpdater.VersionComponent.PATCH);
+        
+        private final String name;
+        
+        private Component(String name) {
+            this.name = name;
+        }
+        
+        /**
+         * 
+         * @param name one of the {@link VersionNumberUpdater.VersionComponent}
+         *  values
+         * @return the component, or null for none
+         */
+        public static Component forName(String name) {
+            for (Component component : values()) {
+                if (component.name.equals(name)) {
+                    return component;
+                }
+            }
+            
+            return null;
+        }
+        
+        public String getName() {
+            return this.name;
+        }
+    }
+    
+    protected static abstract class Operation {
+        
+        /**
+         * 
+         * @param packedVersion
+         * @param environment
+         * @return the changed packed version, or {@link #UNPACKABLE} if a
+         *  component of it would be too large to be packed
+         * @throws Exception 
+         */
+        public abstract long apply(long packedVersion, LazyEnvironment environment) throws Exception;
+        
+    }
+    
+    protected static class IncrementOperation extends Operation {
+        
+        protected final Component component;
+        
+        public IncrementOperation(Component component) {
+            this.component = component;
+        }
+
+        @Override
+        public long apply(long packedVersion, LazyEnvironment environment) {
+            int current;
+            
+            switch (this.component) {
+                case MAJOR:
+                    current = PackedVersion.getMajor(packedVersion);
+                    break;
+                case MINOR:
+                    current = PackedVersion.getMinor(packedVersion);
+                    break;
+                default:
+                    current = PackedVersion.getPatch(packedVersion);
+            }
+            
+            if (current >= PackedVersion.MAX_COMPONENT) {
+                return UNPACKABLE;
+            }
+            
+            switch (this.component) {
+                case MAJOR:
+                    return PackedVersion.incrementMajor(packedVersion);
+                case MINOR:
+                    return PackedVersion.incrementMinor(packedVersion);
+                default:
+                    return PackedVersion.incrementPatch(packedVersion);
+            }
+        }
+        
+    }
+    
+    protected static class EnvVariableOperation extends Operation {
+        
+        protected final Component component;
+        protected final String envVariableName;
+        protected final String decreasePolicy;
+        
+        /**
+         * 
+         * @param component
+         * @param envVariableName
+         * @param decreasePolicy one of the
+         *  {@link VersionNumberUpdater.DecreasePolicy} values
+         */
+        public EnvVariableOperation(Component component, String envVariableName, String decreasePolicy) {
+            this.component = component;
+            this.envVariableName = envVariableName;
+            this.decreasePolicy = decreasePolicy;
+        }
+
+        @Override
+        public long apply(long packedVersion, LazyEnvironment environment) throws Exception {
+            EnvVariableLookup lookup = environment.lookup(this.envVariableName);
+            
+            if (!lookup.isFound()) {
+                throw new Exception(lookup.getMessage());
+            }
+            
+            int target = lookup.getValue();
+            int current = (this.component == Component.MAJOR)
+                ? PackedVersion.getMajor(packedVersion)
+                : PackedVersion.getMinor(packedVersion);
+            
+            if (!UPDATER.shouldApplyDiff(target - current, this.decreasePolicy, this.component.getName(), this.envVariableName)
+                || target < 0
+            ) {
+                return packedVersion;
+            }
+            
+            if (target > PackedVersion.MAX_COMPONENT) {
+                return UNPACKABLE;
+            }
+            
+            return (this.component == Component.MAJOR)
+                ? PackedVersion.majorVersion(target)
+                : PackedVersion.withMinor(packedVersion, target);
+        }
+        
+    }
+    
+}
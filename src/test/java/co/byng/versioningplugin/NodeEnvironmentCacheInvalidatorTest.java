@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin;
+
+import co.byng.versioningplugin.versioning.NodeEnvironmentCache;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.Saveable;
+import hudson.model.TaskListener;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class NodeEnvironmentCacheInvalidatorTest {
+    
+    private NodeEnvironmentCache cache;
+    private Computer computer;
+    
+    @Before
+    public void setUp() {
+        this.cache = mock(NodeEnvironmentCache.class);
+        this.computer = mock(Computer.class);
+    }
+    
+    @Test
+    public void testComputerEventsInvalidateComputer() {
+        NodeEnvironmentCacheInvalidator invalidator = new NodeEnvironmentCacheInvalidator(this.cache);
+        
+        invalidator.onOnline(this.computer, mock(TaskListener.class));
+        invalidator.onOffline(this.computer);
+        
+        verify(this.cache, times(2)).invalidate(same(this.computer));
+        verify(this.cache, never()).invalidateAll();
+    }
+    
+    @Test
+    public void testConfigurationChangeInvalidatesAll() {
+        new NodeEnvironmentCacheInvalidator(this.cache).onConfigurationChange();
+        
+        verify(this.cache, times(1)).invalidateAll();
+    }
+    
+    @Test
+    public void testNodeSaveInvalidatesNode() {
+        NodeEnvironmentCacheInvalidator.NodeSaveListener listener = new NodeEnvironmentCacheInvalidator.NodeSaveListener(this.cache);
+        Node node = mock(Node.class);
+        when(node.toComputer()).thenReturn(this.computer);
+        
+        listener.onChange(mock(Saveable.class), null);
+        verifyZeroInteractions(this.cache);
+        
+        listener.onChange(node, null);
+        verify(this.cache, times(1)).invalidate(same(this.computer));
+        
+        listener.onChange(mock(Node.class), null);
+        verify(this.cache, times(1)).invalidateAll();
+    }
+    
+}
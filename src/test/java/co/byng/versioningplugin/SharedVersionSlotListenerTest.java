@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin;
+
+import co.byng.versioningplugin.handler.file.PathLockRegistry;
+import co.byng.versioningplugin.handler.shared.SharedVersionFile;
+import co.byng.versioningplugin.service.PathProvider;
+import com.github.zafarkhaja.semver.Version;
+import hudson.model.Item;
+import java.io.File;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class SharedVersionSlotListenerTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private File file;
+    private SharedVersionSlotListener listener;
+    
+    @Before
+    public void setUp() throws Exception {
+        this.file = new File(this.folder.getRoot(), "semantic-versioning/versions.db");
+        
+        PathProvider pathProvider = mock(PathProvider.class);
+        when(pathProvider.getSharedVersionFilePath()).thenReturn(this.file);
+        
+        this.listener = new SharedVersionSlotListener(pathProvider, new PathLockRegistry());
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        if (this.file.exists()) {
+            SharedVersionFile.open(this.file).close();
+        }
+    }
+    
+    @Test
+    public void testEventsDoNotCreateSharedFile() {
+        this.listener.onLocationChanged(mock(Item.class), "job", "renamed");
+        this.listener.onDeleted(this.mockItem("job"));
+        
+        assertFalse(this.file.exists());
+    }
+    
+    @Test
+    public void testLocationChangeMovesSlot() throws Exception {
+        SharedVersionFile sharedFile = SharedVersionFile.open(this.file);
+        sharedFile.setForceWrites(false);
+        sharedFile.write("folder/job", Version.valueOf("1.2.3"));
+        
+        this.listener.onLocationChanged(mock(Item.class), "folder/job", "other/job");
+        
+        assertNull(sharedFile.read("folder/job"));
+        assertEquals("1.2.3", sharedFile.read("other/job").toString());
+    }
+    
+    @Test
+    public void testDeletionFreesSlotsOfItemAndItsChildren() throws Exception {
+        SharedVersionFile sharedFile = SharedVersionFile.open(this.file);
+        sharedFile.setForceWrites(false);
+        sharedFile.write("folder", Version.valueOf("1.0.0"));
+        sharedFile.write("folder/job", Version.valueOf("2.0.0"));
+        sharedFile.write("folder-other", Version.valueOf("3.0.0"));
+        
+        this.listener.onDeleted(this.mockItem("folder"));
+        
+        assertNull(sharedFile.read("folder"));
+        assertNull(sharedFile.read("folder/job"));
+        assertEquals("3.0.0", sharedFile.read("folder-other").toString());
+        assertEquals(1, sharedFile.getSlotCount());
+    }
+    
+    private Item mockItem(String fullName) {
+        Item item = mock(Item.class);
+        when(item.getFullName()).thenReturn(fullName);
+        
+        return item;
+    }
+    
+}
@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin;
+
+import hudson.model.AbstractBuild;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class VersionAllocationActionTest {
+    
+    /**
+     * Test of forBuild method, of class VersionAllocationAction.
+     */
+    @Test
+    public void testForBuildAddsActionOnlyIfMissing() {
+        AbstractBuild build = mock(AbstractBuild.class);
+        
+        VersionAllocationAction action = VersionAllocationAction.forBuild(build);
+        
+        assertNotNull(action);
+        verify(build, times(1)).addAction(same(action));
+        
+        when(build.getAction(VersionAllocationAction.class)).thenReturn(action);
+        
+        assertSame(action, VersionAllocationAction.forBuild(build));
+        verify(build, times(1)).addAction(any(VersionAllocationAction.class));
+    }
+    
+    /**
+     * Test of getAllocation method, of class VersionAllocationAction.
+     */
+    @Test
+    public void testAllocationsAreKeptPerStore() {
+        VersionAllocationAction action = new VersionAllocationAction();
+        String key = VersionAllocationAction.getKey(null, "version.properties");
+        String otherKey = VersionAllocationAction.getKey("journal", "version.properties");
+        
+        assertNull(action.getAllocation(key));
+        
+        action.setAllocation(key, "1.0.0", "1.0.1");
+        
+        assertEquals("1.0.0", action.getAllocation(key).getPreviousVersion());
+        assertEquals("1.0.1", action.getAllocation(key).getCurrentVersion());
+        assertNull(action.getAllocation(otherKey));
+        assertNull(action.getIconFileName());
+    }
+    
+}
@@ -271,6 +271,66 @@ public class VersionNumberBuildWrapperTest {
 
             verify(this.builder, times(1)).getDoEnvExport();
         }
+
+        /**
+         * Test of getStorageBackend method, of class VersionNumberBuildWrapper.
+         */
+        @Test
+        public void testGetAndSetStorageBackend() {
+            String result = "STORAGE BACKEND";
+
+            when(this.builder.getStorageBackend()).thenReturn(result);
+
+            assertSame(result, this.buildWrapper.getStorageBackend());
+            this.buildWrapper.setStorageBackend(result);
+
+            verify(this.builder, times(1)).getStorageBackend();
+            verify(this.builder, times(1)).setStorageBackend(same(result));
+        }
+
+        /**
+         * Test of getPatchReservationSize method, of class VersionNumberBuildWrapper.
+         */
+        @Test
+        public void testGetAndSetPatchReservationSize() {
+            when(this.builder.getPatchReservationSize()).thenReturn(50);
+
+            assertEquals(50, this.buildWrapper.getPatchReservationSize());
+            this.buildWrapper.setPatchReservationSize(20);
+
+            verify(this.builder, times(1)).getPatchReservationSize();
+            verify(this.builder, times(1)).setPatchReservationSize(20);
+        }
+
+        /**
+         * Test of getVersionDecreasePolicy method, of class VersionNumberBuildWrapper.
+         */
+        @Test
+        public void testGetAndSetVersionDecreasePolicy() {
+            String result = "VERSION DECREASE POLICY";
+
+            when(this.builder.getVersionDecreasePolicy()).thenReturn(result);
+
+            assertSame(result, this.buildWrapper.getVersionDecreasePolicy());
+            this.buildWrapper.setVersionDecreasePolicy(result);
+
+            verify(this.builder, times(1)).getVersionDecreasePolicy();
+            verify(this.builder, times(1)).setVersionDecreasePolicy(same(result));
+        }
+
+        /**
+         * Test of getReuseBuildVersion method, of class VersionNumberBuildWrapper.
+         */
+        @Test
+        public void testGetAndSetReuseBuildVersion() {
+            when(this.builder.getReuseBuildVersion()).thenReturn(true);
+
+            assertTrue(this.buildWrapper.getReuseBuildVersion());
+            this.buildWrapper.setReuseBuildVersion(true);
+
+            verify(this.builder, times(1)).getReuseBuildVersion();
+            verify(this.builder, times(1)).setReuseBuildVersion(true);
+        }
     }
     
     @RunWith(MockitoJUnitRunner.class)
@@ -27,17 +27,23 @@ import co.byng.versioningplugin.configuration.OptionsProvider;
 import co.byng.versioningplugin.configuration.VersioningConfiguration;
 import co.byng.versioningplugin.configuration.VersioningConfigurationWriteableProvider;
 import co.byng.versioningplugin.configuration.VersioningGlobalConfigurationWriteableProvider;
-import co.byng.versioningplugin.handler.VersionCommittable;
-import co.byng.versioningplugin.handler.VersionRetrievable;
+import co.byng.versioningplugin.handler.VersionChange;
+import co.byng.versioningplugin.handler.VersionStore;
+import co.byng.versioningplugin.handler.VersionUpdate;
+import co.byng.versioningplugin.handler.cache.WriteBehindVersionHandler;
 import co.byng.versioningplugin.service.ServiceFactory;
+import co.byng.versioningplugin.versioning.LazyEnvironment;
+import co.byng.versioningplugin.versioning.PackedVersion;
 import co.byng.versioningplugin.versioning.VersionNumberUpdater;
 import co.byng.versioningplugin.versioning.VersionFactory;
+import co.byng.versioningplugin.versioning.VersionUpdatePlan;
 import com.github.zafarkhaja.semver.Version;
 import hudson.EnvVars;
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
+import hudson.model.TaskListener;
 import hudson.model.Descriptor.FormException;
 import hudson.util.ListBoxModel;
 import java.io.IOException;
@@ -53,6 +59,8 @@ import static org.junit.Assert.*;
 import org.junit.experimental.runners.Enclosed;
 import org.junit.runner.RunWith;
 import org.kohsuke.stapler.StaplerRequest;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import static org.mockito.Mockito.*;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -69,8 +77,7 @@ public class VersionNumberBuilderTest {
         private VersioningConfigurationWriteableProvider configuration;
         private ServiceFactory serviceFactory;
         private VersionNumberUpdater updater;
-        private VersionRetrievable retriever;
-        private VersionCommittable committer;
+        private VersionStore store;
         private VersionNumberBuilder builder;
         private VersionFactory versionFactory;
 
@@ -79,8 +86,7 @@ public class VersionNumberBuilderTest {
             this.configuration = mock(VersioningConfigurationWriteableProvider.class);
             this.serviceFactory = mock(ServiceFactory.class);
             this.updater = mock(VersionNumberUpdater.class);
-            this.retriever = mock(VersionRetrievable.class);
-            this.committer = mock(VersionCommittable.class);
+            this.store = mock(VersionStore.class);
             this.versionFactory = mock(VersionFactory.class);
 
             this.builder = new VersionNumberBuilder(this.configuration);
@@ -169,22 +175,21 @@ public class VersionNumberBuilderTest {
             when(configuration.getPropertyFilePath()).thenReturn(path);
 
             try {
-                when(this.serviceFactory.createCommitter(same(project), same(path), same(this.committer))).thenReturn(this.committer);
-                when(this.serviceFactory.createRetriever(same(project), same(path), same(this.retriever))).thenReturn(this.retriever);
+                when(this.serviceFactory.createStore(same(project), same(path), (String) isNull(), same(this.store))).thenReturn(this.store);
+                when(this.serviceFactory.createPatchReservingStore(same(this.store), eq(0))).thenReturn(this.store);
                 when(this.serviceFactory.createUpdater(same(this.updater))).thenReturn(this.updater);
                 when(this.serviceFactory.createVersionFactory(same(this.versionFactory))).thenReturn(this.versionFactory);
 
                 this.builder.lazyLoadServices(project);
 
                 assertSame(this.serviceFactory, this.builder.getServiceFactory());
-                assertSame(this.committer, this.builder.getCommitter());
-                assertSame(this.retriever, this.builder.getRetriever());
+                assertSame(this.store, this.builder.getStore());
                 assertSame(this.updater, this.builder.getUpdater());
                 
                 verify(this.configuration, times(1)).getPropertyFilePath();
 
-                verify(this.serviceFactory, times(1)).createCommitter(same(project), same(path), same(this.committer));
-                verify(this.serviceFactory, times(1)).createRetriever(same(project), same(path), same(this.retriever));
+                verify(this.serviceFactory, times(1)).createStore(same(project), same(path), (String) isNull(), same(this.store));
+                verify(this.serviceFactory, times(1)).createPatchReservingStore(same(this.store), eq(0));
                 verify(this.serviceFactory, times(1)).createUpdater(same(this.updater));
                 verify(this.serviceFactory, times(1)).createVersionFactory(same(this.versionFactory));
 
@@ -200,11 +205,8 @@ public class VersionNumberBuilderTest {
             this.builder.setServiceFactory(null);
             assertNull(this.builder.getServiceFactory());
 
-            this.builder.setCommitter(null);
-            assertNull(this.builder.getCommitter());
-
-            this.builder.setRetriever(null);
-            assertNull(this.builder.getRetriever());
+            this.builder.setStore(null);
+            assertNull(this.builder.getStore());
 
             this.builder.setUpdater(null);
             assertNull(this.builder.getUpdater());
@@ -213,6 +215,89 @@ public class VersionNumberBuilderTest {
             assertNull(this.builder.getVersionFactory());
         }
 
+        /**
+         * Test of applyConfiguredChanges method, of class VersionNumberBuilder.
+         */
+        @Test
+        public void testApplyConfiguredChangesFallsBackWhenResultCannotBePacked() throws Exception {
+            VersionNumberBuilder builder = new VersionNumberBuilder(
+                new VersioningConfiguration()
+                    .setFieldToIncrement(VersionNumberUpdater.VersionComponent.PATCH)
+            );
+            builder.setUpdater(new VersionNumberUpdater());
+            LazyEnvironment environment = new LazyEnvironment(new EnvVars("MAJOR", "20261017", "MINOR", "-3"));
+            
+            assertEquals(
+                "1.2.2097152",
+                builder.applyConfiguredChanges(Version.forIntegers(1, 2, PackedVersion.MAX_COMPONENT), environment).toString()
+            );
+            
+            builder.setConfiguration(
+                new VersioningConfiguration()
+                    .setBaseMajorOnEnvVariable(true)
+                    .setMajorEnvVariable("MAJOR")
+            );
+            
+            assertEquals(
+                "20261017.0.0",
+                builder.applyConfiguredChanges(Version.valueOf("1.2.3"), environment).toString()
+            );
+            
+            builder.setConfiguration(
+                new VersioningConfiguration()
+                    .setBaseMinorOnEnvVariable(true)
+                    .setMinorEnvVariable("MINOR")
+                    .setVersionDecreasePolicy(VersionNumberUpdater.DecreasePolicy.ALLOW)
+            );
+            
+            assertEquals(
+                "20261017.2.3",
+                builder.applyConfiguredChanges(Version.valueOf("20261017.2.3"), environment).toString()
+            );
+        }
+        
+        /**
+         * Test of flushReplacedStore method, of class VersionNumberBuilder.
+         */
+        @Test
+        public void testFlushReplacedStoreOnlyFlushesReplacedWriteBehindStores() throws Exception {
+            PrintStream logger = mock(PrintStream.class);
+            WriteBehindVersionHandler writeBehindStore = mock(WriteBehindVersionHandler.class);
+            when(writeBehindStore.flush(same(logger))).thenReturn(true);
+            
+            this.builder.setStore(writeBehindStore);
+            this.builder.flushReplacedStore(writeBehindStore, logger);
+            this.builder.flushReplacedStore(this.store, logger);
+            
+            verify(writeBehindStore, never()).flush(any(PrintStream.class));
+            
+            this.builder.setStore(this.store);
+            this.builder.flushReplacedStore(writeBehindStore, logger);
+            
+            verify(writeBehindStore, times(1)).flush(same(logger));
+        }
+        
+        /**
+         * Test of getUpdatePlan method, of class VersionNumberBuilder.
+         */
+        @Test
+        public void testGetUpdatePlanIsCompiledOnceUntilConfigurationChanges() {
+            when(this.configuration.getFieldToIncrement()).thenReturn(VersionNumberUpdater.VersionComponent.PATCH);
+            
+            VersionUpdatePlan plan = this.builder.getUpdatePlan();
+            
+            assertTrue(plan.isPatchIncrement());
+            assertSame(plan, this.builder.getUpdatePlan());
+            verify(this.configuration, times(1)).getFieldToIncrement();
+            
+            this.builder.setVersionDecreasePolicy(VersionNumberUpdater.DecreasePolicy.REJECT);
+            assertNotSame(plan, this.builder.getUpdatePlan());
+            
+            plan = this.builder.getUpdatePlan();
+            this.builder.setConfiguration(this.configuration);
+            assertNotSame(plan, this.builder.getUpdatePlan());
+        }
+
         /**
          * Test of getOverrideVersion method, of class VersionNumberBuilder.
          */
@@ -379,8 +464,7 @@ public class VersionNumberBuilderTest {
         private VersioningConfigurationWriteableProvider configuration;
         private ServiceFactory serviceFactory;
         private VersionNumberUpdater updater;
-        private VersionRetrievable retriever;
-        private VersionCommittable committer;
+        private VersionStore store;
         private VersionNumberBuilder builder;
         private VersionFactory versionFactory;
 
@@ -416,14 +500,12 @@ public class VersionNumberBuilderTest {
             this.configuration = mock(VersioningConfigurationWriteableProvider.class);
             this.serviceFactory = mock(ServiceFactory.class);
             this.updater = mock(VersionNumberUpdater.class);
-            this.retriever = mock(VersionRetrievable.class);
-            this.committer = mock(VersionCommittable.class);
+            this.store = mock(VersionStore.class);
             this.versionFactory = mock(VersionFactory.class);
 
             this.builder = new VersionNumberBuilder(this.configuration);
             this.builder.setServiceFactory(this.serviceFactory);
-            this.builder.setCommitter(this.committer);
-            this.builder.setRetriever(this.retriever);
+            this.builder.setStore(this.store);
             this.builder.setVersionFactory(this.versionFactory);
             this.builder.setUpdater(this.updater);
             
@@ -441,8 +523,8 @@ public class VersionNumberBuilderTest {
                 
                 when(this.configuration.getPropertyFilePath()).thenReturn(this.path);
 
-                when(this.serviceFactory.createCommitter(same(this.project), same(this.path), same(this.committer))).thenReturn(this.committer);
-                when(this.serviceFactory.createRetriever(same(this.project), same(this.path), same(this.retriever))).thenReturn(this.retriever);
+                when(this.serviceFactory.createStore(same(this.project), same(this.path), (String) isNull(), same(this.store))).thenReturn(this.store);
+                when(this.serviceFactory.createPatchReservingStore(same(this.store), eq(0))).thenReturn(this.store);
                 when(this.serviceFactory.createUpdater(same(this.updater))).thenReturn(this.updater);
                 when(this.serviceFactory.createVersionFactory(same(this.versionFactory))).thenReturn(this.versionFactory);
                 
@@ -460,8 +542,8 @@ public class VersionNumberBuilderTest {
                 
                 verify(this.configuration, times(1)).getPropertyFilePath();
                 
-                verify(this.serviceFactory, times(1)).createCommitter(same(this.project), same(this.path), same(this.committer));
-                verify(this.serviceFactory, times(1)).createRetriever(same(this.project), same(this.path), same(this.retriever));
+                verify(this.serviceFactory, times(1)).createStore(same(this.project), same(this.path), (String) isNull(), same(this.store));
+                verify(this.serviceFactory, times(1)).createPatchReservingStore(same(this.store), eq(0));
                 verify(this.serviceFactory, times(1)).createUpdater(same(this.updater));
                 verify(this.serviceFactory, times(1)).createVersionFactory(same(this.versionFactory));
                 
@@ -472,6 +554,23 @@ public class VersionNumberBuilderTest {
             }
         }
 
+        /**
+         * Makes the store apply the update it is given to the given version
+         * 
+         * @param storedVersion
+         * @param saved 
+         */
+        private void stubStoreUpdate(final Version storedVersion, final boolean saved) throws Exception {
+            when(this.store.update(isA(VersionUpdate.class), same(this.logger))).thenAnswer(new Answer<VersionChange>() {
+                @Override
+                public VersionChange answer(InvocationOnMock invocation) throws Throwable {
+                    VersionUpdate update = (VersionUpdate) invocation.getArguments()[0];
+                    
+                    return new VersionChange(storedVersion, update.apply(storedVersion), saved);
+                }
+            });
+        }
+        
         /**
          * Test of perform method, of class VersionNumberBuilder.
          */
@@ -483,23 +582,21 @@ public class VersionNumberBuilderTest {
                 when(this.configuration.getDoOverrideVersion()).thenReturn(true);
                 when(this.configuration.getOverrideVersion()).thenReturn(overrideVersion);
                 when(this.versionFactory.buildVersionFromString(same(overrideVersion))).thenReturn(version1);
-                when(this.committer.saveVersion(same(version1))).thenReturn(true);
+                this.stubStoreUpdate(mock(Version.class), true);
                 
                 when(this.configuration.setDoOverrideVersion(eq(false))).thenReturn(this.configuration);
                 when(this.configuration.setOverrideVersion((String) isNull())).thenReturn(this.configuration);
                 
                 when(this.build.getEnvironment(same(this.listener))).thenReturn(this.environment);
                 
-                final String fieldToIncrement = "FIELD TO INCREMENT";
-                final Version version2 = mock(Version.class);
+                final String fieldToIncrement = VersionNumberUpdater.VersionComponent.PATCH;
+                final long version2 = PackedVersion.pack(0, 0, 1);
                 when(this.configuration.getFieldToIncrement()).thenReturn(fieldToIncrement);
-                when(this.updater.incrementSingleVersionComponent(same(version1), same(fieldToIncrement))).thenReturn(version2);
                 
                 when(this.configuration.getBaseMajorOnEnvVariable()).thenReturn(false);
                 when(this.configuration.getBaseMinorOnEnvVariable()).thenReturn(false);
                 when(this.configuration.getPreReleaseVersion()).thenReturn(null);
                 
-                when(this.committer.saveVersion(same(version2))).thenReturn(true);
                 
                 when(this.configuration.getDoEnvExport()).thenReturn(false);
                 
@@ -508,19 +605,17 @@ public class VersionNumberBuilderTest {
                 verify(this.configuration, times(1)).getDoOverrideVersion();
                 verify(this.configuration, times(1)).getOverrideVersion();
                 verify(this.versionFactory, times(1)).buildVersionFromString(same(overrideVersion));
-                verify(this.committer, times(1)).saveVersion(same(version1));
                 
                 verify(this.configuration, times(1)).setDoOverrideVersion(eq(false));
                 verify(this.configuration, times(1)).setOverrideVersion((String) isNull());
                 
                 verify(this.configuration, times(1)).getFieldToIncrement();
-                verify(this.updater, times(1)).incrementSingleVersionComponent(same(version1), same(fieldToIncrement));
                 
                 verify(this.configuration, times(1)).getBaseMajorOnEnvVariable();
                 verify(this.configuration, times(1)).getBaseMinorOnEnvVariable();
                 verify(this.configuration, times(1)).getPreReleaseVersion();
                 
-                verify(this.committer, times(1)).saveVersion(same(version2));
+                verify(this.logger, times(1)).append(eq("Updating to " + PackedVersion.toString(version2, null) + "\n"));
                 
                 verify(this.configuration, times(1)).getDoEnvExport();
             } catch (AssertionError ex) {
@@ -542,51 +637,47 @@ public class VersionNumberBuilderTest {
             try {
                 final Version version1 = mock(Version.class);
                 when(this.configuration.getDoOverrideVersion()).thenReturn(false);
-                when(this.retriever.loadVersion()).thenReturn(version1);
+                this.stubStoreUpdate(version1, true);
                 
                 when(this.configuration.setDoOverrideVersion(eq(false))).thenReturn(this.configuration);
                 when(this.configuration.setOverrideVersion((String) isNull())).thenReturn(this.configuration);
                 
                 when(this.build.getEnvironment(same(this.listener))).thenReturn(this.environment);
                 
-                final String fieldToIncrement = "FIELD TO INCREMENT";
-                final Version version2 = mock(Version.class);
+                final String fieldToIncrement = VersionNumberUpdater.VersionComponent.PATCH;
                 when(this.configuration.getFieldToIncrement()).thenReturn(fieldToIncrement);
-                when(this.updater.incrementSingleVersionComponent(same(version1), same(fieldToIncrement))).thenReturn(version2);
                 
                 final String majorEnvVariable = "MAJOR ENV VARIABLE";
-                final Version version3 = mock(Version.class);
+                final long version3 = PackedVersion.pack(1, 0, 0);
                 when(this.configuration.getBaseMajorOnEnvVariable()).thenReturn(true);
                 when(this.configuration.getMajorEnvVariable()).thenReturn(majorEnvVariable);
-                when(this.updater.updateMajorBasedOnEnvironmentVariable(same(version2), same(this.environment), same(majorEnvVariable))).thenReturn(version3);
+                when(this.environment.containsKey(same(majorEnvVariable))).thenReturn(true);
+                when(this.environment.get(same(majorEnvVariable))).thenReturn("1");
                 
                 when(this.configuration.getBaseMinorOnEnvVariable()).thenReturn(false);
                 when(this.configuration.getPreReleaseVersion()).thenReturn(null);
                 
-                when(this.committer.saveVersion(same(version2))).thenReturn(true);
                 
                 when(this.configuration.getDoEnvExport()).thenReturn(false);
                 
                 assertTrue(this.builder.perform(this.build, this.launcher, this.listener));
                 
                 verify(this.configuration, times(1)).getDoOverrideVersion();
-                verify(this.retriever, times(1)).loadVersion();
-                verify(this.committer, times(1)).saveVersion(same(version1));
+                verify(this.store, times(1)).update(isA(VersionUpdate.class), same(this.logger));
                 
                 verify(this.configuration, times(1)).setDoOverrideVersion(eq(false));
                 verify(this.configuration, times(1)).setOverrideVersion((String) isNull());
                 
                 verify(this.configuration, times(1)).getFieldToIncrement();
-                verify(this.updater, times(1)).incrementSingleVersionComponent(same(version1), same(fieldToIncrement));
                 
                 verify(this.configuration, times(1)).getBaseMajorOnEnvVariable();
                 verify(this.configuration, times(1)).getMajorEnvVariable();
-                verify(this.updater, times(1)).updateMajorBasedOnEnvironmentVariable(same(version2), same(this.environment), same(majorEnvVariable));
+                verify(this.environment, times(1)).get(same(majorEnvVariable));
                 
                 verify(this.configuration, times(1)).getBaseMinorOnEnvVariable();
                 verify(this.configuration, times(1)).getPreReleaseVersion();
                 
-                verify(this.committer, times(1)).saveVersion(same(version3));
+                verify(this.logger, times(1)).append(eq("Updating to " + PackedVersion.toString(version3, null) + "\n"));
                 
                 verify(this.configuration, times(1)).getDoEnvExport();
             } catch (AssertionError ex) {
@@ -608,53 +699,49 @@ public class VersionNumberBuilderTest {
             try {
                 final Version version1 = mock(Version.class);
                 when(this.configuration.getDoOverrideVersion()).thenReturn(false);
-                when(this.retriever.loadVersion()).thenReturn(version1);
+                this.stubStoreUpdate(version1, true);
                 
                 when(this.configuration.setDoOverrideVersion(eq(false))).thenReturn(this.configuration);
                 when(this.configuration.setOverrideVersion((String) isNull())).thenReturn(this.configuration);
                 
                 when(this.build.getEnvironment(same(this.listener))).thenReturn(this.environment);
                 
-                final String fieldToIncrement = "FIELD TO INCREMENT";
-                final Version version2 = mock(Version.class);
+                final String fieldToIncrement = VersionNumberUpdater.VersionComponent.PATCH;
                 when(this.configuration.getFieldToIncrement()).thenReturn(fieldToIncrement);
-                when(this.updater.incrementSingleVersionComponent(same(version1), same(fieldToIncrement))).thenReturn(version2);
                 
                 when(this.configuration.getBaseMajorOnEnvVariable()).thenReturn(false);
                 
                 final String minorEnvVariable = "MINOR ENV VARIABLE";
-                final Version version3 = mock(Version.class);
+                final long version3 = PackedVersion.pack(0, 1, 0);
                 when(this.configuration.getBaseMinorOnEnvVariable()).thenReturn(true);
-                when(this.configuration.getMajorEnvVariable()).thenReturn(minorEnvVariable);
-                when(this.updater.updateMinorBasedOnEnvironmentVariable(same(version2), same(this.environment), same(minorEnvVariable))).thenReturn(version3);
+                when(this.configuration.getMinorEnvVariable()).thenReturn(minorEnvVariable);
+                when(this.environment.containsKey(same(minorEnvVariable))).thenReturn(true);
+                when(this.environment.get(same(minorEnvVariable))).thenReturn("1");
                 
                 when(this.configuration.getPreReleaseVersion()).thenReturn(null);
                 
-                when(this.committer.saveVersion(same(version2))).thenReturn(true);
                 
                 when(this.configuration.getDoEnvExport()).thenReturn(false);
                 
                 assertTrue(this.builder.perform(this.build, this.launcher, this.listener));
                 
                 verify(this.configuration, times(1)).getDoOverrideVersion();
-                verify(this.retriever, times(1)).loadVersion();
-                verify(this.committer, times(1)).saveVersion(same(version1));
+                verify(this.store, times(1)).update(isA(VersionUpdate.class), same(this.logger));
                 
                 verify(this.configuration, times(1)).setDoOverrideVersion(eq(false));
                 verify(this.configuration, times(1)).setOverrideVersion((String) isNull());
                 
                 verify(this.configuration, times(1)).getFieldToIncrement();
-                verify(this.updater, times(1)).incrementSingleVersionComponent(same(version1), same(fieldToIncrement));
                 
                 verify(this.configuration, times(1)).getBaseMajorOnEnvVariable();
                 
                 verify(this.configuration, times(1)).getBaseMinorOnEnvVariable();
                 verify(this.configuration, times(1)).getMinorEnvVariable();
-                verify(this.updater, times(1)).updateMinorBasedOnEnvironmentVariable(same(version2), same(this.environment), same(minorEnvVariable));
+                verify(this.environment, times(1)).get(same(minorEnvVariable));
                 
                 verify(this.configuration, times(1)).getPreReleaseVersion();
                 
-                verify(this.committer, times(1)).saveVersion(same(version3));
+                verify(this.logger, times(1)).append(eq("Updating to " + PackedVersion.toString(version3, null) + "\n"));
                 
                 verify(this.configuration, times(1)).getDoEnvExport();
             } catch (AssertionError ex) {
@@ -676,49 +763,42 @@ public class VersionNumberBuilderTest {
             try {
                 final Version version1 = mock(Version.class);
                 when(this.configuration.getDoOverrideVersion()).thenReturn(false);
-                when(this.retriever.loadVersion()).thenReturn(version1);
+                this.stubStoreUpdate(version1, true);
                 
                 when(this.configuration.setDoOverrideVersion(eq(false))).thenReturn(this.configuration);
                 when(this.configuration.setOverrideVersion((String) isNull())).thenReturn(this.configuration);
                 
                 when(this.build.getEnvironment(same(this.listener))).thenReturn(this.environment);
                 
-                final String fieldToIncrement = "FIELD TO INCREMENT";
-                final Version version2 = mock(Version.class);
+                final String fieldToIncrement = VersionNumberUpdater.VersionComponent.PATCH;
                 when(this.configuration.getFieldToIncrement()).thenReturn(fieldToIncrement);
-                when(this.updater.incrementSingleVersionComponent(same(version1), same(fieldToIncrement))).thenReturn(version2);
                 
                 when(this.configuration.getBaseMajorOnEnvVariable()).thenReturn(false);
                 when(this.configuration.getBaseMinorOnEnvVariable()).thenReturn(false);
                 
                 final String preReleaseVersion = "rc";
-                final Version version3 = mock(Version.class);
                 when(this.configuration.getPreReleaseVersion()).thenReturn(preReleaseVersion);
-                when(this.updater.setPreReleaseVersion(same(version2), same(preReleaseVersion))).thenReturn(version3);
                 
-                when(this.committer.saveVersion(same(version3))).thenReturn(true);
                 
                 when(this.configuration.getDoEnvExport()).thenReturn(false);
                 
                 assertTrue(this.builder.perform(this.build, this.launcher, this.listener));
                 
                 verify(this.configuration, times(1)).getDoOverrideVersion();
-                verify(this.retriever, times(1)).loadVersion();
-                verify(this.committer, times(1)).saveVersion(same(version1));
+                verify(this.store, times(1)).update(isA(VersionUpdate.class), same(this.logger));
                 
                 verify(this.configuration, times(1)).setDoOverrideVersion(eq(false));
                 verify(this.configuration, times(1)).setOverrideVersion((String) isNull());
                 
                 verify(this.configuration, times(1)).getFieldToIncrement();
-                verify(this.updater, times(1)).incrementSingleVersionComponent(same(version1), same(fieldToIncrement));
                 
                 verify(this.configuration, times(1)).getBaseMajorOnEnvVariable();
                 verify(this.configuration, times(1)).getBaseMinorOnEnvVariable();
                 
                 verify(this.configuration, times(1)).getPreReleaseVersion();
-                verify(this.updater, times(1)).setPreReleaseVersion(same(version2), same(preReleaseVersion));
+                verify(this.updater, never()).setPreReleaseVersion(any(Version.class), anyString());
                 
-                verify(this.committer, times(1)).saveVersion(same(version3));
+                verify(this.logger, times(1)).append(eq("Updating to 0.0.1-rc\n"));
                 
                 verify(this.configuration, times(1)).getDoEnvExport();
             } catch (AssertionError ex) {
@@ -740,64 +820,58 @@ public class VersionNumberBuilderTest {
             try {
                 final Version version1 = mock(Version.class);
                 when(this.configuration.getDoOverrideVersion()).thenReturn(false);
-                when(this.retriever.loadVersion()).thenReturn(version1);
+                this.stubStoreUpdate(version1, true);
                 
                 when(this.configuration.setDoOverrideVersion(eq(false))).thenReturn(this.configuration);
                 when(this.configuration.setOverrideVersion((String) isNull())).thenReturn(this.configuration);
                 
                 when(this.build.getEnvironment(same(this.listener))).thenReturn(this.environment);
                 
-                final String fieldToIncrement = "FIELD TO INCREMENT";
-                final Version version2 = mock(Version.class);
+                final String fieldToIncrement = VersionNumberUpdater.VersionComponent.PATCH;
+                final long version2 = PackedVersion.pack(0, 0, 1);
                 when(this.configuration.getFieldToIncrement()).thenReturn(fieldToIncrement);
-                when(this.updater.incrementSingleVersionComponent(same(version1), same(fieldToIncrement))).thenReturn(version2);
                 
                 when(this.configuration.getBaseMajorOnEnvVariable()).thenReturn(false);
                 when(this.configuration.getBaseMinorOnEnvVariable()).thenReturn(false);
                 
                 when(this.configuration.getPreReleaseVersion()).thenReturn(null);
                 
-                when(this.committer.saveVersion(same(version2))).thenReturn(true);
                 
                 
                 final String previousVersionVariable = "PREVIOUS_VERSION";
                 final String currentVersionVariable = "CURRENT VERSION";
                 final String previousVersion = "Previous version string";
-                final String currentVersion = "Current version string";
+                final String currentVersion = "0.0.1";
                 when(version1.toString()).thenReturn(previousVersion);
-                when(version2.toString()).thenReturn(currentVersion);
                 when(this.configuration.getDoEnvExport()).thenReturn(true);
                 when(this.descriptor.getPreviousVersionEnvVariable()).thenReturn(previousVersionVariable);
                 when(this.descriptor.getCurrentVersionEnvVariable()).thenReturn(currentVersionVariable);
                 doNothing().when(this.exporter).addVariableToExport(same(previousVersionVariable), same(previousVersion));
-                doNothing().when(this.exporter).addVariableToExport(same(currentVersionVariable), same(currentVersion));
+                doNothing().when(this.exporter).addVariableToExport(same(currentVersionVariable), eq(currentVersion));
                 
                 assertTrue(this.builder.perform(this.build, this.launcher, this.listener));
                 
                 verify(this.configuration, times(1)).getDoOverrideVersion();
-                verify(this.retriever, times(1)).loadVersion();
-                verify(this.committer, times(1)).saveVersion(same(version1));
+                verify(this.store, times(1)).update(isA(VersionUpdate.class), same(this.logger));
                 
                 verify(this.configuration, times(1)).setDoOverrideVersion(eq(false));
                 verify(this.configuration, times(1)).setOverrideVersion((String) isNull());
                 
                 verify(this.configuration, times(1)).getFieldToIncrement();
-                verify(this.updater, times(1)).incrementSingleVersionComponent(same(version1), same(fieldToIncrement));
                 
                 verify(this.configuration, times(1)).getBaseMajorOnEnvVariable();
                 verify(this.configuration, times(1)).getBaseMinorOnEnvVariable();
                 
                 verify(this.configuration, times(1)).getPreReleaseVersion();
                 
-                verify(this.committer, times(1)).saveVersion(same(version2));
+                verify(this.logger, times(1)).append(eq("Updating to " + PackedVersion.toString(version2, null) + "\n"));
                 
                 verify(this.configuration, times(1)).getDoEnvExport();
                 verify(version1, times(1)).toString();
-                verify(version2, times(1)).toString();
                 verify(this.descriptor, times(1)).getPreviousVersionEnvVariable();
                 verify(this.descriptor, times(1)).getCurrentVersionEnvVariable();
                 verify(this.exporter, times(1)).addVariableToExport(same(previousVersionVariable), same(previousVersion));
-                verify(this.exporter, times(1)).addVariableToExport(same(currentVersionVariable), same(currentVersion));
+                verify(this.exporter, times(1)).addVariableToExport(same(currentVersionVariable), eq(currentVersion));
             } catch (AssertionError ex) {
             } catch (Throwable t) {
                 fail(
@@ -809,7 +883,80 @@ public class VersionNumberBuilderTest {
             }
         }
         
-        private static class ArbitraryExceptionStub extends Exception {}
+/**
+         * Test of perform method, of class VersionNumberBuilder.
+         */
+        @Test
+        public void testPerformReportsUnchangedVersion() throws Exception {
+            final Version version1 = mock(Version.class);
+            final String fieldToIncrement = VersionNumberUpdater.VersionComponent.NONE;
+            when(this.configuration.getDoOverrideVersion()).thenReturn(false);
+            when(this.configuration.getFieldToIncrement()).thenReturn(fieldToIncrement);
+            when(this.build.getEnvironment(same(this.listener))).thenReturn(this.environment);
+            this.stubStoreUpdate(version1, false);
+            
+            assertTrue(this.builder.perform(this.build, this.launcher, this.listener));
+            
+            verify(this.store, times(1)).update(isA(VersionUpdate.class), same(this.logger));
+            verify(this.logger, times(1)).append(eq("Version " + version1 + " is unchanged\n"));
+            verify(this.logger, never()).append(startsWith("Updating to"));
+        }
+        
+        /**
+         * Test of perform method, of class VersionNumberBuilder.
+         */
+        @Test
+        public void testPerformOnlyResolvesEnvironmentWhenNeeded() throws Exception {
+            when(this.configuration.getDoOverrideVersion()).thenReturn(false);
+            when(this.configuration.getFieldToIncrement()).thenReturn(VersionNumberUpdater.VersionComponent.PATCH);
+            this.stubStoreUpdate(Version.valueOf("1.2.3"), true);
+            
+            assertTrue(this.builder.perform(this.build, this.launcher, this.listener));
+            
+            verify(this.build, never()).getEnvironment(any(TaskListener.class));
+            verify(this.logger, times(1)).append(eq("Updating to 1.2.4\n"));
+        }
+        
+        /**
+         * Test of perform method, of class VersionNumberBuilder.
+         */
+        @Test
+        public void testPerformReusesVersionAllocatedToBuildWhenEnabled() throws Exception {
+            final Version version1 = Version.valueOf("1.2.3");
+            final VersionAllocationAction action = new VersionAllocationAction();
+            when(this.build.getAction(VersionAllocationAction.class)).thenReturn(action);
+            when(this.configuration.getDoOverrideVersion()).thenReturn(false);
+            when(this.configuration.getFieldToIncrement()).thenReturn(VersionNumberUpdater.VersionComponent.NONE);
+            when(this.build.getEnvironment(same(this.listener))).thenReturn(this.environment);
+            this.stubStoreUpdate(version1, true);
+            
+            assertTrue(this.builder.perform(this.build, this.launcher, this.listener));
+            
+            final VersioningConfigurationWriteableProvider stepConfiguration = mock(VersioningConfigurationWriteableProvider.class);
+            final ServiceFactory stepServiceFactory = mock(ServiceFactory.class);
+            final BuildListener stepListener = mock(BuildListener.class);
+            final PrintStream stepLogger = mock(PrintStream.class);
+            when(stepConfiguration.getPropertyFilePath()).thenReturn(this.path);
+            when(stepConfiguration.getReuseBuildVersion()).thenReturn(true);
+            when(stepServiceFactory.createVarExporter((VariableExporter) isNull())).thenReturn(this.exporter);
+            when(stepListener.getLogger()).thenReturn(stepLogger);
+            
+            VersionNumberBuilder step = new VersionNumberBuilder(stepConfiguration);
+            step.setServiceFactory(stepServiceFactory);
+            
+            assertTrue(step.perform(this.build, this.launcher, stepListener));
+            
+            verify(this.store, times(1)).update(isA(VersionUpdate.class), same(this.logger));
+            verify(stepServiceFactory, never()).createStore(
+                any(AbstractProject.class),
+                anyString(),
+                anyString(),
+                any(VersionStore.class)
+            );
+            verify(stepLogger, times(1)).append(eq("Reusing version 1.2.3 already allocated to this build\n"));
+        }
+        
+                private static class ArbitraryExceptionStub extends Exception {}
         
         @Test
         public void testPerformReturnsFalseForAnyException() {
@@ -23,6 +23,7 @@
  */
 package co.byng.versioningplugin.configuration;
 
+import co.byng.versioningplugin.service.ServiceFactory;
 import co.byng.versioningplugin.versioning.VersionNumberUpdater;
 import hudson.util.ListBoxModel;
 import hudson.util.ListBoxModel.Option;
@@ -134,5 +135,71 @@ public class OptionsProviderTest {
             this.optionsProvider.getPreReleaseVersionItems()
         );
     }
+
+    /**
+     * Test of getVersionDecreasePolicyItems method, of class OptionsProvider.
+     */
+    @Test
+    public void testGetVersionDecreasePolicyItems() {
+        ListBoxModel expectedModel = new ListBoxModel();
+
+        expectedModel.add(
+            "Ignore (keep the current version)",
+            VersionNumberUpdater.DecreasePolicy.IGNORE
+        );
+
+        expectedModel.add(
+            "Fail the build",
+            VersionNumberUpdater.DecreasePolicy.REJECT
+        );
+
+        expectedModel.add(
+            "Allow the version to go down",
+            VersionNumberUpdater.DecreasePolicy.ALLOW
+        );
+
+        this.compareActualWithExpected(
+            expectedModel,
+            this.optionsProvider.getVersionDecreasePolicyItems()
+        );
+    }
+
+    /**
+     * Test of getStorageBackendItems method, of class OptionsProvider.
+     */
+    @Test
+    public void testGetStorageBackendItems() {
+        ListBoxModel expectedModel = new ListBoxModel();
+
+        expectedModel.add(
+            "Property file",
+            ServiceFactory.StorageBackend.PROPERTY_FILE
+        );
+
+        expectedModel.add(
+            "Memory-mapped version file (for frequently built jobs)",
+            ServiceFactory.StorageBackend.MAPPED_FILE
+        );
+
+        expectedModel.add(
+            "Shared version file under JENKINS_HOME (for controllers with many jobs)",
+            ServiceFactory.StorageBackend.SHARED_FILE
+        );
+
+        expectedModel.add(
+            "Version journal (keeps the history of changes)",
+            ServiceFactory.StorageBackend.JOURNAL
+        );
+
+        expectedModel.add(
+            "In memory, written to the property file in the background (fastest, least durable)",
+            ServiceFactory.StorageBackend.WRITE_BEHIND
+        );
+
+        this.compareActualWithExpected(
+            expectedModel,
+            this.optionsProvider.getStorageBackendItems()
+        );
+    }
     
 }
@@ -153,5 +153,49 @@ public class VersioningConfigurationTest {
         assertSame(this.configuration, this.configuration.setDoEnvExport(doExport));
         assertEquals(doExport, this.configuration.getDoEnvExport());
     }
+
+    /**
+     * Test of setStorageBackend method, of class VersioningConfiguration.
+     */
+    @Test
+    public void testGetAndSetStorageBackend() {
+        final String storageBackend = "STORAGE BACKEND";
+        
+        assertNull(this.configuration.getStorageBackend());
+        assertSame(this.configuration, this.configuration.setStorageBackend(storageBackend));
+        assertSame(storageBackend, this.configuration.getStorageBackend());
+    }
+    
+    /**
+     * Test of setPatchReservationSize method, of class VersioningConfiguration.
+     */
+    @Test
+    public void testGetAndSetPatchReservationSize() {
+        assertEquals(0, this.configuration.getPatchReservationSize());
+        assertSame(this.configuration, this.configuration.setPatchReservationSize(50));
+        assertEquals(50, this.configuration.getPatchReservationSize());
+    }
+    
+    /**
+     * Test of setVersionDecreasePolicy method, of class VersioningConfiguration.
+     */
+    @Test
+    public void testGetAndSetVersionDecreasePolicy() {
+        final String versionDecreasePolicy = "VERSION DECREASE POLICY";
+        
+        assertNull(this.configuration.getVersionDecreasePolicy());
+        assertSame(this.configuration, this.configuration.setVersionDecreasePolicy(versionDecreasePolicy));
+        assertSame(versionDecreasePolicy, this.configuration.getVersionDecreasePolicy());
+    }
+    
+    /**
+     * Test of setReuseBuildVersion method, of class VersioningConfiguration.
+     */
+    @Test
+    public void testGetAndSetReuseBuildVersion() {
+        assertFalse(this.configuration.getReuseBuildVersion());
+        assertSame(this.configuration, this.configuration.setReuseBuildVersion(true));
+        assertTrue(this.configuration.getReuseBuildVersion());
+    }
     
 }
@@ -23,6 +23,7 @@
  */
 package co.byng.versioningplugin.configuration;
 
+import co.byng.versioningplugin.handler.file.PropertyFileIoHandler;
 import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -66,4 +67,119 @@ public class VersioningGlobalConfigurationTest {
         assertSame(currentVersionNumber, this.globalConfiguration.getCurrentVersionEnvVariable());
     }
 
+    /**
+     * 
+     */
+    @Test
+    public void testGetAndSetCommitMode() {
+        assertEquals(PropertyFileIoHandler.CommitMode.ATOMIC, this.globalConfiguration.getCommitMode());
+        
+        assertSame(this.globalConfiguration, this.globalConfiguration.setCommitMode(PropertyFileIoHandler.CommitMode.DIRECT));
+        assertSame(PropertyFileIoHandler.CommitMode.DIRECT, this.globalConfiguration.getCommitMode());
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testGetAndSetFsyncPolicy() {
+        assertEquals(PropertyFileIoHandler.FsyncPolicy.FILE, this.globalConfiguration.getFsyncPolicy());
+        
+        assertSame(this.globalConfiguration, this.globalConfiguration.setFsyncPolicy(PropertyFileIoHandler.FsyncPolicy.NONE));
+        assertSame(PropertyFileIoHandler.FsyncPolicy.NONE, this.globalConfiguration.getFsyncPolicy());
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testGetAndSetCrossProcessLocking() {
+        assertFalse(this.globalConfiguration.getCrossProcessLocking());
+        
+        assertSame(this.globalConfiguration, this.globalConfiguration.setCrossProcessLocking(true));
+        assertTrue(this.globalConfiguration.getCrossProcessLocking());
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testGetAndSetLockTimeout() {
+        assertEquals(60, this.globalConfiguration.getLockTimeout());
+        
+        assertSame(this.globalConfiguration, this.globalConfiguration.setLockTimeout(5));
+        assertEquals(5, this.globalConfiguration.getLockTimeout());
+        
+        this.globalConfiguration.setLockTimeout(0);
+        assertEquals(60, this.globalConfiguration.getLockTimeout());
+    }
+
+
+    /**
+     * 
+     */
+    @Test
+    public void testGetAndSetWriteBehindFlushInterval() {
+        assertEquals(30, this.globalConfiguration.getWriteBehindFlushInterval());
+        
+        assertSame(this.globalConfiguration, this.globalConfiguration.setWriteBehindFlushInterval(5));
+        assertEquals(5, this.globalConfiguration.getWriteBehindFlushInterval());
+        
+        this.globalConfiguration.setWriteBehindFlushInterval(-1);
+        assertEquals(30, this.globalConfiguration.getWriteBehindFlushInterval());
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testGetAndSetGroupCommitWindow() {
+        assertEquals(2, this.globalConfiguration.getGroupCommitWindow());
+        
+        assertSame(this.globalConfiguration, this.globalConfiguration.setGroupCommitWindow(10));
+        assertEquals(10, this.globalConfiguration.getGroupCommitWindow());
+        
+        this.globalConfiguration.setGroupCommitWindow(0);
+        assertEquals(0, this.globalConfiguration.getGroupCommitWindow());
+        
+        this.globalConfiguration.setGroupCommitWindow(-1);
+        assertEquals(2, this.globalConfiguration.getGroupCommitWindow());
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testGetAndSetGroupCommitMaxBatchSize() {
+        assertEquals(64, this.globalConfiguration.getGroupCommitMaxBatchSize());
+        
+        assertSame(this.globalConfiguration, this.globalConfiguration.setGroupCommitMaxBatchSize(8));
+        assertEquals(8, this.globalConfiguration.getGroupCommitMaxBatchSize());
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testGetAndSetVersionCacheCapacity() {
+        assertEquals(256, this.globalConfiguration.getVersionCacheCapacity());
+        
+        assertSame(this.globalConfiguration, this.globalConfiguration.setVersionCacheCapacity(1024));
+        assertEquals(1024, this.globalConfiguration.getVersionCacheCapacity());
+        
+        this.globalConfiguration.setVersionCacheCapacity(-1);
+        assertEquals(256, this.globalConfiguration.getVersionCacheCapacity());
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testGetAndSetCacheNodeEnvironment() {
+        assertFalse(this.globalConfiguration.getCacheNodeEnvironment());
+        
+        assertSame(this.globalConfiguration, this.globalConfiguration.setCacheNodeEnvironment(true));
+        assertTrue(this.globalConfiguration.getCacheNodeEnvironment());
+    }
+    
 }
@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class GroupCommitQueueTest {
+    
+    private ExecutorService executor;
+    private AtomicInteger syncs;
+    private volatile IOException syncFailure;
+    private GroupCommitQueue queue;
+    
+    @Before
+    public void setUp() {
+        this.executor = Executors.newCachedThreadPool();
+        this.syncs = new AtomicInteger();
+        
+        this.queue = new GroupCommitQueue(
+            new GroupCommitQueue.Barrier() {
+                @Override
+                public void sync() throws IOException {
+                    GroupCommitQueueTest.this.syncs.incrementAndGet();
+                    
+                    if (GroupCommitQueueTest.this.syncFailure != null) {
+                        throw GroupCommitQueueTest.this.syncFailure;
+                    }
+                }
+            }
+        );
+    }
+    
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+    
+    private List<Future<Void>> commitConcurrently(int writers) {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> results = new ArrayList<>();
+        
+        for (int i = 0; i < writers; i++) {
+            results.add(this.executor.submit(
+                new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        GroupCommitQueueTest.this.queue.commit();
+                        
+                        return null;
+                    }
+                }
+            ));
+        }
+        
+        start.countDown();
+        
+        return results;
+    }
+    
+    @Test
+    public void testSingleCommitSyncsOnce() throws Exception {
+        this.queue.setWindowNanos(0);
+        this.queue.commit();
+        
+        assertEquals(1, this.syncs.get());
+        assertEquals(1, this.queue.getCommitCount());
+        assertEquals(1, this.queue.getSyncCount());
+    }
+    
+    @Test
+    public void testConcurrentCommitsShareSyncs() throws Exception {
+        this.queue.setWindowNanos(TimeUnit.SECONDS.toNanos(10));
+        this.queue.setMaxBatchSize(8);
+        
+        for (Future<Void> result : this.commitConcurrently(32)) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        
+        assertEquals(32, this.queue.getCommitCount());
+        assertEquals(4, this.syncs.get());
+    }
+    
+    @Test
+    public void testFailedSyncFailsWholeBatch() throws Exception {
+        this.syncFailure = new IOException("Disk full");
+        this.queue.setWindowNanos(TimeUnit.SECONDS.toNanos(10));
+        this.queue.setMaxBatchSize(4);
+        
+        int failures = 0;
+        
+        for (Future<Void> result : this.commitConcurrently(4)) {
+            try {
+                result.get(30, TimeUnit.SECONDS);
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof IOException);
+                failures++;
+            }
+        }
+        
+        assertEquals(4, failures);
+        assertEquals(1, this.syncs.get());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNegativeWindow() {
+        this.queue.setWindowNanos(-1);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyBatches() {
+        this.queue.setMaxBatchSize(0);
+    }
+    
+}
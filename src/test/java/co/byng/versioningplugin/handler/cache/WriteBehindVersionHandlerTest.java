@@ -0,0 +1,287 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.cache;
+
+import co.byng.versioningplugin.handler.VersionChange;
+import co.byng.versioningplugin.handler.VersionUpdate;
+import co.byng.versioningplugin.handler.file.AutoCreatingPropertyFileVersionHandler;
+import co.byng.versioningplugin.handler.file.PropertyFileIoHandler;
+import co.byng.versioningplugin.handler.file.VersionFileWatcher;
+import co.byng.versioningplugin.versioning.StaticVersionFactory;
+import com.github.zafarkhaja.semver.Version;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class WriteBehindVersionHandlerTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private File propertyFile;
+    private WriteBehindVersionCache cache;
+    private WriteBehindVersionHandler handler;
+    private PrintStream logger;
+    
+    @Before
+    public void setUp() throws Exception {
+        this.propertyFile = new File(this.folder.getRoot(), "version.properties");
+        Files.write(this.propertyFile.toPath(), "version=1.2.3\n".getBytes("ISO-8859-1"));
+        
+        this.cache = new WriteBehindVersionCache();
+        this.handler = this.createHandler();
+        this.logger = new PrintStream(new ByteArrayOutputStream());
+    }
+    
+    private WriteBehindVersionHandler createHandler() {
+        return new WriteBehindVersionHandler(
+            this.cache,
+            new AutoCreatingPropertyFileVersionHandler(
+                new PropertyFileIoHandler(),
+                new StaticVersionFactory(),
+                this.propertyFile
+            )
+        );
+    }
+    
+    private String readPropertyFile() throws IOException {
+        return new String(Files.readAllBytes(this.propertyFile.toPath()), "ISO-8859-1");
+    }
+    
+    private VersionUpdate incrementPatch() {
+        return new VersionUpdate() {
+            @Override
+            public Version apply(Version currentVersion) {
+                return currentVersion.incrementPatchVersion();
+            }
+        };
+    }
+    
+    @Test
+    public void testUpdatesAreOnlyWrittenWhenFlushed() throws Exception {
+        VersionChange change = this.handler.update(this.incrementPatch(), this.logger);
+        
+        assertEquals("1.2.3", change.getPreviousVersion().toString());
+        assertEquals("1.2.4", change.getCurrentVersion().toString());
+        assertTrue(change.isSaved());
+        assertEquals("version=1.2.3\n", this.readPropertyFile());
+        assertEquals(1, this.cache.getDirtyCount());
+        
+        this.handler.update(this.incrementPatch(), this.logger);
+        
+        assertTrue(this.handler.flush(this.logger));
+        assertEquals("version=1.2.5\n", this.readPropertyFile());
+        assertEquals(0, this.cache.getDirtyCount());
+        assertFalse(this.handler.flush(this.logger));
+    }
+    
+    @Test
+    public void testHandlersForTheSameFileShareTheirVersion() throws Exception {
+        this.handler.update(this.incrementPatch(), this.logger);
+        
+        WriteBehindVersionHandler other = this.createHandler();
+        
+        assertEquals("1.2.4", other.loadVersion().toString());
+        
+        other.update(this.incrementPatch(), this.logger);
+        
+        assertEquals("1.2.5", this.handler.loadVersion().toString());
+        assertEquals(1, this.cache.getDirtyCount());
+    }
+    
+    @Test
+    public void testEntryUsesTheLatestHandlersDelegate() throws Exception {
+        this.handler.update(this.incrementPatch(), this.logger);
+        
+        WriteBehindVersionHandler other = this.createHandler();
+        other.update(this.incrementPatch(), this.logger);
+        
+        assertSame(other.getDelegate(), this.cache.getEntry(other.getDelegate()).getDelegate());
+        
+        assertTrue(other.flush(this.logger));
+        assertEquals("version=1.2.5\n", this.readPropertyFile());
+    }
+    
+    @Test
+    public void testFlushWarnsWhenOverwritingExternalEdit() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream flushLogger = new PrintStream(output, true);
+        
+        this.handler.update(this.incrementPatch(), this.logger);
+        Files.write(this.propertyFile.toPath(), "version=5.0.0\n".getBytes("ISO-8859-1"));
+        
+        assertTrue(this.handler.flush(flushLogger));
+        assertEquals("version=1.2.4\n", this.readPropertyFile());
+        assertTrue(output.toString().contains("Overwriting version 5.0.0"));
+        
+        output.reset();
+        this.handler.update(this.incrementPatch(), this.logger);
+        
+        assertTrue(this.handler.flush(flushLogger));
+        assertEquals("version=1.2.5\n", this.readPropertyFile());
+        assertEquals("", output.toString());
+    }
+    
+    @Test
+    public void testSavingTheSameVersionLeavesTheEntryClean() throws Exception {
+        assertFalse(this.handler.saveVersion(Version.valueOf("1.2.3")));
+        assertEquals(0, this.cache.getDirtyCount());
+        
+        assertTrue(this.handler.saveVersion(Version.valueOf("2.0.0")));
+        assertEquals(1, this.cache.getDirtyCount());
+    }
+    
+    @Test
+    public void testFlushOlderThanSkipsRecentChanges() throws Exception {
+        this.handler.saveVersion(Version.valueOf("2.0.0"));
+        
+        assertEquals(0, this.cache.flushOlderThan(60000, this.logger));
+        assertEquals("version=1.2.3\n", this.readPropertyFile());
+        
+        assertEquals(1, this.cache.flushOlderThan(0, this.logger));
+        assertEquals("version=2.0.0\n", this.readPropertyFile());
+    }
+    
+    @Test
+    public void testExternalEditsAreReadUnlessChangesArePending() throws Exception {
+        VersionFileWatcher watcher = new VersionFileWatcher(FileSystems.getDefault().newWatchService());
+        watcher.start();
+        
+        try {
+            this.cache = new WriteBehindVersionCache(watcher);
+            this.handler = this.createHandler();
+            
+            assertEquals("1.2.3", this.handler.loadVersion().toString());
+            
+            Files.write(this.propertyFile.toPath(), "version=3.0.0\n".getBytes("ISO-8859-1"));
+            
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            
+            while (!"3.0.0".equals(this.handler.loadVersion().toString()) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            
+            assertEquals("3.0.0", this.handler.loadVersion().toString());
+            
+            this.handler.update(this.incrementPatch(), this.logger);
+            this.cache.getEntry(this.handler.getDelegate()).fileChanged();
+            
+            assertEquals("3.0.1", this.handler.loadVersion().toString());
+        } finally {
+            watcher.close();
+        }
+    }
+    
+    @Test
+    public void testFileChangesAreNotHeldUpBySlowLoads() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        
+        final WriteBehindVersionCache.Entry entry = new WriteBehindVersionCache.Entry(
+            new AutoCreatingPropertyFileVersionHandler(
+                new PropertyFileIoHandler(),
+                new StaticVersionFactory(),
+                this.propertyFile
+            ) {
+                @Override
+                public Version loadVersion() throws IOException {
+                    Version version = super.loadVersion();
+                    loading.countDown();
+                    
+                    try {
+                        release.await(30, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        throw new IOException(ex);
+                    }
+                    
+                    return version;
+                }
+            }
+        );
+        
+        final Version[] loaded = new Version[1];
+        Thread loader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    loaded[0] = entry.getVersion();
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+        loader.start();
+        
+        assertTrue(loading.await(30, TimeUnit.SECONDS));
+        
+        Files.write(this.propertyFile.toPath(), "version=4.0.0\n".getBytes("ISO-8859-1"));
+        
+        Thread notifier = new Thread() {
+            @Override
+            public void run() {
+                entry.fileChanged();
+            }
+        };
+        notifier.start();
+        notifier.join(TimeUnit.SECONDS.toMillis(30));
+        
+        assertFalse(notifier.isAlive());
+        
+        release.countDown();
+        loader.join(TimeUnit.SECONDS.toMillis(30));
+        
+        // The version read before the change is read again
+        assertEquals("4.0.0", loaded[0].toString());
+    }
+    
+    @Test
+    public void testFailedFlushLeavesEntryDirty() throws Exception {
+        this.handler.saveVersion(Version.valueOf("2.0.0"));
+        Files.delete(this.propertyFile.toPath());
+        Files.createDirectory(this.propertyFile.toPath());
+        
+        try {
+            this.cache.flush(this.logger);
+            fail("Expected the flush to fail");
+        } catch (IOException ex) {
+        }
+        
+        assertEquals(1, this.cache.getDirtyCount());
+    }
+    
+}
@@ -23,11 +23,14 @@
  */
 package co.byng.versioningplugin.handler.file;
 
+import co.byng.versioningplugin.handler.VersionChange;
+import co.byng.versioningplugin.handler.VersionLock;
+import co.byng.versioningplugin.handler.VersionUpdate;
 import co.byng.versioningplugin.versioning.VersionFactory;
 import com.github.zafarkhaja.semver.Version;
 import java.io.File;
 import java.io.IOException;
-import java.util.Properties;
+import java.io.PrintStream;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -99,12 +102,8 @@ public class AutoCreatingPropertyFileVersionHandlerTest {
         when(this.versionFactory.buildVersionFromString(same(versionString))).thenReturn(version);
         when(version.toString()).thenReturn(versionString);
         
-        Properties properties = mock(Properties.class);
-        when(properties.containsKey(same(propertyKey))).thenReturn(true);
-        when(properties.get(same(propertyKey))).thenReturn(versionString);
-        
-        doNothing().when(this.ioHandler).savePropertiesToFile(isA(Properties.class), same(propertyFile));
-        when(this.ioHandler.loadPropertiesFromFile(same(propertyFile))).thenReturn(properties);
+        when(this.ioHandler.saveProperty(same(propertyFile), same(propertyKey), same(versionString))).thenReturn(true);
+        when(this.ioHandler.loadProperty(same(propertyFile), same(propertyKey))).thenReturn(versionString);
         
         assertSame(
             version,
@@ -119,11 +118,40 @@ public class AutoCreatingPropertyFileVersionHandlerTest {
         verify(this.versionFactory, times(1)).buildVersionFromString(same(AutoCreatingPropertyFileVersionHandler.DEFAULT_VERSION_STRING));
         verify(this.versionFactory, times(1)).buildVersionFromString(same(versionString));
         
-        verify(properties, times(1)).containsKey(same(propertyKey));
-        verify(properties, times(1)).get(same(propertyKey));
+        verify(this.ioHandler, times(1)).saveProperty(same(propertyFile), same(propertyKey), same(versionString));
+        verify(this.ioHandler, times(1)).loadProperty(same(propertyFile), same(propertyKey));
+    }
+    
+    @Test
+    public void testUpdateStartsFromDefaultVersionWhenMissing() throws Exception {
+        File propertyFile = mock(File.class);
+        PathLockRegistry lockRegistry = mock(PathLockRegistry.class);
+        when(lockRegistry.acquire(same(propertyFile))).thenReturn(mock(VersionLock.class));
+        
+        final String propertyKey = "PROPERTY KEY";
+        PropertyLocation location = new PropertyLocation(null, 0, 0, false, false);
+        when(this.ioHandler.locatePropertyIfExists(same(propertyFile), same(propertyKey))).thenReturn(location);
+        
+        Version defaultVersion = mock(Version.class);
+        Version currentVersion = mock(Version.class);
+        when(currentVersion.toString()).thenReturn("1.0.1");
+        when(this.versionFactory.buildVersionFromString(same(AutoCreatingPropertyFileVersionHandler.DEFAULT_VERSION_STRING))).thenReturn(defaultVersion);
+        
+        VersionUpdate update = mock(VersionUpdate.class);
+        when(update.apply(same(defaultVersion))).thenReturn(currentVersion);
+        when(this.ioHandler.saveProperty(same(propertyFile), same(location), same(propertyKey), eq("1.0.1"))).thenReturn(true);
+        
+        this.propHandler
+            .setLockRegistry(lockRegistry)
+            .setPropertyFilePath(propertyFile)
+            .setPropertyKey(propertyKey);
+        
+        VersionChange change = this.propHandler.update(update, mock(PrintStream.class));
+        
+        assertSame(defaultVersion, change.getPreviousVersion());
+        assertSame(currentVersion, change.getCurrentVersion());
         
-        verify(this.ioHandler, times(1)).savePropertiesToFile(isA(Properties.class), same(propertyFile));
-        verify(this.ioHandler, times(1)).loadPropertiesFromFile(same(propertyFile));
+        verify(this.ioHandler, times(1)).saveProperty(same(propertyFile), same(location), same(propertyKey), eq("1.0.1"));
     }
     
 }
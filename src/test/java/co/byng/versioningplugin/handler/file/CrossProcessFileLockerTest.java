@@ -0,0 +1,190 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.file;
+
+import co.byng.versioningplugin.handler.VersionLock;
+import co.byng.versioningplugin.handler.VersionLockTimeoutException;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * The contention tests lock the file from a second JVM, started with this
+ * class's main method on the test classpath.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class CrossProcessFileLockerTest {
+    
+    private static final String LOCKED = "LOCKED";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private File propertyFile;
+    private PathLockRegistry registry;
+    private ByteArrayOutputStream output;
+    private PrintStream logger;
+    private Process holder;
+    
+    @Before
+    public void setUp() throws Exception {
+        this.propertyFile = this.folder.newFile("version.properties");
+        this.registry = new PathLockRegistry();
+        this.output = new ByteArrayOutputStream();
+        this.logger = new PrintStream(this.output, true);
+    }
+    
+    @After
+    public void tearDown() {
+        if (this.holder != null) {
+            this.holder.destroy();
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetTimeoutMillisThrowsExceptionForNegativeValues() {
+        new CrossProcessFileLocker(-1);
+    }
+    
+    @Test
+    public void testGetLockFileIsNextToCanonicalPropertyFile() throws Exception {
+        File equivalent = new File(this.folder.newFolder("sub"), ".." + File.separator + "version.properties");
+        
+        assertEquals(
+            new File(this.folder.getRoot().getCanonicalFile(), "version.properties.lock"),
+            new CrossProcessFileLocker().getLockFile(equivalent)
+        );
+    }
+    
+    @Test
+    public void testUncontendedAcquireRecordsHolderAndReleasesBothLocks() throws Exception {
+        CrossProcessFileLocker locker = new CrossProcessFileLocker();
+        
+        VersionLock lock = locker.acquire(this.propertyFile, this.registry.acquire(this.propertyFile), this.logger);
+        
+        assertFalse(lock.isContended());
+        assertEquals(
+            ManagementFactory.getRuntimeMXBean().getName(),
+            new String(Files.readAllBytes(locker.getLockFile(this.propertyFile).toPath()), "UTF-8").trim()
+        );
+        
+        lock.release();
+        lock.release();
+        
+        assertEquals(0, this.registry.getActivePathCount());
+        assertEquals(0, this.output.size());
+    }
+    
+    @Test
+    public void testAcquireTimesOutWhileAnotherProcessHoldsLock() throws Exception {
+        this.holder = this.startHolder(this.propertyFile);
+        
+        CrossProcessFileLocker locker = new CrossProcessFileLocker(300);
+        
+        try {
+            locker.acquire(this.propertyFile, this.registry.acquire(this.propertyFile), this.logger);
+            fail("Lock held by another process was acquired");
+        } catch (VersionLockTimeoutException ex) {
+            assertTrue(ex.getMessage().contains("@"));
+        }
+        
+        assertTrue(this.output.toString().contains("is locked by "));
+        assertEquals(0, this.registry.getActivePathCount());
+    }
+    
+    @Test
+    public void testAcquireWaitsForAnotherProcessToRelease() throws Exception {
+        this.holder = this.startHolder(this.propertyFile);
+        final Process releasingHolder = this.holder;
+        
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(300);
+                    releasingHolder.getOutputStream().close();
+                } catch (Exception ex) {
+                }
+            }
+        }.start();
+        
+        VersionLock lock = new CrossProcessFileLocker(10000).acquire(
+            this.propertyFile,
+            this.registry.acquire(this.propertyFile),
+            this.logger
+        );
+        
+        assertTrue(lock.isContended());
+        assertTrue(lock.getWaitMillis() >= 100);
+        assertTrue(this.output.toString().contains("is locked by "));
+        
+        lock.release();
+    }
+    
+    private Process startHolder(File f) throws Exception {
+        Process process = new ProcessBuilder(
+            new File(new File(System.getProperty("java.home"), "bin"), "java").getPath(),
+            "-cp",
+            System.getProperty("java.class.path"),
+            CrossProcessFileLockerTest.class.getName(),
+            f.getPath()
+        ).redirectErrorStream(true).start();
+        
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+        assertEquals(LOCKED, reader.readLine());
+        
+        return process;
+    }
+    
+    /**
+     * Holds the lock on the given property file until standard input closes
+     * 
+     * @param args
+     * @throws Exception 
+     */
+    public static void main(String[] args) throws Exception {
+        File f = new File(args[0]);
+        VersionLock lock = new CrossProcessFileLocker().acquire(f, new PathLockRegistry().acquire(f), System.err);
+        
+        System.out.println(LOCKED);
+        System.out.flush();
+        
+        while (System.in.read() != -1) {
+        }
+        
+        lock.release();
+    }
+    
+}
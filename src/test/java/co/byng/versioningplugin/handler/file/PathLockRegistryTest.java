@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.file;
+
+import co.byng.versioningplugin.handler.VersionLock;
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class PathLockRegistryTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private PathLockRegistry registry;
+    
+    @Before
+    public void setUp() {
+        this.registry = new PathLockRegistry();
+    }
+    
+    @Test
+    public void testGetDefaultReturnsSharedRegistry() {
+        assertSame(PathLockRegistry.getDefault(), PathLockRegistry.getDefault());
+    }
+    
+    @Test
+    public void testUncontendedAcquireDoesNotWait() throws Exception {
+        VersionLock lock = this.registry.acquire(this.folder.newFile("version.properties"));
+        
+        assertFalse(lock.isContended());
+        assertEquals(0, lock.getWaitMillis());
+        assertEquals(1, this.registry.getActivePathCount());
+        
+        lock.release();
+        lock.release();
+        
+        assertEquals(0, this.registry.getActivePathCount());
+        assertEquals(1, this.registry.getAcquisitions());
+        assertEquals(0, this.registry.getContendedAcquisitions());
+    }
+    
+    @Test
+    public void testDifferentPathsDoNotContend() throws Exception {
+        final VersionLock first = this.registry.acquire(this.folder.newFile("first.properties"));
+        final File second = this.folder.newFile("second.properties");
+        final AtomicReference<VersionLock> acquired = new AtomicReference<>();
+        
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    acquired.set(registry.acquire(second));
+                } catch (Exception ex) {
+                }
+            }
+        };
+        thread.start();
+        thread.join(5000);
+        
+        assertNotNull(acquired.get());
+        assertFalse(acquired.get().isContended());
+        assertEquals(2, this.registry.getActivePathCount());
+        
+        acquired.get().release();
+        first.release();
+    }
+    
+    @Test
+    public void testEquivalentPathsShareOneLock() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        File equivalent = new File(this.folder.newFolder("sub"), ".." + File.separator + "version.properties");
+        
+        final VersionLock first = this.registry.acquire(f);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicReference<VersionLock> second = new AtomicReference<>();
+        final File waitingPath = equivalent;
+        
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                started.countDown();
+                
+                try {
+                    second.set(registry.acquire(waitingPath));
+                } catch (Exception ex) {
+                }
+            }
+        };
+        thread.start();
+        started.await();
+        
+        thread.join(200);
+        assertNull(second.get());
+        assertEquals(1, this.registry.getActivePathCount());
+        
+        first.release();
+        thread.join(5000);
+        
+        assertNotNull(second.get());
+        assertTrue(second.get().isContended());
+        assertTrue(second.get().getWaitMillis() > 0);
+        assertEquals(1, this.registry.getContendedAcquisitions());
+        assertTrue(this.registry.getTotalWaitMillis() > 0);
+        
+        second.get().release();
+        
+        assertEquals(0, this.registry.getActivePathCount());
+    }
+    
+    @Test
+    public void testInterruptedAcquireReleasesItsReference() throws Exception {
+        final File f = this.folder.newFile("version.properties");
+        VersionLock lock = this.registry.acquire(f);
+        final AtomicReference<Throwable> thrown = new AtomicReference<>();
+        
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    registry.acquire(f);
+                } catch (Throwable t) {
+                    thrown.set(t);
+                }
+            }
+        };
+        thread.start();
+        thread.join(200);
+        thread.interrupt();
+        thread.join(5000);
+        
+        assertTrue(thrown.get() instanceof InterruptedException);
+        
+        lock.release();
+        
+        assertEquals(0, this.registry.getActivePathCount());
+    }
+    
+}
@@ -25,11 +25,21 @@ package co.byng.versioningplugin.handler.file;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import org.junit.Assume;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -39,178 +49,408 @@ import static org.mockito.Mockito.*;
  */
 public class PropertyFileIoHandlerTest {
     
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private TrackingFileChannelFactory channelFactory;
     private PropertyFileIoHandler ioHandler;
-    private Class<? extends InputStream> inputStreamClass;
-    private Class<? extends OutputStream> outputStreamClass;
     
     @Before
     public void setUp() {
-        this.ioHandler = new PropertyFileIoHandler();
-        
-        this.inputStreamClass = mock(InputStream.class).getClass();
-        this.outputStreamClass = mock(OutputStream.class).getClass();
+        this.channelFactory = new TrackingFileChannelFactory();
+        this.ioHandler = new PropertyFileIoHandler(this.channelFactory);
     }
     
-    /**
-     * 
-     */
     @Test
-    public void testSetInputStreamClass() {
-        this.ioHandler.setInputStreamClass(this.inputStreamClass);
-
-        assertSame(this.inputStreamClass, this.ioHandler.inputStreamClass);
+    public void testDefaultConstructorUsesNioChannelFactory() {
+        assertTrue(new PropertyFileIoHandler().getChannelFactory() instanceof NioFileChannelFactory);
+    }
+    
+    @Test
+    public void testGetAndSetChannelFactory() {
+        FileChannelFactory channelFactory = mock(FileChannelFactory.class);
+        
+        this.ioHandler.setChannelFactory(channelFactory);
+        
+        assertSame(channelFactory, this.ioHandler.getChannelFactory());
     }
     
-    /**
-     * 
-     */
     @Test(expected = IllegalArgumentException.class)
-    public void testSetInputClassThrowsExceptionForNullValues() {
-        this.ioHandler.setInputStreamClass(null);
+    public void testSetChannelFactoryThrowsExceptionForNullValues() {
+        this.ioHandler.setChannelFactory(null);
+    }
+    
+    @Test
+    public void testBuildPropertiesReturnsProperties() {
+        assertTrue(this.ioHandler.buildProperties() instanceof Properties);
     }
 
     /**
      * 
      */
     @Test
-    public void testSetOutputStreamClass() {
-        this.ioHandler.setOutputStreamClass(this.outputStreamClass);
-
-        assertSame(this.outputStreamClass, this.ioHandler.outputStreamClass);
+    public void testLoadPropertiesFromFileClosesChannel() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        
+        Properties properties = new Properties();
+        properties.setProperty("version", "1.2.3");
+        properties.setProperty("other", "value");
+        this.ioHandler.savePropertiesToFile(properties, f);
+        this.channelFactory.opened.clear();
+        
+        Properties loaded = this.ioHandler.loadPropertiesFromFile(f);
+        
+        assertEquals("1.2.3", loaded.getProperty("version"));
+        assertEquals("value", loaded.getProperty("other"));
+        
+        assertEquals(1, this.channelFactory.opened.size());
+        assertFalse(this.channelFactory.opened.get(0).isOpen());
+    }
+    
+    @Test
+    public void testLoadPropertiesFromFileLargerThanRetainedBuffer() throws Exception {
+        File f = this.folder.newFile("large.properties");
+        
+        Properties properties = new Properties();
+        for (int i = 0; i < 10000; i++) {
+            properties.setProperty("key." + i, "value " + i);
+        }
+        properties.setProperty("version", "4.5.6");
+        this.ioHandler.savePropertiesToFile(properties, f);
+        
+        Properties loaded = this.ioHandler.loadPropertiesFromFile(f);
+        
+        assertEquals(properties, loaded);
     }
     
+    @Test
+    public void testLoadPropertyReadsSingleKeyAndClosesChannel() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        
+        Properties properties = new Properties();
+        properties.setProperty("version", "1.2.3");
+        properties.setProperty("other", "value");
+        this.ioHandler.savePropertiesToFile(properties, f);
+        this.channelFactory.opened.clear();
+        
+        assertEquals("1.2.3", this.ioHandler.loadProperty(f, "version"));
+        assertNull(this.ioHandler.loadProperty(f, "missing"));
+        
+        assertEquals(2, this.channelFactory.opened.size());
+        for (FileChannel channel : this.channelFactory.opened) {
+            assertFalse(channel.isOpen());
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void testLoadPropertyWrapsParseErrors() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        Files.write(f.toPath(), "version=\\uZZZZ\n".getBytes("ISO-8859-1"));
+        
+        this.ioHandler.loadProperty(f, "version");
+    }
+    
+    @Test(expected = IOException.class)
+    public void testLoadPropertiesFromFilePropagatesChannelExceptions() throws Exception {
+        FileChannelFactory channelFactory = mock(FileChannelFactory.class);
+        File f = mock(File.class);
+        when(channelFactory.openForReading(same(f))).thenThrow(new IOException());
+        
+        this.ioHandler.setChannelFactory(channelFactory);
+        this.ioHandler.loadPropertiesFromFile(f);
+    }
+
     /**
      * 
      */
+    @Test
+    public void testSavePropertiesToFileClosesChannels() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        
+        Properties properties = new Properties();
+        properties.setProperty("version", "1.2.3");
+        
+        for (int i = 0; i < 3; i++) {
+            this.ioHandler.savePropertiesToFile(properties, f);
+        }
+        
+        assertEquals(3, this.channelFactory.opened.size());
+        for (FileChannel channel : this.channelFactory.opened) {
+            assertFalse(channel.isOpen());
+        }
+    }
+    
     @Test(expected = IllegalArgumentException.class)
-    public void testSetOutputClassThrowsExceptionForNullValues() {
-        this.ioHandler.setOutputStreamClass(null);
+    public void testSetCommitModeThrowsExceptionForNullValues() {
+        this.ioHandler.setCommitMode(null);
     }
-
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetFsyncPolicyThrowsExceptionForNullValues() {
+        this.ioHandler.setFsyncPolicy(null);
+    }
+    
     @Test
-    public void testBuildInputStreamClassReturnsStream() throws Exception {
-        this.ioHandler.setInputStreamClass(FileConstructorInputStream.class);
+    public void testSavePropertiesToFileAtomicallyReplacesTarget() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        
+        Properties properties = new Properties();
+        properties.setProperty("version", "1.2.3");
         
-        assertTrue(this.ioHandler.buildInputStream(mock(File.class)) instanceof FileConstructorInputStream);
+        this.ioHandler.setCommitMode(PropertyFileIoHandler.CommitMode.ATOMIC);
+        this.ioHandler.setFsyncPolicy(PropertyFileIoHandler.FsyncPolicy.FILE_AND_DIRECTORY);
+        this.ioHandler.savePropertiesToFile(properties, f);
+        
+        assertEquals("1.2.3", this.ioHandler.loadPropertiesFromFile(f).getProperty("version"));
+        assertEquals(1, this.folder.getRoot().list().length);
     }
     
-    @Test(expected = IOException.class)
-    public void testBuildInputStreamClassThrowsExceptionIfNoFileConstructor() throws Exception {
-        this.ioHandler.setInputStreamClass(EmptyConstructorInputStream.class);
-        this.ioHandler.buildInputStream(mock(File.class));
+    @Test
+    public void testAtomicSavesKeepPermissions() throws Exception {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        
+        File f = this.folder.newFile("version.properties");
+        Files.write(f.toPath(), "version=1.2.3\n".getBytes("ISO-8859-1"));
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw-r--");
+        Files.setPosixFilePermissions(f.toPath(), permissions);
+        
+        this.ioHandler.setCommitMode(PropertyFileIoHandler.CommitMode.ATOMIC);
+        this.ioHandler.saveProperty(f, "version", "1.2.40");
+        
+        assertEquals(permissions, Files.getPosixFilePermissions(f.toPath()));
+        
+        Properties properties = new Properties();
+        properties.setProperty("version", "1.2.5");
+        this.ioHandler.savePropertiesToFile(properties, f);
+        
+        assertEquals(permissions, Files.getPosixFilePermissions(f.toPath()));
     }
     
     @Test
-    public void testBuildOutputStreamClassReturnsStream() throws Exception {
-        this.ioHandler.setOutputStreamClass(FileConstructorOutputStream.class);
+    public void testAtomicSavesKeepSymbolicLinks() throws Exception {
+        File target = this.folder.newFile("shared.properties");
+        Files.write(target.toPath(), "version=1.2.3\n".getBytes("ISO-8859-1"));
+        File link = new File(this.folder.getRoot(), "version.properties");
+        
+        try {
+            Files.createSymbolicLink(link.toPath(), target.toPath());
+        } catch (UnsupportedOperationException | IOException ex) {
+            Assume.assumeNoException(ex);
+        }
         
-        assertTrue(this.ioHandler.buildOutputStream(mock(File.class)) instanceof FileConstructorOutputStream);
+        this.ioHandler.setCommitMode(PropertyFileIoHandler.CommitMode.ATOMIC);
+        this.ioHandler.saveProperty(link, "version", "1.2.40");
+        
+        assertTrue(Files.isSymbolicLink(link.toPath()));
+        assertEquals("version=1.2.40\n", this.readFile(target));
+        assertEquals(2, this.folder.getRoot().list().length);
     }
     
-    @Test(expected = IOException.class)
-    public void testBuildOutputStreamClassThrowsExceptionIfNoFileConstructor() throws Exception {
-        this.ioHandler.setOutputStreamClass(EmptyConstructorOutputStream.class);
-        this.ioHandler.buildOutputStream(mock(File.class));
+    @Test
+    public void testSavePropertiesToFileDirectlyRewritesTarget() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        
+        Properties properties = new Properties();
+        properties.setProperty("version", "2.0.0");
+        
+        this.ioHandler.setCommitMode(PropertyFileIoHandler.CommitMode.DIRECT);
+        this.ioHandler.setFsyncPolicy(PropertyFileIoHandler.FsyncPolicy.NONE);
+        this.ioHandler.savePropertiesToFile(properties, f);
+        
+        assertEquals("2.0.0", this.ioHandler.loadPropertiesFromFile(f).getProperty("version"));
+        assertEquals(1, this.folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testSavePropertyPatchesSameLengthValueInPlace() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        String content = "# build settings\nname = example\nversion=1.2.3\nother: value\n";
+        Files.write(f.toPath(), content.getBytes("ISO-8859-1"));
+        Object fileKey = Files.readAttributes(f.toPath(), BasicFileAttributes.class).fileKey();
+        
+        this.ioHandler.setCommitMode(PropertyFileIoHandler.CommitMode.DIRECT);
+        this.ioHandler.saveProperty(f, "version", "1.2.4");
+        
+        assertEquals(content.replace("1.2.3", "1.2.4"), this.readFile(f));
+        assertEquals(fileKey, Files.readAttributes(f.toPath(), BasicFileAttributes.class).fileKey());
+        assertEquals(1, this.folder.getRoot().list().length);
+        for (FileChannel channel : this.channelFactory.opened) {
+            assertFalse(channel.isOpen());
+        }
     }
     
     @Test
-    public void testBuildPropertiesReturnsProperties() {
-        assertTrue(this.ioHandler.buildProperties() instanceof Properties);
+    public void testSavePropertyNeverPatchesInPlaceAtomically() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        String content = "version=1.2.3\nother=value\n";
+        Files.write(f.toPath(), content.getBytes("ISO-8859-1"));
+        Object fileKey = Files.readAttributes(f.toPath(), BasicFileAttributes.class).fileKey();
+        
+        this.ioHandler.setCommitMode(PropertyFileIoHandler.CommitMode.ATOMIC);
+        this.ioHandler.saveProperty(f, "version", "1.2.4");
+        
+        assertEquals(content.replace("1.2.3", "1.2.4"), this.readFile(f));
+        assertFalse(fileKey.equals(Files.readAttributes(f.toPath(), BasicFileAttributes.class).fileKey()));
+        assertEquals(1, this.folder.getRoot().list().length);
     }
-
-    /**
-     * 
-     */
+    
     @Test
-    public void testLoadPropertiesFromFile() throws Exception {
-        InputStream inputStream = mock(InputStream.class);
-        File f = mock(File.class);
-        Properties properties = mock(Properties.class);
+    public void testSavePropertySkipsUnchangedValue() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        String content = "version = 1.2.3\nother=value\n";
+        Files.write(f.toPath(), content.getBytes("ISO-8859-1"));
         
-        this.ioHandler = mock(this.ioHandler.getClass());
-        when(this.ioHandler.buildInputStream(same(f))).thenReturn(inputStream);
-        when(this.ioHandler.buildProperties()).thenReturn(properties);
-        when(this.ioHandler.loadPropertiesFromFile(same(f))).thenCallRealMethod();
+        this.ioHandler.setCommitMode(PropertyFileIoHandler.CommitMode.DIRECT);
+        assertFalse(this.ioHandler.saveProperty(f, "version", "1.2.3"));
+        assertTrue(this.ioHandler.saveProperty(f, "version", "1.2.4"));
         
-        assertSame(properties, this.ioHandler.loadPropertiesFromFile(f));
+        assertEquals(content.replace("1.2.3", "1.2.4"), this.readFile(f));
+        // One read for each save, and one update for the changed value only
+        assertEquals(3, this.channelFactory.opened.size());
+    }
+    
+    @Test
+    public void testSavePropertySplicesLongerValueAtomically() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        String content = "# build settings\nversion = 1.2.9 \\\n  \nother: value\n";
+        Files.write(f.toPath(), content.getBytes("ISO-8859-1"));
         
-        verify(this.ioHandler, times(1)).buildInputStream(same(f));
-        verify(this.ioHandler, times(1)).buildProperties();
+        this.ioHandler.setCommitMode(PropertyFileIoHandler.CommitMode.ATOMIC);
+        this.ioHandler.saveProperty(f, "version", "1.2.10");
+        
+        assertEquals("# build settings\nversion = 1.2.10\nother: value\n", this.readFile(f));
+        assertEquals(1, this.folder.getRoot().list().length);
     }
-
-    /**
-     * 
-     */
+    
     @Test
-    public void testSavePropertiesToFile() throws Exception {
-        OutputStream outputStream = mock(OutputStream.class);
-        File f = mock(File.class);
-        Properties properties = mock(Properties.class);
-
-        doNothing().when(properties).store(same(outputStream), eq(""));
-
-        this.ioHandler = mock(this.ioHandler.getClass());
-        when(this.ioHandler.buildOutputStream(same(f))).thenReturn(outputStream);
-        doCallRealMethod().when(this.ioHandler).savePropertiesToFile(same(properties), same(f));
+    public void testSavePropertySplicesShorterValueDirectly() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        String content = "version=10.0.0-SNAPSHOT\nother=value\n";
+        Files.write(f.toPath(), content.getBytes("ISO-8859-1"));
         
-        this.ioHandler.savePropertiesToFile(properties, f);
+        this.ioHandler.setCommitMode(PropertyFileIoHandler.CommitMode.DIRECT);
+        this.ioHandler.saveProperty(f, "version", "10.0.0");
         
-        verify(this.ioHandler, times(1)).buildOutputStream(same(f));
+        assertEquals("version=10.0.0\nother=value\n", this.readFile(f));
     }
     
-}
-
-
-
-class EmptyConstructorInputStream extends InputStream {
-
-    public EmptyConstructorInputStream() {
+    @Test
+    public void testSavePropertyAppendsMissingProperty() throws Exception {
+        for (String commitMode : new String[] { PropertyFileIoHandler.CommitMode.ATOMIC, PropertyFileIoHandler.CommitMode.DIRECT }) {
+            File f = this.folder.newFile(commitMode + ".properties");
+            Files.write(f.toPath(), "other=value".getBytes("ISO-8859-1"));
+            
+            this.ioHandler.setCommitMode(commitMode);
+            this.ioHandler.saveProperty(f, "version", "1.0.0");
+            
+            assertEquals("other=value\nversion=1.0.0\n", this.readFile(f));
+        }
     }
-
-    @Override
-    public int read() throws IOException {
-        return -1;
+    
+    @Test
+    public void testSavePropertyAddsSeparatorAfterBareKey() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        Files.write(f.toPath(), "version\nother=value\n".getBytes("ISO-8859-1"));
+        
+        this.ioHandler.saveProperty(f, "version", "1.0.0");
+        
+        assertEquals("version=1.0.0\nother=value\n", this.readFile(f));
     }
     
-}
-
-
-
-class FileConstructorInputStream extends EmptyConstructorInputStream {
-
-    public final File f;
+    @Test
+    public void testSavePropertyCreatesMissingFile() throws Exception {
+        for (String commitMode : new String[] { PropertyFileIoHandler.CommitMode.ATOMIC, PropertyFileIoHandler.CommitMode.DIRECT }) {
+            File f = new File(this.folder.getRoot(), commitMode + ".properties");
+            
+            this.ioHandler.setCommitMode(commitMode);
+            this.ioHandler.saveProperty(f, "version", "1.0.0");
+            
+            assertEquals("version=1.0.0\n", this.readFile(f));
+        }
+    }
+    
+    @Test
+    public void testSavePropertyEscapesLikeProperties() throws Exception {
+        File f = this.folder.newFile("version.properties");
+        String key = "odd key:#!=\\";
+        String value = " 1.0.0\t\u00e9\u20ac=:\n ";
+        
+        this.ioHandler.saveProperty(f, key, value);
+        
+        Properties expected = new Properties();
+        expected.setProperty(key, value);
+        
+        assertEquals(expected, this.ioHandler.loadPropertiesFromFile(f));
+        assertEquals(value, this.ioHandler.loadProperty(f, key));
+    }
     
-    public FileConstructorInputStream(File f) {
-        super();
+    @Test
+    public void testLocateSavedPropertyMatchesScannedLocation() throws Exception {
+        String[] contents = new String[] {
+            "version=1.0.0\nother=value\n",
+            "version\nother=value\n",
+            "other=value",
+            "other=value\n",
+            null
+        };
+        String value = " 1.0.1\t\u00e9";
+        int i = 0;
         
-        this.f = f;
+        for (String content : contents) {
+            File f = new File(this.folder.getRoot(), "version" + (i++) + ".properties");
+            
+            if (content != null) {
+                Files.write(f.toPath(), content.getBytes("ISO-8859-1"));
+            }
+            
+            PropertyLocation location = this.ioHandler.locatePropertyIfExists(f, "odd key");
+            this.ioHandler.saveProperty(f, location, "odd key", value);
+            
+            PropertyLocation expected = this.ioHandler.locateProperty(f, "odd key");
+            PropertyLocation saved = this.ioHandler.locateSavedProperty(location, "odd key", value);
+            
+            assertEquals(expected.getValue(), saved.getValue());
+            assertEquals(expected.getValueStart(), saved.getValueStart());
+            assertEquals(expected.getValueEnd(), saved.getValueEnd());
+            assertEquals(expected.isSeparatorRequired(), saved.isSeparatorRequired());
+            assertEquals(expected.isLineBreakRequired(), saved.isLineBreakRequired());
+        }
+    }
+    
+    private String readFile(File f) throws IOException {
+        return new String(Files.readAllBytes(f.toPath()), "ISO-8859-1");
     }
     
 }
 
 
 
-class EmptyConstructorOutputStream extends OutputStream {
+class TrackingFileChannelFactory extends NioFileChannelFactory {
+    
+    public final List<FileChannel> opened = new ArrayList<FileChannel>();
 
-    public EmptyConstructorOutputStream() {
+    @Override
+    public FileChannel openForReading(File f) throws IOException {
+        FileChannel channel = super.openForReading(f);
+        this.opened.add(channel);
+        
+        return channel;
     }
 
     @Override
-    public void write(int b) throws IOException {
+    public FileChannel openForWriting(File f) throws IOException {
+        FileChannel channel = super.openForWriting(f);
+        this.opened.add(channel);
+        
+        return channel;
     }
-    
-}
-
 
-
-class FileConstructorOutputStream extends EmptyConstructorOutputStream {
-
-    public final File f;
-    
-    public FileConstructorOutputStream(File f) {
-        super();
+    @Override
+    public FileChannel openForUpdating(File f) throws IOException {
+        FileChannel channel = super.openForUpdating(f);
+        this.opened.add(channel);
         
-        this.f = f;
+        return channel;
     }
     
 }
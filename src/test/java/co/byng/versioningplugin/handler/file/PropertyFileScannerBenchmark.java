@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares reading the version key through a full {@link Properties} parse
+ * with the single-key {@link PropertyFileScanner}, for property files of
+ * increasing size with the key at the start or the end.
+ * 
+ * Run with <code>mvn test-compile</code> followed by this class's main method
+ * on the test classpath.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyFileScannerBenchmark {
+    
+    @Param({"1", "100", "1000"})
+    public int entries;
+    
+    @Param({"first", "last"})
+    public String keyPosition;
+    
+    private File propertyFile;
+    private PropertyFileIoHandler ioHandler;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.propertyFile = File.createTempFile("benchmark", ".properties");
+        this.ioHandler = new PropertyFileIoHandler();
+        
+        StringBuilder content = new StringBuilder("# gradle.properties\n");
+        
+        if (this.keyPosition.equals("first")) {
+            content.append("version=1.2.3-rc\n");
+        }
+        
+        for (int i = 1; i < this.entries; i++) {
+            content.append("org.example.setting.").append(i).append('=').append("value ").append(i).append('\n');
+        }
+        
+        if (this.keyPosition.equals("last")) {
+            content.append("version=1.2.3-rc\n");
+        }
+        
+        Files.write(this.propertyFile.toPath(), content.toString().getBytes("ISO-8859-1"));
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.propertyFile.delete();
+    }
+    
+    @Benchmark
+    public String loadWithProperties() throws IOException {
+        return this.ioHandler.loadPropertiesFromFile(this.propertyFile).getProperty("version");
+    }
+    
+    @Benchmark
+    public String loadWithScanner() throws IOException {
+        return this.ioHandler.loadProperty(this.propertyFile, "version");
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+            new OptionsBuilder()
+                .include(PropertyFileScannerBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+    
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Properties;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class PropertyFileScannerTest {
+    
+    /**
+     * Scans with a deliberately tiny buffer so that tokens straddle refills
+     */
+    protected PropertyLocation find(String content, String key) throws IOException {
+        return new PropertyFileScanner(
+            Channels.newChannel(new ByteArrayInputStream(content.getBytes("ISO-8859-1"))),
+            ByteBuffer.allocate(3)
+        ).find(key);
+    }
+    
+    /**
+     * Asserts that the scanner agrees with {@link Properties} for the given key,
+     * and that splicing a new value into the reported range changes only that
+     * property
+     */
+    protected void assertEquivalent(String content, String key) throws IOException {
+        Properties expected = new Properties();
+        expected.load(new StringReader(content));
+        
+        PropertyLocation location = this.find(content, key);
+        
+        assertEquals(expected.getProperty(key), location.getValue());
+        
+        if (location.isFound()) {
+            String spliced = content.substring(0, (int) location.getValueStart())
+                + (location.isSeparatorRequired() ? "=" : "")
+                + "9.9.9"
+                + content.substring((int) location.getValueEnd());
+            
+            Properties actual = new Properties();
+            actual.load(new StringReader(spliced));
+            expected.setProperty(key, "9.9.9");
+            
+            assertEquals(expected, actual);
+        }
+    }
+    
+    @Test
+    public void testFindsSimpleValue() throws IOException {
+        this.assertEquivalent("version=1.0.0\n", "version");
+        this.assertEquivalent("version=1.0.0", "version");
+        this.assertEquivalent("a=b\nversion = 1.2.3  \nc=d", "version");
+    }
+    
+    @Test
+    public void testSkipsCommentsAndBlankLines() throws IOException {
+        this.assertEquivalent("# comment\n! other\n   #indented\n\n\nversion:2.0.0\r\n", "version");
+        this.assertEquivalent("#comment ending in a backslash\\\nversion=1\n", "version");
+    }
+    
+    @Test
+    public void testHandlesSeparatorsAndWhitespace() throws IOException {
+        this.assertEquivalent("version 1.0\n", "version");
+        this.assertEquivalent("  version  =  = 1\n", "version");
+        this.assertEquivalent("version\n", "version");
+        this.assertEquivalent("version   \n", "version");
+        this.assertEquivalent("key\\=with\\:sep = value\nversion=1\n", "key=with:sep");
+        this.assertEquivalent("\\ key = v\n", " key");
+    }
+    
+    @Test
+    public void testHandlesEscapes() throws IOException {
+        this.assertEquivalent("version\\u0041=\\u0042\\t\\n\n", "versionA");
+        this.assertEquivalent("version=\\u00e9\n", "version");
+        this.assertEquivalent("k=v\\\\\nversion=1", "k");
+    }
+    
+    @Test
+    public void testHandlesContinuationLines() throws IOException {
+        this.assertEquivalent("ver\\\n   sion=1.0.0\n", "version");
+        this.assertEquivalent("version=a\\\n\nb=c\n", "version");
+        this.assertEquivalent("version=a\\\r\n  b\rnext=1", "version");
+        this.assertEquivalent("version=a\\\r\n  b\rnext=1", "next");
+        this.assertEquivalent("version=trailing\\", "version");
+    }
+    
+    @Test
+    public void testDoesNotMatchKeyPrefixes() throws IOException {
+        this.assertEquivalent("versionX=1\nversio=2\nversion:3\n", "version");
+    }
+    
+    @Test
+    public void testReportsFirstOccurrenceOfDuplicatedKey() throws IOException {
+        assertEquals("1", this.find("version=1\nversion=2\n", "version").getValue());
+    }
+    
+    @Test
+    public void testMissingKeyReportsEndOfFile() throws IOException {
+        PropertyLocation location = this.find("a=b\n", "version");
+        
+        assertFalse(location.isFound());
+        assertEquals(4, location.getValueStart());
+        assertFalse(location.isLineBreakRequired());
+        
+        assertTrue(this.find("a=b", "version").isLineBreakRequired());
+        assertFalse(this.find("", "version").isLineBreakRequired());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedUnicodeEscapeThrowsException() throws IOException {
+        this.find("version=\\u00zz\n", "version");
+    }
+    
+}
@@ -23,17 +23,27 @@
  */
 package co.byng.versioningplugin.handler.file;
 
+import co.byng.versioningplugin.handler.VersionChange;
+import co.byng.versioningplugin.handler.VersionLock;
+import co.byng.versioningplugin.handler.VersionUpdate;
+import co.byng.versioningplugin.versioning.StaticVersionFactory;
 import co.byng.versioningplugin.versioning.VersionFactory;
 import com.github.zafarkhaja.semver.Version;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.Properties;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import static org.mockito.Mockito.*;
+import org.mockito.InOrder;
 import org.mockito.runners.MockitoJUnitRunner;
 
 /**
@@ -43,6 +53,9 @@ import org.mockito.runners.MockitoJUnitRunner;
 @RunWith(MockitoJUnitRunner.class)
 public class PropertyFileVersionHandlerTest {
     
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
     private PropertyFileIoHandler ioHandler;
     private VersionFactory versionFactory;
     private PropertyFileVersionHandler propHandler;
@@ -130,10 +143,7 @@ public class PropertyFileVersionHandlerTest {
         final String propertyKey = "ARBITRARY PROPERTY KEY";
         final String versionString = "1.2.3.4";
         
-        Properties properties = mock(Properties.class);
-        when(this.ioHandler.loadPropertiesFromFile(same(propertyFile))).thenReturn(properties);
-        when(properties.containsKey(same(propertyKey))).thenReturn(true);
-        when(properties.get(same(propertyKey))).thenReturn(versionString);
+        when(this.ioHandler.loadProperty(same(propertyFile), same(propertyKey))).thenReturn(versionString);
         
         Version version = mock(Version.class);
         when(this.versionFactory.buildVersionFromString(same(versionString))).thenReturn(version);
@@ -148,9 +158,7 @@ public class PropertyFileVersionHandlerTest {
         
         verify(propertyFile, times(1)).exists();
         
-        verify(this.ioHandler, times(1)).loadPropertiesFromFile(same(propertyFile));
-        verify(properties, times(1)).containsKey(same(propertyKey));
-        verify(properties, times(1)).get(same(propertyKey));
+        verify(this.ioHandler, times(1)).loadProperty(same(propertyFile), same(propertyKey));
         
         verify(this.versionFactory, times(1)).buildVersionFromString(same(versionString));
     }
@@ -181,9 +189,7 @@ public class PropertyFileVersionHandlerTest {
         
         final String propertyKey = "ARBITRARY PROPERTY KEY";
         
-        Properties properties = mock(Properties.class);
-        when(this.ioHandler.loadPropertiesFromFile(same(propertyFile))).thenReturn(properties);
-        when(properties.containsKey(same(propertyKey))).thenReturn(false);
+        when(this.ioHandler.loadProperty(same(propertyFile), same(propertyKey))).thenReturn(null);
         
         assertNull(
             this.propHandler
@@ -194,8 +200,7 @@ public class PropertyFileVersionHandlerTest {
         
         verify(propertyFile, times(1)).exists();
         
-        verify(this.ioHandler, times(1)).loadPropertiesFromFile(same(propertyFile));
-        verify(properties, times(1)).containsKey(same(propertyKey));
+        verify(this.ioHandler, times(1)).loadProperty(same(propertyFile), same(propertyKey));
     }
 
     /**
@@ -211,11 +216,242 @@ public class PropertyFileVersionHandlerTest {
         final Version version = mock(Version.class);
         when(version.toString()).thenReturn(versionString);
         
-        Properties properties = mock(Properties.class);
-        when(properties.setProperty(same(propertyKey), same(versionString))).thenReturn(null);
-        doNothing().when(this.ioHandler).savePropertiesToFile(same(properties), same(propertyFile));
+        when(this.ioHandler.saveProperty(same(propertyFile), same(propertyKey), same(versionString))).thenReturn(true);
+        
+        this.propHandler
+            .setPropertyFilePath(propertyFile)
+            .setPropertyKey(propertyKey);
         
         assertTrue(this.propHandler.saveVersion(version));
+        
+        verify(this.ioHandler, times(1)).saveProperty(same(propertyFile), same(propertyKey), same(versionString));
+    }
+    
+    @Test
+    public void testSaveVersionReportsUnchangedVersion() throws Exception {
+        File propertyFile = mock(File.class);
+        
+        final String propertyKey = "ARBITRARY PROPERTY KEY";
+        final String versionString = "VERSION STRING";
+        final Version version = mock(Version.class);
+        when(version.toString()).thenReturn(versionString);
+        
+        when(this.ioHandler.saveProperty(same(propertyFile), same(propertyKey), same(versionString))).thenReturn(false);
+        
+        this.propHandler
+            .setPropertyFilePath(propertyFile)
+            .setPropertyKey(propertyKey);
+        
+        assertFalse(this.propHandler.saveVersion(version));
+    }
+    
+    @Test
+    public void testLoadVersionIsAnsweredFromCacheWhileFileIsUnchanged() throws Exception {
+        File propertyFile = mock(File.class);
+        when(propertyFile.exists()).thenReturn(true);
+        
+        final String propertyKey = "ARBITRARY PROPERTY KEY";
+        final String versionString = "1.2.3";
+        final Version version = mock(Version.class);
+        
+        BasicFileAttributes attributes = mock(BasicFileAttributes.class);
+        when(attributes.size()).thenReturn(14L);
+        when(attributes.lastModifiedTime()).thenReturn(FileTime.fromMillis(1000L));
+        when(attributes.fileKey()).thenReturn("INODE");
+        
+        when(this.ioHandler.readAttributes(same(propertyFile))).thenReturn(attributes);
+        when(this.ioHandler.loadProperty(same(propertyFile), same(propertyKey))).thenReturn(versionString);
+        when(this.versionFactory.buildVersionFromString(same(versionString))).thenReturn(version);
+        
+        this.propHandler
+            .setPropertyFilePath(propertyFile)
+            .setPropertyKey(propertyKey);
+        
+        assertSame(version, this.propHandler.loadVersion());
+        assertSame(version, this.propHandler.loadVersion());
+        
+        verify(this.ioHandler, times(1)).loadProperty(same(propertyFile), same(propertyKey));
+        assertEquals(1, this.propHandler.getReadCache().getHitCount());
+        assertEquals(1, this.propHandler.getReadCache().getMissCount());
+        
+        when(attributes.lastModifiedTime()).thenReturn(FileTime.fromMillis(2000L));
+        
+        assertSame(version, this.propHandler.loadVersion());
+        
+        verify(this.ioHandler, times(2)).loadProperty(same(propertyFile), same(propertyKey));
+        
+        this.propHandler.saveVersion(version);
+        this.propHandler.loadVersion();
+        
+        verify(this.ioHandler, times(3)).loadProperty(same(propertyFile), same(propertyKey));
+        assertEquals(3, this.propHandler.getReadCache().getMissCount());
+    }
+    
+    @Test
+    public void testGetAndSetReadCache() {
+        assertNotNull(this.propHandler.getReadCache());
+        
+        VersionReadCache readCache = new VersionReadCache();
+        
+        assertSame(this.propHandler, this.propHandler.setReadCache(readCache));
+        assertSame(readCache, this.propHandler.getReadCache());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetReadCacheThrowsExceptionForNullValues() {
+        this.propHandler.setReadCache(null);
+    }
+    
+    @Test
+    public void testGetAndSetLockRegistry() {
+        assertSame(PathLockRegistry.getDefault(), this.propHandler.getLockRegistry());
+        
+        PathLockRegistry lockRegistry = mock(PathLockRegistry.class);
+        
+        assertSame(this.propHandler, this.propHandler.setLockRegistry(lockRegistry));
+        assertSame(lockRegistry, this.propHandler.getLockRegistry());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetLockRegistryThrowsExceptionForNullValues() {
+        this.propHandler.setLockRegistry(null);
+    }
+    
+    @Test
+    public void testLockVersionLocksPropertyFile() throws Exception {
+        File propertyFile = mock(File.class);
+        PathLockRegistry lockRegistry = mock(PathLockRegistry.class);
+        VersionLock lock = mock(VersionLock.class);
+        when(lockRegistry.acquire(same(propertyFile))).thenReturn(lock);
+        
+        this.propHandler
+            .setLockRegistry(lockRegistry)
+            .setPropertyFilePath(propertyFile);
+        
+        assertSame(lock, this.propHandler.lockVersion(mock(PrintStream.class)));
+        
+        verify(lockRegistry, times(1)).acquire(same(propertyFile));
+    }
+    
+    @Test
+    public void testLockVersionLocksAgainstOtherProcesses() throws Exception {
+        File propertyFile = mock(File.class);
+        PrintStream logger = mock(PrintStream.class);
+        PathLockRegistry lockRegistry = mock(PathLockRegistry.class);
+        CrossProcessFileLocker processLocker = mock(CrossProcessFileLocker.class);
+        VersionLock lock = mock(VersionLock.class);
+        VersionLock processLock = mock(VersionLock.class);
+        when(lockRegistry.acquire(same(propertyFile))).thenReturn(lock);
+        when(processLocker.acquire(same(propertyFile), same(lock), same(logger))).thenReturn(processLock);
+        
+        assertNull(this.propHandler.getProcessLocker());
+        
+        this.propHandler
+            .setLockRegistry(lockRegistry)
+            .setProcessLocker(processLocker)
+            .setPropertyFilePath(propertyFile);
+        
+        assertSame(processLocker, this.propHandler.getProcessLocker());
+        assertSame(processLock, this.propHandler.lockVersion(logger));
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testLockVersionThrowsExceptionWithoutPropertyFile() throws Exception {
+        this.propHandler.lockVersion(mock(PrintStream.class));
+    }
+    
+    @Test
+    public void testUpdateLoadsUpdatesAndSavesUnderLock() throws Exception {
+        File propertyFile = mock(File.class);
+        when(propertyFile.exists()).thenReturn(true);
+        PrintStream logger = mock(PrintStream.class);
+        PathLockRegistry lockRegistry = mock(PathLockRegistry.class);
+        VersionLock lock = mock(VersionLock.class);
+        when(lockRegistry.acquire(same(propertyFile))).thenReturn(lock);
+        
+        final String propertyKey = "ARBITRARY PROPERTY KEY";
+        PropertyLocation location = new PropertyLocation("1.0.0", 8, 13, false, false);
+        when(this.ioHandler.locateProperty(same(propertyFile), same(propertyKey))).thenReturn(location);
+        
+        Version previousVersion = mock(Version.class);
+        Version currentVersion = mock(Version.class);
+        when(currentVersion.toString()).thenReturn("1.0.1");
+        when(this.versionFactory.buildVersionFromString(eq("1.0.0"))).thenReturn(previousVersion);
+        
+        VersionUpdate update = mock(VersionUpdate.class);
+        when(update.apply(same(previousVersion))).thenReturn(currentVersion);
+        when(this.ioHandler.saveProperty(same(propertyFile), same(location), same(propertyKey), eq("1.0.1"))).thenReturn(true);
+        
+        this.propHandler
+            .setLockRegistry(lockRegistry)
+            .setPropertyFilePath(propertyFile)
+            .setPropertyKey(propertyKey);
+        
+        VersionChange change = this.propHandler.update(update, logger);
+        
+        assertSame(previousVersion, change.getPreviousVersion());
+        assertSame(currentVersion, change.getCurrentVersion());
+        assertTrue(change.isSaved());
+        
+        InOrder inOrder = inOrder(lockRegistry, this.ioHandler, update, lock);
+        inOrder.verify(lockRegistry).acquire(same(propertyFile));
+        inOrder.verify(this.ioHandler).locateProperty(same(propertyFile), same(propertyKey));
+        inOrder.verify(update).apply(same(previousVersion));
+        inOrder.verify(this.ioHandler).saveProperty(same(propertyFile), same(location), same(propertyKey), eq("1.0.1"));
+        inOrder.verify(lock).release();
+        
+        verify(this.ioHandler, never()).loadProperty(any(File.class), anyString());
+    }
+    
+    @Test
+    public void testUpdateReleasesLockWhenFileIsMissing() throws Exception {
+        File propertyFile = mock(File.class);
+        when(propertyFile.exists()).thenReturn(false);
+        PathLockRegistry lockRegistry = mock(PathLockRegistry.class);
+        VersionLock lock = mock(VersionLock.class);
+        when(lockRegistry.acquire(same(propertyFile))).thenReturn(lock);
+        VersionUpdate update = mock(VersionUpdate.class);
+        
+        this.propHandler
+            .setLockRegistry(lockRegistry)
+            .setPropertyFilePath(propertyFile);
+        
+        try {
+            this.propHandler.update(update, mock(PrintStream.class));
+            fail("Update of a missing property file succeeded");
+        } catch (FileNotFoundException ex) {
+        }
+        
+        verify(lock, times(1)).release();
+        verify(update, never()).apply(any(Version.class));
+    }
+    
+    @Test
+    public void testUpdateOfUnchangedFileUsesCachedLocation() throws Exception {
+        File propertyFile = this.folder.newFile("version.properties");
+        Files.write(propertyFile.toPath(), "version=1.0.9\nother=value\n".getBytes("ISO-8859-1"));
+        
+        PropertyFileIoHandler fileHandler = spy(new PropertyFileIoHandler());
+        this.propHandler = new PropertyFileVersionHandler(fileHandler, new StaticVersionFactory(), propertyFile);
+        
+        VersionUpdate update = new VersionUpdate() {
+            @Override
+            public Version apply(Version version) {
+                return version.incrementPatchVersion();
+            }
+        };
+        
+        assertEquals("1.0.10", this.propHandler.update(update, mock(PrintStream.class)).getCurrentVersion().toString());
+        assertEquals(0, this.propHandler.getReadCache().getHitCount());
+        
+        VersionChange change = this.propHandler.update(update, mock(PrintStream.class));
+        
+        assertEquals("1.0.10", change.getPreviousVersion().toString());
+        assertEquals("1.0.11", change.getCurrentVersion().toString());
+        assertEquals(1, this.propHandler.getReadCache().getHitCount());
+        assertEquals("version=1.0.11\nother=value\n", new String(Files.readAllBytes(propertyFile.toPath()), "ISO-8859-1"));
+        
+        verify(fileHandler, times(1)).locateProperty(same(propertyFile), eq("version"));
     }
     
 }
@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.file;
+
+import co.byng.versioningplugin.versioning.StaticVersionFactory;
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class VersionFileWatcherTest {
+    
+    private static final long WAIT_SECONDS = 30;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private VersionFileWatcher watcher;
+    private Thread thread;
+    private File propertyFile;
+    
+    @Before
+    public void setUp() throws Exception {
+        this.watcher = new VersionFileWatcher(FileSystems.getDefault().newWatchService());
+        this.thread = this.watcher.start();
+        
+        this.propertyFile = this.folder.newFile("version.properties");
+        Files.write(this.propertyFile.toPath(), "version=1.2.3\n".getBytes("ISO-8859-1"));
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        this.watcher.close();
+        this.thread.join(TimeUnit.SECONDS.toMillis(WAIT_SECONDS));
+    }
+    
+    @Test
+    public void testListenersAreOnlyToldAboutTheirFile() throws Exception {
+        LatchListener listener = new LatchListener();
+        LatchListener otherListener = new LatchListener();
+        
+        this.watcher.watch(this.propertyFile, listener);
+        this.watcher.watch(new File(this.folder.getRoot(), "other.properties"), otherListener);
+        
+        assertEquals(1, this.watcher.getWatchedDirectoryCount());
+        
+        Files.write(this.propertyFile.toPath(), "version=1.2.4\n".getBytes("ISO-8859-1"));
+        
+        assertTrue(listener.changed.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, otherListener.changed.getCount());
+    }
+    
+    @Test
+    public void testClosingCancelsListeners() throws Exception {
+        LatchListener listener = new LatchListener();
+        this.watcher.watch(this.propertyFile, listener);
+        
+        this.watcher.close();
+        
+        assertTrue(listener.cancelled.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(0, this.watcher.getWatchedDirectoryCount());
+    }
+    
+    @Test
+    public void testUnwatchingTheLastListenerStopsWatchingTheDirectory() throws Exception {
+        LatchListener listener = new LatchListener();
+        LatchListener otherListener = new LatchListener();
+        File otherFile = new File(this.folder.getRoot(), "other.properties");
+        
+        this.watcher.watch(this.propertyFile, listener);
+        this.watcher.watch(otherFile, otherListener);
+        
+        this.watcher.unwatch(this.propertyFile, listener);
+        assertEquals(1, this.watcher.getWatchedDirectoryCount());
+        
+        this.watcher.unwatch(otherFile, otherListener);
+        assertEquals(0, this.watcher.getWatchedDirectoryCount());
+    }
+    
+    @Test
+    public void testWatchingStopsWatchingDirectoriesWithoutListeners() throws Exception {
+        LatchListener listener = new LatchListener();
+        this.watcher.watch(this.propertyFile, listener);
+        
+        this.watcher.listeners.get(this.propertyFile.toPath().toAbsolutePath().normalize().getParent()).clear();
+        this.watcher.watch(this.folder.newFolder("other").toPath().resolve("version.properties").toFile(), listener);
+        
+        assertEquals(1, this.watcher.getWatchedDirectoryCount());
+    }
+    
+    @Test
+    public void testMovingHandlerStopsWatchingTheOldFile() throws Exception {
+        PropertyFileVersionHandler handler = new PropertyFileVersionHandler(
+            new PropertyFileIoHandler(),
+            new StaticVersionFactory(),
+            this.propertyFile
+        );
+        handler.setWatcher(this.watcher);
+        handler.loadVersion();
+        
+        assertEquals(1, this.watcher.getWatchedDirectoryCount());
+        
+        handler.setWatcher(null);
+        
+        assertEquals(0, this.watcher.getWatchedDirectoryCount());
+    }
+    
+    @Test
+    public void testWatchedHandlerNoticesExternalEdits() throws Exception {
+        PropertyFileVersionHandler handler = new PropertyFileVersionHandler(
+            new PropertyFileIoHandler(),
+            new StaticVersionFactory(),
+            this.propertyFile
+        );
+        handler.setWatcher(this.watcher);
+        
+        assertEquals("1.2.3", handler.loadVersion().toString());
+        assertTrue(handler.getReadCache().isWatched());
+        assertEquals("1.2.3", handler.loadVersion().toString());
+        assertEquals(1, handler.getReadCache().getHitCount());
+        
+        Files.write(this.propertyFile.toPath(), "version=1.2.9\n".getBytes("ISO-8859-1"));
+        
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(WAIT_SECONDS);
+        
+        while (!"1.2.9".equals(handler.loadVersion().toString()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        
+        assertEquals("1.2.9", handler.loadVersion().toString());
+    }
+    
+    private static class LatchListener implements VersionFileWatcher.Listener {
+        
+        private final CountDownLatch changed = new CountDownLatch(1);
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+
+        @Override
+        public void fileChanged() {
+            this.changed.countDown();
+        }
+
+        @Override
+        public void watchCancelled() {
+            this.cancelled.countDown();
+        }
+        
+    }
+    
+}
@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.file;
+
+import com.github.zafarkhaja.semver.Version;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class VersionReadCacheTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private File propertyFile;
+    private VersionReadCache cache;
+    
+    @Before
+    public void setUp() throws Exception {
+        this.propertyFile = this.folder.newFile("version.properties");
+        Files.write(this.propertyFile.toPath(), "version=1.2.3\n".getBytes("ISO-8859-1"));
+        
+        this.cache = new VersionReadCache();
+    }
+    
+    private BasicFileAttributes readAttributes() throws Exception {
+        return new PropertyFileIoHandler().readAttributes(this.propertyFile);
+    }
+    
+    @Test
+    public void testHitsWhileAttributesMatch() throws Exception {
+        Version version = Version.valueOf("1.2.3");
+        
+        assertNull(this.cache.get("version", this.readAttributes()));
+        
+        this.cache.put("version", this.readAttributes(), version);
+        
+        assertSame(version, this.cache.get("version", this.readAttributes()));
+        assertNull(this.cache.get("other", this.readAttributes()));
+        assertEquals(1, this.cache.getHitCount());
+        assertEquals(2, this.cache.getMissCount());
+    }
+    
+    @Test
+    public void testMissesOnceFileChanges() throws Exception {
+        this.cache.put("version", this.readAttributes(), Version.valueOf("1.2.3"));
+        
+        Files.write(this.propertyFile.toPath(), "version=1.2.30\n".getBytes("ISO-8859-1"));
+        
+        assertNull(this.cache.get("version", this.readAttributes()));
+        
+        this.cache.put("version", this.readAttributes(), Version.valueOf("1.2.30"));
+        Files.setLastModifiedTime(this.propertyFile.toPath(), FileTime.fromMillis(1000L));
+        
+        assertNull(this.cache.get("version", this.readAttributes()));
+    }
+    
+    @Test
+    public void testMissesOnceFileIsReplaced() throws Exception {
+        BasicFileAttributes attributes = this.readAttributes();
+        this.cache.put("version", attributes, Version.valueOf("1.2.3"));
+        
+        File replacement = this.folder.newFile("replacement.properties");
+        Files.write(replacement.toPath(), "version=1.2.3\n".getBytes("ISO-8859-1"));
+        Files.setLastModifiedTime(replacement.toPath(), attributes.lastModifiedTime());
+        Files.delete(this.propertyFile.toPath());
+        Files.move(replacement.toPath(), this.propertyFile.toPath());
+        
+        BasicFileAttributes replacedAttributes = this.readAttributes();
+        
+        if (attributes.fileKey() != null) {
+            assertNull(this.cache.get("version", replacedAttributes));
+        }
+    }
+    
+    @Test
+    public void testInvalidateAndUnknownAttributesMiss() throws Exception {
+        this.cache.put("version", this.readAttributes(), Version.valueOf("1.2.3"));
+        
+        assertNull(this.cache.get("version", null));
+        
+        this.cache.invalidate();
+        
+        assertNull(this.cache.get("version", this.readAttributes()));
+        
+        this.cache.put("version", null, Version.valueOf("1.2.3"));
+        
+        assertNull(this.cache.get("version", this.readAttributes()));
+        assertEquals(0, this.cache.getHitCount());
+    }
+    
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.journal;
+
+import co.byng.versioningplugin.handler.BuildVersionUpdate;
+import co.byng.versioningplugin.handler.VersionChange;
+import co.byng.versioningplugin.handler.VersionUpdate;
+import co.byng.versioningplugin.handler.file.PathLockRegistry;
+import co.byng.versioningplugin.handler.file.PropertyFileIoHandler;
+import co.byng.versioningplugin.handler.mapped.PropertyFileVersionConverter;
+import co.byng.versioningplugin.versioning.StaticVersionFactory;
+import com.github.zafarkhaja.semver.Version;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class JournalVersionHandlerTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private File propertyFile;
+    private PathLockRegistry lockRegistry;
+    private JournalVersionHandler handler;
+    private PrintStream logger;
+    
+    @Before
+    public void setUp() {
+        this.propertyFile = new File(this.folder.getRoot(), "version.properties");
+        this.lockRegistry = new PathLockRegistry();
+        this.logger = new PrintStream(new ByteArrayOutputStream());
+        
+        this.handler = new JournalVersionHandler(
+            VersionJournal.forPropertyFile(this.propertyFile).setForceWrites(false),
+            new StaticVersionFactory()
+        );
+        this.handler.setLockRegistry(this.lockRegistry);
+    }
+    
+    private BuildVersionUpdate incrementPatchInBuild(final int buildNumber) {
+        return new BuildVersionUpdate() {
+            @Override
+            public int getBuildNumber() {
+                return buildNumber;
+            }
+
+            @Override
+            public Version apply(Version currentVersion) {
+                return currentVersion.incrementPatchVersion();
+            }
+        };
+    }
+    
+    @Test
+    public void testUpdatesAreRecordedWithTheirBuilds() throws Exception {
+        Files.write(this.propertyFile.toPath(), "version=2.3.4\n".getBytes("ISO-8859-1"));
+        this.handler.setConverter(
+            new PropertyFileVersionConverter(new PropertyFileIoHandler(), new StaticVersionFactory(), this.propertyFile)
+        );
+        
+        VersionChange change = this.handler.update(this.incrementPatchInBuild(41), this.logger);
+        
+        assertEquals("2.3.4", change.getPreviousVersion().toString());
+        assertEquals("2.3.5", change.getCurrentVersion().toString());
+        assertTrue(change.isSaved());
+        
+        this.handler.update(this.incrementPatchInBuild(42), this.logger);
+        
+        List<JournalEntry> entries = this.handler.getJournal().readEntries();
+        
+        assertEquals(2, entries.size());
+        assertEquals(41, entries.get(0).getBuildNumber());
+        assertEquals("2.3.4", entries.get(0).getPreviousVersion().toString());
+        assertEquals(42, entries.get(1).getBuildNumber());
+        assertEquals("2.3.6", entries.get(1).getCurrentVersion().toString());
+        assertEquals("2.3.6", this.handler.loadVersion().toString());
+        assertEquals(0, this.lockRegistry.getActivePathCount());
+    }
+    
+    @Test
+    public void testUnchangedVersionIsNotRecorded() throws Exception {
+        assertEquals("1.0.0", this.handler.loadVersion().toString());
+        assertTrue(this.handler.saveVersion(Version.valueOf("1.0.0")));
+        assertFalse(this.handler.saveVersion(Version.valueOf("1.0.0")));
+        
+        VersionChange change = this.handler.update(
+            new VersionUpdate() {
+                @Override
+                public Version apply(Version currentVersion) {
+                    return currentVersion;
+                }
+            },
+            this.logger
+        );
+        
+        assertFalse(change.isSaved());
+        assertEquals(1, this.handler.getJournal().getRecordCount());
+    }
+    
+}
@@ -0,0 +1,228 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.journal;
+
+import com.github.zafarkhaja.semver.Version;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class VersionJournalTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private File propertyFile;
+    private VersionJournal journal;
+    
+    @Before
+    public void setUp() {
+        this.propertyFile = new File(this.folder.getRoot(), "version.properties");
+        this.journal = this.openJournal();
+    }
+    
+    private VersionJournal openJournal() {
+        return VersionJournal.forPropertyFile(this.propertyFile)
+            .setForceWrites(false)
+            .setSnapshotInterval(4)
+            .setCompaction(10, 3);
+    }
+    
+    private void appendPatches(VersionJournal journal, int first, int count) throws IOException {
+        for (int i = first; i < first + count; i++) {
+            journal.append(
+                new JournalEntry(i, 1000L * i, Version.forIntegers(1, 0, i - 1), Version.forIntegers(1, 0, i))
+            );
+        }
+    }
+    
+    @Test
+    public void testForPropertyFileNamesFilesAfterPropertyFile() {
+        assertEquals(new File(this.folder.getRoot(), "version.journal"), this.journal.getJournalFile());
+        assertEquals(new File(this.folder.getRoot(), "version.snapshot"), this.journal.getSnapshotFile());
+    }
+    
+    @Test
+    public void testEmptyJournalHasNoEntries() throws Exception {
+        assertNull(this.journal.getLastEntry());
+        assertEquals(0, this.journal.getRecordCount());
+        assertTrue(this.journal.readEntries().isEmpty());
+    }
+    
+    @Test
+    public void testEntriesRoundTripThroughDeltaEncoding() throws Exception {
+        this.journal.append(new JournalEntry(7, 1500000000000L, Version.valueOf("1.0.0"), Version.valueOf("1.1.0-beta+sha.1")));
+        this.journal.append(new JournalEntry(9, 1500000000500L, Version.valueOf("1.1.0-beta+sha.1"), Version.valueOf("1.1.0")));
+        this.journal.append(new JournalEntry(3, 1499999999000L, Version.valueOf("5.0.0-rc.1"), Version.valueOf("0.9.12")));
+        
+        List<JournalEntry> entries = this.openJournal().readEntries();
+        
+        assertEquals(3, entries.size());
+        assertEquals(7, entries.get(0).getBuildNumber());
+        assertEquals(1500000000000L, entries.get(0).getTimestamp());
+        assertEquals("1.0.0", entries.get(0).getPreviousVersion().toString());
+        assertEquals("1.1.0-beta+sha.1", entries.get(0).getCurrentVersion().toString());
+        assertEquals("1.1.0", entries.get(1).getCurrentVersion().toString());
+        assertEquals(3, entries.get(2).getBuildNumber());
+        assertEquals(1499999999000L, entries.get(2).getTimestamp());
+        assertEquals("5.0.0-rc.1", entries.get(2).getPreviousVersion().toString());
+        assertEquals("0.9.12", entries.get(2).getCurrentVersion().toString());
+    }
+    
+    @Test
+    public void testTypicalRecordIsCompact() throws Exception {
+        this.appendPatches(this.journal, 1, 2);
+        long sizeAfterTwo = this.journal.getJournalFile().length();
+        
+        this.appendPatches(this.journal, 3, 1);
+        
+        assertTrue(this.journal.getJournalFile().length() - sizeAfterTwo <= 16);
+    }
+    
+    @Test
+    public void testRecoversFromSnapshotAndTail() throws Exception {
+        this.appendPatches(this.journal, 1, 6);
+        
+        assertTrue(this.journal.getSnapshotFile().exists());
+        
+        VersionJournal recovered = this.openJournal();
+        
+        assertEquals("1.0.6", recovered.getLastEntry().getCurrentVersion().toString());
+        assertEquals(6, recovered.getLastEntry().getBuildNumber());
+        assertEquals(6, recovered.getRecordCount());
+        assertEquals(2, recovered.recordsSinceSnapshot);
+    }
+    
+    @Test
+    public void testRecoversWithoutSnapshot() throws Exception {
+        this.appendPatches(this.journal, 1, 6);
+        Files.delete(this.journal.getSnapshotFile().toPath());
+        
+        VersionJournal recovered = this.openJournal();
+        
+        assertEquals("1.0.6", recovered.getLastEntry().getCurrentVersion().toString());
+        assertEquals(6, recovered.getRecordCount());
+    }
+    
+    @Test
+    public void testTornRecordIsDroppedAndOverwritten() throws Exception {
+        this.appendPatches(this.journal, 1, 3);
+        
+        try (RandomAccessFile raf = new RandomAccessFile(this.journal.getJournalFile(), "rw")) {
+            raf.setLength(raf.length() - 2);
+        }
+        
+        VersionJournal recovered = this.openJournal();
+        
+        assertEquals("1.0.2", recovered.getLastEntry().getCurrentVersion().toString());
+        
+        this.appendPatches(recovered, 3, 1);
+        
+        List<JournalEntry> entries = this.openJournal().readEntries();
+        
+        assertEquals(3, entries.size());
+        assertEquals("1.0.3", entries.get(2).getCurrentVersion().toString());
+    }
+    
+    @Test
+    public void testCompactionKeepsLatestRecords() throws Exception {
+        this.appendPatches(this.journal, 1, 11);
+        
+        assertEquals(3, this.journal.getRecordCount());
+        
+        VersionJournal recovered = this.openJournal();
+        List<JournalEntry> entries = recovered.readEntries();
+        
+        assertEquals(3, entries.size());
+        assertEquals("1.0.8", entries.get(0).getPreviousVersion().toString());
+        assertEquals("1.0.11", recovered.getLastEntry().getCurrentVersion().toString());
+        
+        this.appendPatches(recovered, 12, 1);
+        
+        assertEquals("1.0.12", this.openJournal().getLastEntry().getCurrentVersion().toString());
+    }
+    
+    @Test
+    public void testJournalWithTornHeaderIsCreatedAfresh() throws Exception {
+        this.appendPatches(this.journal, 1, 1);
+        byte[] header = Files.readAllBytes(this.journal.getJournalFile().toPath());
+        
+        for (int length : new int[] { 0, 7 }) {
+            Files.write(this.journal.getJournalFile().toPath(), Arrays.copyOf(header, length));
+            this.journal.getSnapshotFile().delete();
+            
+            VersionJournal recovered = this.openJournal();
+            
+            assertNull(recovered.getLastEntry());
+            
+            this.appendPatches(recovered, 1, 2);
+            
+            assertEquals("1.0.2", this.openJournal().getLastEntry().getCurrentVersion().toString());
+        }
+    }
+    
+    @Test
+    public void testNoticesJournalReplacedWithSameLength() throws Exception {
+        this.appendPatches(this.journal, 1, 3);
+        
+        VersionJournal other = VersionJournal.forPropertyFile(this.folder.newFolder("other").toPath().resolve("version.properties").toFile())
+            .setForceWrites(false);
+        
+        for (int i = 1; i <= 3; i++) {
+            other.append(new JournalEntry(i, 1000L * i, Version.forIntegers(2, 0, i - 1), Version.forIntegers(2, 0, i)));
+        }
+        
+        assertEquals(this.journal.getJournalFile().length(), other.getJournalFile().length());
+        assertEquals("1.0.3", this.journal.getLastEntry().getCurrentVersion().toString());
+        
+        Files.move(
+            other.getJournalFile().toPath(),
+            this.journal.getJournalFile().toPath(),
+            StandardCopyOption.REPLACE_EXISTING
+        );
+        
+        assertEquals("2.0.3", this.journal.getLastEntry().getCurrentVersion().toString());
+    }
+    
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws Exception {
+        Files.write(this.journal.getJournalFile().toPath(), "version=1.0.0\n".getBytes("ISO-8859-1"));
+        
+        this.journal.getLastEntry();
+    }
+    
+}
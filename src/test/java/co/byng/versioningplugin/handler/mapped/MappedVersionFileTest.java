@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.mapped;
+
+import com.github.zafarkhaja.semver.Version;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class MappedVersionFileTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private File file;
+    
+    @Before
+    public void setUp() {
+        this.file = new File(this.folder.getRoot(), "version.semver");
+    }
+    
+    @Test
+    public void testOpenCreatesEmptyVersionFile() throws Exception {
+        MappedVersionFile mappedFile = MappedVersionFile.open(this.file, false);
+        
+        assertTrue(this.file.exists());
+        assertEquals(MappedVersionFile.FILE_SIZE, this.file.length());
+        assertNull(mappedFile.read());
+        assertEquals(0, mappedFile.getSequence());
+    }
+    
+    @Test
+    public void testWrittenVersionIsReadBackAfterReopening() throws Exception {
+        MappedVersionFile mappedFile = MappedVersionFile.open(this.file, true);
+        mappedFile.write(Version.valueOf("1.2.3-rc.1+build.5"));
+        mappedFile.write(Version.valueOf("1.2.4"));
+        
+        MappedVersionFile reopened = MappedVersionFile.open(this.file, false);
+        
+        assertEquals("1.2.4", reopened.read().toString());
+        assertEquals(2, reopened.getSequence());
+        
+        reopened.write(Version.valueOf("2.0.0-beta+exp.sha.5114f85"));
+        
+        assertEquals("2.0.0-beta+exp.sha.5114f85", mappedFile.read().toString());
+    }
+    
+    @Test
+    public void testClosedFileRejectsWritesButKeepsLastVersion() throws Exception {
+        MappedVersionFile mappedFile = MappedVersionFile.open(this.file, false);
+        mappedFile.write(Version.valueOf("1.2.3"));
+        mappedFile.close();
+        
+        assertEquals("1.2.3", mappedFile.read().toString());
+        assertEquals("1.2.3", MappedVersionFile.open(this.file, false).read().toString());
+        
+        try {
+            mappedFile.write(Version.valueOf("1.2.4"));
+            fail("Expected the closed file to reject writes");
+        } catch (IOException ex) {
+            // Expected
+        }
+    }
+    
+    @Test
+    public void testTornWriteFallsBackToPreviousVersion() throws Exception {
+        MappedVersionFile mappedFile = MappedVersionFile.open(this.file, false);
+        mappedFile.write(Version.valueOf("1.0.0"));
+        mappedFile.write(Version.valueOf("1.0.1"));
+        
+        // Sequence 2 lives in the first record; damage its patch number
+        this.corrupt(MappedVersionFile.HEADER_SIZE + VersionRecordPair.PATCH_OFFSET);
+        
+        MappedVersionFile reopened = MappedVersionFile.open(this.file, false);
+        
+        assertEquals("1.0.0", reopened.read().toString());
+        assertEquals(1, reopened.getSequence());
+        
+        reopened.write(Version.valueOf("1.0.2"));
+        
+        assertEquals("1.0.2", reopened.read().toString());
+        assertEquals(2, reopened.getSequence());
+    }
+    
+    @Test(expected = IOException.class)
+    public void testReadFailsWhenNoRecordIsIntact() throws Exception {
+        MappedVersionFile mappedFile = MappedVersionFile.open(this.file, false);
+        mappedFile.write(Version.valueOf("1.0.0"));
+        
+        this.corrupt(MappedVersionFile.HEADER_SIZE + VersionRecordPair.RECORD_SIZE + VersionRecordPair.MAJOR_OFFSET);
+        
+        MappedVersionFile.open(this.file, false).read();
+    }
+    
+    @Test
+    public void testOpenTreatsZeroFilledFileAsNew() throws Exception {
+        Files.write(this.file.toPath(), new byte[MappedVersionFile.FILE_SIZE]);
+        
+        MappedVersionFile mappedFile = MappedVersionFile.open(this.file, true);
+        
+        assertNull(mappedFile.read());
+        assertEquals(0, mappedFile.getSequence());
+        
+        mappedFile.write(Version.valueOf("1.0.0"));
+        
+        assertEquals("1.0.0", MappedVersionFile.open(this.file, false).read().toString());
+    }
+    
+    @Test(expected = IOException.class)
+    public void testOpenRejectsOtherFiles() throws Exception {
+        Files.write(this.file.toPath(), "version=1.0.0\n".getBytes("ISO-8859-1"));
+        
+        MappedVersionFile.open(this.file, false);
+    }
+    
+    @Test
+    public void testWriteRejectsOverlongIdentifiers() throws Exception {
+        MappedVersionFile mappedFile = MappedVersionFile.open(this.file, false);
+        mappedFile.write(Version.valueOf("1.0.0"));
+        
+        StringBuilder preRelease = new StringBuilder("a");
+        while (preRelease.length() <= VersionRecordPair.MAX_IDENTIFIERS_LENGTH) {
+            preRelease.append(".a");
+        }
+        
+        try {
+            mappedFile.write(Version.valueOf("1.0.1-" + preRelease));
+            fail("Expected IOException");
+        } catch (IOException ex) {
+        }
+        
+        assertEquals("1.0.0", mappedFile.read().toString());
+    }
+    
+    private void corrupt(int offset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+            raf.seek(offset);
+            int value = raf.read();
+            raf.seek(offset);
+            raf.write(value ^ 0xFF);
+        }
+    }
+    
+}
@@ -0,0 +1,195 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.mapped;
+
+import co.byng.versioningplugin.handler.VersionChange;
+import co.byng.versioningplugin.handler.VersionUpdate;
+import co.byng.versioningplugin.handler.file.PathLockRegistry;
+import co.byng.versioningplugin.handler.file.PropertyFileIoHandler;
+import co.byng.versioningplugin.versioning.StaticVersionFactory;
+import com.github.zafarkhaja.semver.Version;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class MappedVersionHandlerTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private File propertyFile;
+    private PathLockRegistry lockRegistry;
+    private MappedVersionHandler handler;
+    private PrintStream logger;
+    
+    private final VersionUpdate incrementPatch = new VersionUpdate() {
+        @Override
+        public Version apply(Version currentVersion) {
+            return currentVersion.incrementPatchVersion();
+        }
+    };
+    
+    @Before
+    public void setUp() {
+        this.propertyFile = new File(this.folder.getRoot(), "version.properties");
+        this.lockRegistry = new PathLockRegistry();
+        this.logger = new PrintStream(new ByteArrayOutputStream());
+        
+        this.handler = new MappedVersionHandler(
+            new StaticVersionFactory(),
+            MappedVersionHandler.getVersionFileFor(this.propertyFile)
+        );
+        this.handler.setLockRegistry(this.lockRegistry);
+        this.handler.setForceWrites(false);
+    }
+    
+    @Test
+    public void testGetVersionFileForReplacesPropertiesExtension() {
+        assertEquals(
+            new File("/path/to/version.semver"),
+            MappedVersionHandler.getVersionFileFor(new File("/path/to/version.properties"))
+        );
+        
+        assertEquals(
+            new File("/path/to/build.txt.semver"),
+            MappedVersionHandler.getVersionFileFor(new File("/path/to/build.txt"))
+        );
+    }
+    
+    @Test
+    public void testUpdateStartsFromDefaultVersion() throws Exception {
+        VersionChange change = this.handler.update(this.incrementPatch, this.logger);
+        
+        assertEquals("1.0.0", change.getPreviousVersion().toString());
+        assertEquals("1.0.1", change.getCurrentVersion().toString());
+        assertTrue(change.isSaved());
+        
+        change = this.handler.update(this.incrementPatch, this.logger);
+        
+        assertEquals("1.0.1", change.getPreviousVersion().toString());
+        assertEquals("1.0.2", change.getCurrentVersion().toString());
+        assertEquals("1.0.2", this.handler.loadVersion().toString());
+        assertEquals(0, this.lockRegistry.getActivePathCount());
+    }
+    
+    @Test
+    public void testUpdateImportsVersionFromPropertyFile() throws Exception {
+        Files.write(this.propertyFile.toPath(), "name=app\nversion=3.4.5-beta\n".getBytes("ISO-8859-1"));
+        
+        this.handler.setConverter(
+            new PropertyFileVersionConverter(new PropertyFileIoHandler(), new StaticVersionFactory(), this.propertyFile)
+        );
+        
+        assertEquals("3.4.5-beta", this.handler.loadVersion().toString());
+        
+        VersionChange change = this.handler.update(this.incrementPatch, this.logger);
+        
+        assertEquals("3.4.5-beta", change.getPreviousVersion().toString());
+        assertEquals("3.4.6", change.getCurrentVersion().toString());
+        
+        // Later builds no longer read the property file
+        Files.write(this.propertyFile.toPath(), "version=9.9.9\n".getBytes("ISO-8859-1"));
+        
+        assertEquals("3.4.6", this.handler.loadVersion().toString());
+    }
+    
+    @Test
+    public void testConvertCopiesVersionFromPropertyFile() throws Exception {
+        PropertyFileVersionConverter converter = new PropertyFileVersionConverter(
+            new PropertyFileIoHandler(),
+            new StaticVersionFactory(),
+            this.propertyFile
+        );
+        
+        assertFalse(converter.convert(this.handler));
+        
+        Files.write(this.propertyFile.toPath(), "version=2.0.0\n".getBytes("ISO-8859-1"));
+        
+        assertTrue(converter.convert(this.handler));
+        assertEquals("2.0.0", this.handler.loadVersion().toString());
+    }
+    
+    @Test
+    public void testUnchangedVersionIsNotSaved() throws Exception {
+        this.handler.saveVersion(Version.valueOf("1.5.0"));
+        
+        VersionChange change = this.handler.update(
+            new VersionUpdate() {
+                @Override
+                public Version apply(Version currentVersion) {
+                    return currentVersion;
+                }
+            },
+            this.logger
+        );
+        
+        assertFalse(change.isSaved());
+        assertFalse(this.handler.saveVersion(Version.valueOf("1.5.0")));
+        assertTrue(this.handler.saveVersion(Version.valueOf("1.5.0+build.1")));
+    }
+    
+    @Test
+    public void testUpdateRemapsDeletedFile() throws Exception {
+        this.handler.update(this.incrementPatch, this.logger);
+        
+        assertTrue(this.handler.getVersionFilePath().delete());
+        
+        VersionChange change = this.handler.update(this.incrementPatch, this.logger);
+        
+        assertEquals("1.0.1", change.getCurrentVersion().toString());
+        assertTrue(this.handler.getVersionFilePath().exists());
+    }
+    
+    @Test
+    public void testRemappingClosesPreviousMapping() throws Exception {
+        this.handler.update(this.incrementPatch, this.logger);
+        MappedVersionFile previousFile = this.handler.getMappedFile();
+        
+        assertTrue(this.handler.getVersionFilePath().delete());
+        this.handler.update(this.incrementPatch, this.logger);
+        
+        assertNotSame(previousFile, this.handler.getMappedFile());
+        
+        try {
+            previousFile.write(Version.valueOf("9.9.9"));
+            fail("Expected the previous mapping to be closed");
+        } catch (IOException ex) {
+            // Expected
+        }
+        
+        assertEquals("1.0.1", this.handler.loadVersion().toString());
+    }
+    
+}
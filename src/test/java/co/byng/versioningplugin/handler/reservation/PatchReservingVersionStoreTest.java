@@ -0,0 +1,177 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.reservation;
+
+import co.byng.versioningplugin.handler.PatchIncrementUpdate;
+import co.byng.versioningplugin.handler.VersionChange;
+import co.byng.versioningplugin.handler.VersionRetrievable;
+import co.byng.versioningplugin.handler.VersionStore;
+import co.byng.versioningplugin.handler.VersionUpdate;
+import co.byng.versioningplugin.versioning.VersionNumberUpdater;
+import com.github.zafarkhaja.semver.Version;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class PatchReservingVersionStoreTest {
+    
+    private InMemoryStore store;
+    private PatchReservingVersionStore reservingStore;
+    private PrintStream logger;
+    
+    @Before
+    public void setUp() {
+        this.store = new InMemoryStore(Version.valueOf("1.2.3"));
+        this.reservingStore = new PatchReservingVersionStore(this.store, 10, new VersionNumberUpdater());
+        this.logger = new PrintStream(new ByteArrayOutputStream());
+    }
+    
+    private VersionChange incrementPatch() throws Exception {
+        return this.reservingStore.update(
+            new PatchIncrementUpdate() {
+                @Override
+                public boolean isPatchIncrement() {
+                    return true;
+                }
+
+                @Override
+                public Version apply(Version currentVersion) {
+                    return currentVersion.incrementPatchVersion();
+                }
+            },
+            this.logger
+        );
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyBlocks() {
+        new PatchReservingVersionStore(this.store, 0, new VersionNumberUpdater());
+    }
+    
+    @Test
+    public void testPatchNumbersAreTakenFromReservedBlocks() throws Exception {
+        VersionChange change = this.incrementPatch();
+        
+        assertEquals("1.2.3", change.getPreviousVersion().toString());
+        assertEquals("1.2.4", change.getCurrentVersion().toString());
+        assertTrue(change.isSaved());
+        assertEquals("1.2.13", this.store.version.toString());
+        assertEquals(9, this.reservingStore.getRemainingPatchCount());
+        
+        for (int i = 5; i <= 13; i++) {
+            change = this.incrementPatch();
+            
+            assertEquals("1.2." + (i - 1), change.getPreviousVersion().toString());
+            assertEquals("1.2." + i, change.getCurrentVersion().toString());
+        }
+        
+        assertEquals(1, this.store.writes);
+        
+        assertEquals("1.2.14", this.incrementPatch().getCurrentVersion().toString());
+        assertEquals("1.2.23", this.store.version.toString());
+        assertEquals(2, this.store.writes);
+    }
+    
+    @Test
+    public void testRestartSkipsUnusedPatchNumbers() throws Exception {
+        this.incrementPatch();
+        this.incrementPatch();
+        
+        this.reservingStore = new PatchReservingVersionStore(this.store, 10, new VersionNumberUpdater());
+        
+        VersionChange change = this.incrementPatch();
+        
+        assertEquals("1.2.13", change.getPreviousVersion().toString());
+        assertEquals("1.2.14", change.getCurrentVersion().toString());
+    }
+    
+    @Test
+    public void testOtherUpdatesApplyToLastIssuedVersion() throws Exception {
+        this.incrementPatch();
+        this.incrementPatch();
+        
+        VersionChange change = this.reservingStore.update(
+            new VersionUpdate() {
+                @Override
+                public Version apply(Version currentVersion) {
+                    return currentVersion.incrementMinorVersion();
+                }
+            },
+            this.logger
+        );
+        
+        assertEquals("1.2.5", change.getPreviousVersion().toString());
+        assertEquals("1.3.0", change.getCurrentVersion().toString());
+        assertEquals("1.3.0", this.store.version.toString());
+        assertEquals(0, this.reservingStore.getRemainingPatchCount());
+        
+        assertEquals("1.3.1", this.incrementPatch().getCurrentVersion().toString());
+        assertEquals("1.3.10", this.store.version.toString());
+    }
+    
+    @Test
+    public void testExternallyChangedVersionGivesUpBlock() throws Exception {
+        this.incrementPatch();
+        this.store.version = Version.valueOf("2.0.0");
+        
+        VersionChange change = this.incrementPatch();
+        
+        assertEquals("2.0.0", change.getPreviousVersion().toString());
+        assertEquals("2.0.1", change.getCurrentVersion().toString());
+        assertEquals("2.0.10", this.store.version.toString());
+    }
+    
+    private static class InMemoryStore implements VersionStore, VersionRetrievable {
+        
+        private Version version;
+        private int writes;
+        
+        public InMemoryStore(Version version) {
+            this.version = version;
+        }
+
+        @Override
+        public Version loadVersion() {
+            return this.version;
+        }
+
+        @Override
+        public VersionChange update(VersionUpdate update, PrintStream logger) throws IOException {
+            Version previousVersion = this.version;
+            this.version = update.apply(previousVersion);
+            this.writes++;
+            
+            return new VersionChange(previousVersion, this.version, true);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.shared;
+
+import co.byng.versioningplugin.handler.VersionChange;
+import co.byng.versioningplugin.handler.VersionUpdate;
+import co.byng.versioningplugin.handler.file.PathLockRegistry;
+import co.byng.versioningplugin.handler.file.PropertyFileIoHandler;
+import co.byng.versioningplugin.handler.mapped.PropertyFileVersionConverter;
+import co.byng.versioningplugin.versioning.StaticVersionFactory;
+import com.github.zafarkhaja.semver.Version;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class SharedFileVersionHandlerTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private SharedVersionFile sharedFile;
+    private PathLockRegistry lockRegistry;
+    private PrintStream logger;
+    
+    private final VersionUpdate incrementMinor = new VersionUpdate() {
+        @Override
+        public Version apply(Version currentVersion) {
+            return currentVersion.incrementMinorVersion();
+        }
+    };
+    
+    @Before
+    public void setUp() throws Exception {
+        this.sharedFile = SharedVersionFile.open(new File(this.folder.getRoot(), "versions.db"));
+        this.sharedFile.setForceWrites(false);
+        this.lockRegistry = new PathLockRegistry();
+        this.logger = new PrintStream(new ByteArrayOutputStream());
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        this.sharedFile.close();
+    }
+    
+    private SharedFileVersionHandler createHandler(String jobName) {
+        SharedFileVersionHandler handler = new SharedFileVersionHandler(this.sharedFile, jobName, new StaticVersionFactory());
+        handler.setLockRegistry(this.lockRegistry);
+        
+        return handler;
+    }
+    
+    @Test
+    public void testJobsUpdateTheirOwnVersions() throws Exception {
+        SharedFileVersionHandler first = this.createHandler("first");
+        SharedFileVersionHandler second = this.createHandler("folder/second");
+        
+        VersionChange change = first.update(this.incrementMinor, this.logger);
+        
+        assertEquals("1.0.0", change.getPreviousVersion().toString());
+        assertEquals("1.1.0", change.getCurrentVersion().toString());
+        assertTrue(change.isSaved());
+        
+        first.update(this.incrementMinor, this.logger);
+        second.update(this.incrementMinor, this.logger);
+        
+        assertEquals("1.2.0", first.loadVersion().toString());
+        assertEquals("1.1.0", second.loadVersion().toString());
+        assertEquals(0, this.lockRegistry.getActivePathCount());
+    }
+    
+    @Test
+    public void testUpdateImportsVersionFromPropertyFile() throws Exception {
+        File propertyFile = this.folder.newFile("version.properties");
+        Files.write(propertyFile.toPath(), "version=4.1.0\n".getBytes("ISO-8859-1"));
+        
+        SharedFileVersionHandler handler = this.createHandler("job");
+        handler.setConverter(
+            new PropertyFileVersionConverter(new PropertyFileIoHandler(), new StaticVersionFactory(), propertyFile)
+        );
+        
+        VersionChange change = handler.update(this.incrementMinor, this.logger);
+        
+        assertEquals("4.1.0", change.getPreviousVersion().toString());
+        assertEquals("4.2.0", change.getCurrentVersion().toString());
+        assertEquals("4.2.0", this.sharedFile.read("job").toString());
+    }
+    
+    @Test
+    public void testUnchangedVersionIsNotSaved() throws Exception {
+        SharedFileVersionHandler handler = this.createHandler("job");
+        
+        assertTrue(handler.saveVersion(Version.valueOf("1.0.0")));
+        assertFalse(handler.saveVersion(Version.valueOf("1.0.0")));
+        
+        VersionChange change = handler.update(
+            new VersionUpdate() {
+                @Override
+                public Version apply(Version currentVersion) {
+                    return currentVersion;
+                }
+            },
+            this.logger
+        );
+        
+        assertFalse(change.isSaved());
+    }
+    
+}
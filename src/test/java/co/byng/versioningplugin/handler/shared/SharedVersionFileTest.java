@@ -0,0 +1,197 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.handler.shared;
+
+import com.github.zafarkhaja.semver.Version;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class SharedVersionFileTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private File file;
+    private SharedVersionFile sharedFile;
+    
+    @Before
+    public void setUp() throws Exception {
+        this.file = new File(this.folder.getRoot(), "semantic-versioning/versions.db");
+        this.sharedFile = SharedVersionFile.open(this.file);
+        this.sharedFile.setForceWrites(false);
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        this.sharedFile.close();
+    }
+    
+    @Test
+    public void testOpenCreatesFileWithHeaderPage() throws Exception {
+        assertTrue(this.file.exists());
+        assertEquals(SharedVersionFile.PAGE_SIZE, this.file.length());
+        assertEquals(0, this.sharedFile.getSlotCount());
+        assertNull(this.sharedFile.read("job"));
+    }
+    
+    @Test
+    public void testOpenReturnsSameInstanceUntilClosed() throws Exception {
+        assertSame(this.sharedFile, SharedVersionFile.open(this.file));
+        
+        this.sharedFile.close();
+        SharedVersionFile reopened = SharedVersionFile.open(this.file);
+        
+        assertNotSame(this.sharedFile, reopened);
+        this.sharedFile = reopened;
+    }
+    
+    @Test
+    public void testVersionsAreKeptPerJobAcrossPages() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            this.sharedFile.write("folder/job-" + i, Version.forIntegers(1, i, 0));
+        }
+        
+        this.sharedFile.write("folder/job-3", Version.valueOf("1.3.1-rc.1"));
+        
+        assertEquals(10, this.sharedFile.getSlotCount());
+        assertEquals(
+            SharedVersionFile.PAGE_SIZE * 3 + 2 * SharedVersionFile.SLOT_SIZE,
+            this.file.length()
+        );
+        
+        this.sharedFile.close();
+        this.sharedFile = SharedVersionFile.open(this.file);
+        
+        assertEquals(10, this.sharedFile.getSlotCount());
+        assertEquals("1.0.0", this.sharedFile.read("folder/job-0").toString());
+        assertEquals("1.3.1-rc.1", this.sharedFile.read("folder/job-3").toString());
+        assertEquals("1.9.0", this.sharedFile.read("folder/job-9").toString());
+        assertNull(this.sharedFile.read("folder/job-10"));
+    }
+    
+    @Test
+    public void testTornAllocationIsReused() throws Exception {
+        this.sharedFile.write("first", Version.valueOf("1.0.0"));
+        this.sharedFile.write("second", Version.valueOf("2.0.0"));
+        this.sharedFile.close();
+        
+        // Damage the second job's name, as if its allocation had been torn
+        this.corrupt(SharedVersionFile.PAGE_SIZE + SharedVersionFile.SLOT_SIZE + SharedVersionFile.KEY_OFFSET);
+        
+        this.sharedFile = SharedVersionFile.open(this.file);
+        
+        assertEquals(1, this.sharedFile.getSlotCount());
+        assertNull(this.sharedFile.read("second"));
+        
+        this.sharedFile.write("third", Version.valueOf("3.0.0"));
+        
+        assertEquals(2, this.sharedFile.getSlotCount());
+        assertEquals("1.0.0", this.sharedFile.read("first").toString());
+        assertEquals("3.0.0", this.sharedFile.read("third").toString());
+    }
+    
+    @Test
+    public void testRenameMovesVersionToNewName() throws Exception {
+        this.sharedFile.write("folder/job", Version.valueOf("1.2.3"));
+        this.sharedFile.write("other", Version.valueOf("2.0.0"));
+        
+        assertTrue(this.sharedFile.rename("folder/job", "renamed/job"));
+        assertFalse(this.sharedFile.rename("missing", "renamed/missing"));
+        
+        assertNull(this.sharedFile.read("folder/job"));
+        assertEquals("1.2.3", this.sharedFile.read("renamed/job").toString());
+        assertEquals(2, this.sharedFile.getSlotCount());
+        
+        this.sharedFile.close();
+        this.sharedFile = SharedVersionFile.open(this.file);
+        
+        assertNull(this.sharedFile.read("folder/job"));
+        assertEquals("1.2.3", this.sharedFile.read("renamed/job").toString());
+        assertEquals("2.0.0", this.sharedFile.read("other").toString());
+    }
+    
+    @Test
+    public void testFreedSlotIsReused() throws Exception {
+        this.sharedFile.write("first", Version.valueOf("1.0.0"));
+        this.sharedFile.write("second", Version.valueOf("2.0.0"));
+        this.sharedFile.write("third", Version.valueOf("3.0.0"));
+        
+        assertTrue(this.sharedFile.free("second"));
+        assertFalse(this.sharedFile.free("second"));
+        
+        this.sharedFile.close();
+        this.sharedFile = SharedVersionFile.open(this.file);
+        
+        assertEquals(2, this.sharedFile.getSlotCount());
+        assertNull(this.sharedFile.read("second"));
+        assertEquals("3.0.0", this.sharedFile.read("third").toString());
+        
+        long length = this.file.length();
+        this.sharedFile.write("fourth", Version.valueOf("4.0.0"));
+        
+        assertEquals(length, this.file.length());
+        assertEquals("4.0.0", this.sharedFile.read("fourth").toString());
+        assertEquals(3, this.sharedFile.getSlotCount());
+    }
+    
+    @Test(expected = IOException.class)
+    public void testOpenRejectsOtherFiles() throws Exception {
+        File other = this.folder.newFile("versions.properties");
+        Files.write(other.toPath(), "version=1.0.0\n".getBytes("ISO-8859-1"));
+        
+        SharedVersionFile.open(other);
+    }
+    
+    @Test(expected = IOException.class)
+    public void testWriteRejectsOverlongJobNames() throws Exception {
+        StringBuilder jobName = new StringBuilder();
+        while (jobName.length() <= SharedVersionFile.MAX_KEY_LENGTH) {
+            jobName.append("folder/");
+        }
+        
+        this.sharedFile.write(jobName.toString(), Version.valueOf("1.0.0"));
+    }
+    
+    private void corrupt(long offset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+            raf.seek(offset);
+            int value = raf.read();
+            raf.seek(offset);
+            raf.write(value ^ 0xFF);
+        }
+    }
+    
+}
@@ -25,18 +25,29 @@ package co.byng.versioningplugin.service;
 
 import co.byng.versioningplugin.AddEnvVarsAction;
 import co.byng.versioningplugin.VariableExporter;
-import co.byng.versioningplugin.handler.VersionCommittable;
-import co.byng.versioningplugin.handler.VersionRetrievable;
+import co.byng.versioningplugin.configuration.VersioningGlobalConfiguration;
+import co.byng.versioningplugin.handler.VersionStore;
+import co.byng.versioningplugin.handler.cache.WriteBehindVersionCache;
+import co.byng.versioningplugin.handler.cache.WriteBehindVersionHandler;
 import co.byng.versioningplugin.handler.file.AutoCreatingPropertyFileVersionHandler;
 import co.byng.versioningplugin.handler.file.PropertyFileIoHandler;
-import co.byng.versioningplugin.versioning.StaticVersionFactory;
+import co.byng.versioningplugin.handler.journal.JournalVersionHandler;
+import co.byng.versioningplugin.handler.mapped.MappedVersionHandler;
+import co.byng.versioningplugin.handler.reservation.PatchReservingVersionStore;
+import co.byng.versioningplugin.handler.shared.SharedFileVersionHandler;
+import co.byng.versioningplugin.versioning.CachingVersionFactory;
+import co.byng.versioningplugin.versioning.FastVersionFactory;
 import co.byng.versioningplugin.versioning.VersionFactory;
 import co.byng.versioningplugin.versioning.VersionNumberUpdater;
+import com.thoughtworks.xstream.XStream;
 import hudson.model.AbstractProject;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -46,6 +57,9 @@ import static org.mockito.Mockito.*;
  */
 public class LazyLoadingServiceFactoryTest {
     
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
     private String filePath = "/path/to/my/file";
     private File propertyFile;
     private AbstractProject project;
@@ -57,88 +71,379 @@ public class LazyLoadingServiceFactoryTest {
         this.project = mock(AbstractProject.class);
         this.pathProvider = mock(PathProvider.class);
         this.factory = new LazyLoadingServiceFactory(this.pathProvider);
+        this.factory.setStoreRegistry(new VersionStoreRegistry());
         
         when(this.pathProvider.getPropertyFilePath(same(this.project), same(this.filePath))).thenReturn(propertyFile);
     }
 
     /**
-     * Test of createCommitter method, of class LazyLoadingServiceFactory.
+     * Test of getGlobalConfiguration method, of class LazyLoadingServiceFactory.
+     */
+    @Test
+    public void testGlobalConfigurationIsNotSavedWithJob() {
+        LazyLoadingServiceFactory savedFactory = new LazyLoadingServiceFactory(new FileAbsolutePathProvider());
+        savedFactory.setGlobalConfiguration(new VersioningGlobalConfiguration().setLockTimeout(5));
+        
+        String xml = new XStream().toXML(savedFactory);
+        
+        assertFalse(xml.contains("globalConfiguration"));
+        assertNotNull(new LazyLoadingServiceFactory(this.pathProvider).getGlobalConfiguration());
+    }
+    
+    /**
+     * Test of createStore method, of class LazyLoadingServiceFactory.
+     */
+    @Test
+    public void testCreateStoreWorksForFactoryLoadedFromBaselineConfig() throws Exception {
+        String xml =
+            "<serviceFactory class=\"co.byng.versioningplugin.service.LazyLoadingServiceFactory\">"
+                + "<pathProvider class=\"co.byng.versioningplugin.service.FileAbsolutePathProvider\"/>"
+            + "</serviceFactory>";
+        
+        XStream xstream = new XStream();
+        xstream.alias("serviceFactory", ServiceFactory.class);
+        LazyLoadingServiceFactory loadedFactory = (LazyLoadingServiceFactory) xstream.fromXML(xml);
+        
+        assertSame(VersionStoreRegistry.getDefault(), loadedFactory.getStoreRegistry());
+        assertNotNull(loadedFactory.getGlobalConfiguration());
+        
+        String propertyFilePath = this.folder.newFile("version.properties").getAbsolutePath();
+        VersionStore store = loadedFactory.createStore(this.project, propertyFilePath, null, null);
+        
+        assertTrue(store instanceof AutoCreatingPropertyFileVersionHandler);
+        assertSame(store, loadedFactory.createStore(this.project, propertyFilePath, null, store));
+        assertFalse(new XStream().toXML(loadedFactory).contains("storeRegistry"));
+    }
+    
+    /**
+     * Test of setStoreRegistry method, of class LazyLoadingServiceFactory.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetStoreRegistryThrowsExceptionOnNull() {
+        this.factory.setStoreRegistry(null);
+    }
+
+    /**
+     * Test of createStore method, of class LazyLoadingServiceFactory.
      */
     @Test
-    public void testCreateCommitterReturnsPassedValueIfNotNull() throws Exception {
-        VersionCommittable currentCommitter = mock(VersionCommittable.class);
+    public void testCreateStoreReturnsPassedValueWhileFileIsUnchanged() throws Exception {
+        VersionStore currentStore = this.factory.createStore(this.project, this.filePath, null, null);
         
         assertSame(
-            currentCommitter,
-            this.factory.createCommitter(
+            currentStore,
+            this.factory.createStore(
                 this.project,
                 this.filePath,
-                currentCommitter
+                null,
+                currentStore
             )
         );
+        
+        VersionStore reservingStore = this.factory.createPatchReservingStore(currentStore, 50);
+        
+        assertSame(
+            reservingStore,
+            this.factory.createStore(this.project, this.filePath, null, reservingStore)
+        );
+    }
+
+    /**
+     * Test of createStore method, of class LazyLoadingServiceFactory.
+     */
+    @Test
+    public void testCreateStoreReplacesPassedValueWhenFileChanges() throws Exception {
+        VersionStore currentStore = this.factory.createStore(this.project, this.filePath, null, null);
+        
+        String otherFilePath = "/path/to/other/file";
+        File otherPropertyFile = new File(otherFilePath);
+        when(this.pathProvider.getPropertyFilePath(same(this.project), same(otherFilePath))).thenReturn(otherPropertyFile);
+        
+        VersionStore store = this.factory.createStore(this.project, otherFilePath, null, currentStore);
+        
+        assertNotSame(currentStore, store);
+        assertSame(otherPropertyFile, ((AutoCreatingPropertyFileVersionHandler) store).getPropertyFilePath());
+        
+        assertNotSame(
+            currentStore,
+            this.factory.createStore(this.project, this.filePath, null, mock(VersionStore.class))
+        );
     }
 
     /**
-     * Test of createCommitter method, of class LazyLoadingServiceFactory.
+     * Test of createStore method, of class LazyLoadingServiceFactory.
      */
     @Test
-    public void testCreateCommitterCreatesDefaultIfNull() throws Exception {
-        VersionCommittable committer = this.factory.createCommitter(
+    public void testCreateStoreSharesStoreBetweenJobsUsingSameFile() throws Exception {
+        AbstractProject otherProject = mock(AbstractProject.class);
+        String otherFilePath = "/path/to/my/../my/file";
+        when(this.pathProvider.getPropertyFilePath(same(this.project), same(this.filePath))).thenReturn(new File(this.filePath));
+        when(this.pathProvider.getPropertyFilePath(same(otherProject), same(otherFilePath))).thenReturn(new File(otherFilePath));
+        
+        VersionStore store = this.factory.createStore(this.project, this.filePath, null, null);
+        
+        assertSame(store, this.factory.createStore(otherProject, otherFilePath, null, null));
+        assertNotSame(
+            store,
+            this.factory.createStore(otherProject, otherFilePath, ServiceFactory.StorageBackend.JOURNAL, null)
+        );
+        assertEquals(2, this.factory.getStoreRegistry().size());
+    }
+
+    /**
+     * Test of createStore method, of class LazyLoadingServiceFactory.
+     */
+    @Test
+    public void testCreateStoreCreatesDefaultIfNull() throws Exception {
+        VersionStore store = this.factory.createStore(
             this.project,
             this.filePath,
+            null,
             null
         );
         
-        assertTrue(committer instanceof AutoCreatingPropertyFileVersionHandler);
+        assertTrue(store instanceof AutoCreatingPropertyFileVersionHandler);
         
-        AutoCreatingPropertyFileVersionHandler castCommitter = (AutoCreatingPropertyFileVersionHandler) committer;
+        AutoCreatingPropertyFileVersionHandler castStore = (AutoCreatingPropertyFileVersionHandler) store;
         
-        assertSame(this.propertyFile, castCommitter.getPropertyFilePath());
-        assertTrue(castCommitter.getFileHandler() instanceof PropertyFileIoHandler);
-        assertTrue(castCommitter.getVersionFactory() instanceof StaticVersionFactory);
+        assertSame(this.propertyFile, castStore.getPropertyFilePath());
+        assertTrue(castStore.getFileHandler() instanceof PropertyFileIoHandler);
+        assertSame(castStore.getFileHandler(), this.factory.createIoHandler());
+        assertSame(CachingVersionFactory.getDefault(), castStore.getVersionFactory());
+        assertNull(castStore.getWatcher());
         
         verify(this.pathProvider, times(1)).getPropertyFilePath(same(this.project), same(this.filePath));
     }
     
     /**
-     * Test of createRetriever method, of class LazyLoadingServiceFactory.
+     * Test of createStore method, of class LazyLoadingServiceFactory.
      */
     @Test
-    public void testCreateRetrieverReturnsPassedValueIfNotNull() throws Exception {
-        VersionRetrievable currentRetriever = mock(VersionRetrievable.class);
+    public void testCreateStoreOnlyLocksAcrossProcessesWhenConfigured() throws Exception {
+        AutoCreatingPropertyFileVersionHandler store = (AutoCreatingPropertyFileVersionHandler) this.factory.createStore(
+            this.project,
+            this.filePath,
+            null,
+            null
+        );
         
-        assertSame(
-            currentRetriever,
-            this.factory.createRetriever(
-                this.project,
-                this.filePath,
-                currentRetriever
-            )
+        assertNull(store.getProcessLocker());
+        
+        this.factory.setGlobalConfiguration(
+            new VersioningGlobalConfiguration()
+                .setCrossProcessLocking(true)
+                .setLockTimeout(5)
+        );
+        
+        store = (AutoCreatingPropertyFileVersionHandler) this.factory.createStore(
+            this.project,
+            this.filePath,
+            null,
+            null
         );
+        
+        assertNotNull(store.getProcessLocker());
+        assertEquals(5000, store.getProcessLocker().getTimeoutMillis());
+        assertNull(store.getWatcher());
     }
     
     /**
-     * Test of createRetriever method, of class LazyLoadingServiceFactory.
+     * Test of createStore method, of class LazyLoadingServiceFactory.
+     */
+    @Test
+    public void testCreateStoreCreatesMappedHandlerWhenSelected() throws Exception {
+        File propertyFile = new File("/path/to/version.properties");
+        when(this.pathProvider.getPropertyFilePath(same(this.project), same(this.filePath))).thenReturn(propertyFile);
+        
+        VersionStore store = this.factory.createStore(
+            this.project,
+            this.filePath,
+            ServiceFactory.StorageBackend.MAPPED_FILE,
+            null
+        );
+        
+        assertTrue(store instanceof MappedVersionHandler);
+        
+        MappedVersionHandler castStore = (MappedVersionHandler) store;
+        
+        assertEquals(new File("/path/to/version.semver"), castStore.getVersionFilePath());
+        assertSame(propertyFile, castStore.getConverter().getPropertyFilePath());
+        assertTrue(castStore.getForceWrites());
+        assertNull(castStore.getProcessLocker());
+    }
+
+    /**
+     * Test of createStore method, of class LazyLoadingServiceFactory.
      */
     @Test
-    public void testCreateRetrieverCreatesDefaultIfNull() throws Exception {
-        VersionRetrievable retriever = this.factory.createRetriever(
+    public void testCreateStoreCreatesSharedHandlerWhenSelected() throws Exception {
+        File sharedFile = this.folder.newFile("versions.db");
+        sharedFile.delete();
+        
+        when(this.pathProvider.getSharedVersionFilePath()).thenReturn(sharedFile);
+        when(this.project.getFullName()).thenReturn("folder/job");
+        
+        VersionStore store = this.factory.createStore(
             this.project,
             this.filePath,
+            ServiceFactory.StorageBackend.SHARED_FILE,
             null
         );
         
-        assertTrue(retriever instanceof AutoCreatingPropertyFileVersionHandler);
+        assertTrue(store instanceof SharedFileVersionHandler);
         
-        AutoCreatingPropertyFileVersionHandler castRetriever = (AutoCreatingPropertyFileVersionHandler) retriever;
+        SharedFileVersionHandler castStore = (SharedFileVersionHandler) store;
         
-        assertSame(this.propertyFile, castRetriever.getPropertyFilePath());
-        assertTrue(castRetriever.getFileHandler() instanceof PropertyFileIoHandler);
-        assertTrue(castRetriever.getVersionFactory() instanceof StaticVersionFactory);
+        assertEquals(sharedFile.getCanonicalFile(), castStore.getSharedFile().getFile());
+        assertEquals("folder/job", castStore.getJobName());
+        assertEquals(2000000L, castStore.getSharedFile().getCommitQueue().getWindowNanos());
+        assertEquals(64, castStore.getSharedFile().getCommitQueue().getMaxBatchSize());
         
-        verify(this.pathProvider, times(1)).getPropertyFilePath(same(this.project), same(this.filePath));
+        castStore.getSharedFile().close();
     }
 
+    /**
+     * Test of createStore method, of class LazyLoadingServiceFactory.
+     */
+    @Test
+    public void testCreateStoreTurnsOffGroupCommitWindowWhenZero() throws Exception {
+        File sharedFile = this.folder.newFile("versions.db");
+        sharedFile.delete();
+        
+        when(this.pathProvider.getSharedVersionFilePath()).thenReturn(sharedFile);
+        when(this.project.getFullName()).thenReturn("folder/job");
+        this.factory.setGlobalConfiguration(new VersioningGlobalConfiguration().setGroupCommitWindow(0));
+        
+        SharedFileVersionHandler store = (SharedFileVersionHandler) this.factory.createStore(
+            this.project,
+            this.filePath,
+            ServiceFactory.StorageBackend.SHARED_FILE,
+            null
+        );
+        
+        assertEquals(0L, store.getSharedFile().getCommitQueue().getWindowNanos());
+        
+        store.getSharedFile().close();
+    }
+
+    /**
+     * Test of createStore method, of class LazyLoadingServiceFactory.
+     */
+    @Test(expected = IOException.class)
+    public void testCreateStoreRejectsMappedFileWithCrossProcessLocking() throws Exception {
+        this.factory.setGlobalConfiguration(new VersioningGlobalConfiguration().setCrossProcessLocking(true));
+        
+        this.factory.createStore(
+            this.project,
+            this.filePath,
+            ServiceFactory.StorageBackend.MAPPED_FILE,
+            null
+        );
+    }
+
+    /**
+     * Test of createStore method, of class LazyLoadingServiceFactory.
+     */
+    @Test(expected = IOException.class)
+    public void testCreateStoreRejectsSharedFileWithCrossProcessLocking() throws Exception {
+        File sharedFile = this.folder.newFile("versions.db");
+        sharedFile.delete();
+        
+        when(this.pathProvider.getSharedVersionFilePath()).thenReturn(sharedFile);
+        this.factory.setGlobalConfiguration(new VersioningGlobalConfiguration().setCrossProcessLocking(true));
+        
+        this.factory.createStore(
+            this.project,
+            this.filePath,
+            ServiceFactory.StorageBackend.SHARED_FILE,
+            null
+        );
+    }
+
+    /**
+     * Test of createStore method, of class LazyLoadingServiceFactory.
+     */
+    @Test
+    public void testCreateStoreCreatesJournalHandlerWhenSelected() throws Exception {
+        File propertyFile = new File("/path/to/version.properties");
+        when(this.pathProvider.getPropertyFilePath(same(this.project), same(this.filePath))).thenReturn(propertyFile);
+        
+        VersionStore store = this.factory.createStore(
+            this.project,
+            this.filePath,
+            ServiceFactory.StorageBackend.JOURNAL,
+            null
+        );
+        
+        assertTrue(store instanceof JournalVersionHandler);
+        
+        JournalVersionHandler castStore = (JournalVersionHandler) store;
+        
+        assertEquals(new File("/path/to/version.journal"), castStore.getJournal().getJournalFile());
+        assertEquals(new File("/path/to/version.snapshot"), castStore.getJournal().getSnapshotFile());
+        assertSame(propertyFile, castStore.getConverter().getPropertyFilePath());
+    }
+
+    /**
+     * Test of createPatchReservingStore method, of class LazyLoadingServiceFactory.
+     */
+    @Test
+    public void testCreatePatchReservingStoreWrapsStoreForBlocks() {
+        VersionStore store = mock(VersionStore.class);
+        
+        assertSame(store, this.factory.createPatchReservingStore(store, 0));
+        assertSame(store, this.factory.createPatchReservingStore(store, 1));
+        
+        VersionStore reservingStore = this.factory.createPatchReservingStore(store, 50);
+        
+        assertTrue(reservingStore instanceof PatchReservingVersionStore);
+        assertSame(store, ((PatchReservingVersionStore) reservingStore).getStore());
+        assertEquals(50, ((PatchReservingVersionStore) reservingStore).getBlockSize());
+        assertSame(reservingStore, this.factory.createPatchReservingStore(reservingStore, 50));
+        assertSame(store, this.factory.createPatchReservingStore(reservingStore, 1));
+        
+        VersionStore resizedStore = this.factory.createPatchReservingStore(reservingStore, 100);
+        
+        assertSame(store, ((PatchReservingVersionStore) resizedStore).getStore());
+        assertEquals(100, ((PatchReservingVersionStore) resizedStore).getBlockSize());
+    }
+    
+    /**
+     * Test of createPatchReservingStore method, of class LazyLoadingServiceFactory.
+     */
+    @Test
+    public void testCreatePatchReservingStoreSharesBlockBetweenJobs() {
+        VersionStore store = mock(VersionStore.class);
+        VersionStore reservingStore = this.factory.createPatchReservingStore(store, 50);
+        
+        assertSame(reservingStore, this.factory.createPatchReservingStore(store, 50));
+        assertNotSame(reservingStore, this.factory.createPatchReservingStore(store, 100));
+        assertNotSame(reservingStore, this.factory.createPatchReservingStore(mock(VersionStore.class), 50));
+    }
+    
+    /**
+     * Test of createStore method, of class LazyLoadingServiceFactory.
+     */
+    @Test
+    public void testCreateStoreCreatesWriteBehindHandlerWhenSelected() throws Exception {
+        File propertyFile = new File("/path/to/version.properties");
+        when(this.pathProvider.getPropertyFilePath(same(this.project), same(this.filePath))).thenReturn(propertyFile);
+        
+        VersionStore store = this.factory.createStore(
+            this.project,
+            this.filePath,
+            ServiceFactory.StorageBackend.WRITE_BEHIND,
+            null
+        );
+        
+        assertTrue(store instanceof WriteBehindVersionHandler);
+        
+        WriteBehindVersionHandler castStore = (WriteBehindVersionHandler) store;
+        
+        assertSame(WriteBehindVersionCache.getDefault(), castStore.getCache());
+        assertSame(propertyFile, castStore.getDelegate().getPropertyFilePath());
+    }
+    
     /**
      * Test of createUpdater method, of class LazyLoadingServiceFactory.
      */
@@ -154,7 +459,10 @@ public class LazyLoadingServiceFactoryTest {
      */
     @Test
     public void testCreateUpdaterCreatesDefaultIfNull() {
-        assertTrue(this.factory.createUpdater(null) instanceof VersionNumberUpdater);
+        VersionNumberUpdater updater = this.factory.createUpdater(null);
+        
+        assertTrue(updater instanceof VersionNumberUpdater);
+        assertSame(updater, new LazyLoadingServiceFactory(this.pathProvider).createUpdater(null));
     }
 
     /**
@@ -201,7 +509,23 @@ public class LazyLoadingServiceFactoryTest {
      */
     @Test
     public void testCreateVersionFactoryCreatesDefaultIfNull() {
-        assertTrue(this.factory.createVersionFactory(null) instanceof VersionFactory);
+        assertSame(CachingVersionFactory.getDefault(), this.factory.createVersionFactory(null));
+        assertTrue(CachingVersionFactory.getDefault().getDelegate() instanceof FastVersionFactory);
+    }
+    
+    /**
+     * Test of createVersionFactory method, of class LazyLoadingServiceFactory.
+     */
+    @Test
+    public void testCreateVersionFactoryLeavesSharedCapacityAlone() {
+        int capacity = CachingVersionFactory.getDefault().getCapacity();
+        
+        this.factory.setGlobalConfiguration(
+            new VersioningGlobalConfiguration().setVersionCacheCapacity(capacity + 16)
+        );
+        this.factory.createVersionFactory(null);
+        
+        assertEquals(capacity, CachingVersionFactory.getDefault().getCapacity());
     }
     
 }
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.service;
+
+import co.byng.versioningplugin.handler.VersionStore;
+import co.byng.versioningplugin.handler.reservation.PatchReservingVersionStore;
+import co.byng.versioningplugin.versioning.VersionNumberUpdater;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class VersionStoreRegistryTest {
+    
+    private VersionStoreRegistry registry;
+    
+    @Before
+    public void setUp() {
+        this.registry = new VersionStoreRegistry();
+    }
+    
+    /**
+     * Test of getDefault method, of class VersionStoreRegistry.
+     */
+    @Test
+    public void testGetDefaultReturnsSameInstance() {
+        assertSame(VersionStoreRegistry.getDefault(), VersionStoreRegistry.getDefault());
+    }
+    
+    /**
+     * Test of get method, of class VersionStoreRegistry.
+     */
+    @Test
+    public void testGetReturnsNullIfNotRegistered() {
+        assertNull(this.registry.get("key"));
+        assertFalse(this.registry.isRegistered("key", mock(VersionStore.class)));
+    }
+    
+    /**
+     * Test of register method, of class VersionStoreRegistry.
+     */
+    @Test
+    public void testRegisterKeepsFirstStoreForKey() {
+        VersionStore store = mock(VersionStore.class);
+        VersionStore otherStore = mock(VersionStore.class);
+        
+        assertSame(store, this.registry.register("key", store));
+        assertSame(store, this.registry.register("key", otherStore));
+        assertSame(otherStore, this.registry.register("otherKey", otherStore));
+        
+        assertSame(store, this.registry.get("key"));
+        assertTrue(this.registry.isRegistered("key", store));
+        assertFalse(this.registry.isRegistered("key", otherStore));
+        assertEquals(2, this.registry.size());
+    }
+    
+    /**
+     * Test of size method, of class VersionStoreRegistry.
+     */
+    @Test
+    public void testStoresAreDroppedOnceNoLongerUsed() throws Exception {
+        this.registry.register(
+            "key",
+            new PatchReservingVersionStore(mock(VersionStore.class), 10, new VersionNumberUpdater())
+        );
+        
+        for (int i = 0; i < 50 && this.registry.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        
+        assertEquals(0, this.registry.size());
+        assertNull(this.registry.get("key"));
+    }
+    
+    /**
+     * Test of clear method, of class VersionStoreRegistry.
+     */
+    @Test
+    public void testClearRemovesAllStores() {
+        VersionStore store = mock(VersionStore.class);
+        this.registry.register("key", store);
+        
+        this.registry.clear();
+        
+        assertEquals(0, this.registry.size());
+        assertNull(this.registry.get("key"));
+    }
+    
+}
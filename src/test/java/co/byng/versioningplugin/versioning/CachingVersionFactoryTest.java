@@ -0,0 +1,195 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import com.github.zafarkhaja.semver.ParseException;
+import com.github.zafarkhaja.semver.Version;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class CachingVersionFactoryTest {
+    
+    private CountingVersionFactory delegate;
+    private CachingVersionFactory factory;
+    
+    @Before
+    public void setUp() {
+        this.delegate = new CountingVersionFactory();
+        this.factory = new CachingVersionFactory(this.delegate, 4);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorThrowsExceptionForNullDelegate() {
+        new CachingVersionFactory(null, 4);
+    }
+    
+    /**
+     * Test of setCapacity method, of class CachingVersionFactory.
+     */
+    @Test
+    public void testGetAndSetCapacity() {
+        assertSame(this.delegate, this.factory.getDelegate());
+        assertEquals(4, this.factory.getCapacity());
+        
+        this.factory.setCapacity(0);
+        assertEquals(CachingVersionFactory.DEFAULT_CAPACITY, this.factory.getCapacity());
+    }
+    
+    /**
+     * Test of buildVersionFromString method, of class CachingVersionFactory.
+     */
+    @Test
+    public void testReturnsSharedInstanceForRepeatedVersion() {
+        Version version = this.factory.buildVersionFromString("1.2.3-rc");
+        
+        assertEquals("1.2.3-rc", version.toString());
+        assertSame(version, this.factory.buildVersionFromString("1.2.3-rc"));
+        assertSame(version, this.factory.buildVersionFromString(new String("1.2.3-rc")));
+        
+        assertEquals(1, this.delegate.parseCount);
+        assertEquals(1, this.factory.getSize());
+        assertEquals(2, this.factory.getHitCount());
+        assertEquals(1, this.factory.getMissCount());
+        assertEquals(2.0 / 3, this.factory.getHitRate(), 0.0001);
+    }
+    
+    /**
+     * Test of buildVersionFromString method, of class CachingVersionFactory.
+     */
+    @Test
+    public void testDoesNotCacheInvalidVersions() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                this.factory.buildVersionFromString("1.2");
+                
+                fail("Exception should have been thrown");
+            } catch (ParseException ex) {
+            }
+        }
+        
+        assertEquals(2, this.delegate.parseCount);
+        assertEquals(0, this.factory.getSize());
+    }
+    
+    /**
+     * Test of buildVersionFromString method, of class CachingVersionFactory.
+     */
+    @Test
+    public void testOneOffVersionsDoNotEvictFrequentOnes() {
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 4; j++) {
+                this.factory.buildVersionFromString("1.0." + j);
+            }
+        }
+        
+        for (int i = 0; i < 30; i++) {
+            this.factory.buildVersionFromString("2.0." + i);
+        }
+        
+        assertEquals(4, this.factory.getSize());
+        int parseCount = this.delegate.parseCount;
+        
+        for (int j = 0; j < 4; j++) {
+            this.factory.buildVersionFromString("1.0." + j);
+        }
+        
+        assertEquals(parseCount, this.delegate.parseCount);
+    }
+    
+    /**
+     * Test of buildVersionFromString method, of class CachingVersionFactory.
+     */
+    @Test
+    public void testFrequentNewVersionReplacesLeastRecentlyUsed() {
+        for (int j = 0; j < 4; j++) {
+            this.factory.buildVersionFromString("1.0." + j);
+        }
+        
+        for (int i = 0; i < 3; i++) {
+            this.factory.buildVersionFromString("3.0.0");
+        }
+        
+        int parseCount = this.delegate.parseCount;
+        
+        this.factory.buildVersionFromString("3.0.0");
+        this.factory.buildVersionFromString("1.0.3");
+        assertEquals(parseCount, this.delegate.parseCount);
+        
+        this.factory.buildVersionFromString("1.0.0");
+        assertEquals(parseCount + 1, this.delegate.parseCount);
+    }
+    
+    /**
+     * Test of setCapacity method, of class CachingVersionFactory.
+     */
+    @Test
+    public void testShrinkingCapacityEvictsLeastRecentlyUsed() {
+        for (int j = 0; j < 4; j++) {
+            this.factory.buildVersionFromString("1.0." + j);
+        }
+        
+        this.factory.setCapacity(2);
+        assertEquals(2, this.factory.getSize());
+        
+        int parseCount = this.delegate.parseCount;
+        this.factory.buildVersionFromString("1.0.3");
+        assertEquals(parseCount, this.delegate.parseCount);
+    }
+    
+    /**
+     * Test of clear method, of class CachingVersionFactory.
+     */
+    @Test
+    public void testClear() {
+        this.factory.buildVersionFromString("1.0.0");
+        this.factory.buildVersionFromString("1.0.0");
+        this.factory.clear();
+        
+        assertEquals(0, this.factory.getSize());
+        assertEquals(0, this.factory.getHitCount());
+        assertEquals(0, this.factory.getMissCount());
+        assertEquals(0, this.factory.getHitRate(), 0);
+    }
+    
+    
+    
+    private static class CountingVersionFactory implements VersionFactory {
+        
+        private int parseCount;
+        
+        @Override
+        public Version buildVersionFromString(String version) throws ParseException {
+            this.parseCount++;
+            
+            return Version.valueOf(version);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import hudson.EnvVars;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class EnvVariableLookupTest {
+    
+    private final EnvVars environment = new EnvVars("MAJOR", "4", "MINOR", "one", "PATCH", "-2");
+    
+    /**
+     * Test of lookup method, of class EnvVariableLookup.
+     */
+    @Test
+    public void testLookupFindsVersionComponent() {
+        EnvVariableLookup lookup = EnvVariableLookup.lookup(this.environment, "MAJOR");
+        
+        assertTrue(lookup.isFound());
+        assertEquals(EnvVariableLookup.Status.FOUND, lookup.getStatus());
+        assertEquals(4, lookup.getValue());
+        assertEquals("4", lookup.getRawValue());
+        assertNull(lookup.getMessage());
+    }
+    
+    /**
+     * Test of lookup method, of class EnvVariableLookup.
+     */
+    @Test
+    public void testLookupReportsMissingVariable() {
+        EnvVariableLookup lookup = EnvVariableLookup.lookup(this.environment, "BUILD");
+        
+        assertFalse(lookup.isFound());
+        assertEquals(EnvVariableLookup.Status.MISSING, lookup.getStatus());
+        assertEquals("Environment variable 'BUILD' is not set in the current context", lookup.getMessage());
+        
+        assertEquals(EnvVariableLookup.Status.MISSING, EnvVariableLookup.lookup(this.environment, null).getStatus());
+    }
+    
+    /**
+     * Test of lookup method, of class EnvVariableLookup.
+     */
+    @Test
+    public void testLookupReportsInvalidVariable() {
+        EnvVariableLookup lookup = EnvVariableLookup.lookup(this.environment, "MINOR");
+        
+        assertEquals(EnvVariableLookup.Status.INVALID, lookup.getStatus());
+        assertEquals("one", lookup.getRawValue());
+        assertEquals("Environment variable 'MINOR' is not a valid version number: 'one'", lookup.getMessage());
+    }
+    
+    /**
+     * Test of lookup method, of class EnvVariableLookup.
+     */
+    @Test
+    public void testLookupFindsNegativeValues() {
+        EnvVariableLookup lookup = EnvVariableLookup.lookup(this.environment, "PATCH");
+        
+        assertTrue(lookup.isFound());
+        assertEquals(-2, lookup.getValue());
+    }
+    
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import com.github.zafarkhaja.semver.Version;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the library's parser with {@link FastVersionFactory}, for a plain
+ * release, a version with a pre-release and one with build metadata (which
+ * falls back to the library).
+ * 
+ * Run with <code>mvn test-compile</code> followed by this class's main method
+ * on the test classpath.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastVersionFactoryBenchmark {
+    
+    @Param({"1.2.3", "2026.14.1057-rc.1", "1.0.0-beta+exp.sha.5114f85"})
+    public String version;
+    
+    private StaticVersionFactory staticFactory;
+    private FastVersionFactory fastFactory;
+    private ByteBuffer buffer;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.staticFactory = new StaticVersionFactory();
+        this.fastFactory = new FastVersionFactory();
+        this.buffer = ByteBuffer.wrap(this.version.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    @Benchmark
+    public Version parseWithLibrary() {
+        return this.staticFactory.buildVersionFromString(this.version);
+    }
+    
+    @Benchmark
+    public Version parseString() {
+        return this.fastFactory.buildVersionFromString(this.version);
+    }
+    
+    @Benchmark
+    public Version parseByteBuffer() {
+        return this.fastFactory.buildVersion(this.buffer, 0, this.buffer.limit());
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+            new OptionsBuilder()
+                .include(FastVersionFactoryBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+    
+}
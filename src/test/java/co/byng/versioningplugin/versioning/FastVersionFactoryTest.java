@@ -0,0 +1,211 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import com.github.zafarkhaja.semver.Version;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class FastVersionFactoryTest {
+    
+    private static final String[] VERSIONS = {
+        "0.0.0",
+        "1.2.3",
+        "10.20.30",
+        "2026.1.1057",
+        "999999999.999999999.999999999",
+        "1000000000.0.0",
+        "1.0.0-alpha",
+        "1.0.0-beta",
+        "1.0.0-rc",
+        "1.0.0-nightly",
+        "1.0.0-build",
+        "1.0.0-SNAPSHOT",
+        "1.0.0-rc.1",
+        "1.0.0-alpha.beta.0",
+        "1.0.0-x-y-z.--",
+        "1.0.0-0A.is.legal",
+        "1.0.0-alpha+001",
+        "1.0.0+20130313144700",
+        "1.0.0-beta+exp.sha.5114f85",
+        "1.0.0-01",
+        "01.0.0",
+        "1.02.0",
+        "1.0",
+        "1.0.0.0",
+        "1.0.0-",
+        "1.0.0-rc..1",
+        "1.0.0-rc.",
+        "1.0.0-r_c",
+        " 1.0.0",
+        "1.0.0 ",
+        "v1.0.0",
+        "",
+        "-1.0.0",
+        "1..0",
+    };
+    
+    private FastVersionFactory factory;
+    
+    @Before
+    public void setUp() {
+        this.factory = new FastVersionFactory();
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorThrowsExceptionForNullFallback() {
+        new FastVersionFactory(null);
+    }
+    
+    @Test
+    public void testDefaultFallbackIsLibraryParser() {
+        assertTrue(this.factory.getFallbackFactory() instanceof StaticVersionFactory);
+    }
+    
+    /**
+     * Test of buildVersionFromString method, of class FastVersionFactory.
+     */
+    @Test
+    public void testBuildVersionFromStringMatchesLibrary() {
+        for (String version : VERSIONS) {
+            this.assertEquivalent(version, new StaticVersionFactory(), this.factory);
+        }
+    }
+    
+    /**
+     * Test of buildVersion method, of class FastVersionFactory.
+     */
+    @Test
+    public void testBuildVersionFromRegionMatchesLibrary() {
+        for (String version : VERSIONS) {
+            final String padded = "version=" + version + "\n";
+            
+            this.assertEquivalent(version, new StaticVersionFactory(), new VersionFactory() {
+                @Override
+                public Version buildVersionFromString(String version) {
+                    return FastVersionFactoryTest.this.factory.buildVersion(padded, 8, padded.length() - 1);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Test of buildVersion method, of class FastVersionFactory.
+     */
+    @Test
+    public void testBuildVersionFromByteBufferMatchesLibrary() {
+        for (String version : VERSIONS) {
+            final ByteBuffer buffer = ByteBuffer.wrap(("xx" + version + "yy").getBytes(StandardCharsets.UTF_8));
+            
+            this.assertEquivalent(version, new StaticVersionFactory(), new VersionFactory() {
+                @Override
+                public Version buildVersionFromString(String version) {
+                    return FastVersionFactoryTest.this.factory.buildVersion(buffer, 2, buffer.limit() - 4);
+                }
+            });
+            
+            assertEquals(0, buffer.position());
+        }
+    }
+    
+    /**
+     * Test of buildVersionFromString method, of class FastVersionFactory.
+     */
+    @Test
+    public void testOnlyUnusualVersionsUseFallback() {
+        VersionFactory fallbackFactory = mock(VersionFactory.class);
+        Version fallbackVersion = Version.valueOf("9.9.9");
+        when(fallbackFactory.buildVersionFromString(anyString())).thenReturn(fallbackVersion);
+        
+        this.factory = new FastVersionFactory(fallbackFactory);
+        
+        assertEquals("1.2.3-rc.2", this.factory.buildVersionFromString("1.2.3-rc.2").toString());
+        assertSame(fallbackVersion, this.factory.buildVersionFromString("1.2.3+build.2"));
+        
+        verify(fallbackFactory, times(1)).buildVersionFromString(eq("1.2.3+build.2"));
+        verifyNoMoreInteractions(fallbackFactory);
+    }
+    
+    /**
+     * Test of buildVersionFromString method, of class FastVersionFactory.
+     */
+    @Test
+    public void testKnownPreReleasesAreShared() {
+        assertSame(
+            VersionNumberUpdater.PreReleaseVersion.RELEASE_CANDIDATE,
+            this.factory.getPreRelease("1.0.0-rc", 6, 8)
+        );
+    }
+    
+    /**
+     * Test of buildVersionFromString method, of class FastVersionFactory.
+     */
+    @Test
+    public void testOtherPreReleasesAreNotInterned() {
+        String preRelease = this.factory.getPreRelease("1.0.0-unseen.1", 6, 14);
+        
+        assertEquals("unseen.1", preRelease);
+        assertNotSame(preRelease, PackedVersion.internPreRelease(new String("unseen.1")));
+    }
+    
+    private void assertEquivalent(String version, VersionFactory expectedFactory, VersionFactory actualFactory) {
+        Version expected = null;
+        Version actual = null;
+        Exception expectedException = null;
+        Exception actualException = null;
+        
+        try {
+            expected = expectedFactory.buildVersionFromString(version);
+        } catch (Exception ex) {
+            expectedException = ex;
+        }
+        
+        try {
+            actual = actualFactory.buildVersionFromString(version);
+        } catch (Exception ex) {
+            actualException = ex;
+        }
+        
+        if (expectedException != null) {
+            assertNotNull("'" + version + "' should not be parsed", actualException);
+            assertSame(expectedException.getClass(), actualException.getClass());
+            return;
+        }
+        
+        assertNull("'" + version + "' should be parsed", actualException);
+        assertEquals(version, expected, actual);
+        assertEquals(version, expected.toString(), actual.toString());
+        assertEquals(version, expected.getPreReleaseVersion(), actual.getPreReleaseVersion());
+        assertEquals(version, expected.getBuildMetadata(), actual.getBuildMetadata());
+    }
+    
+}
@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Computer;
+import hudson.model.Environment;
+import hudson.model.EnvironmentContributingAction;
+import hudson.model.EnvironmentContributor;
+import hudson.model.EnvironmentList;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class LazyEnvironmentTest {
+    
+    private AbstractBuild build;
+    private TaskListener listener;
+    private LazyEnvironment environment;
+    
+    @Before
+    public void setUp() throws Exception {
+        this.build = mock(AbstractBuild.class);
+        this.listener = mock(TaskListener.class);
+        this.environment = new LazyEnvironment(this.build, this.listener);
+        
+        when(this.build.getEnvironment(same(this.listener))).thenReturn(new EnvVars("MAJOR", "3"));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorThrowsExceptionForNullBuild() {
+        new LazyEnvironment(null, this.listener);
+    }
+    
+    /**
+     * Test of getEnvironment method, of class LazyEnvironment.
+     */
+    @Test
+    public void testEnvironmentIsResolvedOnceWhenFirstUsed() throws Exception {
+        assertFalse(this.environment.isResolved());
+        verify(this.build, never()).getEnvironment(any(TaskListener.class));
+        
+        EnvVars resolved = this.environment.getEnvironment();
+        
+        assertTrue(this.environment.isResolved());
+        assertSame(resolved, this.environment.getEnvironment());
+        verify(this.build, times(1)).getEnvironment(same(this.listener));
+    }
+    
+    /**
+     * Test of lookup method, of class LazyEnvironment.
+     */
+    @Test
+    public void testLookupReportsMissesAsResults() throws Exception {
+        EnvVariableLookup found = this.environment.lookup("MAJOR");
+        EnvVariableLookup missing = this.environment.lookup("MINOR");
+        
+        assertTrue(found.isFound());
+        assertEquals(3, found.getValue());
+        assertEquals(EnvVariableLookup.Status.MISSING, missing.getStatus());
+        assertSame(found, this.environment.lookup("MAJOR"));
+        verify(this.build, times(1)).getEnvironment(same(this.listener));
+    }
+    
+    /**
+     * Test of getEnvironment method, of class LazyEnvironment.
+     */
+    @Test
+    public void testEnvironmentIsTakenFromNodeCacheWithBuildContributionsOnTop() throws Exception {
+        final Computer computer = mock(Computer.class);
+        NodeEnvironmentCache nodeCache = mock(NodeEnvironmentCache.class);
+        when(nodeCache.getEnvironment(same(computer), same(this.listener))).thenReturn(
+            new EnvVars("MAJOR", "2", "MINOR", "5", "PATCH", "1", "BUILD", "0")
+        );
+        
+        AbstractProject project = mock(AbstractProject.class);
+        when(project.getCharacteristicEnvVars()).thenReturn(new EnvVars());
+        when(this.build.getProject()).thenReturn(project);
+        when(this.build.getCharacteristicEnvVars()).thenReturn(new EnvVars());
+        when(this.build.getWorkspace()).thenReturn(new FilePath(new File("/path/to/workspace")));
+        when(this.build.getEnvironments()).thenReturn(
+            new EnvironmentList(Collections.<Environment>singletonList(
+                new Environment() {
+                    @Override
+                    public void buildEnvVars(Map<String, String> env) {
+                        env.put("PATCH", "4");
+                    }
+                }
+            ))
+        );
+        when(this.build.getActions(EnvironmentContributingAction.class)).thenReturn(
+            Collections.<EnvironmentContributingAction>singletonList(
+                new EnvironmentContributingAction() {
+                    @Override
+                    public void buildEnvVars(AbstractBuild<?, ?> build, EnvVars env) {
+                        env.put("MINOR", "7");
+                    }
+
+                    @Override
+                    public String getIconFileName() {
+                        return null;
+                    }
+
+                    @Override
+                    public String getDisplayName() {
+                        return null;
+                    }
+
+                    @Override
+                    public String getUrlName() {
+                        return null;
+                    }
+                }
+            )
+        );
+        
+        final EnvironmentContributor contributor = new EnvironmentContributor() {
+            @Override
+            public void buildEnvironmentFor(Run r, EnvVars envs, TaskListener listener) {
+                envs.put("BUILD", "9");
+            }
+        };
+        
+        LazyEnvironment environment = new LazyEnvironment(this.build, this.listener, nodeCache) {
+            @Override
+            protected Computer getCurrentComputer() {
+                return computer;
+            }
+
+            @Override
+            protected Iterable<EnvironmentContributor> getEnvironmentContributors() {
+                return Collections.singletonList(contributor);
+            }
+        };
+        
+        assertEquals(2, environment.lookup("MAJOR").getValue());
+        assertEquals(7, environment.lookup("MINOR").getValue());
+        assertEquals(4, environment.lookup("PATCH").getValue());
+        assertEquals(9, environment.lookup("BUILD").getValue());
+        assertEquals(new File("/path/to/workspace").getPath(), environment.getEnvironment().get("WORKSPACE"));
+        verify(this.build, never()).getEnvironment(any(TaskListener.class));
+        verify(nodeCache, times(1)).getEnvironment(same(computer), same(this.listener));
+    }
+    
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import hudson.EnvVars;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.slaves.NodeProperty;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class NodeEnvironmentCacheTest {
+    
+    private Computer computer;
+    private Node node;
+    private TaskListener listener;
+    private NodeEnvironmentCache cache;
+    
+    @Before
+    public void setUp() throws Exception {
+        this.computer = mock(Computer.class);
+        this.node = mock(Node.class);
+        this.listener = mock(TaskListener.class);
+        this.cache = new NodeEnvironmentCache();
+        
+        when(this.computer.getEnvironment()).thenReturn(new EnvVars("PATH", "/usr/bin"));
+        when(this.computer.buildEnvironment(same(this.listener))).thenReturn(new EnvVars("NODE_NAME", "agent"));
+        when(this.computer.getNode()).thenReturn(this.node);
+        when(this.node.getNodeProperties()).thenReturn(Collections.<NodeProperty<?>>emptyList());
+    }
+    
+    /**
+     * Test of getEnvironment method, of class NodeEnvironmentCache.
+     */
+    @Test
+    public void testGetEnvironmentTakesSnapshotOnce() throws Exception {
+        EnvVars environment = this.cache.getEnvironment(this.computer, this.listener);
+        
+        assertEquals("/usr/bin", environment.get("PATH"));
+        assertTrue(this.cache.contains(this.computer));
+        
+        environment.put("PATH", "changed");
+        
+        assertEquals("/usr/bin", this.cache.getEnvironment(this.computer, this.listener).get("PATH"));
+        verify(this.computer, times(1)).getEnvironment();
+        verify(this.computer, times(1)).buildEnvironment(same(this.listener));
+    }
+    
+    /**
+     * Test of getEnvironment method, of class NodeEnvironmentCache.
+     */
+    @Test
+    public void testSnapshotMatchesUncachedNodeEnvironment() throws Exception {
+        NodeProperty<?> property = mock(NodeProperty.class);
+        when(this.node.getNodeProperties()).thenReturn(Collections.<NodeProperty<?>>singletonList(property));
+        when(this.computer.buildEnvironment(same(this.listener))).thenReturn(
+            new EnvVars("NODE_NAME", "agent", "PATH+TOOLS", "/opt/tools/bin")
+        );
+        
+        // As merged by Job.getEnvironment, with the properties applied by buildEnvironment
+        EnvVars uncached = new EnvVars(this.computer.getEnvironment());
+        uncached.putAll(this.computer.buildEnvironment(this.listener));
+        
+        assertEquals(uncached, this.cache.getEnvironment(this.computer, this.listener));
+        verify(property, never()).buildEnvVars(any(EnvVars.class), any(TaskListener.class));
+    }
+    
+    /**
+     * Test of invalidate method, of class NodeEnvironmentCache.
+     */
+    @Test
+    public void testInvalidateDropsSnapshot() throws Exception {
+        this.cache.getEnvironment(this.computer, this.listener);
+        
+        this.cache.invalidate(this.computer);
+        
+        assertFalse(this.cache.contains(this.computer));
+        
+        this.cache.getEnvironment(this.computer, this.listener);
+        this.cache.invalidateAll();
+        
+        assertEquals(0, this.cache.size());
+        verify(this.computer, times(2)).getEnvironment();
+    }
+    
+}
@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import com.github.zafarkhaja.semver.Version;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class PackedVersionTest {
+    
+    /**
+     * Test of pack method, of class PackedVersion.
+     */
+    @Test
+    public void testPackAndUnpack() {
+        long packed = PackedVersion.pack(2026, PackedVersion.MAX_COMPONENT, 17);
+        
+        assertEquals(2026, PackedVersion.getMajor(packed));
+        assertEquals(PackedVersion.MAX_COMPONENT, PackedVersion.getMinor(packed));
+        assertEquals(17, PackedVersion.getPatch(packed));
+    }
+    
+    /**
+     * Test of pack method, of class PackedVersion.
+     */
+    @Test
+    public void testPackRejectsComponentsOutOfRange() {
+        assertFalse(PackedVersion.isPackable(1, -1, 0));
+        assertFalse(PackedVersion.isPackable(Version.forIntegers(PackedVersion.MAX_COMPONENT + 1, 0, 0)));
+        
+        try {
+            PackedVersion.pack(0, 0, PackedVersion.MAX_COMPONENT + 1);
+            
+            fail("Exception should have been thrown");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+    
+    /**
+     * Test of fromVersion and toVersion methods, of class PackedVersion.
+     */
+    @Test
+    public void testConvertsToAndFromVersion() {
+        long packed = PackedVersion.fromVersion(Version.valueOf("1.2.3-beta+build.5"));
+        
+        assertEquals(PackedVersion.pack(1, 2, 3), packed);
+        assertEquals(Version.valueOf("1.2.3"), PackedVersion.toVersion(packed, null));
+        assertEquals(Version.valueOf("1.2.3"), PackedVersion.toVersion(packed, ""));
+        assertEquals(Version.valueOf("1.2.3-rc"), PackedVersion.toVersion(packed, "rc"));
+    }
+    
+    /**
+     * Test of increment methods, of class PackedVersion.
+     */
+    @Test
+    public void testIncrementsMatchVersion() {
+        Version version = Version.valueOf("3.4.5");
+        long packed = PackedVersion.fromVersion(version);
+        
+        assertEquals(
+            version.incrementMajorVersion(),
+            PackedVersion.toVersion(PackedVersion.incrementMajor(packed), null)
+        );
+        assertEquals(
+            version.incrementMinorVersion(),
+            PackedVersion.toVersion(PackedVersion.incrementMinor(packed), null)
+        );
+        assertEquals(
+            version.incrementPatchVersion(),
+            PackedVersion.toVersion(PackedVersion.incrementPatch(packed), null)
+        );
+        assertEquals(PackedVersion.pack(3, 4, 105), PackedVersion.addPatch(packed, 100));
+    }
+    
+    /**
+     * Test of majorVersion and withMinor methods, of class PackedVersion.
+     */
+    @Test
+    public void testSetResetsLowerComponents() {
+        long packed = PackedVersion.pack(3, 4, 5);
+        
+        assertEquals(PackedVersion.pack(2026, 0, 0), PackedVersion.majorVersion(2026));
+        assertEquals(PackedVersion.pack(3, 1, 0), PackedVersion.withMinor(packed, 1));
+    }
+    
+    /**
+     * Test of compare method, of class PackedVersion.
+     */
+    @Test
+    public void testCompareMatchesVersionOrdering() {
+        String[] versions = {"0.0.1", "0.1.0", "0.1.2000000", "1.0.0", "1.2.3", "2.0.0"};
+        
+        for (String version1 : versions) {
+            for (String version2 : versions) {
+                assertEquals(
+                    Integer.signum(Version.valueOf(version1).compareTo(Version.valueOf(version2))),
+                    Integer.signum(
+                        PackedVersion.compare(
+                            PackedVersion.fromVersion(Version.valueOf(version1)),
+                            PackedVersion.fromVersion(Version.valueOf(version2))
+                        )
+                    )
+                );
+            }
+        }
+    }
+    
+    /**
+     * Test of appendTo method, of class PackedVersion.
+     */
+    @Test
+    public void testFormatsAsVersion() {
+        long packed = PackedVersion.pack(10, 0, 7);
+        StringBuilder builder = new StringBuilder("v");
+        
+        assertSame(builder, PackedVersion.appendTo(packed, "nightly", builder));
+        assertEquals("v10.0.7-nightly", builder.toString());
+        assertEquals(Version.forIntegers(10, 0, 7).toString(), PackedVersion.toString(packed, null));
+    }
+    
+    /**
+     * Test of internPreRelease method, of class PackedVersion.
+     */
+    @Test
+    public void testInternPreRelease() {
+        assertEquals("", PackedVersion.internPreRelease(null));
+        assertSame(
+            VersionNumberUpdater.PreReleaseVersion.RELEASE_CANDIDATE,
+            PackedVersion.internPreRelease(new String("rc"))
+        );
+        assertSame(
+            PackedVersion.internPreRelease(new String("custom.1")),
+            PackedVersion.internPreRelease(new String("custom.1"))
+        );
+    }
+    
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import com.github.zafarkhaja.semver.Version;
+import hudson.EnvVars;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares setting the major version from an environment variable one
+ * increment at a time, as earlier releases did, with the single-step jump in
+ * {@link VersionNumberUpdater}, for increasingly large differences (a
+ * year-based major version being the worst case).
+ * 
+ * Run with <code>mvn test-compile</code> followed by this class's main method
+ * on the test classpath.
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionNumberUpdaterBenchmark {
+    
+    private static final String ENV_VARIABLE = "MAJOR_VERSION";
+    
+    @Param({"1", "100", "2026"})
+    public int diff;
+    
+    private Version currentVersion;
+    private EnvVars environment;
+    private VersionNumberUpdater updater;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.currentVersion = Version.valueOf("0.4.17");
+        this.environment = new EnvVars(ENV_VARIABLE, String.valueOf(this.diff));
+        this.updater = new VersionNumberUpdater();
+    }
+    
+    @Benchmark
+    public Version updateByIncrementing() {
+        Version version = this.currentVersion;
+        int diff = Integer.valueOf(this.environment.get(ENV_VARIABLE)) - version.getMajorVersion();
+        
+        for (int i = 0; i < diff; i++) {
+            version = version.incrementMajorVersion();
+        }
+        
+        return version;
+    }
+    
+    @Benchmark
+    public Version updateInOneStep() throws Exception {
+        return this.updater.updateMajorBasedOnEnvironmentVariable(
+            this.currentVersion,
+            this.environment,
+            ENV_VARIABLE
+        );
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+            new OptionsBuilder()
+                .include(VersionNumberUpdaterBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+    
+}
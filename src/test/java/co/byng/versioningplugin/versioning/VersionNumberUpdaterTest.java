@@ -51,6 +51,17 @@ public class VersionNumberUpdaterTest {
         this.updater = new VersionNumberUpdater();
     }
 
+    /**
+     * Test of incrementPatchVersion method, of class VersionNumberUpdater.
+     */
+    @Test
+    public void testIncrementPatchVersionBy() {
+        assertEquals(
+            "1.2.13",
+            this.updater.incrementPatchVersion(Version.valueOf("1.2.3-beta"), 10).toString()
+        );
+    }
+
     /**
      * Test of incrementSingleVersionComponent method, of class VersionNumberUpdater.
      */
@@ -108,57 +119,167 @@ public class VersionNumberUpdaterTest {
      */
     @Test
     public void testUpdateMajorBasedOnEnvironmentVariable() throws Exception {
-        final int targetVersionNumber = 7;
-        final int currentVersionNumber = 3;
+        String envVarName = "ARBITRARY MAJOR ENVIRONMENT VARIABLE";
+        when(this.environment.containsKey(same(envVarName))).thenReturn(true);
+        when(this.environment.get(same(envVarName))).thenReturn("2026");
+        
+        assertEquals(
+            "2026.0.0",
+            this.updater.updateMajorBasedOnEnvironmentVariable(
+                Version.valueOf("3.4.5-rc"),
+                this.environment,
+                envVarName
+            ).toString()
+        );
+
+        verify(this.environment, times(1)).containsKey(same(envVarName));
+        verify(this.environment, times(1)).get(same(envVarName));
+    }
+
+    /**
+     * Test of updateMajorBasedOnEnvironmentVariable method, of class VersionNumberUpdater.
+     */
+    @Test
+    public void testUpdateMajorBasedOnEnvironmentVariableLeavesEqualVersion() throws Exception {
+        final Version version = Version.valueOf("3.4.5-rc");
         
         String envVarName = "ARBITRARY MAJOR ENVIRONMENT VARIABLE";
         when(this.environment.containsKey(same(envVarName))).thenReturn(true);
-        when(this.environment.get(same(envVarName))).thenReturn(String.valueOf(targetVersionNumber));
-        when(this.currentVersion.getMajorVersion()).thenReturn(currentVersionNumber);
+        when(this.environment.get(same(envVarName))).thenReturn("3");
         
         assertSame(
-            this.currentVersion,
+            version,
             this.updater.updateMajorBasedOnEnvironmentVariable(
-                this.currentVersion,
+                version,
                 this.environment,
-                envVarName
+                envVarName,
+                VersionNumberUpdater.DecreasePolicy.REJECT
             )
         );
+    }
 
-        verify(this.currentVersion, times(targetVersionNumber - currentVersionNumber)).incrementMajorVersion();
+    /**
+     * Test of updateMajorBasedOnEnvironmentVariable method, of class VersionNumberUpdater.
+     */
+    @Test
+    public void testUpdateMajorBasedOnEnvironmentVariableDecreasePolicies() throws Exception {
+        final Version version = Version.valueOf("3.4.5");
+        
+        String envVarName = "ARBITRARY MAJOR ENVIRONMENT VARIABLE";
+        when(this.environment.containsKey(same(envVarName))).thenReturn(true);
+        when(this.environment.get(same(envVarName))).thenReturn("1");
+        
+        assertSame(
+            version,
+            this.updater.updateMajorBasedOnEnvironmentVariable(version, this.environment, envVarName)
+        );
+        assertSame(
+            version,
+            this.updater.updateMajorBasedOnEnvironmentVariable(
+                version,
+                this.environment,
+                envVarName,
+                VersionNumberUpdater.DecreasePolicy.IGNORE
+            )
+        );
+        assertSame(
+            version,
+            this.updater.updateMajorBasedOnEnvironmentVariable(version, this.environment, envVarName, null)
+        );
+        assertEquals(
+            "1.0.0",
+            this.updater.updateMajorBasedOnEnvironmentVariable(
+                version,
+                this.environment,
+                envVarName,
+                VersionNumberUpdater.DecreasePolicy.ALLOW
+            ).toString()
+        );
+        
+        try {
+            this.updater.updateMajorBasedOnEnvironmentVariable(
+                version,
+                this.environment,
+                envVarName,
+                VersionNumberUpdater.DecreasePolicy.REJECT
+            );
+            
+            fail("Exception should have been thrown");
+        } catch (Exception ex) {
+            assertEquals(
+                "Environment variable '" + envVarName + "' would decrease the major version by 2",
+                ex.getMessage()
+            );
+        }
+    }
 
+    /**
+     * Test of updateMinorBasedOnEnvironmentVariable method, of class VersionNumberUpdater.
+     */
+    @Test
+    public void testUpdateMinorBasedOnEnvironmentVariable() throws Exception {
+        String envVarName = "ARBITRARY MINOR ENVIRONMENT VARIABLE";
+        when(this.environment.containsKey(same(envVarName))).thenReturn(true);
+        when(this.environment.get(same(envVarName))).thenReturn("1000");
+        
+        assertEquals(
+            "3.1000.0",
+            this.updater.updateMinorBasedOnEnvironmentVariable(
+                Version.valueOf("3.4.5-rc"),
+                this.environment,
+                envVarName
+            ).toString()
+        );
+        
         verify(this.environment, times(1)).containsKey(same(envVarName));
         verify(this.environment, times(1)).get(same(envVarName));
-        verify(this.currentVersion, times(1)).getMajorVersion();
     }
 
     /**
      * Test of updateMinorBasedOnEnvironmentVariable method, of class VersionNumberUpdater.
      */
     @Test
-    public void testUpdateMinorBasedOnEnvironmentVariable() throws Exception {
-        final int targetVersionNumber = 7;
-        final int currentVersionNumber = 3;
+    public void testUpdateMinorBasedOnEnvironmentVariableDecreasePolicies() throws Exception {
+        final Version version = Version.valueOf("3.4.5");
         
         String envVarName = "ARBITRARY MINOR ENVIRONMENT VARIABLE";
         when(this.environment.containsKey(same(envVarName))).thenReturn(true);
-        when(this.environment.get(same(envVarName))).thenReturn(String.valueOf(targetVersionNumber));
-        when(this.currentVersion.getMinorVersion()).thenReturn(currentVersionNumber);
+        when(this.environment.get(same(envVarName))).thenReturn("0");
         
         assertSame(
-            this.currentVersion,
+            version,
             this.updater.updateMinorBasedOnEnvironmentVariable(
-                this.currentVersion,
+                version,
                 this.environment,
-                envVarName
+                envVarName,
+                VersionNumberUpdater.DecreasePolicy.IGNORE
             )
         );
+        assertEquals(
+            "3.0.0",
+            this.updater.updateMinorBasedOnEnvironmentVariable(
+                version,
+                this.environment,
+                envVarName,
+                VersionNumberUpdater.DecreasePolicy.ALLOW
+            ).toString()
+        );
         
-        verify(this.currentVersion, times(targetVersionNumber - currentVersionNumber)).incrementMinorVersion();
-        
-        verify(this.environment, times(1)).containsKey(same(envVarName));
-        verify(this.environment, times(1)).get(same(envVarName));
-        verify(this.currentVersion, times(1)).getMinorVersion();
+        try {
+            this.updater.updateMinorBasedOnEnvironmentVariable(
+                version,
+                this.environment,
+                envVarName,
+                VersionNumberUpdater.DecreasePolicy.REJECT
+            );
+            
+            fail("Exception should have been thrown");
+        } catch (Exception ex) {
+            assertEquals(
+                "Environment variable '" + envVarName + "' would decrease the minor version by 4",
+                ex.getMessage()
+            );
+        }
     }
 
     /**
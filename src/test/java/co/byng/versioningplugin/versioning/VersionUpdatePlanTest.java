@@ -0,0 +1,304 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 M.D.Ward <matthew.ward@byng-systems.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package co.byng.versioningplugin.versioning;
+
+import co.byng.versioningplugin.configuration.VersioningConfiguration;
+import com.github.zafarkhaja.semver.Version;
+import hudson.EnvVars;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author M.D.Ward <matthew.ward@byng-systems.com>
+ */
+public class VersionUpdatePlanTest {
+    
+    private VersioningConfiguration configuration;
+    private EnvVars environment;
+    
+    @Before
+    public void setUp() {
+        this.configuration = new VersioningConfiguration();
+        this.environment = new EnvVars("MAJOR", "4", "MINOR", "1");
+    }
+    
+    /**
+     * Test of compile method, of class VersionUpdatePlan.
+     */
+    @Test
+    public void testEmptyConfigurationLeavesVersionAlone() throws Exception {
+        Version version = Version.valueOf("1.2.3-beta+build.7");
+        VersionUpdatePlan plan = VersionUpdatePlan.compile(this.configuration);
+        
+        assertEquals(0, plan.getOperationCount());
+        assertNull(plan.getPreRelease());
+        assertFalse(plan.isPatchIncrement());
+        assertSame(version, plan.apply(version, this.environment));
+    }
+    
+    /**
+     * Test of compile method, of class VersionUpdatePlan.
+     */
+    @Test
+    public void testPatchIncrement() throws Exception {
+        this.configuration.setFieldToIncrement(VersionNumberUpdater.VersionComponent.PATCH);
+        VersionUpdatePlan plan = VersionUpdatePlan.compile(this.configuration);
+        
+        assertEquals(1, plan.getOperationCount());
+        assertTrue(plan.isPatchIncrement());
+        assertEquals("1.2.4", plan.apply(Version.valueOf("1.2.3-beta"), this.environment).toString());
+        
+        this.configuration.setPreReleaseVersion(VersionNumberUpdater.PreReleaseVersion.NONE);
+        assertTrue(VersionUpdatePlan.compile(this.configuration).isPatchIncrement());
+        
+        this.configuration.setPreReleaseVersion(VersionNumberUpdater.PreReleaseVersion.NIGHTLY);
+        assertFalse(VersionUpdatePlan.compile(this.configuration).isPatchIncrement());
+    }
+    
+    /**
+     * Test of compile method, of class VersionUpdatePlan.
+     */
+    @Test
+    public void testPlanIsNotAffectedByLaterConfigurationChanges() throws Exception {
+        this.configuration.setFieldToIncrement(VersionNumberUpdater.VersionComponent.MAJOR);
+        VersionUpdatePlan plan = VersionUpdatePlan.compile(this.configuration);
+        
+        this.configuration.setFieldToIncrement(VersionNumberUpdater.VersionComponent.MINOR);
+        
+        assertEquals("2.0.0", plan.apply(Version.valueOf("1.2.3"), this.environment).toString());
+    }
+    
+    /**
+     * Test of apply method, of class VersionUpdatePlan.
+     */
+    @Test
+    public void testAppliesOperationsInOrder() throws Exception {
+        this.configuration
+            .setFieldToIncrement(VersionNumberUpdater.VersionComponent.MINOR)
+            .setBaseMajorOnEnvVariable(true)
+            .setMajorEnvVariable("MAJOR")
+            .setBaseMinorOnEnvVariable(true)
+            .setMinorEnvVariable("MINOR")
+            .setPreReleaseVersion(VersionNumberUpdater.PreReleaseVersion.RELEASE_CANDIDATE)
+        ;
+        VersionUpdatePlan plan = VersionUpdatePlan.compile(this.configuration);
+        
+        assertEquals(3, plan.getOperationCount());
+        assertSame(VersionNumberUpdater.PreReleaseVersion.RELEASE_CANDIDATE, plan.getPreRelease());
+        assertEquals("4.1.0-rc", plan.apply(Version.valueOf("3.6.9"), this.environment).toString());
+    }
+    
+    /**
+     * Test of apply method, of class VersionUpdatePlan.
+     */
+    @Test
+    public void testAppliesDecreasePolicy() throws Exception {
+        this.configuration
+            .setBaseMinorOnEnvVariable(true)
+            .setMinorEnvVariable("MINOR")
+        ;
+        Version version = Version.valueOf("3.6.9");
+        
+        assertSame(version, VersionUpdatePlan.compile(this.configuration).apply(version, this.environment));
+        
+        this.configuration.setVersionDecreasePolicy(VersionNumberUpdater.DecreasePolicy.ALLOW);
+        assertEquals(
+            "3.1.0",
+            VersionUpdatePlan.compile(this.configuration).apply(version, this.environment).toString()
+        );
+        
+        this.configuration.setVersionDecreasePolicy(VersionNumberUpdater.DecreasePolicy.REJECT);
+        
+        try {
+            VersionUpdatePlan.compile(this.configuration).apply(version, this.environment);
+            
+            fail("Exception should have been thrown");
+        } catch (Exception ex) {
+            assertEquals(
+                "Environment variable 'MINOR' would decrease the minor version by 5",
+                ex.getMessage()
+            );
+        }
+    }
+    
+    /**
+     * Test of apply method, of class VersionUpdatePlan.
+     */
+    @Test
+    public void testThrowsExceptionForMissingEnvVariable() throws Exception {
+        this.configuration
+            .setBaseMajorOnEnvVariable(true)
+            .setMajorEnvVariable("MISSING")
+        ;
+        
+        try {
+            VersionUpdatePlan.compile(this.configuration).apply(Version.valueOf("1.0.0"), this.environment);
+            
+            fail("Exception should have been thrown");
+        } catch (Exception ex) {
+            assertEquals(
+                "Environment variable 'MISSING' is not set in the current context",
+                ex.getMessage()
+            );
+        }
+    }
+    
+    /**
+     * Test of apply method, of class VersionUpdatePlan.
+     */
+    @Test
+    public void testOnlyResolvesEnvironmentWhenNeeded() throws Exception {
+        this.configuration.setFieldToIncrement(VersionNumberUpdater.VersionComponent.PATCH);
+        CountingEnvironment environment = new CountingEnvironment(this.environment);
+        VersionUpdatePlan plan = VersionUpdatePlan.compile(this.configuration);
+        
+        assertFalse(plan.isEnvironmentNeeded());
+        assertEquals("1.2.4", plan.apply(Version.valueOf("1.2.3"), environment).toString());
+        assertEquals(0, environment.resolutions);
+        
+        this.configuration
+            .setBaseMajorOnEnvVariable(true)
+            .setMajorEnvVariable("MAJOR")
+            .setBaseMinorOnEnvVariable(true)
+            .setMinorEnvVariable("MINOR")
+        ;
+        plan = VersionUpdatePlan.compile(this.configuration);
+        
+        assertTrue(plan.isEnvironmentNeeded());
+        assertEquals("4.1.0", plan.apply(Version.valueOf("1.2.3"), environment).toString());
+        assertEquals("4.1.0", plan.apply(Version.valueOf("1.2.3"), environment).toString());
+        assertEquals(2, environment.resolutions);
+    }
+    
+    /**
+     * Test of apply method, of class VersionUpdatePlan.
+     */
+    @Test
+    public void testThrowsExceptionForInvalidEnvVariable() throws Exception {
+        this.configuration
+            .setBaseMajorOnEnvVariable(true)
+            .setMajorEnvVariable("MAJOR")
+        ;
+        
+        try {
+            VersionUpdatePlan.compile(this.configuration).apply(
+                Version.valueOf("1.0.0"),
+                new EnvVars("MAJOR", "four")
+            );
+            
+            fail("Exception should have been thrown");
+        } catch (Exception ex) {
+            assertEquals(
+                "Environment variable 'MAJOR' is not a valid version number: 'four'",
+                ex.getMessage()
+            );
+        }
+    }
+    
+    /**
+     * Test of apply method, of class VersionUpdatePlan.
+     */
+    @Test
+    public void testReturnsNullWhenResultCannotBePacked() throws Exception {
+        this.configuration.setFieldToIncrement(VersionNumberUpdater.VersionComponent.PATCH);
+        
+        assertNull(
+            VersionUpdatePlan.compile(this.configuration).apply(
+                Version.forIntegers(1, 2, PackedVersion.MAX_COMPONENT),
+                this.environment
+            )
+        );
+        
+        this.configuration
+            .setFieldToIncrement(VersionNumberUpdater.VersionComponent.NONE)
+            .setBaseMajorOnEnvVariable(true)
+            .setMajorEnvVariable("MAJOR")
+        ;
+        
+        assertNull(
+            VersionUpdatePlan.compile(this.configuration).apply(
+                Version.valueOf("1.2.3"),
+                new EnvVars("MAJOR", "20261017")
+            )
+        );
+        assertNull(
+            VersionUpdatePlan.compile(this.configuration).apply(
+                Version.forIntegers(PackedVersion.MAX_COMPONENT + 1, 0, 0),
+                this.environment
+            )
+        );
+    }
+    
+    /**
+     * Test of apply method, of class VersionUpdatePlan.
+     */
+    @Test
+    public void testNeverSetsNegativeComponent() throws Exception {
+        this.configuration
+            .setBaseMajorOnEnvVariable(true)
+            .setMajorEnvVariable("MAJOR")
+            .setVersionDecreasePolicy(VersionNumberUpdater.DecreasePolicy.ALLOW)
+        ;
+        Version version = Version.valueOf("1.2.3");
+        EnvVars environment = new EnvVars("MAJOR", "-1");
+        
+        assertSame(version, VersionUpdatePlan.compile(this.configuration).apply(version, environment));
+        
+        this.configuration.setVersionDecreasePolicy(VersionNumberUpdater.DecreasePolicy.REJECT);
+        
+        try {
+            VersionUpdatePlan.compile(this.configuration).apply(version, environment);
+            
+            fail("Exception should have been thrown");
+        } catch (Exception ex) {
+            assertEquals(
+                "Environment variable 'MAJOR' would decrease the major version by 2",
+                ex.getMessage()
+            );
+        }
+    }
+    
+    
+    
+    private static class CountingEnvironment extends LazyEnvironment {
+        
+        private int resolutions;
+        
+        public CountingEnvironment(EnvVars environment) {
+            super(environment);
+        }
+
+        @Override
+        public EnvVars getEnvironment() throws IOException, InterruptedException {
+            this.resolutions++;
+            
+            return super.getEnvironment();
+        }
+        
+    }
+    
+}